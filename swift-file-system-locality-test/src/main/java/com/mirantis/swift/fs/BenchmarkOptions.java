@@ -0,0 +1,174 @@
+package com.mirantis.swift.fs;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Options of a {@link SwiftBenchmark} run, parsed from
+ * <code>-key value</code> pairs of the command line.
+ * Every run with the same options does the same operations on the
+ * same data, so that the results of two builds can be compared.
+ */
+public class BenchmarkOptions {
+  public static final String ALL_SCENARIOS =
+          "seq-read,random-pread,listing,small-create,large-upload,rename-tree,delete-tree";
+
+  /**
+   * start an in-process local Swift server instead of using -fs
+   */
+  final boolean local;
+
+  /**
+   * filesystem to benchmark, such as swift://container.service/
+   */
+  final String filesystem;
+
+  /**
+   * directory the scenarios work under; deleted afterwards
+   */
+  final String dir;
+
+  final List<String> scenarios;
+
+  /**
+   * threads running the operations of a scenario at the same time
+   */
+  final int threads;
+
+  /**
+   * operations done by each thread
+   */
+  final int operations;
+
+  /**
+   * size of each file read by seq-read and random-pread
+   */
+  final long fileSize;
+
+  /**
+   * bytes read by each positioned read of random-pread
+   */
+  final int readSize;
+
+  /**
+   * size of each file written by small-create
+   */
+  final int smallSize;
+
+  /**
+   * size of each file written by large-upload
+   */
+  final long largeSize;
+
+  /**
+   * files in the directory listed by listing
+   */
+  final int listFiles;
+
+  /**
+   * files in each tree renamed or deleted
+   */
+  final int treeFiles;
+
+  /**
+   * seed of the random positions of random-pread
+   */
+  final long seed;
+
+  /**
+   * local file to write the JSON report to; null for stdout
+   */
+  final String output;
+
+  /**
+   * input of the locality job; null to not run it
+   */
+  final String locality;
+
+  /**
+   * read the locality job's input with the combining input format
+   */
+  final boolean combine;
+
+  public BenchmarkOptions(String[] args) {
+    local = hasParam(args, "local");
+    filesystem = getParam(args, "fs", null);
+    if (!local && filesystem == null) {
+      throw new IllegalArgumentException(
+              "Please specify either -local or -fs filesystem-uri");
+    }
+    dir = getParam(args, "dir", "/benchmark");
+    scenarios = Arrays.asList(getParam(args, "scenarios", ALL_SCENARIOS)
+            .split(","));
+    threads = getInt(args, "threads", 4);
+    operations = getInt(args, "ops", 8);
+    fileSize = getLong(args, "size", 8 * 1024 * 1024);
+    readSize = getInt(args, "readSize", 64 * 1024);
+    smallSize = getInt(args, "smallSize", 4 * 1024);
+    largeSize = getLong(args, "largeSize", 32 * 1024 * 1024);
+    listFiles = getInt(args, "listFiles", 100);
+    treeFiles = getInt(args, "treeFiles", 20);
+    seed = getLong(args, "seed", 0);
+    output = getParam(args, "output", null);
+    locality = getParam(args, "locality", null);
+    combine = hasParam(args, "combine");
+    if (threads <= 0 || operations <= 0 || readSize <= 0
+            || readSize > fileSize) {
+      throw new IllegalArgumentException(
+              "-threads and -ops must be positive, and -readSize between 1 and -size");
+    }
+  }
+
+  /**
+   * @return the options, for the report
+   */
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new LinkedHashMap<String, Object>();
+    map.put("local", local);
+    map.put("filesystem", filesystem);
+    map.put("dir", dir);
+    map.put("threads", threads);
+    map.put("ops", operations);
+    map.put("size", fileSize);
+    map.put("readSize", readSize);
+    map.put("smallSize", smallSize);
+    map.put("largeSize", largeSize);
+    map.put("listFiles", listFiles);
+    map.put("treeFiles", treeFiles);
+    map.put("seed", seed);
+    return map;
+  }
+
+  private static boolean hasParam(String[] source, String key) {
+    return Arrays.asList(source).contains("-".concat(key));
+  }
+
+  private static String getParam(String[] source, String key,
+                                 String defVal) {
+    key = "-".concat(key);
+    for (int i = 0; i < source.length - 1; i++) {
+      if (source[i].equals(key)) {
+        return source[i + 1];
+      }
+    }
+    return defVal;
+  }
+
+  private static int getInt(String[] source, String key, int defVal) {
+    return (int) getLong(source, key, defVal);
+  }
+
+  private static long getLong(String[] source, String key, long defVal) {
+    String value = getParam(source, key, null);
+    if (value == null) {
+      return defVal;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid -" + key + ": " + value);
+    }
+  }
+}
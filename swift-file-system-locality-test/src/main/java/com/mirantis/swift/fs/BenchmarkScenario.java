@@ -0,0 +1,285 @@
+package com.mirantis.swift.fs;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * A filesystem operation to benchmark.
+ * Every thread of a run first prepares its data, untimed, then does
+ * its operations one after the other; only the operations are timed.
+ */
+public abstract class BenchmarkScenario {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  protected FileSystem fs;
+  protected Path dir;
+  protected BenchmarkOptions options;
+
+  /**
+   * Create a scenario by name
+   *
+   * @param name one of {@link BenchmarkOptions#ALL_SCENARIOS}
+   * @return the scenario
+   * @throws IllegalArgumentException if there is no such scenario
+   */
+  public static BenchmarkScenario create(String name) {
+    if (name.equals("seq-read")) {
+      return new SequentialRead();
+    }
+    if (name.equals("random-pread")) {
+      return new RandomPread();
+    }
+    if (name.equals("listing")) {
+      return new Listing();
+    }
+    if (name.equals("small-create")) {
+      return new SmallCreate();
+    }
+    if (name.equals("large-upload")) {
+      return new LargeUpload();
+    }
+    if (name.equals("rename-tree")) {
+      return new RenameTree();
+    }
+    if (name.equals("delete-tree")) {
+      return new DeleteTree();
+    }
+    throw new IllegalArgumentException("Unknown scenario: " + name);
+  }
+
+  /**
+   * Bind the scenario to the filesystem and the directory it works in
+   */
+  void bind(FileSystem fs, Path dir, BenchmarkOptions options) {
+    this.fs = fs;
+    this.dir = dir;
+    this.options = options;
+  }
+
+  /**
+   * Create the data a thread's operations need; untimed
+   *
+   * @param thread thread index
+   * @throws IOException on any failure
+   */
+  public void prepare(int thread) throws IOException {
+  }
+
+  /**
+   * Do one timed operation
+   *
+   * @param thread    thread index
+   * @param operation index of the operation in the thread
+   * @return bytes read or written
+   * @throws IOException on any failure
+   */
+  public abstract long operation(int thread, int operation) throws IOException;
+
+  /**
+   * Release what a thread held; untimed
+   *
+   * @param thread thread index
+   * @throws IOException on any failure
+   */
+  public void cleanup(int thread) throws IOException {
+  }
+
+  /**
+   * Write a file of a given length
+   */
+  protected void write(Path path, long length) throws IOException {
+    byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, length)];
+    for (int i = 0; i < buffer.length; i++) {
+      buffer[i] = (byte) ('a' + i % 26);
+    }
+    FSDataOutputStream out = fs.create(path, true);
+    try {
+      for (long written = 0; written < length; written += buffer.length) {
+        out.write(buffer, 0, (int) Math.min(buffer.length, length - written));
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  protected Path threadFile(int thread) {
+    return new Path(dir, "thread-" + thread);
+  }
+
+  /**
+   * Open a file and read it to the end
+   */
+  public static class SequentialRead extends BenchmarkScenario {
+
+    @Override
+    public void prepare(int thread) throws IOException {
+      write(threadFile(thread), options.fileSize);
+    }
+
+    @Override
+    public long operation(int thread, int operation) throws IOException {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      long total = 0;
+      FSDataInputStream in = fs.open(threadFile(thread));
+      try {
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+          total += read;
+        }
+      } finally {
+        in.close();
+      }
+      return total;
+    }
+  }
+
+  /**
+   * Positioned reads at random offsets of an open file
+   */
+  public static class RandomPread extends BenchmarkScenario {
+    private FSDataInputStream[] streams;
+    private Random[] randoms;
+
+    @Override
+    void bind(FileSystem fs, Path dir, BenchmarkOptions options) {
+      super.bind(fs, dir, options);
+      streams = new FSDataInputStream[options.threads];
+      randoms = new Random[options.threads];
+    }
+
+    @Override
+    public void prepare(int thread) throws IOException {
+      write(threadFile(thread), options.fileSize);
+      streams[thread] = fs.open(threadFile(thread));
+      randoms[thread] = new Random(options.seed + thread);
+    }
+
+    @Override
+    public long operation(int thread, int operation) throws IOException {
+      long position = (long) (randoms[thread].nextDouble()
+              * (options.fileSize - options.readSize));
+      streams[thread].readFully(position, new byte[options.readSize]);
+      return options.readSize;
+    }
+
+    @Override
+    public void cleanup(int thread) throws IOException {
+      if (streams[thread] != null) {
+        streams[thread].close();
+      }
+    }
+  }
+
+  /**
+   * List a directory of {@link BenchmarkOptions#listFiles} files
+   */
+  public static class Listing extends BenchmarkScenario {
+
+    @Override
+    public void prepare(int thread) throws IOException {
+      for (int i = thread; i < options.listFiles; i += options.threads) {
+        write(new Path(dir, "file-" + i), 0);
+      }
+    }
+
+    @Override
+    public long operation(int thread, int operation) throws IOException {
+      int found = fs.listStatus(dir).length;
+      if (found != options.listFiles) {
+        throw new IOException("Listed " + found + " files of "
+                + options.listFiles + " in " + dir);
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * Create a small file
+   */
+  public static class SmallCreate extends BenchmarkScenario {
+
+    @Override
+    public long operation(int thread, int operation) throws IOException {
+      write(new Path(threadFile(thread), "file-" + operation),
+              options.smallSize);
+      return options.smallSize;
+    }
+  }
+
+  /**
+   * Upload a large file; each thread overwrites its own file, so that
+   * a run against the local server only holds one per thread
+   */
+  public static class LargeUpload extends BenchmarkScenario {
+
+    @Override
+    public long operation(int thread, int operation) throws IOException {
+      write(threadFile(thread), options.largeSize);
+      return options.largeSize;
+    }
+  }
+
+  /**
+   * A scenario whose every operation works on a directory tree of
+   * {@link BenchmarkOptions#treeFiles} files
+   */
+  public abstract static class TreeScenario extends BenchmarkScenario {
+
+    protected Path tree(int thread, int operation) {
+      return new Path(dir, "src/tree-" + thread + "-" + operation);
+    }
+
+    @Override
+    public void prepare(int thread) throws IOException {
+      for (int op = 0; op < options.operations; op++) {
+        Path tree = tree(thread, op);
+        for (int i = 0; i < options.treeFiles; i++) {
+          write(new Path(tree, "dir-" + i % 4 + "/file-" + i),
+                  options.smallSize);
+        }
+      }
+    }
+  }
+
+  /**
+   * Rename a directory tree
+   */
+  public static class RenameTree extends TreeScenario {
+
+    @Override
+    public void prepare(int thread) throws IOException {
+      super.prepare(thread);
+      fs.mkdirs(new Path(dir, "dst"));
+    }
+
+    @Override
+    public long operation(int thread, int operation) throws IOException {
+      Path tree = tree(thread, operation);
+      Path dest = new Path(dir, "dst/" + tree.getName());
+      if (!fs.rename(tree, dest)) {
+        throw new IOException("Failed to rename " + tree + " to " + dest);
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * Delete a directory tree
+   */
+  public static class DeleteTree extends TreeScenario {
+
+    @Override
+    public long operation(int thread, int operation) throws IOException {
+      Path tree = tree(thread, operation);
+      if (!fs.delete(tree, true)) {
+        throw new IOException("Failed to delete " + tree);
+      }
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.mirantis.swift.fs;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the duration of every operation of a scenario.
+ * Each thread records into its own slots, so recording needs no locking.
+ */
+public class LatencyRecorder {
+  private final long[][] durations;
+  private final int[] recorded;
+
+  /**
+   * @param threads    threads recording
+   * @param operations most operations any thread records
+   */
+  public LatencyRecorder(int threads, int operations) {
+    durations = new long[threads][operations];
+    recorded = new int[threads];
+  }
+
+  /**
+   * Record the duration of an operation of a thread
+   *
+   * @param thread thread index
+   * @param nanos  duration in nanoseconds
+   */
+  public void record(int thread, long nanos) {
+    durations[thread][recorded[thread]++] = nanos;
+  }
+
+  /**
+   * @return all durations recorded, shortest first
+   */
+  private long[] sorted() {
+    int count = 0;
+    for (int r : recorded) {
+      count += r;
+    }
+    long[] all = new long[count];
+    int pos = 0;
+    for (int t = 0; t < durations.length; t++) {
+      System.arraycopy(durations[t], 0, all, pos, recorded[t]);
+      pos += recorded[t];
+    }
+    Arrays.sort(all);
+    return all;
+  }
+
+  /**
+   * Summarize the durations: the mean, the 50th, 90th, 99th percentiles
+   * and the maximum, in milliseconds
+   *
+   * @return the summary; empty if nothing was recorded
+   */
+  public Map<String, Double> summary() {
+    Map<String, Double> summary = new LinkedHashMap<String, Double>();
+    long[] all = sorted();
+    if (all.length == 0) {
+      return summary;
+    }
+    long total = 0;
+    for (long d : all) {
+      total += d;
+    }
+    summary.put("mean", millis(total / all.length));
+    summary.put("p50", millis(percentile(all, 50)));
+    summary.put("p90", millis(percentile(all, 90)));
+    summary.put("p99", millis(percentile(all, 99)));
+    summary.put("max", millis(all[all.length - 1]));
+    return summary;
+  }
+
+  /**
+   * Nearest-rank percentile of sorted values
+   */
+  static long percentile(long[] sorted, int p) {
+    int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+    return sorted[Math.max(rank, 1) - 1];
+  }
+
+  private static double millis(long nanos) {
+    return Math.round(nanos / 1000.0) / 1000.0;
+  }
+}
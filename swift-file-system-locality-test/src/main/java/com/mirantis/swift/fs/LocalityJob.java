@@ -0,0 +1,205 @@
+package com.mirantis.swift.fs;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.mapreduce.SwiftCombineTextInputFormat;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.NullOutputFormat;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A map-only job scoring data locality: every mapper compares the host
+ * it runs on with the hosts <code>getFileBlockLocations()</code> reports
+ * for the data of its split, then reads the split.
+ * The scores are gathered in job counters.
+ */
+public class LocalityJob {
+
+  public enum Locality {
+    TASKS, LOCAL_TASKS, BYTES, LOCAL_BYTES, UNLOCATED_BYTES
+  }
+
+  /**
+   * counter group of the bytes of input each host was given
+   */
+  public static final String HOSTS_GROUP = "Mapper hosts";
+
+  public static class LocalityMapper
+          extends Mapper<LongWritable, Text, NullWritable, NullWritable> {
+
+    @Override
+    public void run(Context context) throws IOException, InterruptedException {
+      setup(context);
+      score(context);
+      while (context.nextKeyValue()) {
+        //only reading is measured
+      }
+      cleanup(context);
+    }
+
+    private void score(Context context) throws IOException {
+      InputSplit split = context.getInputSplit();
+      Configuration conf = context.getConfiguration();
+      Set<String> names = localNames();
+      long bytes = 0;
+      long local = 0;
+      long unlocated = 0;
+      if (split instanceof CombineFileSplit) {
+        CombineFileSplit combined = (CombineFileSplit) split;
+        for (int i = 0; i < combined.getNumPaths(); i++) {
+          long[] scores = score(conf, combined.getPath(i),
+                  combined.getOffset(i), combined.getLength(i), names);
+          local += scores[0];
+          unlocated += scores[1];
+          bytes += combined.getLength(i);
+        }
+      } else if (split instanceof FileSplit) {
+        FileSplit file = (FileSplit) split;
+        long[] scores = score(conf, file.getPath(), file.getStart(),
+                file.getLength(), names);
+        local += scores[0];
+        unlocated += scores[1];
+        bytes += file.getLength();
+      }
+      context.getCounter(Locality.TASKS).increment(1);
+      //a task is local when most of its data is
+      if (local * 2 > bytes) {
+        context.getCounter(Locality.LOCAL_TASKS).increment(1);
+      }
+      context.getCounter(Locality.BYTES).increment(bytes);
+      context.getCounter(Locality.LOCAL_BYTES).increment(local);
+      context.getCounter(Locality.UNLOCATED_BYTES).increment(unlocated);
+      context.getCounter(HOSTS_GROUP,
+              InetAddress.getLocalHost().getHostName()).increment(bytes);
+    }
+
+    /**
+     * Score a range of a file
+     *
+     * @return the bytes of the range held on this host, and the bytes
+     *         for which no host was reported
+     */
+    private long[] score(Configuration conf, Path path, long offset,
+                         long length, Set<String> names) throws IOException {
+      FileSystem fs = path.getFileSystem(conf);
+      BlockLocation[] locations = fs.getFileBlockLocations(
+              fs.getFileStatus(path), offset, length);
+      long local = 0;
+      long unlocated = 0;
+      long end = offset + length;
+      for (BlockLocation location : locations) {
+        long overlap = Math.min(end, location.getOffset() + location.getLength())
+                - Math.max(offset, location.getOffset());
+        if (overlap <= 0) {
+          continue;
+        }
+        String[] hosts = location.getHosts();
+        if (hosts.length == 0) {
+          unlocated += overlap;
+          continue;
+        }
+        for (String host : hosts) {
+          if (names.contains(host) || names.contains(shortName(host))) {
+            local += overlap;
+            break;
+          }
+        }
+      }
+      return new long[]{local, unlocated};
+    }
+  }
+
+  /**
+   * @return the names and the address of this host
+   */
+  static Set<String> localNames() throws IOException {
+    InetAddress address = InetAddress.getLocalHost();
+    Set<String> names = new HashSet<String>();
+    names.add(address.getHostAddress());
+    names.add(address.getHostName());
+    names.add(shortName(address.getHostName()));
+    names.add(address.getCanonicalHostName());
+    return names;
+  }
+
+  private static String shortName(String host) {
+    int dot = host.indexOf('.');
+    return dot > 0 && !Character.isDigit(host.charAt(0))
+            ? host.substring(0, dot)
+            : host;
+  }
+
+  /**
+   * Run the job over an input and summarize its counters
+   *
+   * @param conf    configuration
+   * @param input   input path
+   * @param combine read the input with {@link SwiftCombineTextInputFormat}
+   * @return the scores, for the report
+   * @throws IOException if the job failed
+   */
+  public static Map<String, Object> run(Configuration conf, Path input,
+                                        boolean combine) throws IOException,
+          InterruptedException, ClassNotFoundException {
+    final Job job = new Job(conf, "Swift locality benchmark");
+    job.setJarByClass(LocalityJob.class);
+    job.setInputFormatClass(combine
+            ? SwiftCombineTextInputFormat.class
+            : TextInputFormat.class);
+    job.setOutputFormatClass(NullOutputFormat.class);
+    job.setMapperClass(LocalityMapper.class);
+    job.setMapOutputKeyClass(NullWritable.class);
+    job.setMapOutputValueClass(NullWritable.class);
+    job.setNumReduceTasks(0);
+    FileInputFormat.setInputPaths(job, input);
+
+    long started = System.currentTimeMillis();
+    if (!job.waitForCompletion(true)) {
+      throw new IOException("Locality job failed: " + job.getJobID());
+    }
+    long elapsed = System.currentTimeMillis() - started;
+
+    Counters counters = job.getCounters();
+    long tasks = counters.findCounter(Locality.TASKS).getValue();
+    long bytes = counters.findCounter(Locality.BYTES).getValue();
+    long localTasks = counters.findCounter(Locality.LOCAL_TASKS).getValue();
+    long localBytes = counters.findCounter(Locality.LOCAL_BYTES).getValue();
+    Map<String, Object> result = new LinkedHashMap<String, Object>();
+    result.put("input", input.toString());
+    result.put("combine", combine);
+    result.put("seconds", elapsed / 1000.0);
+    result.put("tasks", tasks);
+    result.put("localTasks", localTasks);
+    result.put("bytes", bytes);
+    result.put("localBytes", localBytes);
+    result.put("unlocatedBytes",
+            counters.findCounter(Locality.UNLOCATED_BYTES).getValue());
+    result.put("taskScore", tasks == 0 ? 0 : (double) localTasks / tasks);
+    result.put("byteScore", bytes == 0 ? 0 : (double) localBytes / bytes);
+    Map<String, Long> hosts = new LinkedHashMap<String, Long>();
+    for (Counter counter : counters.getGroup(HOSTS_GROUP)) {
+      hosts.put(counter.getName(), counter.getValue());
+    }
+    result.put("hosts", hosts);
+    return result;
+  }
+}
@@ -0,0 +1,256 @@
+package com.mirantis.swift.fs;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.http.LocalSwiftServer;
+import org.apache.hadoop.fs.swift.http.RestClientBindings;
+import org.apache.hadoop.fs.swift.snative.SwiftNativeFileSystem;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark of the Swift filesystem, to compare builds before rolling
+ * out a change.
+ * Runs each {@link BenchmarkScenario} with a number of threads against
+ * a Swift cluster, or an in-process local Swift server, then reports
+ * as JSON the throughput, the requests sent and the latency percentiles
+ * of each.
+ * Optionally it runs a {@link LocalityJob} to score how many mappers
+ * read the data held on their own host.
+ * <p/>
+ * Usage:
+ * <pre>
+ * hadoop jar swift-file-system-locality-test.jar com.mirantis.swift.fs.SwiftBenchmark
+ *   (-local | -fs swift://container.service/) [-dir /benchmark]
+ *   [-scenarios seq-read,random-pread,...] [-threads 4] [-ops 8]
+ *   [-size bytes] [-readSize bytes] [-smallSize bytes] [-largeSize bytes]
+ *   [-listFiles 100] [-treeFiles 20] [-seed 0]
+ *   [-locality input-path [-combine]] [-output report.json]
+ * </pre>
+ * The credentials of a cluster are set in the configuration, with the
+ * usual <code>-conf</code> or <code>-D</code> options.
+ * The local server keeps all data in memory, so sizes must fit the heap.
+ */
+public class SwiftBenchmark extends Configured implements Tool {
+  private static final Log LOG = LogFactory.getLog(SwiftBenchmark.class);
+
+  /**
+   * Something each thread of a scenario does
+   */
+  private interface ThreadTask {
+    void run(int thread) throws IOException;
+  }
+
+  @Override
+  public int run(String[] args) throws Exception {
+    final BenchmarkOptions options = new BenchmarkOptions(args);
+    final Configuration conf = getConf();
+    LocalSwiftServer server = null;
+    URI uri;
+    if (options.local) {
+      server = new LocalSwiftServer();
+      server.start();
+      //only take the bindings of the local service, so that -D options hold
+      String prefix = RestClientBindings.buildSwiftInstancePrefix(
+              LocalSwiftServer.SERVICE);
+      for (Map.Entry<String, String> entry : server.createConfiguration()) {
+        if (entry.getKey().startsWith(prefix)) {
+          conf.set(entry.getKey(), entry.getValue());
+        }
+      }
+      uri = server.getFilesystemURI();
+    } else {
+      uri = URI.create(options.filesystem);
+    }
+    try {
+      FileSystem fs = FileSystem.get(uri, conf);
+      Path dir = fs.makeQualified(new Path(options.dir));
+
+      Map<String, Object> report = new LinkedHashMap<String, Object>();
+      report.put("filesystem", uri.toString());
+      report.put("started", System.currentTimeMillis());
+      report.put("options", options.toMap());
+      List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+      for (String name : options.scenarios) {
+        BenchmarkScenario scenario = BenchmarkScenario.create(name);
+        scenario.bind(fs, new Path(dir, name), options);
+        LOG.info("Running " + name);
+        results.add(runScenario(name, scenario, fs, options));
+      }
+      report.put("scenarios", results);
+      fs.delete(dir, true);
+
+      if (options.locality != null) {
+        report.put("locality", LocalityJob.run(conf,
+                fs.makeQualified(new Path(options.locality)),
+                options.combine));
+      }
+
+      ObjectMapper mapper = new ObjectMapper();
+      if (options.output != null) {
+        mapper.writerWithDefaultPrettyPrinter()
+                .writeValue(new File(options.output), report);
+      } else {
+        System.out.println(mapper.writerWithDefaultPrettyPrinter()
+                .writeValueAsString(report));
+      }
+      return 0;
+    } finally {
+      if (server != null) {
+        server.stop();
+      }
+    }
+  }
+
+  /**
+   * Run a scenario: prepare the data of every thread, time the
+   * operations of all threads running together, then clean up.
+   *
+   * @return the results, for the report
+   */
+  private Map<String, Object> runScenario(String name,
+                                          final BenchmarkScenario scenario,
+                                          FileSystem fs,
+                                          final BenchmarkOptions options)
+          throws IOException, InterruptedException {
+    final LatencyRecorder latencies =
+            new LatencyRecorder(options.threads, options.operations);
+    final AtomicLong bytes = new AtomicLong();
+    final AtomicInteger errors = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(options.threads);
+    try {
+      inParallel(pool, options.threads, new ThreadTask() {
+        @Override
+        public void run(int thread) throws IOException {
+          scenario.prepare(thread);
+        }
+      });
+      Map<String, Long> before = requestCounts(fs);
+      long started = System.nanoTime();
+      inParallel(pool, options.threads, new ThreadTask() {
+        @Override
+        public void run(int thread) {
+          for (int op = 0; op < options.operations; op++) {
+            long start = System.nanoTime();
+            try {
+              bytes.addAndGet(scenario.operation(thread, op));
+              latencies.record(thread, System.nanoTime() - start);
+            } catch (IOException e) {
+              LOG.warn("Operation " + op + " of thread " + thread
+                      + " failed: " + e, e);
+              errors.incrementAndGet();
+            }
+          }
+        }
+      });
+      long elapsed = System.nanoTime() - started;
+      Map<String, Long> after = requestCounts(fs);
+      inParallel(pool, options.threads, new ThreadTask() {
+        @Override
+        public void run(int thread) throws IOException {
+          scenario.cleanup(thread);
+        }
+      });
+      fs.delete(scenario.dir, true);
+
+      double seconds = elapsed / 1e9;
+      int done = options.threads * options.operations - errors.get();
+      Map<String, Object> result = new LinkedHashMap<String, Object>();
+      result.put("name", name);
+      result.put("operations", done);
+      result.put("errors", errors.get());
+      result.put("seconds", seconds);
+      result.put("bytes", bytes.get());
+      result.put("mbPerSecond", bytes.get() / seconds / (1024 * 1024));
+      result.put("opsPerSecond", done / seconds);
+      result.put("latencyMillis", latencies.summary());
+      result.put("requests", difference(after, before));
+      return result;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Run a task in every thread of a pool and wait for all to finish
+   *
+   * @throws IOException the first failure of any thread
+   */
+  private static void inParallel(ExecutorService pool, int threads,
+                                 final ThreadTask task)
+          throws IOException, InterruptedException {
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(threads);
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      futures.add(pool.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          task.run(thread);
+          return null;
+        }
+      }));
+    }
+    for (Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
+    }
+  }
+
+  /**
+   * @return the requests the filesystem's client has sent, by method;
+   *         empty if it is not a Swift filesystem
+   */
+  private static Map<String, Long> requestCounts(FileSystem fs) {
+    if (fs instanceof SwiftNativeFileSystem) {
+      return ((SwiftNativeFileSystem) fs).getStore().getRequestCounts();
+    }
+    return Collections.emptyMap();
+  }
+
+  private static Map<String, Long> difference(Map<String, Long> after,
+                                              Map<String, Long> before) {
+    Map<String, Long> counts = new LinkedHashMap<String, Long>();
+    long total = 0;
+    for (Map.Entry<String, Long> entry : after.entrySet()) {
+      Long previous = before.get(entry.getKey());
+      long count = entry.getValue() - (previous == null ? 0 : previous);
+      if (count > 0) {
+        counts.put(entry.getKey(), count);
+        total += count;
+      }
+    }
+    counts.put("total", total);
+    return counts;
+  }
+
+  public static void main(String[] args) throws Exception {
+    System.exit(ToolRunner.run(new Configuration(), new SwiftBenchmark(), args));
+  }
+}
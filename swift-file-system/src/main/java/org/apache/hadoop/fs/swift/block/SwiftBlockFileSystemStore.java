@@ -27,7 +27,9 @@ import org.apache.hadoop.fs.s3.INode;
 import org.apache.hadoop.fs.swift.exceptions.SwiftException;
 import org.apache.hadoop.fs.swift.http.SwiftRestClient;
 import org.apache.hadoop.fs.swift.snative.SwiftNativeFileSystemStore;
+import org.apache.hadoop.fs.swift.util.SwiftDirectBufferPool;
 import org.apache.hadoop.fs.swift.util.SwiftObjectPath;
+import org.apache.hadoop.fs.swift.util.SwiftOutputBuffer;
 
 import java.io.*;
 import java.net.URI;
@@ -48,11 +50,27 @@ public class SwiftBlockFileSystemStore implements FileSystemStore {
 
   private int bufferSize;
 
+  /**
+   * Factory of the buffers of output streams
+   */
+  private SwiftOutputBuffer.Factory outputBufferFactory;
+
   public void initialize(URI uri, Configuration conf) throws IOException {
     this.conf = conf;
     this.uri = uri;
     this.swiftRestClient = SwiftRestClient.getInstance(uri, conf);
     this.bufferSize = conf.getInt(IO_FILE_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+    this.outputBufferFactory = SwiftOutputBuffer.factory(
+            swiftRestClient.getOutputBuffer(), conf);
+    SwiftDirectBufferPool.JVM.raiseLimit(
+            swiftRestClient.getDirectBufferMemory());
+  }
+
+  /**
+   * @return the factory of the buffers of output streams
+   */
+  public SwiftOutputBuffer.Factory getOutputBufferFactory() {
+    return outputBufferFactory;
   }
 
   public String getVersion() throws IOException {
@@ -101,10 +119,10 @@ public class SwiftBlockFileSystemStore implements FileSystemStore {
   private InputStream get(String key) throws IOException {
     InputStream inputStream = null;
     try {
+      SwiftObjectPath objectPath = SwiftObjectPath.fromPath(uri, keyToPath(key));
       inputStream =
-              swiftRestClient.getDataAsInputStream(
-                      SwiftObjectPath.fromPath(uri, keyToPath(key))
-                      , SwiftRestClient.NEWEST);
+              swiftRestClient.getDataAsInputStream(objectPath,
+                      swiftRestClient.consistencyHeaders(objectPath));
       inputStream.available();
       return inputStream;
     } catch (NullPointerException e) {
@@ -184,10 +202,10 @@ public class SwiftBlockFileSystemStore implements FileSystemStore {
 
     InputStream inputStream = null;
     try {
+      SwiftObjectPath objectPath = SwiftObjectPath.fromPath(uri, path);
       inputStream =
-              swiftRestClient.getDataAsInputStream(
-                      SwiftObjectPath.fromPath(uri, path),
-                      SwiftRestClient.NEWEST);
+              swiftRestClient.getDataAsInputStream(objectPath,
+                      swiftRestClient.consistencyHeaders(objectPath));
       final ByteArrayOutputStream data = new ByteArrayOutputStream();
       byte[] buffer = new byte[1024 * 1024]; // 1 mb
 
@@ -235,8 +253,14 @@ public class SwiftBlockFileSystemStore implements FileSystemStore {
 
   private void put(String key, InputStream in, long length)
           throws IOException {
+    put(key, in, length, null);
+  }
 
-    swiftRestClient.upload(SwiftObjectPath.fromPath(uri, keyToPath(key)), in, length);
+  private void put(String key, InputStream in, long length, String md5)
+          throws IOException {
+
+    swiftRestClient.upload(SwiftObjectPath.fromPath(uri, keyToPath(key)),
+            in, length, md5);
   }
 
   public void storeINode(Path path, INode inode) throws IOException {
@@ -253,6 +277,24 @@ public class SwiftBlockFileSystemStore implements FileSystemStore {
     }
   }
 
+  /**
+   * Store a block straight from the buffer it was written to
+   *
+   * @param block  block
+   * @param buffer closed buffer holding the data of the block
+   * @throws IOException on any failure
+   */
+  public void storeBlock(Block block, SwiftOutputBuffer buffer)
+          throws IOException {
+    InputStream in = null;
+    try {
+      in = buffer.getInputStream();
+      put(blockToKey(block), in, block.getLength(), buffer.getMD5());
+    } finally {
+      closeQuietly(in);
+    }
+  }
+
   public List<URI> getObjectLocation(Path path) throws IOException {
     final byte[] objectLocation;
     try {
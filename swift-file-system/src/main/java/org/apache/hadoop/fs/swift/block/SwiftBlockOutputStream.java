@@ -21,11 +21,9 @@ package org.apache.hadoop.fs.swift.block;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.s3.Block;
-import org.apache.hadoop.fs.s3.FileSystemStore;
 import org.apache.hadoop.fs.s3.INode;
+import org.apache.hadoop.fs.swift.util.SwiftOutputBuffer;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -49,7 +47,7 @@ public class SwiftBlockOutputStream extends OutputStream {
   /**
    * FS store instance
    */
-  private FileSystemStore store;
+  private SwiftBlockFileSystemStore store;
 
   /**
    * Destination path
@@ -62,14 +60,9 @@ public class SwiftBlockOutputStream extends OutputStream {
   private long blockSize;
 
   /**
-   * backup where data is writing before streaming in Swift
+   * buffer where data is written before streaming in Swift
    */
-  private File backupFile;
-
-  /**
-   * output stream
-   */
-  private OutputStream backupStream;
+  private SwiftOutputBuffer backupBuffer;
 
   /**
    * random for generating next id for block
@@ -120,36 +113,18 @@ public class SwiftBlockOutputStream extends OutputStream {
    * @throws IOException
    */
   public SwiftBlockOutputStream(Configuration conf,
-                                FileSystemStore store, Path path,
+                                SwiftBlockFileSystemStore store, Path path,
                                 long blockSize, int buffersize)
           throws IOException {
     this.conf = conf;
     this.store = store;
     this.path = path;
     this.blockSize = blockSize;
-    this.backupFile = newBackupFile();
-    this.backupStream = new FileOutputStream(backupFile);
+    this.backupBuffer = store.getOutputBufferFactory().create();
     this.bufferSize = buffersize;
     this.outBuf = new byte[bufferSize];
   }
 
-  /**
-   * method for creating backup file of 64mb where
-   * buffers are accumulated before streaming to Swift
-   *
-   * @return File
-   * @throws IOException
-   */
-  private File newBackupFile() throws IOException {
-    File dir = new File(conf.get("hadoop.tmp.dir"));
-    if (!dir.exists() && !dir.mkdirs()) {
-      throw new IOException("Cannot create Swift buffer directory: " + dir);
-    }
-    File result = File.createTempFile("output-", ".tmp", dir);
-    result.deleteOnExit();
-    return result;
-  }
-
   public long getPos() throws IOException {
     return filePos;
   }
@@ -216,7 +191,7 @@ public class SwiftBlockOutputStream extends OutputStream {
       //
       // To the local block backup, write just the bytes
       //
-      backupStream.write(outBuf, 0, workingPos);
+      backupBuffer.write(outBuf, 0, workingPos);
 
       //
       // Track position
@@ -236,20 +211,19 @@ public class SwiftBlockOutputStream extends OutputStream {
     //
     // Done with local copy
     //
-    backupStream.close();
+    backupBuffer.close();
 
     //
     // Send it to Swift
     nextBlockOutputStream();
-    store.storeBlock(nextBlock, backupFile);
+    store.storeBlock(nextBlock, backupBuffer);
     internalClose();
 
     //
-    // Delete local backup, start new one
+    // Release local backup, start new one
     //
-    backupFile.delete();
-    backupFile = newBackupFile();
-    backupStream = new FileOutputStream(backupFile);
+    backupBuffer.release();
+    backupBuffer = store.getOutputBufferFactory().create();
     bytesWrittenToBlock = 0;
   }
 
@@ -290,8 +264,8 @@ public class SwiftBlockOutputStream extends OutputStream {
       endBlock();
     }
 
-    backupStream.close();
-    backupFile.delete();
+    backupBuffer.close();
+    backupBuffer.release();
 
     super.close();
 
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.exceptions;
+
+import java.util.List;
+
+/**
+ * Exception raised when some of the objects under a directory could not
+ * be moved by a rename, after the others had been. It lists both, so
+ * that the caller can tell where the data now is.
+ * <p/>
+ * This is not downgraded to a failed rename, as the source directory
+ * has been partly moved.
+ */
+public class SwiftRenameFailedException extends SwiftException {
+
+  private final List<String> moved;
+  private final List<String> failed;
+
+  /**
+   * Create an exception
+   *
+   * @param message summary of the failure
+   * @param moved   paths of the objects which were moved, at the source
+   * @param failed  paths of the objects which were not moved
+   * @param cause   the failure of one of them
+   */
+  public SwiftRenameFailedException(String message,
+                                    List<String> moved,
+                                    List<String> failed,
+                                    Throwable cause) {
+    super(message, cause);
+    this.moved = moved;
+    this.failed = failed;
+  }
+
+  /**
+   * @return the source paths of the objects which were moved
+   */
+  public List<String> getMoved() {
+    return moved;
+  }
+
+  /**
+   * @return the source paths of the objects which were not moved
+   */
+  public List<String> getFailed() {
+    return failed;
+  }
+}
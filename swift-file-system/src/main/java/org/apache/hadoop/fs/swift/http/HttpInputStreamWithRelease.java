@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.fs.swift.http;
 
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -50,6 +51,8 @@ public class HttpInputStreamWithRelease extends InputStream {
   //volatile flag to verify that data is consumed.
   private volatile boolean dataConsumed;
   private InputStream inStream;
+  //length of the whole object, from the response headers; -1 if unknown
+  private final long objectLength;
   /**
    * In debug builds, this is filled in with the construction-time
    * stack, which is then included in logs from the finalize(), method.
@@ -64,6 +67,7 @@ public class HttpInputStreamWithRelease extends InputStream {
     if (method == null) {
       throw new IllegalArgumentException("Null 'method' parameter ");
     }
+    objectLength = objectLength(method);
     try {
       inStream = method.getResponseBodyAsStream();
     } catch (IOException e) {
@@ -72,6 +76,50 @@ public class HttpInputStreamWithRelease extends InputStream {
     }
   }
 
+  /**
+   * Get the length of the whole object from the headers of a GET response:
+   * the total of a <code>Content-Range</code>, or else the
+   * <code>Content-Length</code>
+   *
+   * @param method the GET
+   * @return the length, or -1 if the response does not say
+   */
+  private static long objectLength(HttpMethod method) {
+    Header range = method.getResponseHeader(
+            SwiftProtocolConstants.HEADER_CONTENT_RANGE);
+    if (range != null) {
+      //bytes first-last/total
+      String value = range.getValue();
+      int slash = value.lastIndexOf('/');
+      try {
+        return slash < 0 ? -1 : Long.parseLong(value.substring(slash + 1).trim());
+      } catch (NumberFormatException e) {
+        //the total is "*" when the server does not know it
+        return -1;
+      }
+    }
+    Header length = method.getResponseHeader(
+            SwiftProtocolConstants.HEADER_CONTENT_LENGTH);
+    if (length == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(length.getValue().trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Get the length of the whole object this stream reads from, so that
+   * the first ranged GET of an object can stand in for a HEAD of it
+   *
+   * @return the length, or -1 if the response did not say
+   */
+  public long getObjectLength() {
+    return objectLength;
+  }
+
   @Override
   public void close() throws IOException {
     release("close()", null);
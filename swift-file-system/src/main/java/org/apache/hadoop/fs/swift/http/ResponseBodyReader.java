@@ -0,0 +1,42 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the body of a response while the connection is still held,
+ * so that large responses can be consumed as they arrive instead
+ * of being buffered in full.
+ *
+ * @param <T> type of the result
+ */
+public interface ResponseBodyReader<T> {
+
+  /**
+   * Read the body of a response.
+   * The stream must not be used once this method returns.
+   *
+   * @param body the response body
+   * @return the result
+   * @throws IOException IO problems, or a malformed body
+   */
+  T read(InputStream body) throws IOException;
+}
@@ -154,6 +154,74 @@ public final class RestClientBindings {
     copy(conf, prefix + DOT_HTTP_PORT, props, SWIFT_HTTP_PORT_PROPERTY, false);
     copy(conf, prefix +
             DOT_HTTPS_PORT, props, SWIFT_HTTPS_PORT_PROPERTY, false);
+    copy(conf, prefix + DOT_LOCATION_AWARE, props,
+            SWIFT_LOCATION_AWARE_PROPERTY, false);
+
+    //connection pool
+    copy(conf, prefix + DOT_HTTP_MAX_CONNECTIONS, props,
+            SWIFT_HTTP_MAX_CONNECTIONS_PROPERTY, false);
+    copy(conf, prefix + DOT_HTTP_MAX_CONNECTIONS_PER_ROUTE, props,
+            SWIFT_HTTP_MAX_CONNECTIONS_PER_ROUTE_PROPERTY, false);
+    copy(conf, prefix + DOT_HTTP_IDLE_TIMEOUT, props,
+            SWIFT_HTTP_IDLE_TIMEOUT_PROPERTY, false);
+    copy(conf, prefix + DOT_HTTP_STALE_CHECK, props,
+            SWIFT_HTTP_STALE_CHECK_PROPERTY, false);
+    copy(conf, prefix + DOT_LISTING_LIMIT, props,
+            SWIFT_LISTING_LIMIT_PROPERTY, false);
+    copy(conf, prefix + DOT_METADATA_CACHE_TTL, props,
+            SWIFT_METADATA_CACHE_TTL_PROPERTY, false);
+    copy(conf, prefix + DOT_METADATA_CACHE_SIZE, props,
+            SWIFT_METADATA_CACHE_SIZE_PROPERTY, false);
+    copy(conf, prefix + DOT_NEGATIVE_CACHE_TTL, props,
+            SWIFT_NEGATIVE_CACHE_TTL_PROPERTY, false);
+    copy(conf, prefix + DOT_CONSISTENCY, props,
+            SWIFT_CONSISTENCY_PROPERTY, false);
+    copy(conf, prefix + DOT_CONSISTENCY_WINDOW, props,
+            SWIFT_CONSISTENCY_WINDOW_PROPERTY, false);
+    copy(conf, prefix + DOT_READAHEAD_MIN, props,
+            SWIFT_READAHEAD_MIN_PROPERTY, false);
+    copy(conf, prefix + DOT_READAHEAD_MAX, props,
+            SWIFT_READAHEAD_MAX_PROPERTY, false);
+    copy(conf, prefix + DOT_PREFETCH_SIZE, props,
+            SWIFT_PREFETCH_SIZE_PROPERTY, false);
+    copy(conf, prefix + DOT_SEGMENT_SIZE, props,
+            SWIFT_SEGMENT_SIZE_PROPERTY, false);
+    copy(conf, prefix + DOT_STREAMING_UPLOAD, props,
+            SWIFT_STREAMING_UPLOAD_PROPERTY, false);
+    copy(conf, prefix + DOT_UPLOAD_PARALLELISM, props,
+            SWIFT_UPLOAD_PARALLELISM_PROPERTY, false);
+    copy(conf, prefix + DOT_UPLOAD_BUFFER_LIMIT, props,
+            SWIFT_UPLOAD_BUFFER_LIMIT_PROPERTY, false);
+    copy(conf, prefix + DOT_OUTPUT_BUFFER, props,
+            SWIFT_OUTPUT_BUFFER_PROPERTY, false);
+    copy(conf, prefix + DOT_LARGE_OBJECT, props,
+            SWIFT_LARGE_OBJECT_PROPERTY, false);
+    copy(conf, prefix + DOT_CHUNKED_UPLOAD, props,
+            SWIFT_CHUNKED_UPLOAD_PROPERTY, false);
+    copy(conf, prefix + DOT_CHUNKED_BUFFER_SIZE, props,
+            SWIFT_CHUNKED_BUFFER_SIZE_PROPERTY, false);
+    copy(conf, prefix + DOT_RENAME_THREADS, props,
+            SWIFT_RENAME_THREADS_PROPERTY, false);
+    copy(conf, prefix + DOT_RENAME_RETRIES, props,
+            SWIFT_RENAME_RETRIES_PROPERTY, false);
+    copy(conf, prefix + DOT_BULK_DELETE, props,
+            SWIFT_BULK_DELETE_PROPERTY, false);
+    copy(conf, prefix + DOT_BULK_DELETE_SIZE, props,
+            SWIFT_BULK_DELETE_SIZE_PROPERTY, false);
+    copy(conf, prefix + DOT_DELETE_THREADS, props,
+            SWIFT_DELETE_THREADS_PROPERTY, false);
+    copy(conf, prefix + DOT_LOCATION_CACHE_TTL, props,
+            SWIFT_LOCATION_CACHE_TTL_PROPERTY, false);
+    copy(conf, prefix + DOT_LOCATION_CACHE_SIZE, props,
+            SWIFT_LOCATION_CACHE_SIZE_PROPERTY, false);
+    copy(conf, prefix + DOT_LOCATION_BATCH_SIZE, props,
+            SWIFT_LOCATION_BATCH_SIZE_PROPERTY, false);
+    copy(conf, prefix + DOT_LOCATION_RING, props,
+            SWIFT_LOCATION_RING_PROPERTY, false);
+    copy(conf, prefix + DOT_LOCATION_RING_HASH_SUFFIX, props,
+            SWIFT_LOCATION_RING_HASH_SUFFIX_PROPERTY, false);
+    copy(conf, prefix + DOT_LOCATION_RING_HASH_PREFIX, props,
+            SWIFT_LOCATION_RING_HASH_PREFIX_PROPERTY, false);
 
     //boolean value
     boolean isPublicURL = conf.getBoolean(prefix + DOT_PUBLIC, false);
@@ -162,6 +230,9 @@ public final class RestClientBindings {
     // copy in parameters that apply to all services
     copy(conf, SWIFT_CONNECTION_TIMEOUT, props, SWIFT_CONNECTION_TIMEOUT, false);
     copy(conf, SWIFT_RETRY_COUNT, props, SWIFT_RETRY_COUNT, false);
+    copy(conf, SWIFT_PREFETCH_MEMORY, props, SWIFT_PREFETCH_MEMORY, false);
+    copy(conf, SWIFT_DIRECT_BUFFER_MEMORY, props,
+            SWIFT_DIRECT_BUFFER_MEMORY, false);
 
     return props;
 
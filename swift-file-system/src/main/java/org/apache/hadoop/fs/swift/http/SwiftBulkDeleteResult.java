@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.http;
+
+import java.util.List;
+
+/**
+ * The outcome of a bulk delete request: how many of the objects named
+ * were deleted or already gone, and the names of those which
+ * could not be deleted.
+ */
+public class SwiftBulkDeleteResult {
+
+  private final int deleted;
+  private final int notFound;
+  private final List<String> failed;
+
+  public SwiftBulkDeleteResult(int deleted, int notFound, List<String> failed) {
+    this.deleted = deleted;
+    this.notFound = notFound;
+    this.failed = failed;
+  }
+
+  /**
+   * @return number of objects deleted
+   */
+  public int getDeleted() {
+    return deleted;
+  }
+
+  /**
+   * @return number of objects which did not exist
+   */
+  public int getNotFound() {
+    return notFound;
+  }
+
+  /**
+   * @return the URI paths, such as <code>/container/object</code>,
+   *         of the objects which could not be deleted
+   */
+  public List<String> getFailed() {
+    return failed;
+  }
+
+  @Override
+  public String toString() {
+    return "deleted " + deleted + "; not found " + notFound
+            + "; failed " + failed.size();
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.http;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pooled, keep-alive connection manager shared by all requests
+ * of a single {@link SwiftRestClient}.
+ * <p/>
+ * This extends the multi-threaded manager of the HTTP client with the
+ * bookkeeping needed to report how the pool is being used: the number of
+ * connections currently leased to requests, and the number of requests
+ * blocked waiting for a connection to become free.
+ */
+public class SwiftConnectionManager extends MultiThreadedHttpConnectionManager {
+
+  /**
+   * connections handed out and not yet released
+   */
+  private final AtomicInteger leased = new AtomicInteger();
+
+  /**
+   * requests waiting for a connection
+   */
+  private final AtomicInteger pending = new AtomicInteger();
+
+  /**
+   * Create a connection manager
+   *
+   * @param maxTotal         maximum number of connections in the pool
+   * @param maxPerRoute      maximum number of connections to any one host
+   * @param connectTimeout   timeout in milliseconds to open a connection
+   * @param staleCheck       should connections be probed for staleness
+   *                         before they are reused
+   */
+  public SwiftConnectionManager(int maxTotal,
+                                int maxPerRoute,
+                                int connectTimeout,
+                                boolean staleCheck) {
+    HttpConnectionManagerParams params = getParams();
+    params.setMaxTotalConnections(maxTotal);
+    params.setDefaultMaxConnectionsPerHost(maxPerRoute);
+    params.setConnectionTimeout(connectTimeout);
+    params.setStaleCheckingEnabled(staleCheck);
+  }
+
+  @Override
+  public HttpConnection getConnectionWithTimeout(
+          HostConfiguration hostConfiguration, long timeout)
+          throws ConnectionPoolTimeoutException {
+    pending.incrementAndGet();
+    try {
+      HttpConnection connection =
+              super.getConnectionWithTimeout(hostConfiguration, timeout);
+      leased.incrementAndGet();
+      return connection;
+    } finally {
+      pending.decrementAndGet();
+    }
+  }
+
+  @Override
+  public void releaseConnection(HttpConnection conn) {
+    super.releaseConnection(conn);
+    leased.decrementAndGet();
+  }
+
+  /**
+   * Could a request get a connection without waiting for one to be
+   * released? As the requests of a client nearly all go to the one
+   * storage host, this compares the connections in use and in demand with
+   * the smaller of the total and per-host limits.
+   *
+   * @return true if a connection is free, or may be opened
+   */
+  public boolean hasFreeConnection() {
+    HttpConnectionManagerParams params = getParams();
+    int max = Math.min(params.getMaxTotalConnections(),
+            params.getDefaultMaxConnectionsPerHost());
+    return leased.get() + pending.get() < max;
+  }
+
+  /**
+   * Take a snapshot of the pool statistics
+   *
+   * @return the current statistics
+   */
+  public PoolStatistics getStatistics() {
+    int leasedNow = leased.get();
+    int available = Math.max(0, getConnectionsInPool() - leasedNow);
+    return new PoolStatistics(leasedNow,
+            available,
+            pending.get(),
+            getParams().getMaxTotalConnections());
+  }
+
+  /**
+   * Snapshot of the connection pool usage
+   */
+  public static final class PoolStatistics {
+    private final int leased;
+    private final int available;
+    private final int pending;
+    private final int max;
+
+    public PoolStatistics(int leased, int available, int pending, int max) {
+      this.leased = leased;
+      this.available = available;
+      this.pending = pending;
+      this.max = max;
+    }
+
+    /**
+     * @return connections currently in use by requests
+     */
+    public int getLeased() {
+      return leased;
+    }
+
+    /**
+     * @return open connections idle in the pool, ready for reuse
+     */
+    public int getAvailable() {
+      return available;
+    }
+
+    /**
+     * @return requests blocked waiting for a connection
+     */
+    public int getPending() {
+      return pending;
+    }
+
+    /**
+     * @return the maximum size of the pool
+     */
+    public int getMax() {
+      return max;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("[leased: %d; available: %d; pending: %d; max: %d]",
+              leased, available, pending, max);
+    }
+  }
+}
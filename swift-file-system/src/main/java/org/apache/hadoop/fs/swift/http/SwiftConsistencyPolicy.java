@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.http;
+
+import org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException;
+
+/**
+ * How hard reads try to see the latest version of an object.
+ * <p/>
+ * A read carrying the <code>X-Newest</code> header makes the Swift proxy
+ * ask every replica of the object and wait for them all, so that it can
+ * return the newest copy. That costs a request to each replica and the
+ * latency of the slowest; a read without it is served by the first
+ * replica to answer, which may not have caught up with recent changes.
+ */
+public enum SwiftConsistencyPolicy {
+
+  /**
+   * every read asks for the newest copy
+   */
+  STRONG("strong"),
+
+  /**
+   * reads ask for the newest copy only of paths which this client has
+   * changed recently, so that it always sees its own writes
+   */
+  READ_YOUR_WRITES("read-your-writes"),
+
+  /**
+   * reads never ask for the newest copy
+   */
+  EVENTUAL("eventual");
+
+  private final String name;
+
+  SwiftConsistencyPolicy(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Get the policy with a given name
+   *
+   * @param name name, as used in the configuration
+   * @return the policy
+   * @throws SwiftConfigurationException if there is no such policy
+   */
+  public static SwiftConsistencyPolicy fromName(String name) throws
+          SwiftConfigurationException {
+    for (SwiftConsistencyPolicy policy : values()) {
+      if (policy.name.equalsIgnoreCase(name.trim())) {
+        return policy;
+      }
+    }
+    throw new SwiftConfigurationException("Unknown consistency policy: "
+            + name);
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -30,8 +30,10 @@ public class SwiftProtocolConstants {
   public static final int SWIFT_HTTPS_PORT = 443;
   public static final String HEADER_RANGE = HttpHeaders.RANGE;
   public static final String HEADER_DESTINATION = HttpHeaders.DESTINATION;
+  public static final String HEADER_ACCEPT = HttpHeaders.ACCEPT;
   public static final String HEADER_LAST_MODIFIED = "Last-Modified";
   public static final String HEADER_CONTENT_LENGTH = "Content-Length";
+  public static final String HEADER_CONTENT_RANGE = "Content-Range";
   public static final String SWIFT_RANGE_HEADER_FORMAT_PATTERN = "bytes=%d-%d";
   public static final String SERVICE_CATALOG_SWIFT = "swift";
   public static final String SERVICE_CATALOG_CLOUD_FILES = "cloudFiles";
@@ -39,6 +41,34 @@ public class SwiftProtocolConstants {
   public static final String SWIFT_OBJECT_AUTH_ENDPOINT =
           "/object_endpoint/";
   public static final String X_OBJECT_MANIFEST = "X-Object-Manifest";
+  public static final String X_STATIC_LARGE_OBJECT = "X-Static-Large-Object";
+  public static final String HEADER_ETAG = "ETag";
+
+  /**
+   * Query of the PUT of the manifest of a static large object
+   */
+  public static final String MULTIPART_MANIFEST_PUT = "multipart-manifest=put";
+
+  /**
+   * Query of a GET of the manifest of a static large object, rather
+   * than of its data
+   */
+  public static final String MULTIPART_MANIFEST_GET = "multipart-manifest=get";
+
+  /**
+   * Query of a POST to the account which deletes the objects listed
+   * in its body
+   */
+  public static final String BULK_DELETE = "bulk-delete";
+
+  /**
+   * Fields of the JSON response to a bulk delete
+   */
+  public static final String BULK_RESPONSE_STATUS = "Response Status";
+  public static final String BULK_NUMBER_DELETED = "Number Deleted";
+  public static final String BULK_NUMBER_NOT_FOUND = "Number Not Found";
+  public static final String BULK_ERRORS = "Errors";
+
   public static final String X_CONTAINER_OBJECT_COUNT =
           "X-Container-Object-Count";
   public static final String X_CONTAINER_BYTES_USED = "X-Container-Bytes-Used";
@@ -77,6 +107,34 @@ public class SwiftProtocolConstants {
    */
   public static final long DEFAULT_SWIFT_BLOCKSIZE = 32 * 1024 * 1024;
 
+  /**
+   * memory in bytes which all the input streams in the JVM may use
+   * to hold prefetched data. This is shared by every filesystem instance,
+   * so the largest value any of them is configured with applies: {@value}
+   */
+  public static final String SWIFT_PREFETCH_MEMORY =
+          FS_SWIFT + ".prefetch.memory";
+
+  /**
+   * the default prefetch memory of the JVM: {@value}
+   */
+  public static final long DEFAULT_SWIFT_PREFETCH_MEMORY = 256 * 1024 * 1024;
+
+  /**
+   * direct memory in bytes which all the output streams in the JVM may
+   * use to buffer data, when buffering in direct memory. This is shared
+   * by every filesystem instance, so the largest value any of them is
+   * configured with applies: {@value}
+   */
+  public static final String SWIFT_DIRECT_BUFFER_MEMORY =
+          FS_SWIFT + ".direct.buffer.memory";
+
+  /**
+   * the default direct buffer memory of the JVM: {@value}
+   */
+  public static final long DEFAULT_SWIFT_DIRECT_BUFFER_MEMORY =
+          256 * 1024 * 1024;
+
   /**
    * Key for passing the service name as a property -not read from the
    * configuration : {@value}
@@ -102,6 +160,361 @@ public class SwiftProtocolConstants {
   public static final String DOT_APIKEY = ".apikey";
   public static final String DOT_USE_APIKEY = ".useApikey";
 
+  /**
+   * maximum number of pooled HTTP connections: {@value}
+   */
+  public static final String DOT_HTTP_MAX_CONNECTIONS = ".http.max.connections";
+
+  /**
+   * maximum number of pooled HTTP connections to a single host: {@value}
+   */
+  public static final String DOT_HTTP_MAX_CONNECTIONS_PER_ROUTE =
+          ".http.max.connections.per.route";
+
+  /**
+   * time in milliseconds after which idle pooled connections are closed;
+   * 0 disables eviction: {@value}
+   */
+  public static final String DOT_HTTP_IDLE_TIMEOUT = ".http.idle.timeout";
+
+  /**
+   * should pooled connections be checked for staleness before reuse: {@value}
+   */
+  public static final String DOT_HTTP_STALE_CHECK = ".http.stale.check";
+
+  /**
+   * The default pool sizes allow 32 input streams to read one range and
+   * prefetch the next, holding two connections each
+   */
+  public static final int DEFAULT_HTTP_MAX_CONNECTIONS = 64;
+  public static final int DEFAULT_HTTP_MAX_CONNECTIONS_PER_ROUTE = 64;
+  public static final int DEFAULT_HTTP_IDLE_TIMEOUT = 60000;
+
+  /**
+   * number of entries requested in each page of a listing: {@value}
+   */
+  public static final String DOT_LISTING_LIMIT = ".listing.limit";
+
+  /**
+   * Default listing page size: the default container listing limit
+   * of a Swift proxy: {@value}
+   */
+  public static final int DEFAULT_LISTING_LIMIT = 10000;
+
+  /**
+   * time in milliseconds for which file metadata is cached;
+   * 0 disables the cache: {@value}
+   */
+  public static final String DOT_METADATA_CACHE_TTL = ".metadata.cache.ttl";
+
+  /**
+   * Default metadata cache lifetime: caching is off: {@value}
+   */
+  public static final int DEFAULT_METADATA_CACHE_TTL = 0;
+
+  /**
+   * maximum number of paths whose metadata is cached: {@value}
+   */
+  public static final String DOT_METADATA_CACHE_SIZE = ".metadata.cache.size";
+
+  /**
+   * Default number of cached paths: {@value}
+   */
+  public static final int DEFAULT_METADATA_CACHE_SIZE = 1000;
+
+  /**
+   * time in milliseconds for which a path found to be absent
+   * is remembered; 0 disables the negative cache: {@value}
+   */
+  public static final String DOT_NEGATIVE_CACHE_TTL =
+          ".metadata.negative.cache.ttl";
+
+  /**
+   * Default negative cache lifetime: absent paths are not cached: {@value}
+   */
+  public static final int DEFAULT_NEGATIVE_CACHE_TTL = 0;
+
+  /**
+   * consistency policy of reads: strong, read-your-writes
+   * or eventual: {@value}
+   */
+  public static final String DOT_CONSISTENCY = ".consistency";
+
+  /**
+   * Default consistency policy: every read asks for the newest copy: {@value}
+   */
+  public static final String DEFAULT_CONSISTENCY = "strong";
+
+  /**
+   * time in milliseconds for which reads of a path this client has
+   * changed ask for the newest copy under the read-your-writes
+   * policy: {@value}
+   */
+  public static final String DOT_CONSISTENCY_WINDOW = ".consistency.window";
+
+  /**
+   * Default read-your-writes window, a minute: {@value}
+   */
+  public static final int DEFAULT_CONSISTENCY_WINDOW = 60000;
+
+  /**
+   * smallest range in bytes requested by an input stream,
+   * used for random reads: {@value}
+   */
+  public static final String DOT_READAHEAD_MIN = ".readahead.min";
+
+  /**
+   * Default smallest range: {@value}
+   */
+  public static final int DEFAULT_READAHEAD_MIN = 1024 * 1024;
+
+  /**
+   * largest range in bytes requested by an input stream,
+   * which sequential reads grow to: {@value}
+   */
+  public static final String DOT_READAHEAD_MAX = ".readahead.max";
+
+  /**
+   * Default largest range: {@value}
+   */
+  public static final int DEFAULT_READAHEAD_MAX = 64 * 1024 * 1024;
+
+  /**
+   * bytes of the next range an input stream reads in the background;
+   * 0 disables prefetching: {@value}
+   */
+  public static final String DOT_PREFETCH_SIZE = ".prefetch.size";
+
+  /**
+   * Default prefetch size per stream: {@value}
+   */
+  public static final int DEFAULT_PREFETCH_SIZE = 8 * 1024 * 1024;
+
+  /**
+   * size of the segments a large file is uploaded in: {@value}
+   */
+  public static final String DOT_SEGMENT_SIZE = ".segment.size";
+
+  /**
+   * default segment size, just under the 5GB object limit of Swift: {@value}
+   */
+  public static final long DEFAULT_SEGMENT_SIZE = 4768709000L;
+
+  /**
+   * should output streams upload each segment in the background as soon
+   * as it is written, while the writer continues: {@value}
+   */
+  public static final String DOT_STREAMING_UPLOAD = ".upload.streaming";
+
+  /**
+   * default: segments are uploaded on the writer thread: {@value}
+   */
+  public static final boolean DEFAULT_STREAMING_UPLOAD = false;
+
+  /**
+   * maximum number of segments of an output stream being uploaded
+   * in the background at the same time: {@value}
+   */
+  public static final String DOT_UPLOAD_PARALLELISM = ".upload.parallelism";
+
+  /**
+   * default number of segment uploads in flight per stream: {@value}
+   */
+  public static final int DEFAULT_UPLOAD_PARALLELISM = 4;
+
+  /**
+   * maximum size of the segments being uploaded in the background for
+   * all output streams of a filesystem; writers block when it is
+   * reached: {@value}
+   */
+  public static final String DOT_UPLOAD_BUFFER_LIMIT = ".upload.buffer.limit";
+
+  /**
+   * default upload buffer limit: {@value}
+   */
+  public static final long DEFAULT_UPLOAD_BUFFER_LIMIT = 1024L * 1024 * 1024;
+
+  /**
+   * where output streams buffer data before it is uploaded: disk, heap or direct.
+   * With heap or direct buffers the segment size is reduced, if need be,
+   * so that the segments of a stream fit in the upload buffer limit: {@value}
+   */
+  public static final String DOT_OUTPUT_BUFFER = ".output.buffer";
+
+  /**
+   * default output buffer: local files under hadoop.tmp.dir: {@value}
+   */
+  public static final String DEFAULT_OUTPUT_BUFFER = "disk";
+
+  /**
+   * output buffer in local files: {@value}
+   */
+  public static final String OUTPUT_BUFFER_DISK = "disk";
+
+  /**
+   * output buffer in byte buffers on the heap: {@value}
+   */
+  public static final String OUTPUT_BUFFER_HEAP = "heap";
+
+  /**
+   * output buffer in pooled direct byte buffers: {@value}
+   */
+  public static final String OUTPUT_BUFFER_DIRECT = "direct";
+
+  /**
+   * the kind of manifest which joins up the segments of a large file:
+   * dlo or slo: {@value}
+   */
+  public static final String DOT_LARGE_OBJECT = ".large.object";
+
+  /**
+   * default large object: a dynamic large object manifest: {@value}
+   */
+  public static final String DEFAULT_LARGE_OBJECT = "dlo";
+
+  /**
+   * dynamic large objects, whose manifest names the prefix of the
+   * segments, which are found by listing the container: {@value}
+   */
+  public static final String LARGE_OBJECT_DYNAMIC = "dlo";
+
+  /**
+   * static large objects, whose manifest lists the path, ETag and size
+   * of every segment: {@value}
+   */
+  public static final String LARGE_OBJECT_STATIC = "slo";
+
+  /**
+   * should output streams send data straight to Swift as it is written,
+   * in a PUT with chunked transfer encoding, rather than buffering each
+   * object or segment first: {@value}
+   */
+  public static final String DOT_CHUNKED_UPLOAD = ".upload.chunked";
+
+  /**
+   * default: data is buffered before it is uploaded: {@value}
+   */
+  public static final boolean DEFAULT_CHUNKED_UPLOAD = false;
+
+  /**
+   * size of the buffer between a writer and its chunked PUT; the writer
+   * blocks while it is full: {@value}
+   */
+  public static final String DOT_CHUNKED_BUFFER_SIZE =
+          ".upload.chunked.buffer.size";
+
+  /**
+   * default size of the buffer of a chunked PUT: {@value}
+   */
+  public static final int DEFAULT_CHUNKED_BUFFER_SIZE = 1024 * 1024;
+
+  /**
+   * number of objects a directory rename copies and deletes
+   * at the same time: {@value}
+   */
+  public static final String DOT_RENAME_THREADS = ".rename.threads";
+
+  /**
+   * default number of objects moved at the same time: {@value}
+   */
+  public static final int DEFAULT_RENAME_THREADS = 10;
+
+  /**
+   * number of times the move of an object in a directory rename is
+   * retried after a failure: {@value}
+   */
+  public static final String DOT_RENAME_RETRIES = ".rename.retries";
+
+  /**
+   * default number of retries of the move of an object: {@value}
+   */
+  public static final int DEFAULT_RENAME_RETRIES = 2;
+
+  /**
+   * use the bulk middleware to delete the objects of a directory
+   * in batches, rather than one request per object: {@value}
+   */
+  public static final String DOT_BULK_DELETE = ".bulk.delete";
+
+  /**
+   * default use of bulk deletes: {@value}
+   */
+  public static final boolean DEFAULT_BULK_DELETE = true;
+
+  /**
+   * maximum number of objects deleted by a single bulk delete
+   * request: {@value}
+   */
+  public static final String DOT_BULK_DELETE_SIZE = ".bulk.delete.size";
+
+  /**
+   * default number of objects per bulk delete, which is the
+   * default limit of the middleware: {@value}
+   */
+  public static final int DEFAULT_BULK_DELETE_SIZE = 10000;
+
+  /**
+   * number of objects deleted at the same time by a recursive delete
+   * when the bulk middleware is not available: {@value}
+   */
+  public static final String DOT_DELETE_THREADS = ".delete.threads";
+
+  /**
+   * default number of objects deleted at the same time: {@value}
+   */
+  public static final int DEFAULT_DELETE_THREADS = 10;
+
+  /**
+   * time in milliseconds for which the locations of an object are
+   * cached; 0 disables the cache: {@value}
+   */
+  public static final String DOT_LOCATION_CACHE_TTL = ".location.cache.ttl";
+
+  /**
+   * default lifetime of cached object locations, which only change
+   * when the ring is rebalanced: {@value}
+   */
+  public static final int DEFAULT_LOCATION_CACHE_TTL = 600000;
+
+  /**
+   * maximum number of objects whose locations are cached: {@value}
+   */
+  public static final String DOT_LOCATION_CACHE_SIZE = ".location.cache.size";
+
+  /**
+   * default number of objects whose locations are cached: {@value}
+   */
+  public static final int DEFAULT_LOCATION_CACHE_SIZE = 100000;
+
+  /**
+   * maximum number of objects located by a single request
+   * to the object endpoint: {@value}
+   */
+  public static final String DOT_LOCATION_BATCH_SIZE = ".location.batch.size";
+
+  /**
+   * default number of objects per location request: {@value}
+   */
+  public static final int DEFAULT_LOCATION_BATCH_SIZE = 1000;
+
+  /**
+   * path or http(s) URL of an <code>object.ring.gz</code> file with which
+   * to locate objects in-process instead of asking the proxy: {@value}
+   */
+  public static final String DOT_LOCATION_RING = ".location.ring";
+
+  /**
+   * the <code>swift_hash_path_suffix</code> of the cluster whose
+   * ring is used to locate objects: {@value}
+   */
+  public static final String DOT_LOCATION_RING_HASH_SUFFIX = ".location.ring.hash.suffix";
+
+  /**
+   * the <code>swift_hash_path_prefix</code> of the cluster whose
+   * ring is used to locate objects: {@value}
+   */
+  public static final String DOT_LOCATION_RING_HASH_PREFIX = ".location.ring.hash.prefix";
+
   /**
    * flag to say use public URL
    */
@@ -128,4 +541,69 @@ public class SwiftProtocolConstants {
 
   public static final String SWIFT_PROXY_HOST_PROPERTY = FS_SWIFT + DOT_PROXY_HOST;
   public static final String SWIFT_PROXY_PORT_PROPERTY = FS_SWIFT + DOT_PROXY_PORT;
+
+  public static final String SWIFT_HTTP_MAX_CONNECTIONS_PROPERTY =
+          FS_SWIFT + DOT_HTTP_MAX_CONNECTIONS;
+  public static final String SWIFT_HTTP_MAX_CONNECTIONS_PER_ROUTE_PROPERTY =
+          FS_SWIFT + DOT_HTTP_MAX_CONNECTIONS_PER_ROUTE;
+  public static final String SWIFT_HTTP_IDLE_TIMEOUT_PROPERTY =
+          FS_SWIFT + DOT_HTTP_IDLE_TIMEOUT;
+  public static final String SWIFT_HTTP_STALE_CHECK_PROPERTY =
+          FS_SWIFT + DOT_HTTP_STALE_CHECK;
+  public static final String SWIFT_LISTING_LIMIT_PROPERTY =
+          FS_SWIFT + DOT_LISTING_LIMIT;
+  public static final String SWIFT_METADATA_CACHE_TTL_PROPERTY =
+          FS_SWIFT + DOT_METADATA_CACHE_TTL;
+  public static final String SWIFT_METADATA_CACHE_SIZE_PROPERTY =
+          FS_SWIFT + DOT_METADATA_CACHE_SIZE;
+  public static final String SWIFT_NEGATIVE_CACHE_TTL_PROPERTY =
+          FS_SWIFT + DOT_NEGATIVE_CACHE_TTL;
+  public static final String SWIFT_CONSISTENCY_PROPERTY =
+          FS_SWIFT + DOT_CONSISTENCY;
+  public static final String SWIFT_CONSISTENCY_WINDOW_PROPERTY =
+          FS_SWIFT + DOT_CONSISTENCY_WINDOW;
+  public static final String SWIFT_READAHEAD_MIN_PROPERTY =
+          FS_SWIFT + DOT_READAHEAD_MIN;
+  public static final String SWIFT_READAHEAD_MAX_PROPERTY =
+          FS_SWIFT + DOT_READAHEAD_MAX;
+  public static final String SWIFT_PREFETCH_SIZE_PROPERTY =
+          FS_SWIFT + DOT_PREFETCH_SIZE;
+  public static final String SWIFT_SEGMENT_SIZE_PROPERTY =
+          FS_SWIFT + DOT_SEGMENT_SIZE;
+  public static final String SWIFT_STREAMING_UPLOAD_PROPERTY =
+          FS_SWIFT + DOT_STREAMING_UPLOAD;
+  public static final String SWIFT_UPLOAD_PARALLELISM_PROPERTY =
+          FS_SWIFT + DOT_UPLOAD_PARALLELISM;
+  public static final String SWIFT_UPLOAD_BUFFER_LIMIT_PROPERTY =
+          FS_SWIFT + DOT_UPLOAD_BUFFER_LIMIT;
+  public static final String SWIFT_OUTPUT_BUFFER_PROPERTY =
+          FS_SWIFT + DOT_OUTPUT_BUFFER;
+  public static final String SWIFT_LARGE_OBJECT_PROPERTY =
+          FS_SWIFT + DOT_LARGE_OBJECT;
+  public static final String SWIFT_CHUNKED_UPLOAD_PROPERTY =
+          FS_SWIFT + DOT_CHUNKED_UPLOAD;
+  public static final String SWIFT_CHUNKED_BUFFER_SIZE_PROPERTY =
+          FS_SWIFT + DOT_CHUNKED_BUFFER_SIZE;
+  public static final String SWIFT_RENAME_THREADS_PROPERTY =
+          FS_SWIFT + DOT_RENAME_THREADS;
+  public static final String SWIFT_RENAME_RETRIES_PROPERTY =
+          FS_SWIFT + DOT_RENAME_RETRIES;
+  public static final String SWIFT_BULK_DELETE_PROPERTY =
+          FS_SWIFT + DOT_BULK_DELETE;
+  public static final String SWIFT_BULK_DELETE_SIZE_PROPERTY =
+          FS_SWIFT + DOT_BULK_DELETE_SIZE;
+  public static final String SWIFT_DELETE_THREADS_PROPERTY =
+          FS_SWIFT + DOT_DELETE_THREADS;
+  public static final String SWIFT_LOCATION_CACHE_TTL_PROPERTY =
+          FS_SWIFT + DOT_LOCATION_CACHE_TTL;
+  public static final String SWIFT_LOCATION_CACHE_SIZE_PROPERTY =
+          FS_SWIFT + DOT_LOCATION_CACHE_SIZE;
+  public static final String SWIFT_LOCATION_BATCH_SIZE_PROPERTY =
+          FS_SWIFT + DOT_LOCATION_BATCH_SIZE;
+  public static final String SWIFT_LOCATION_RING_PROPERTY =
+          FS_SWIFT + DOT_LOCATION_RING;
+  public static final String SWIFT_LOCATION_RING_HASH_SUFFIX_PROPERTY =
+          FS_SWIFT + DOT_LOCATION_RING_HASH_SUFFIX;
+  public static final String SWIFT_LOCATION_RING_HASH_PREFIX_PROPERTY =
+          FS_SWIFT + DOT_LOCATION_RING_HASH_PREFIX;
 }
\ No newline at end of file
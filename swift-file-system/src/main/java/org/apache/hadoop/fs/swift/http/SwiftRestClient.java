@@ -21,6 +21,7 @@ package org.apache.hadoop.fs.swift.http;
 import org.apache.commons.httpclient.*;
 import org.apache.commons.httpclient.methods.*;
 import org.apache.commons.httpclient.params.HttpMethodParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
@@ -33,13 +34,23 @@ import org.apache.hadoop.fs.swift.util.JSONUtil;
 import org.apache.hadoop.fs.swift.util.SwiftObjectPath;
 import org.apache.hadoop.fs.swift.util.SwiftUtils;
 import org.apache.http.conn.params.ConnRoutePNames;
+import org.codehaus.jackson.JsonNode;
 
 import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.commons.httpclient.HttpStatus.*;
 import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.*;
@@ -82,6 +93,23 @@ public final class SwiftRestClient {
   public static final Header NEWEST =
           new Header(SwiftProtocolConstants.X_NEWEST, "true");
 
+  /**
+   * Reader which returns the whole of a response body as a byte array
+   */
+  private static final ResponseBodyReader<byte[]> READ_WHOLE_BODY =
+          new ResponseBodyReader<byte[]>() {
+            @Override
+            public byte[] read(InputStream body) throws IOException {
+              ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+              byte[] buffer = new byte[8192];
+              int count;
+              while ((count = body.read(buffer)) > 0) {
+                bytes.write(buffer, 0, count);
+              }
+              return bytes.toByteArray();
+            }
+          };
+
   /**
    * the authentication endpoint as supplied in the configuration
    */
@@ -192,6 +220,190 @@ public final class SwiftRestClient {
    */
   private long blocksize;
 
+  /**
+   * The number of entries to ask for in each page of a directory listing
+   */
+  private final int listingLimit;
+
+  /**
+   * Lifetime in milliseconds of cached file metadata; 0 for no caching
+   */
+  private final long metadataCacheTTL;
+
+  /**
+   * Maximum number of paths whose metadata is cached
+   */
+  private final int metadataCacheSize;
+
+  /**
+   * Lifetime in milliseconds of cached knowledge that a path is absent
+   */
+  private final long negativeCacheTTL;
+
+  /**
+   * Smallest range requested by an input stream
+   */
+  private final int readaheadMin;
+
+  /**
+   * Largest range requested by an input stream
+   */
+  private final int readaheadMax;
+
+  /**
+   * Bytes of its next range an input stream reads in the background
+   */
+  private final int prefetchSize;
+
+  /**
+   * Memory all input streams of the JVM may use for prefetched data
+   */
+  private final long prefetchMemory;
+
+  /**
+   * Size of the segments a large file is uploaded in
+   */
+  private final long segmentSize;
+
+  /**
+   * Do output streams upload segments in the background
+   */
+  private final boolean streamingUpload;
+
+  /**
+   * Do output streams send data to Swift as it is written
+   */
+  private final boolean chunkedUpload;
+
+  /**
+   * Size of the buffer between a writer and its chunked PUT
+   */
+  private final int chunkedBufferSize;
+
+  /**
+   * Number of objects a directory rename moves at the same time
+   */
+  private final int renameThreads;
+
+  /**
+   * Number of retries of the move of an object in a directory rename
+   */
+  private final int renameRetries;
+
+  /**
+   * Should recursive deletes use the bulk middleware
+   */
+  private final boolean bulkDelete;
+
+  /**
+   * Maximum number of objects in a bulk delete request
+   */
+  private final int bulkDeleteSize;
+
+  /**
+   * Number of objects a recursive delete deletes at the same time
+   * without the bulk middleware
+   */
+  private final int deleteThreads;
+
+  /**
+   * Lifetime in milliseconds of cached object locations
+   */
+  private final long locationCacheTTL;
+
+  /**
+   * Maximum number of objects whose locations are cached
+   */
+  private final int locationCacheSize;
+
+  /**
+   * Maximum number of objects located by a single request
+   */
+  private final int locationBatchSize;
+
+  /**
+   * Path or URL of the object ring to locate objects with; null if
+   * the object endpoint is to be asked
+   */
+  private final String locationRing;
+
+  /**
+   * Hash path suffix of the cluster, needed to use its ring
+   */
+  private final String locationRingHashSuffix;
+
+  /**
+   * Hash path prefix of the cluster, needed to use its ring
+   */
+  private final String locationRingHashPrefix;
+
+  /**
+   * Maximum number of segments an output stream uploads at the same time
+   */
+  private final int uploadParallelism;
+
+  /**
+   * Maximum size of the segments being uploaded for all output streams
+   */
+  private final long uploadBufferLimit;
+
+  /**
+   * Where output streams buffer data before it is uploaded
+   */
+  private final String outputBuffer;
+
+  /**
+   * Direct memory all output streams of the JVM may use to buffer data
+   */
+  private final long directBufferMemory;
+
+  /**
+   * Are the segments of large files joined up by static manifests
+   */
+  private final boolean staticLargeObjects;
+
+  /**
+   * Which reads ask for the newest copy of an object
+   */
+  private final SwiftConsistencyPolicy consistencyPolicy;
+
+  /**
+   * Time in milliseconds for which reads of a changed path ask for
+   * the newest copy under the read-your-writes policy
+   */
+  private final long consistencyWindow;
+
+  /**
+   * Time of the latest change made by this client to each path,
+   * oldest first; only kept under the read-your-writes policy.
+   * Entries are only dropped once they are older than the consistency
+   * window, as forgetting a younger one would let a read miss the change.
+   */
+  private final Map<SwiftObjectPath, Long> recentWrites =
+          new LinkedHashMap<SwiftObjectPath, Long>();
+
+  /**
+   * Number of HTTP requests sent by this client, by method
+   */
+  private final Map<String, AtomicLong> requestCounts =
+          new ConcurrentHashMap<String, AtomicLong>();
+
+  /**
+   * Pooled connection manager shared by all requests of this client
+   */
+  private final SwiftConnectionManager connectionManager;
+
+  /**
+   * HTTP client bound to {@link #connectionManager}
+   */
+  private final HttpClient httpclient;
+
+  /**
+   * Thread closing connections which have been idle for too long.
+   * Null if idle connection eviction is disabled.
+   */
+  private final IdleConnectionTimeoutThread idleConnectionEvictor;
+
   /**
    * objects query endpoint. This is synchronized
    * to handle a simultaneous update of all auth data in one
@@ -286,6 +498,19 @@ public final class SwiftRestClient {
               SC_PARTIAL_CONTENT,
       };
     }
+
+    /**
+     * Override point: should the connection be returned to the pool
+     * once the result has been extracted? Operations which hand the
+     * response stream up to the caller must return false; the stream
+     * then becomes responsible for the release.
+     *
+     * @return true if the connection is to be released after
+     *         {@link #extractResult(HttpMethod)}
+     */
+    protected boolean releaseConnectionAfterExtraction() {
+      return true;
+    }
   }
 
   private static abstract class GetMethodProcessor<R> extends HttpMethodProcessor<GetMethod, R> {
@@ -443,13 +668,251 @@ public final class SwiftRestClient {
               + ": " + blocksize);
     }
 
+    listingLimit = getIntOption(props,
+            SWIFT_LISTING_LIMIT_PROPERTY,
+            DEFAULT_LISTING_LIMIT);
+    if (listingLimit <= 0) {
+      throw new SwiftConfigurationException("Invalid listing limit set in "
+              + SWIFT_LISTING_LIMIT_PROPERTY + ": " + listingLimit);
+    }
+
+    metadataCacheTTL = getLongOption(props,
+            SWIFT_METADATA_CACHE_TTL_PROPERTY,
+            DEFAULT_METADATA_CACHE_TTL);
+    if (metadataCacheTTL < 0) {
+      throw new SwiftConfigurationException("Invalid metadata cache TTL set in "
+              + SWIFT_METADATA_CACHE_TTL_PROPERTY + ": " + metadataCacheTTL);
+    }
+    metadataCacheSize = getIntOption(props,
+            SWIFT_METADATA_CACHE_SIZE_PROPERTY,
+            DEFAULT_METADATA_CACHE_SIZE);
+    if (metadataCacheSize <= 0) {
+      throw new SwiftConfigurationException("Invalid metadata cache size set in "
+              + SWIFT_METADATA_CACHE_SIZE_PROPERTY + ": " + metadataCacheSize);
+    }
+    negativeCacheTTL = getLongOption(props,
+            SWIFT_NEGATIVE_CACHE_TTL_PROPERTY,
+            DEFAULT_NEGATIVE_CACHE_TTL);
+    if (negativeCacheTTL < 0) {
+      throw new SwiftConfigurationException("Invalid negative cache TTL set in "
+              + SWIFT_NEGATIVE_CACHE_TTL_PROPERTY + ": " + negativeCacheTTL);
+    }
+    readaheadMin = getIntOption(props,
+            SWIFT_READAHEAD_MIN_PROPERTY,
+            DEFAULT_READAHEAD_MIN);
+    if (readaheadMin <= 0) {
+      throw new SwiftConfigurationException("Invalid readahead set in "
+              + SWIFT_READAHEAD_MIN_PROPERTY + ": " + readaheadMin);
+    }
+    readaheadMax = getIntOption(props,
+            SWIFT_READAHEAD_MAX_PROPERTY,
+            DEFAULT_READAHEAD_MAX);
+    if (readaheadMax < readaheadMin) {
+      throw new SwiftConfigurationException("Invalid readahead set in "
+              + SWIFT_READAHEAD_MAX_PROPERTY + ": " + readaheadMax
+              + " is less than the minimum " + readaheadMin);
+    }
+    prefetchSize = getIntOption(props,
+            SWIFT_PREFETCH_SIZE_PROPERTY,
+            DEFAULT_PREFETCH_SIZE);
+    if (prefetchSize < 0) {
+      throw new SwiftConfigurationException("Invalid prefetch size set in "
+              + SWIFT_PREFETCH_SIZE_PROPERTY + ": " + prefetchSize);
+    }
+    prefetchMemory = getLongOption(props,
+            SWIFT_PREFETCH_MEMORY,
+            DEFAULT_SWIFT_PREFETCH_MEMORY);
+    if (prefetchMemory < 0) {
+      throw new SwiftConfigurationException("Invalid prefetch memory set in "
+              + SWIFT_PREFETCH_MEMORY + ": " + prefetchMemory);
+    }
+    long configuredSegmentSize = getLongOption(props,
+            SWIFT_SEGMENT_SIZE_PROPERTY,
+            DEFAULT_SEGMENT_SIZE);
+    if (configuredSegmentSize <= 0) {
+      throw new SwiftConfigurationException("Invalid segment size set in "
+              + SWIFT_SEGMENT_SIZE_PROPERTY + ": " + configuredSegmentSize);
+    }
+    streamingUpload = Boolean.parseBoolean(
+            props.getProperty(SWIFT_STREAMING_UPLOAD_PROPERTY,
+                    Boolean.toString(DEFAULT_STREAMING_UPLOAD)));
+    chunkedUpload = Boolean.parseBoolean(
+            props.getProperty(SWIFT_CHUNKED_UPLOAD_PROPERTY,
+                    Boolean.toString(DEFAULT_CHUNKED_UPLOAD)));
+    chunkedBufferSize = getIntOption(props,
+            SWIFT_CHUNKED_BUFFER_SIZE_PROPERTY,
+            DEFAULT_CHUNKED_BUFFER_SIZE);
+    if (chunkedBufferSize <= 0) {
+      throw new SwiftConfigurationException(
+              "Invalid chunked buffer size set in "
+              + SWIFT_CHUNKED_BUFFER_SIZE_PROPERTY + ": " + chunkedBufferSize);
+    }
+    renameThreads = getIntOption(props,
+            SWIFT_RENAME_THREADS_PROPERTY,
+            DEFAULT_RENAME_THREADS);
+    if (renameThreads <= 0) {
+      throw new SwiftConfigurationException("Invalid rename threads set in "
+              + SWIFT_RENAME_THREADS_PROPERTY + ": " + renameThreads);
+    }
+    renameRetries = getIntOption(props,
+            SWIFT_RENAME_RETRIES_PROPERTY,
+            DEFAULT_RENAME_RETRIES);
+    if (renameRetries < 0) {
+      throw new SwiftConfigurationException("Invalid rename retries set in "
+              + SWIFT_RENAME_RETRIES_PROPERTY + ": " + renameRetries);
+    }
+    bulkDelete = Boolean.parseBoolean(
+            props.getProperty(SWIFT_BULK_DELETE_PROPERTY,
+                    Boolean.toString(DEFAULT_BULK_DELETE)));
+    bulkDeleteSize = getIntOption(props,
+            SWIFT_BULK_DELETE_SIZE_PROPERTY,
+            DEFAULT_BULK_DELETE_SIZE);
+    if (bulkDeleteSize <= 0) {
+      throw new SwiftConfigurationException("Invalid bulk delete size set in "
+              + SWIFT_BULK_DELETE_SIZE_PROPERTY + ": " + bulkDeleteSize);
+    }
+    deleteThreads = getIntOption(props,
+            SWIFT_DELETE_THREADS_PROPERTY,
+            DEFAULT_DELETE_THREADS);
+    if (deleteThreads <= 0) {
+      throw new SwiftConfigurationException("Invalid delete threads set in "
+              + SWIFT_DELETE_THREADS_PROPERTY + ": " + deleteThreads);
+    }
+    locationCacheTTL = getLongOption(props,
+            SWIFT_LOCATION_CACHE_TTL_PROPERTY,
+            DEFAULT_LOCATION_CACHE_TTL);
+    if (locationCacheTTL < 0) {
+      throw new SwiftConfigurationException("Invalid location cache TTL set in "
+              + SWIFT_LOCATION_CACHE_TTL_PROPERTY + ": " + locationCacheTTL);
+    }
+    locationCacheSize = getIntOption(props,
+            SWIFT_LOCATION_CACHE_SIZE_PROPERTY,
+            DEFAULT_LOCATION_CACHE_SIZE);
+    if (locationCacheSize <= 0) {
+      throw new SwiftConfigurationException("Invalid location cache size set in "
+              + SWIFT_LOCATION_CACHE_SIZE_PROPERTY + ": " + locationCacheSize);
+    }
+    locationBatchSize = getIntOption(props,
+            SWIFT_LOCATION_BATCH_SIZE_PROPERTY,
+            DEFAULT_LOCATION_BATCH_SIZE);
+    if (locationBatchSize <= 0) {
+      throw new SwiftConfigurationException("Invalid location batch size set in "
+              + SWIFT_LOCATION_BATCH_SIZE_PROPERTY + ": " + locationBatchSize);
+    }
+    locationRing = props.getProperty(SWIFT_LOCATION_RING_PROPERTY);
+    locationRingHashSuffix = props.getProperty(
+            SWIFT_LOCATION_RING_HASH_SUFFIX_PROPERTY, "");
+    locationRingHashPrefix = props.getProperty(
+            SWIFT_LOCATION_RING_HASH_PREFIX_PROPERTY, "");
+    uploadParallelism = getIntOption(props,
+            SWIFT_UPLOAD_PARALLELISM_PROPERTY,
+            DEFAULT_UPLOAD_PARALLELISM);
+    if (uploadParallelism <= 0) {
+      throw new SwiftConfigurationException("Invalid upload parallelism set in "
+              + SWIFT_UPLOAD_PARALLELISM_PROPERTY + ": " + uploadParallelism);
+    }
+    uploadBufferLimit = getLongOption(props,
+            SWIFT_UPLOAD_BUFFER_LIMIT_PROPERTY,
+            DEFAULT_UPLOAD_BUFFER_LIMIT);
+    if (uploadBufferLimit <= 0) {
+      throw new SwiftConfigurationException("Invalid upload buffer limit set in "
+              + SWIFT_UPLOAD_BUFFER_LIMIT_PROPERTY + ": " + uploadBufferLimit);
+    }
+    outputBuffer = props.getProperty(SWIFT_OUTPUT_BUFFER_PROPERTY,
+            DEFAULT_OUTPUT_BUFFER).trim().toLowerCase(Locale.ENGLISH);
+    if (!OUTPUT_BUFFER_DISK.equals(outputBuffer)
+            && !OUTPUT_BUFFER_HEAP.equals(outputBuffer)
+            && !OUTPUT_BUFFER_DIRECT.equals(outputBuffer)) {
+      throw new SwiftConfigurationException("Invalid output buffer set in "
+              + SWIFT_OUTPUT_BUFFER_PROPERTY + ": " + outputBuffer);
+    }
+    if (!OUTPUT_BUFFER_DISK.equals(outputBuffer) && !chunkedUpload) {
+      //a memory buffer holds a whole segment: keep the segment a stream
+      //is writing and those it is uploading within the upload buffer limit
+      long memorySegmentSize =
+              Math.max(1, uploadBufferLimit / (uploadParallelism + 1));
+      if (configuredSegmentSize > memorySegmentSize) {
+        LOG.info("Segment size " + configuredSegmentSize
+                + " reduced to " + memorySegmentSize
+                + " to buffer segments in memory within "
+                + SWIFT_UPLOAD_BUFFER_LIMIT_PROPERTY + " " + uploadBufferLimit);
+        configuredSegmentSize = memorySegmentSize;
+      }
+    }
+    segmentSize = configuredSegmentSize;
+    directBufferMemory = getLongOption(props,
+            SWIFT_DIRECT_BUFFER_MEMORY,
+            DEFAULT_SWIFT_DIRECT_BUFFER_MEMORY);
+    if (directBufferMemory < 0) {
+      throw new SwiftConfigurationException("Invalid direct buffer memory set in "
+              + SWIFT_DIRECT_BUFFER_MEMORY + ": " + directBufferMemory);
+    }
+    String largeObject = props.getProperty(SWIFT_LARGE_OBJECT_PROPERTY,
+            DEFAULT_LARGE_OBJECT).trim().toLowerCase(Locale.ENGLISH);
+    if (!LARGE_OBJECT_DYNAMIC.equals(largeObject)
+            && !LARGE_OBJECT_STATIC.equals(largeObject)) {
+      throw new SwiftConfigurationException("Invalid large object set in "
+              + SWIFT_LARGE_OBJECT_PROPERTY + ": " + largeObject);
+    }
+    staticLargeObjects = LARGE_OBJECT_STATIC.equals(largeObject);
+    consistencyPolicy = SwiftConsistencyPolicy.fromName(
+            props.getProperty(SWIFT_CONSISTENCY_PROPERTY, DEFAULT_CONSISTENCY));
+    consistencyWindow = getLongOption(props,
+            SWIFT_CONSISTENCY_WINDOW_PROPERTY,
+            DEFAULT_CONSISTENCY_WINDOW);
+    if (consistencyWindow < 0) {
+      throw new SwiftConfigurationException("Invalid consistency window set in "
+              + SWIFT_CONSISTENCY_WINDOW_PROPERTY + ": " + consistencyWindow);
+    }
+
+    //connection pool
+    int maxConnections = getIntOption(props,
+            SWIFT_HTTP_MAX_CONNECTIONS_PROPERTY,
+            DEFAULT_HTTP_MAX_CONNECTIONS);
+    int maxConnectionsPerRoute = getIntOption(props,
+            SWIFT_HTTP_MAX_CONNECTIONS_PER_ROUTE_PROPERTY,
+            DEFAULT_HTTP_MAX_CONNECTIONS_PER_ROUTE);
+    int idleTimeout = getIntOption(props,
+            SWIFT_HTTP_IDLE_TIMEOUT_PROPERTY,
+            DEFAULT_HTTP_IDLE_TIMEOUT);
+    boolean staleCheck = !"false".equals(
+            props.getProperty(SWIFT_HTTP_STALE_CHECK_PROPERTY, "true"));
+    if (maxConnections <= 0 || maxConnectionsPerRoute <= 0) {
+      throw new SwiftConfigurationException("Invalid connection pool size: "
+              + SWIFT_HTTP_MAX_CONNECTIONS_PROPERTY + "=" + maxConnections
+              + "; " + SWIFT_HTTP_MAX_CONNECTIONS_PER_ROUTE_PROPERTY + "="
+              + maxConnectionsPerRoute);
+    }
+    connectionManager = new SwiftConnectionManager(maxConnections,
+            maxConnectionsPerRoute,
+            connectTimeout,
+            staleCheck);
+    httpclient = new HttpClient(connectionManager);
+    //block no longer than a connect for a pooled connection to become free
+    httpclient.getParams().setConnectionManagerTimeout(connectTimeout);
+    if (proxyHost != null) {
+      httpclient.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY,
+              new HttpHost(proxyHost, proxyPort));
+    }
+    if (idleTimeout > 0) {
+      idleConnectionEvictor = new IdleConnectionTimeoutThread();
+      idleConnectionEvictor.setName("Swift idle connection evictor for "
+              + filesystemURI);
+      idleConnectionEvictor.setConnectionTimeout(idleTimeout);
+      idleConnectionEvictor.setTimeoutInterval(Math.max(1000, idleTimeout / 2));
+      idleConnectionEvictor.addConnectionManager(connectionManager);
+    } else {
+      idleConnectionEvictor = null;
+    }
+
     if (LOG.isDebugEnabled()) {
       //everything you need for diagnostics. The password is omitted.
       LOG.debug(String.format(
               "Service={%s} container={%s} uri={%s}"
                       + " tenant={%s} user={%s} region={%s}"
                       + " publicURL={%b}"
-                      + " connect timeout={%d}, retry count={%d}",
+                      + " connect timeout={%d}, retry count={%d}"
+                      + " connection pool={max: %d, per host: %d}",
               serviceProvider,
               container,
               stringAuthUri,
@@ -458,7 +921,9 @@ public final class SwiftRestClient {
               region != null ? region : "(none)",
               usePublicURL,
               connectTimeout,
-              retryCount));
+              retryCount,
+              maxConnections,
+              maxConnectionsPerRoute));
     }
     try {
       this.authUri = new URI(stringAuthUri);
@@ -467,6 +932,10 @@ public final class SwiftRestClient {
               + " property was incorrect: "
               + stringAuthUri, e);
     }
+    //only start the evictor once construction can no longer fail
+    if (idleConnectionEvictor != null) {
+      idleConnectionEvictor.start();
+    }
   }
 
   /**
@@ -539,9 +1008,10 @@ public final class SwiftRestClient {
    * @param length file length
    * @return The input stream -which must be closed afterwards.
    */
-  public InputStream getDataAsInputStream(SwiftObjectPath path,
-                                          long offset,
-                                          long length) throws IOException {
+  public HttpInputStreamWithRelease getDataAsInputStream(SwiftObjectPath path,
+                                                        long offset,
+                                                        long length)
+          throws IOException {
     if (offset < 0) {
       throw new IOException("Invalid offset: " + offset + ".");
     }
@@ -556,20 +1026,83 @@ public final class SwiftRestClient {
       LOG.debug("getDataAsInputStream(" + offset + "," + length + ")");
     }
 
-    return getDataAsInputStream(path,
-            new Header(HEADER_RANGE, range),
-            SwiftRestClient.NEWEST);
+    Header rangeHeader = new Header(HEADER_RANGE, range);
+    return getDataAsInputStream(path, needsNewest(path)
+            ? new Header[]{rangeHeader, NEWEST}
+            : new Header[]{rangeHeader});
+  }
+
+  /**
+   * Get the headers which a read of a path must carry to meet the
+   * consistency policy of this client
+   *
+   * @param path path being read
+   * @return the headers; empty if the read may be served by any replica
+   */
+  public Header[] consistencyHeaders(SwiftObjectPath path) {
+    return needsNewest(path) ? new Header[]{NEWEST} : new Header[0];
+  }
+
+  /**
+   * Query whether a read of a path must ask for the newest copy
+   *
+   * @param path path being read
+   * @return true if the X-Newest header is needed
+   */
+  private boolean needsNewest(SwiftObjectPath path) {
+    switch (consistencyPolicy) {
+      case STRONG:
+        return true;
+      case EVENTUAL:
+        return false;
+      default:
+        synchronized (recentWrites) {
+          Long written = recentWrites.get(path);
+          if (written == null) {
+            return false;
+          }
+          if (System.currentTimeMillis() - written > consistencyWindow) {
+            recentWrites.remove(path);
+            return false;
+          }
+          return true;
+        }
+    }
+  }
+
+  /**
+   * Note that this client has changed a path, so that under the
+   * read-your-writes policy reads of it will see the change
+   *
+   * @param path path created, overwritten or deleted
+   */
+  private void noteWrite(SwiftObjectPath path) {
+    if (consistencyPolicy == SwiftConsistencyPolicy.READ_YOUR_WRITES) {
+      long now = System.currentTimeMillis();
+      synchronized (recentWrites) {
+        //drop the changes which have aged out of the window, oldest first
+        Iterator<Long> times = recentWrites.values().iterator();
+        while (times.hasNext() && now - times.next() > consistencyWindow) {
+          times.remove();
+        }
+        //reinsert to keep the map in order of time
+        recentWrites.remove(path);
+        recentWrites.put(path, now);
+      }
+    }
   }
 
   /**
    * Returns object length
    *
-   * @param uri file URI
+   * @param uri            file URI
+   * @param requestHeaders http headers
    * @return object length
    * @throws SwiftException on swift-related issues
    * @throws IOException    on network/IO problems
    */
-  public long getContentLength(URI uri) throws IOException {
+  public long getContentLength(URI uri, final Header... requestHeaders)
+          throws IOException {
     preRemoteCommand("getContentLength");
     return perform(uri, new HeadMethodProcessor<Long>() {
       @Override
@@ -580,20 +1113,21 @@ public final class SwiftRestClient {
       @Override
       protected void setup(HeadMethod method) throws IOException {
         super.setup(method);
-        method.addRequestHeader(NEWEST);
+        setHeaders(method, requestHeaders);
       }
     });
   }
 
   /**
-   * Get the length of the remote object
+   * Get the length of the remote object, asking for the newest copy
+   * if the consistency policy requires it
    *
    * @param path object to probe
    * @return the content length
    * @throws IOException on any failure
    */
   public long getContentLength(SwiftObjectPath path) throws IOException {
-    return getContentLength(pathToURI(path));
+    return getContentLength(pathToURI(path), consistencyHeaders(path));
   }
 
   /**
@@ -607,8 +1141,8 @@ public final class SwiftRestClient {
    * @throws IOException           on IO Faults
    * @throws FileNotFoundException if there is nothing at the path
    */
-  public InputStream getDataAsInputStream(SwiftObjectPath path,
-                                          final Header... requestHeaders)
+  public HttpInputStreamWithRelease getDataAsInputStream(SwiftObjectPath path,
+                                                        final Header... requestHeaders)
           throws IOException {
     preRemoteCommand("getDataAsInputStream");
     return doGet(pathToURI(path),
@@ -653,10 +1187,10 @@ public final class SwiftRestClient {
                           method.getResponseBodyAsStream() == null) {
                     return null;
                   }
-                  final InputStream responseBodyAsStream = method.getResponseBodyAsStream();
-                  final byte[] locationData = new byte[1024];
-
-                  return responseBodyAsStream.read(locationData) > 0 ? locationData : null;
+                  //read it all: a single read may return only part of it
+                  final byte[] locationData = method.getResponseBody();
+                  return locationData != null && locationData.length > 0
+                          ? locationData : null;
                 }
 
                 @Override
@@ -671,6 +1205,103 @@ public final class SwiftRestClient {
     }
   }
 
+  /**
+   * Find the locations of many objects with a single request to the
+   * object endpoint, which answers with the endpoints of each object
+   * named. An object endpoint which predates batched lookups rejects
+   * the request as not found, not allowed or not implemented, in which
+   * case null is returned and the objects must be located one by one.
+   *
+   * @param paths object paths
+   * @return the endpoint URIs of each object, keyed by path; an empty map
+   *         if the filesystem is not location aware; null if the object
+   *         endpoint cannot locate objects in batches
+   * @throws SwiftInvalidResponseException with status 413 if there are too
+   *                                       many objects for one request
+   * @throws IOException on any other failure of the request
+   */
+  public Map<SwiftObjectPath, List<URI>> getObjectLocations(
+          final List<SwiftObjectPath> paths) throws IOException {
+    if (!isLocationAware()) {
+      return new HashMap<SwiftObjectPath, List<URI>>();
+    }
+    preRemoteCommand("getObjectLocations");
+    final Map<String, SwiftObjectPath> names =
+            new LinkedHashMap<String, SwiftObjectPath>(paths.size());
+    for (SwiftObjectPath path : paths) {
+      names.put(path.toUriPath(), path);
+    }
+    final String body = JSONUtil.toJSON(names.keySet());
+    return perform(objectLocationURI,
+            new PostMethodProcessor<Map<SwiftObjectPath, List<URI>>>() {
+      @Override
+      protected void setup(PostMethod method) throws SwiftException {
+        setHeaders(method, new Header[0]);
+        method.addRequestHeader(HEADER_ACCEPT, "application/json");
+        try {
+          method.setRequestEntity(new StringRequestEntity(body,
+                  "application/json", "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+          throw new SwiftException("Could not encode location request", e);
+        }
+      }
+
+      /**
+       * Older object endpoints only answer GET requests; a request
+       * naming too many objects is too large for the proxy
+       */
+      @Override
+      protected int[] getAllowedStatusCodes() {
+        return new int[]{
+                SC_OK,
+                SC_NOT_FOUND,
+                SC_METHOD_NOT_ALLOWED,
+                SC_NOT_IMPLEMENTED,
+                SC_REQUEST_TOO_LONG,
+        };
+      }
+
+      @Override
+      public Map<SwiftObjectPath, List<URI>> extractResult(PostMethod method)
+              throws IOException {
+        String response = method.getResponseBodyAsString();
+        if (method.getStatusCode() == SC_REQUEST_TOO_LONG) {
+          throw new SwiftInvalidResponseException("Too many objects to locate"
+                  + " in one request: " + names.size(),
+                  "POST", objectLocationURI, method);
+        }
+        if (method.getStatusCode() != SC_OK) {
+          return null;
+        }
+        JsonNode json;
+        try {
+          json = JSONUtil.getJsonMapper().readTree(response);
+        } catch (IOException e) {
+          return null;
+        }
+        if (json == null || !json.isObject()) {
+          return null;
+        }
+        Map<SwiftObjectPath, List<URI>> locations =
+                new HashMap<SwiftObjectPath, List<URI>>(names.size());
+        for (Map.Entry<String, SwiftObjectPath> entry : names.entrySet()) {
+          List<URI> uris = new ArrayList<URI>();
+          for (JsonNode endpoint : json.path(entry.getKey())) {
+            try {
+              uris.add(new URI(endpoint.getTextValue()));
+            } catch (URISyntaxException e) {
+              throw new SwiftInvalidResponseException(
+                      "Bad endpoint of " + entry.getKey() + ": " + endpoint,
+                      "POST", objectLocationURI, method);
+            }
+          }
+          locations.put(entry.getValue(), uris);
+        }
+        return locations;
+      }
+    });
+  }
+
   /**
    * Create the URI needed to query the location of an object
    *
@@ -766,6 +1397,42 @@ public final class SwiftRestClient {
   public byte[] listDeepObjectsInDirectory(SwiftObjectPath path, boolean listDeep,
                                            final Header... requestHeaders)
           throws IOException {
+    return listDeepObjectsInDirectory(path, listDeep, null, null, 0,
+            READ_WHOLE_BODY, requestHeaders);
+  }
+
+  /**
+   * List one page of the objects in a directory.
+   * Swift returns the entries sorted by name; the listing resumes
+   * after <code>marker</code> and stops before <code>endMarker</code>.
+   * To list everything under a path, repeat the call with the marker
+   * set to the last name returned, until a page comes back with fewer than
+   * <code>limit</code> entries.
+   *
+   * @param path           path prefix
+   * @param listDeep       list everything under the path, rather than just
+   *                       the immediate children
+   * @param marker         name after which to start the listing; may be null
+   * @param endMarker      name before which to end the listing; may be null
+   * @param limit          maximum number of entries to return; if 0 or less
+   *                       the server-side limit applies
+   * @param reader         reader of the response body: a JSON list of
+   *                       entries
+   * @param requestHeaders optional request headers
+   * @param <T>            type of the result
+   * @return whatever the reader built from the response
+   * @throws IOException           on IO Faults
+   * @throws FileNotFoundException if nothing is at the end of the URI -that is,
+   *                               the directory is empty
+   */
+  public <T> T listDeepObjectsInDirectory(SwiftObjectPath path,
+                                          boolean listDeep,
+                                          String marker,
+                                          String endMarker,
+                                          int limit,
+                                          ResponseBodyReader<T> reader,
+                                          final Header... requestHeaders)
+          throws IOException {
     preRemoteCommand("listDeepObjectsInDirectory");
 
     String endpoint = getEndpointURI().toString();
@@ -793,19 +1460,32 @@ public final class SwiftRestClient {
     if (listDeep == false) {
       dataLocationURI.append("&delimiter=/");
     }
+    if (limit > 0) {
+      dataLocationURI.append("&limit=").append(limit);
+    }
+    if (marker != null) {
+      dataLocationURI.append("&marker=").append(encodeQueryParam(marker));
+    }
+    if (endMarker != null) {
+      dataLocationURI.append("&end_marker=")
+              .append(encodeQueryParam(endMarker));
+    }
 
-    return findObjects(dataLocationURI.toString(), requestHeaders);
+    return findObjects(dataLocationURI.toString(), reader, requestHeaders);
   }
 
   /**
    * Find objects in a location
    *
    * @param location       URI
+   * @param reader         reader of the response body
    * @param requestHeaders optional request headers
-   * @return the body of te response
+   * @return the result of reading the body of the response
    * @throws IOException IO problems
    */
-  private byte[] findObjects(String location, final Header[] requestHeaders) throws
+  private <T> T findObjects(String location,
+                            final ResponseBodyReader<T> reader,
+                            final Header[] requestHeaders) throws
           IOException {
     URI uri;
     preRemoteCommand("findObjects");
@@ -815,14 +1495,18 @@ public final class SwiftRestClient {
       throw new SwiftException("Bad URI: " + location, e);
     }
 
-    return perform(uri, new GetMethodProcessor<byte[]>() {
+    return perform(uri, new GetMethodProcessor<T>() {
       @Override
-      public byte[] extractResult(GetMethod method) throws IOException {
+      public T extractResult(GetMethod method) throws IOException {
         if (method.getStatusCode() == SC_NOT_FOUND) {
           //no result
           throw new FileNotFoundException("Not found " + method.getURI());
         }
-        return method.getResponseBody();
+        InputStream body = method.getResponseBodyAsStream();
+        if (body == null) {
+          body = new ByteArrayInputStream(new byte[0]);
+        }
+        return reader.read(body);
       }
 
       @Override
@@ -856,6 +1540,7 @@ public final class SwiftRestClient {
                             final Header... headers) throws IOException {
 
     preRemoteCommand("copyObject");
+    noteWrite(dst);
 
     return perform(pathToURI(src), new CopyMethodProcessor<Boolean>() {
       @Override
@@ -873,27 +1558,163 @@ public final class SwiftRestClient {
   }
 
   /**
-   * Uploads file as Input Stream to Swift.
-   * The data stream will be closed after the request.
+   * Uploads file as Input Stream to Swift.
+   * The data stream will be closed after the request.
+   *
+   * @param path           path to Swift
+   * @param data           object data
+   * @param length         length of data
+   * @param requestHeaders http headers
+   * @return the ETag of the object, without quotes; null if the server
+   *         did not return one
+   * @throws IOException on IO Faults
+   */
+  public String upload(SwiftObjectPath path,
+                       final InputStream data,
+                       final long length,
+                       final Header... requestHeaders)
+          throws IOException {
+    return upload(path, data, length, null, requestHeaders);
+  }
+
+  /**
+   * Upload an object whose MD5 is known, sending it as the ETag so that
+   * Swift rejects the data if it was corrupted in transit. The ETag
+   * of the response is checked against it too.
+   *
+   * @param path           path
+   * @param data           object data, closed afterwards
+   * @param length         length of data
+   * @param md5            MD5 of the data in hex; null if not known
+   * @param requestHeaders http headers
+   * @return the ETag of the object, without quotes; null if the server
+   *         did not return one
+   * @throws SwiftChecksumMismatchException if the data Swift received
+   *                                        does not match the MD5
+   * @throws IOException                    on IO Faults
+   */
+  public String upload(SwiftObjectPath path,
+                       final InputStream data,
+                       final long length,
+                       String md5,
+                       final Header... requestHeaders)
+          throws IOException {
+    preRemoteCommand("upload");
+    return put(pathToURI(path), path, data, length, md5, requestHeaders);
+  }
+
+  /**
+   * Upload an object of unknown length, sending the data as it is read
+   * with chunked transfer encoding. As the ETag cannot be sent ahead of
+   * the data, the caller must verify the one returned.
+   *
+   * @param path path
+   * @param data object data, closed afterwards
+   * @return the ETag of the object, without quotes; null if the server
+   *         did not return one
+   * @throws IOException on IO Faults
+   */
+  public String uploadChunked(SwiftObjectPath path, InputStream data)
+          throws IOException {
+    preRemoteCommand("uploadChunked");
+    //a negative length makes the entity go out in chunks
+    return put(pathToURI(path), path, data, -1, null);
+  }
+
+  /**
+   * Upload the manifest of a static large object
+   *
+   * @param path     path of the object
+   * @param manifest JSON list of the segments of the object
+   * @return the ETag of the object, without quotes; null if the server
+   *         did not return one
+   * @throws IOException on IO Faults
+   */
+  public String uploadStaticLargeObjectManifest(SwiftObjectPath path,
+                                                byte[] manifest)
+          throws IOException {
+    preRemoteCommand("uploadStaticLargeObjectManifest");
+    URI uri;
+    String location = pathToURI(path) + "?" + MULTIPART_MANIFEST_PUT;
+    try {
+      uri = new URI(location);
+    } catch (URISyntaxException e) {
+      throw new SwiftException("Bad URI: " + location, e);
+    }
+    return put(uri, path, new ByteArrayInputStream(manifest),
+            manifest.length, null);
+  }
+
+  /**
+   * Get the manifest of a static large object: the JSON list of its
+   * segments, each with its name, hash and size in bytes
+   *
+   * @param path           path of the manifest
+   * @param requestHeaders http headers
+   * @return the manifest
+   * @throws IOException           on IO Faults
+   * @throws FileNotFoundException if there is nothing at the path
+   */
+  public byte[] getStaticLargeObjectManifest(SwiftObjectPath path,
+                                             final Header... requestHeaders)
+          throws IOException {
+    preRemoteCommand("getStaticLargeObjectManifest");
+    String location = pathToURI(path) + "?" + MULTIPART_MANIFEST_GET;
+    URI uri;
+    try {
+      uri = new URI(location);
+    } catch (URISyntaxException e) {
+      throw new SwiftException("Bad URI: " + location, e);
+    }
+    return perform(uri, new GetMethodProcessor<byte[]>() {
+      @Override
+      public byte[] extractResult(GetMethod method) throws IOException {
+        return method.getResponseBody();
+      }
+
+      @Override
+      protected void setup(GetMethod method)
+              throws SwiftInternalStateException {
+        setHeaders(method, requestHeaders);
+      }
+    });
+  }
+
+  /**
+   * PUT data to a URI
    *
-   * @param path           path to Swift
-   * @param data           object data
+   * @param uri            URI
+   * @param path           path of the object written
+   * @param data           object data, closed afterwards
    * @param length         length of data
+   * @param md5            MD5 of the data to send as its ETag; may be null
    * @param requestHeaders http headers
+   * @return the ETag of the response, without quotes; null if there is none
    * @throws IOException on IO Faults
    */
-  public void upload(SwiftObjectPath path,
+  private String put(final URI uri,
+                     SwiftObjectPath path,
                      final InputStream data,
                      final long length,
+                     final String md5,
                      final Header... requestHeaders)
           throws IOException {
-    preRemoteCommand("upload");
+    noteWrite(path);
 
     try {
-      perform(pathToURI(path), new PutMethodProcessor<byte[]>() {
+      return perform(uri, new PutMethodProcessor<String>() {
         @Override
-        public byte[] extractResult(PutMethod method) throws IOException {
-          return method.getResponseBody();
+        public String extractResult(PutMethod method) throws IOException {
+          method.getResponseBody();
+          Header header = method.getResponseHeader(HEADER_ETAG);
+          String etag = header == null
+                  ? null
+                  : SwiftUtils.unquoteETag(header.getValue());
+          if (md5 != null && etag != null && !md5.equalsIgnoreCase(etag)) {
+            throw new SwiftChecksumMismatchException("PUT of " + uri
+                    + " sent MD5 " + md5 + " but the object has ETag " + etag);
+          }
+          return etag;
         }
 
         @Override
@@ -901,15 +1722,18 @@ public final class SwiftRestClient {
                 SwiftInternalStateException {
           method.setRequestEntity(new InputStreamRequestEntity(data, length));
           setHeaders(method, requestHeaders);
+          if (md5 != null) {
+            method.setRequestHeader(HEADER_ETAG, md5);
+          }
         }
       });
     } finally {
       data.close();
     }
-
   }
 
 
+
   /**
    * Deletes object from swift.
    * The result is true if this operation did the deletion.
@@ -920,6 +1744,7 @@ public final class SwiftRestClient {
    */
   public boolean delete(SwiftObjectPath path, final Header... requestHeaders) throws IOException {
     preRemoteCommand("delete");
+    noteWrite(path);
 
     return perform(pathToURI(path), new DeleteMethodProcessor<Boolean>() {
       @Override
@@ -935,6 +1760,113 @@ public final class SwiftRestClient {
     });
   }
 
+  /**
+   * Delete a batch of objects with a single request to the bulk
+   * middleware: a POST to the account with the URL-encoded names of the
+   * objects in its body, one per line. The middleware reports the outcome
+   * for each object in the JSON body of a 200 response.
+   * <p/>
+   * Without the middleware the proxy treats the request as an update of
+   * the metadata of the account, which changes nothing; such a
+   * response, or any other which does not come from the middleware,
+   * is reported as null so that the caller can delete the objects
+   * one by one instead.
+   *
+   * @param paths objects to delete
+   * @return the outcome, or null if the bulk middleware is not available
+   * @throws IOException on IO Faults, or if the middleware rejected
+   *                     the whole request
+   */
+  public SwiftBulkDeleteResult bulkDelete(final List<SwiftObjectPath> paths)
+          throws IOException {
+    preRemoteCommand("bulkDelete");
+    final StringBuilder names = new StringBuilder();
+    for (SwiftObjectPath path : paths) {
+      noteWrite(path);
+      names.append(encodeQueryParam(bulkDeleteName(path))).append('\n');
+    }
+    URI uri;
+    String location = getEndpointURI() + "?" + BULK_DELETE;
+    try {
+      uri = new URI(location);
+    } catch (URISyntaxException e) {
+      throw new SwiftException("Bad URI: " + location, e);
+    }
+    return perform(uri, new PostMethodProcessor<SwiftBulkDeleteResult>() {
+      @Override
+      protected void setup(PostMethod method) throws SwiftException {
+        setHeaders(method, new Header[0]);
+        method.addRequestHeader(HEADER_ACCEPT, "application/json");
+        try {
+          method.setRequestEntity(new StringRequestEntity(names.toString(),
+                  "text/plain", "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+          throw new SwiftException("Could not encode bulk delete", e);
+        }
+      }
+
+      /**
+       * Anything short of a server error may be the proxy answering
+       * a request it does not recognise
+       */
+      @Override
+      protected int[] getAllowedStatusCodes() {
+        return new int[]{
+                SC_OK,
+                SC_NO_CONTENT,
+                SC_BAD_REQUEST,
+                SC_NOT_FOUND,
+                SC_METHOD_NOT_ALLOWED,
+                SC_NOT_IMPLEMENTED,
+        };
+      }
+
+      @Override
+      public SwiftBulkDeleteResult extractResult(PostMethod method)
+              throws IOException {
+        String body = method.getResponseBodyAsString();
+        if (method.getStatusCode() != SC_OK) {
+          return null;
+        }
+        JsonNode response;
+        try {
+          response = JSONUtil.getJsonMapper().readTree(body);
+        } catch (IOException e) {
+          return null;
+        }
+        if (response == null || !response.has(BULK_RESPONSE_STATUS)) {
+          return null;
+        }
+        List<String> failed = new ArrayList<String>();
+        JsonNode errors = response.path(BULK_ERRORS);
+        for (JsonNode error : errors) {
+          failed.add(error.path(0).getTextValue());
+        }
+        String status = response.path(BULK_RESPONSE_STATUS).getTextValue();
+        if (failed.isEmpty() && (status == null || !status.startsWith("2"))) {
+          throw new SwiftException("Bulk delete of " + paths.size()
+                  + " objects failed: " + body);
+        }
+        return new SwiftBulkDeleteResult(
+                response.path(BULK_NUMBER_DELETED).getIntValue(),
+                response.path(BULK_NUMBER_NOT_FOUND).getIntValue(),
+                failed);
+      }
+    });
+  }
+
+  /**
+   * Get the name of an object in a bulk delete request, and in
+   * the failures reported by the middleware
+   *
+   * @param path object path
+   * @return the path as <code>/container/object</code>
+   */
+  public static String bulkDeleteName(SwiftObjectPath path) {
+    String name = path.toUriPath();
+    return name.startsWith("/") ? name : "/" + name;
+  }
+
   /**
    * Issue a head request
    *
@@ -970,6 +1902,7 @@ public final class SwiftRestClient {
           throws IOException {
 
     preRemoteCommand("putRequest");
+    noteWrite(path);
     return perform(pathToURI(path), new PutMethodProcessor<Integer>() {
 
       @Override
@@ -1298,7 +2231,12 @@ public final class SwiftRestClient {
         throw ioe;
       }
 
-      return processor.extractResult(method);
+      R result = processor.extractResult(method);
+      if (processor.releaseConnectionAfterExtraction()) {
+        //return the connection to the pool for reuse
+        method.releaseConnection();
+      }
+      return result;
     } catch (IOException e) {
       //release the connection -always
 
@@ -1349,6 +2287,12 @@ public final class SwiftRestClient {
                 method);
         break;
 
+      case SC_UNPROCESSABLE_ENTITY:
+        //the ETag sent with a PUT did not match the data received
+        fault = new SwiftChecksumMismatchException("Checksum mismatch in "
+                + method.getName() + " of " + uri);
+        break;
+
       case SC_REQUESTED_RANGE_NOT_SATISFIABLE:
         //out of range
         fault = new EOFException(method.getStatusText());
@@ -1375,13 +2319,24 @@ public final class SwiftRestClient {
    * @return the input stream. This must be closed to avoid log errors
    * @throws IOException
    */
-  private InputStream doGet(final URI uri, final Header... requestHeaders) throws IOException {
-    return perform(uri, new GetMethodProcessor<InputStream>() {
+  private HttpInputStreamWithRelease doGet(final URI uri,
+                                           final Header... requestHeaders)
+          throws IOException {
+    return perform(uri, new GetMethodProcessor<HttpInputStreamWithRelease>() {
       @Override
-      public InputStream extractResult(GetMethod method) throws IOException {
+      public HttpInputStreamWithRelease extractResult(GetMethod method) throws IOException {
         return new HttpInputStreamWithRelease(uri, method);
       }
 
+      /**
+       * The input stream releases the connection when closed
+       * @return false, always
+       */
+      @Override
+      protected boolean releaseConnectionAfterExtraction() {
+        return false;
+      }
+
       @Override
       protected void setup(GetMethod method) throws
               SwiftInternalStateException {
@@ -1467,6 +2422,23 @@ public final class SwiftRestClient {
     return url;
   }
 
+  /**
+   * Encode a query parameter value. Unlike {@link #encodeUrl(String)}
+   * every reserved character is escaped, as object names used as listing
+   * markers can contain anything.
+   *
+   * @param value parameter value
+   * @return the encoded value
+   * @throws SwiftException if the value cannot be encoded
+   */
+  private static String encodeQueryParam(String value) throws SwiftException {
+    try {
+      return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+    } catch (UnsupportedEncodingException e) {
+      throw new SwiftException("failed to encode query parameter", e);
+    }
+  }
+
   /**
    * Convert a swift path to a URI relative to the current endpoint.
    *
@@ -1508,7 +2480,7 @@ public final class SwiftRestClient {
   }
 
   /**
-   * Execute a method in a new HttpClient instance.
+   * Execute a method through the pooled HttpClient of this instance.
    * If the auth failed, authenticate then retry the method.
    *
    * @param method methot to exec
@@ -1517,14 +2489,14 @@ public final class SwiftRestClient {
    * @throws IOException on any failure
    */
   private <M extends HttpMethod> int exec(M method) throws IOException {
-    final HttpClient client = new HttpClient();
-    if (proxyHost != null) {
-      client.getParams().setParameter(ConnRoutePNames.DEFAULT_PROXY,
-              new HttpHost(proxyHost, proxyPort));
-    }
+    final HttpClient client = httpclient;
 
     int statusCode = execWithDebugOutput(method, client);
-    if ((method.getStatusCode() == HttpStatus.SC_UNAUTHORIZED
+    //a 400 response to anything but the authentication request, such as
+    //a rejected manifest, is a fault of its own
+    if (method instanceof PostMethod
+            && method.getURI().toString().equals(authUri.toString())
+            && (method.getStatusCode() == HttpStatus.SC_UNAUTHORIZED
             || method.getStatusCode() == HttpStatus.SC_BAD_REQUEST)
             && !useKeystoneAuthentication) {
       //if rackspace key authentication failed - try custom Keystone authentication
@@ -1548,6 +2520,9 @@ public final class SwiftRestClient {
         if (LOG.isDebugEnabled()) {
           LOG.debug("Reauthenticating");
         }
+        //hand the connection back before authenticating, so that a
+        //small pool cannot be exhausted by this thread alone
+        method.releaseConnection();
         authenticate();
         if (LOG.isDebugEnabled()) {
           LOG.debug("Retrying original request");
@@ -1578,6 +2553,7 @@ public final class SwiftRestClient {
       }
       LOG.debug(builder);
     }
+    countRequest(method.getName());
     int statusCode = client.executeMethod(method);
     if (LOG.isDebugEnabled()) {
       LOG.debug("Status code = " + statusCode);
@@ -1623,6 +2599,69 @@ public final class SwiftRestClient {
   }
 
 
+  /**
+   * Count a request about to be sent
+   *
+   * @param name method name, such as GET
+   */
+  private void countRequest(String name) {
+    AtomicLong count = requestCounts.get(name);
+    if (count == null) {
+      synchronized (requestCounts) {
+        count = requestCounts.get(name);
+        if (count == null) {
+          count = new AtomicLong();
+          requestCounts.put(name, count);
+        }
+      }
+    }
+    count.incrementAndGet();
+  }
+
+  /**
+   * Get the number of HTTP requests this client has sent, by method.
+   * Retries and re-authentications are counted as the separate
+   * requests they are.
+   *
+   * @return a snapshot of the counts, sorted by method name
+   */
+  public Map<String, Long> getRequestCounts() {
+    Map<String, Long> counts = new TreeMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> entry : requestCounts.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().get());
+    }
+    return counts;
+  }
+
+  /**
+   * Get statistics on the use of the connection pool
+   *
+   * @return a snapshot of the pool statistics
+   */
+  public SwiftConnectionManager.PoolStatistics getConnectionPoolStatistics() {
+    return connectionManager.getStatistics();
+  }
+
+  /**
+   * @return true if a request could get a pooled connection without
+   *         waiting for one to be released
+   */
+  public boolean hasFreeConnection() {
+    return connectionManager.hasFreeConnection();
+  }
+
+  /**
+   * Release all resources held by this client: the idle connection
+   * evictor and all pooled connections.
+   * The client must not be used afterwards.
+   */
+  public void close() {
+    if (idleConnectionEvictor != null) {
+      idleConnectionEvictor.shutdown();
+    }
+    connectionManager.shutdown();
+  }
+
   @Override
   public String toString() {
     return "SwiftRestClient: " + filesystemURI;
@@ -1683,4 +2722,298 @@ public final class SwiftRestClient {
   public long getBlocksize() {
     return blocksize;
   }
+
+  /**
+   * Get the number of entries to request in each page of a listing
+   *
+   * @return a page size >0
+   */
+  public int getListingLimit() {
+    return listingLimit;
+  }
+
+  /**
+   * Get the lifetime of cached file metadata
+   *
+   * @return the lifetime in milliseconds; 0 means metadata is not cached
+   */
+  public long getMetadataCacheTTL() {
+    return metadataCacheTTL;
+  }
+
+  /**
+   * Get the maximum number of paths whose metadata is cached
+   *
+   * @return a size >0
+   */
+  public int getMetadataCacheSize() {
+    return metadataCacheSize;
+  }
+
+  /**
+   * Get the lifetime of cached knowledge that a path does not exist
+   *
+   * @return the lifetime in milliseconds; 0 means absent paths are not cached
+   */
+  public long getNegativeCacheTTL() {
+    return negativeCacheTTL;
+  }
+
+  /**
+   * Get the smallest range requested by an input stream
+   *
+   * @return a size in bytes >0
+   */
+  public int getReadaheadMin() {
+    return readaheadMin;
+  }
+
+  /**
+   * Get the largest range requested by an input stream
+   *
+   * @return a size in bytes, no less than {@link #getReadaheadMin()}
+   */
+  public int getReadaheadMax() {
+    return readaheadMax;
+  }
+
+  /**
+   * Get the number of bytes of its next range an input stream
+   * reads in the background
+   *
+   * @return a size in bytes; 0 means prefetching is disabled
+   */
+  public int getPrefetchSize() {
+    return prefetchSize;
+  }
+
+  /**
+   * Get the memory which all input streams of the JVM may use to hold
+   * prefetched data
+   *
+   * @return a size in bytes
+   */
+  public long getPrefetchMemory() {
+    return prefetchMemory;
+  }
+
+  /**
+   * Get the size of the segments a large file is uploaded in.
+   * When segments are buffered in memory this is at most the upload
+   * buffer limit divided by one more than the upload parallelism.
+   *
+   * @return a size in bytes
+   */
+  public long getSegmentSize() {
+    return segmentSize;
+  }
+
+  /**
+   * Query whether output streams upload each segment in the background
+   * while the writer continues
+   *
+   * @return true if uploads are streamed
+   */
+  public boolean isStreamingUpload() {
+    return streamingUpload;
+  }
+
+  /**
+   * Query whether output streams send data to Swift as it is written,
+   * in chunked PUT requests
+   *
+   * @return true if uploads are chunked
+   */
+  public boolean isChunkedUpload() {
+    return chunkedUpload;
+  }
+
+  /**
+   * Get the size of the buffer between a writer and its chunked PUT
+   *
+   * @return a size in bytes
+   */
+  public int getChunkedBufferSize() {
+    return chunkedBufferSize;
+  }
+
+  /**
+   * Get the number of objects a directory rename moves at the same time
+   *
+   * @return a positive number
+   */
+  public int getRenameThreads() {
+    return renameThreads;
+  }
+
+  /**
+   * Get the number of times the move of an object in a directory rename
+   * is retried after a failure
+   *
+   * @return a number of retries, possibly 0
+   */
+  public int getRenameRetries() {
+    return renameRetries;
+  }
+
+  /**
+   * Should recursive deletes use the bulk middleware
+   *
+   * @return true if bulk deletes are to be tried
+   */
+  public boolean isBulkDelete() {
+    return bulkDelete;
+  }
+
+  /**
+   * Get the maximum number of objects in a bulk delete request
+   *
+   * @return a positive number
+   */
+  public int getBulkDeleteSize() {
+    return bulkDeleteSize;
+  }
+
+  /**
+   * Get the number of objects a recursive delete deletes at the same time
+   * when the bulk middleware is not available
+   *
+   * @return a positive number
+   */
+  public int getDeleteThreads() {
+    return deleteThreads;
+  }
+
+  /**
+   * Get the lifetime of cached object locations
+   *
+   * @return a time in milliseconds; 0 if locations are not cached
+   */
+  public long getLocationCacheTTL() {
+    return locationCacheTTL;
+  }
+
+  /**
+   * Get the maximum number of objects whose locations are cached
+   *
+   * @return a positive number
+   */
+  public int getLocationCacheSize() {
+    return locationCacheSize;
+  }
+
+  /**
+   * Get the maximum number of objects located by a single request
+   * to the object endpoint
+   *
+   * @return a positive number
+   */
+  public int getLocationBatchSize() {
+    return locationBatchSize;
+  }
+
+  /**
+   * Get the path or URL of the object ring to locate objects with
+   *
+   * @return the ring, or null if the object endpoint is to be asked
+   */
+  public String getLocationRing() {
+    return locationRing;
+  }
+
+  /**
+   * Get the hash path suffix of the cluster, with which object
+   * names are hashed onto its ring
+   *
+   * @return the suffix; empty if none was set
+   */
+  public String getLocationRingHashSuffix() {
+    return locationRingHashSuffix;
+  }
+
+  /**
+   * Get the hash path prefix of the cluster, with which object
+   * names are hashed onto its ring
+   *
+   * @return the prefix; empty if none was set
+   */
+  public String getLocationRingHashPrefix() {
+    return locationRingHashPrefix;
+  }
+
+  /**
+   * Get the name of the account holding the containers: the last
+   * element of the path of the storage URL. Authenticates if needed.
+   *
+   * @return the account name, such as <code>AUTH_tenant</code>
+   * @throws IOException if authentication failed
+   */
+  public String getAccount() throws IOException {
+    authIfNeeded();
+    String path = getEndpointURI().getPath();
+    if (path.endsWith("/")) {
+      path = path.substring(0, path.length() - 1);
+    }
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  /**
+   * Get the maximum number of segments an output stream uploads
+   * in the background at the same time
+   *
+   * @return a positive number
+   */
+  public int getUploadParallelism() {
+    return uploadParallelism;
+  }
+
+  /**
+   * Get the maximum size of the segments being uploaded in the background
+   * for all output streams of a filesystem
+   *
+   * @return a size in bytes
+   */
+  public long getUploadBufferLimit() {
+    return uploadBufferLimit;
+  }
+
+  /**
+   * Get where output streams buffer data before it is uploaded
+   *
+   * @return one of {@link SwiftProtocolConstants#OUTPUT_BUFFER_DISK},
+   *         {@link SwiftProtocolConstants#OUTPUT_BUFFER_HEAP} and
+   *         {@link SwiftProtocolConstants#OUTPUT_BUFFER_DIRECT}
+   */
+  public String getOutputBuffer() {
+    return outputBuffer;
+  }
+
+  /**
+   * Get the direct memory which all output streams of the JVM may use
+   * to buffer data
+   *
+   * @return a size in bytes
+   */
+  public long getDirectBufferMemory() {
+    return directBufferMemory;
+  }
+
+  /**
+   * Query whether the segments of large files are joined up by static
+   * large object manifests rather than dynamic ones
+   *
+   * @return true for static large objects
+   */
+  public boolean isStaticLargeObjects() {
+    return staticLargeObjects;
+  }
+
+  /**
+   * Get the policy deciding which reads ask for the newest copy of an object
+   *
+   * @return the consistency policy
+   */
+  public SwiftConsistencyPolicy getConsistencyPolicy() {
+    return consistencyPolicy;
+  }
 }
\ No newline at end of file
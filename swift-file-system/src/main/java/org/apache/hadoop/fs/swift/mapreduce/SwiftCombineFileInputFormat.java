@@ -0,0 +1,361 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.mapreduce;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.fs.swift.util.SwiftUtils;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link CombineFileInputFormat} which packs many small objects into
+ * each split, grouping them by the storage nodes which hold them.
+ * <p/>
+ * The splits are planned from a single deep listing of each input path,
+ * made with <code>FileSystem.listFiles()</code>; on Swift that listing
+ * is paged, and the files of each page are located together, so
+ * planning costs a few requests rather than several per file. Files
+ * and directories whose names start with "_" or "." are skipped, as
+ * by <code>FileInputFormat</code>. A file written in partitions is read
+ * as the one file it is, not as its partitions, which are listed under
+ * it.
+ * <p/>
+ * The blocks of the files -one per object, or per segment of a large
+ * file- are first shared out between the nodes holding them, each node
+ * in turn taking a split of up to the maximum split size of its own
+ * blocks, for as long as it has enough of them to make at least half a
+ * split. What is left is then packed into splits in listing order,
+ * located on the nodes holding most of their data. The maximum split
+ * size is that of <code>FileInputFormat</code>, or
+ * {@link #DEFAULT_SPLIT_SIZE} if none is set.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public abstract class SwiftCombineFileInputFormat<K, V>
+        extends CombineFileInputFormat<K, V> {
+  private static final Log LOG =
+          LogFactory.getLog(SwiftCombineFileInputFormat.class);
+
+  /**
+   * Maximum size of a split if none is configured: {@value}
+   */
+  public static final long DEFAULT_SPLIT_SIZE = 128 * 1024 * 1024;
+
+  /**
+   * Maximum number of locations given for a split of left over blocks
+   */
+  private static final int MAX_SPLIT_LOCATIONS = 3;
+
+  @Override
+  public List<InputSplit> getSplits(JobContext job) throws IOException {
+    Configuration conf = job.getConfiguration();
+    long maxSize = conf.getLong(SPLIT_MAXSIZE, DEFAULT_SPLIT_SIZE);
+    if (maxSize <= 0) {
+      throw new IOException("Invalid " + SPLIT_MAXSIZE + ": " + maxSize);
+    }
+    List<Block> blocks = listBlocks(job);
+    List<InputSplit> splits = new ArrayList<InputSplit>();
+
+    //the blocks of each node, in listing order
+    Map<String, NodeBlocks> nodes = new LinkedHashMap<String, NodeBlocks>();
+    for (Block block : blocks) {
+      for (String host : block.hosts) {
+        NodeBlocks node = nodes.get(host);
+        if (node == null) {
+          node = new NodeBlocks();
+          nodes.put(host, node);
+        }
+        node.blocks.add(block);
+      }
+    }
+
+    //a split for each node in turn, so that the nodes holding replicas
+    //of the same blocks share them out
+    List<String> active = new LinkedList<String>(nodes.keySet());
+    while (!active.isEmpty()) {
+      for (Iterator<String> it = active.iterator(); it.hasNext(); ) {
+        String host = it.next();
+        List<Block> split = nodes.get(host).take(maxSize);
+        if (split == null) {
+          it.remove();
+        } else {
+          splits.add(createSplit(split, new String[]{host}));
+        }
+      }
+    }
+
+    //then pack what is left
+    List<Block> split = new ArrayList<Block>();
+    long size = 0;
+    for (Block block : blocks) {
+      if (block.assigned) {
+        continue;
+      }
+      if (!split.isEmpty() && size + block.length > maxSize) {
+        splits.add(createSplit(split, getLocations(split)));
+        split = new ArrayList<Block>();
+        size = 0;
+      }
+      split.add(block);
+      size += block.length;
+    }
+    if (!split.isEmpty()) {
+      splits.add(createSplit(split, getLocations(split)));
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Combined " + blocks.size() + " blocks into "
+              + splits.size() + " splits");
+    }
+    return splits;
+  }
+
+  /**
+   * List the blocks of all the input files
+   *
+   * @param job job
+   * @return the blocks, in listing order
+   * @throws IOException on a listing failure
+   */
+  private List<Block> listBlocks(JobContext job) throws IOException {
+    Configuration conf = job.getConfiguration();
+    PathFilter filter = getInputPathFilter(job);
+    List<Block> blocks = new ArrayList<Block>();
+    for (Path dir : getInputPaths(job)) {
+      FileSystem fs = dir.getFileSystem(conf);
+      Path root = fs.makeQualified(dir);
+      List<LocatedFileStatus> listed = new ArrayList<LocatedFileStatus>();
+      RemoteIterator<LocatedFileStatus> files = fs.listFiles(root, true);
+      while (files.hasNext()) {
+        listed.add(files.next());
+      }
+      Map<Path, FileStatus> partitioned = findPartitionedFiles(fs, listed);
+      Set<Path> added = new HashSet<Path>();
+      for (LocatedFileStatus listedFile : listed) {
+        FileStatus file = listedFile;
+        BlockLocation[] locations = listedFile.getBlockLocations();
+        Path manifest = partitioned.containsKey(listedFile.getPath())
+                ? listedFile.getPath()
+                : listedFile.getPath().getParent();
+        if (partitioned.containsKey(manifest)) {
+          //a partitioned file, or one of its partitions: the file is
+          //read once, located partition by partition
+          if (!added.add(manifest)) {
+            continue;
+          }
+          file = partitioned.get(manifest);
+          locations = fs.getFileBlockLocations(file, 0, file.getLen());
+        }
+        Path path = file.getPath();
+        if (file.getLen() == 0 || isHidden(root, path)
+                || (filter != null && !filter.accept(path))) {
+          continue;
+        }
+        if (locations == null || locations.length == 0) {
+          blocks.add(new Block(path, 0, file.getLen(), new String[0]));
+        } else if (!isSplitable(job, path)) {
+          blocks.add(new Block(path, 0, file.getLen(),
+                  locations[0].getHosts()));
+        } else {
+          for (BlockLocation location : locations) {
+            blocks.add(new Block(path, location.getOffset(),
+                    location.getLength(), location.getHosts()));
+          }
+        }
+      }
+    }
+    return blocks;
+  }
+
+  /**
+   * Find the files of a listing which are made up of partitions.
+   * A deep listing returns the partitions of such a file as files under
+   * it, while the file itself is either left out, as a dynamic large
+   * object's empty manifest looks like a directory, or listed as well.
+   * The parent of every file listed is therefore looked at, and those
+   * which turn out to be files are partitioned files. This costs a
+   * HEAD per directory of the input.
+   *
+   * @param fs     filesystem
+   * @param listed files listed
+   * @return the status of each partitioned file, by path
+   * @throws IOException on a failure
+   */
+  private static Map<Path, FileStatus> findPartitionedFiles(
+          FileSystem fs, List<LocatedFileStatus> listed) throws IOException {
+    Map<Path, FileStatus> partitioned = new HashMap<Path, FileStatus>();
+    Set<Path> checked = new HashSet<Path>();
+    for (LocatedFileStatus file : listed) {
+      Path parent = file.getPath().getParent();
+      if (parent == null || !checked.add(parent)) {
+        continue;
+      }
+      try {
+        FileStatus status = fs.getFileStatus(parent);
+        if (!SwiftUtils.isDirectory(status)) {
+          partitioned.put(parent, status);
+        }
+      } catch (FileNotFoundException e) {
+        //an implicit directory
+      }
+    }
+    return partitioned;
+  }
+
+  /**
+   * Is a file, or any directory between it and the input path,
+   * hidden
+   *
+   * @param root input path
+   * @param path path of the file
+   * @return true if the file is to be skipped
+   */
+  private static boolean isHidden(Path root, Path path) {
+    for (Path p = path; p != null && !p.equals(root); p = p.getParent()) {
+      String name = p.getName();
+      if (name.startsWith("_") || name.startsWith(".")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Get the locations of a split of blocks from different nodes: the
+   * nodes holding most of its data
+   *
+   * @param split blocks of the split
+   * @return the locations
+   */
+  private static String[] getLocations(List<Block> split) {
+    final Map<String, Long> bytes = new HashMap<String, Long>();
+    for (Block block : split) {
+      for (String host : block.hosts) {
+        Long held = bytes.get(host);
+        bytes.put(host, (held == null ? 0 : held) + block.length);
+      }
+    }
+    List<String> hosts = new ArrayList<String>(bytes.keySet());
+    Collections.sort(hosts, new Comparator<String>() {
+      @Override
+      public int compare(String h1, String h2) {
+        return bytes.get(h2).compareTo(bytes.get(h1));
+      }
+    });
+    hosts = hosts.subList(0, Math.min(MAX_SPLIT_LOCATIONS, hosts.size()));
+    return hosts.toArray(new String[hosts.size()]);
+  }
+
+  private static CombineFileSplit createSplit(List<Block> split,
+                                              String[] locations) {
+    Path[] paths = new Path[split.size()];
+    long[] offsets = new long[split.size()];
+    long[] lengths = new long[split.size()];
+    for (int i = 0; i < paths.length; i++) {
+      Block block = split.get(i);
+      paths[i] = block.path;
+      offsets[i] = block.offset;
+      lengths[i] = block.length;
+    }
+    return new CombineFileSplit(paths, offsets, lengths, locations);
+  }
+
+  /**
+   * A block of a file, held by some nodes
+   */
+  private static final class Block {
+    private final Path path;
+    private final long offset;
+    private final long length;
+    private final String[] hosts;
+    private boolean assigned;
+
+    private Block(Path path, long offset, long length, String[] hosts) {
+      this.path = path;
+      this.offset = offset;
+      this.length = length;
+      this.hosts = hosts;
+    }
+  }
+
+  /**
+   * The blocks of a node, which are taken a split at a time
+   */
+  private static final class NodeBlocks {
+    private final List<Block> blocks = new ArrayList<Block>();
+    private int next;
+
+    /**
+     * Take the next split of unassigned blocks
+     *
+     * @param maxSize maximum size of the split
+     * @return the blocks of the split, or null if what is left
+     *         would make less than half a split
+     */
+    private List<Block> take(long maxSize) {
+      List<Block> split = new ArrayList<Block>();
+      long size = 0;
+      int end = next;
+      for (; end < blocks.size(); end++) {
+        Block block = blocks.get(end);
+        if (block.assigned) {
+          continue;
+        }
+        if (!split.isEmpty() && size + block.length > maxSize) {
+          break;
+        }
+        split.add(block);
+        size += block.length;
+      }
+      if (split.isEmpty() || (end == blocks.size() && size < maxSize / 2)) {
+        return null;
+      }
+      for (Block block : split) {
+        block.assigned = true;
+      }
+      next = end;
+      return split;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.mapreduce;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileRecordReader;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.LineRecordReader;
+
+import java.io.IOException;
+
+/**
+ * The {@link SwiftCombineFileInputFormat} of text files, reading each
+ * file of a split as <code>TextInputFormat</code> would: keys are the
+ * offsets of the lines in their files, values the lines.
+ */
+public class SwiftCombineTextInputFormat
+        extends SwiftCombineFileInputFormat<LongWritable, Text> {
+
+  @Override
+  public RecordReader<LongWritable, Text> createRecordReader(
+          InputSplit split, TaskAttemptContext context) throws IOException {
+    return new CombineFileRecordReader<LongWritable, Text>(
+            (CombineFileSplit) split, context, FileLineRecordReader.class);
+  }
+
+  /**
+   * Compressed files cannot be split
+   */
+  @Override
+  protected boolean isSplitable(JobContext context, Path file) {
+    return new CompressionCodecFactory(context.getConfiguration())
+            .getCodec(file) == null;
+  }
+
+  /**
+   * Reads the lines of one file of a combined split
+   */
+  public static class FileLineRecordReader
+          extends RecordReader<LongWritable, Text> {
+    private final LineRecordReader reader = new LineRecordReader();
+    private final FileSplit fileSplit;
+
+    /**
+     * Create a reader of a file of a split; called by
+     * {@link CombineFileRecordReader}
+     *
+     * @param split   combined split
+     * @param context task context
+     * @param index   index of the file in the split
+     */
+    public FileLineRecordReader(CombineFileSplit split,
+                                TaskAttemptContext context,
+                                Integer index) {
+      fileSplit = new FileSplit(split.getPath(index),
+              split.getOffset(index),
+              split.getLength(index),
+              new String[0]);
+    }
+
+    @Override
+    public void initialize(InputSplit split, TaskAttemptContext context)
+            throws IOException {
+      reader.initialize(fileSplit, context);
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException {
+      return reader.nextKeyValue();
+    }
+
+    @Override
+    public LongWritable getCurrentKey() {
+      return reader.getCurrentKey();
+    }
+
+    @Override
+    public Text getCurrentValue() {
+      return reader.getCurrentValue();
+    }
+
+    @Override
+    public float getProgress() throws IOException {
+      return reader.getProgress();
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+}
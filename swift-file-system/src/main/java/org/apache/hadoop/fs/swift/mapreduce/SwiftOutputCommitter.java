@@ -0,0 +1,484 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.mapreduce;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.snative.SwiftNativeFileSystem;
+import org.apache.hadoop.fs.swift.snative.SwiftNativeFileSystemStore;
+import org.apache.hadoop.fs.swift.snative.SwiftSegment;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An output committer for jobs writing to Swift which never renames
+ * anything.
+ * <p/>
+ * {@link FileOutputCommitter} has each task attempt write under
+ * <code>_temporary</code>, then renames the output of the attempts
+ * which commit into place. Swift can only rename by copying every object,
+ * so committing costs as much as writing the output again.
+ * <p/>
+ * Here each task attempt writes its files under
+ * <code>_segments/<i>attempt</i></code> in the output directory.
+ * Committing the task writes a static large object manifest at the final
+ * name of each file, which references its data where it is, and a small
+ * record of the files it committed. Committing the job deletes the data of
+ * any attempt which did not commit, and aborting a task or job deletes
+ * what it wrote, with bulk deletes where the store supports them. None of
+ * this depends on the size of the output.
+ * <p/>
+ * The segments directory holds the data of the output, so it must stay
+ * for as long as the output is used; like <code>_SUCCESS</code>, it is
+ * hidden from input formats by its name. As the manifests reference their
+ * data by path, the output is to be read where it was written: copy it
+ * elsewhere rather than renaming it.
+ * <p/>
+ * This needs static large objects to be configured for the filesystem.
+ * Without them, and on any other filesystem, this committer behaves as
+ * {@link FileOutputCommitter}.
+ * <p/>
+ * A task commit fails, to be retried, if the partitions listed for a
+ * file do not add up to its length: the container listing is only
+ * eventually consistent, and a manifest built from a stale listing
+ * would reference the wrong data.
+ */
+public class SwiftOutputCommitter extends FileOutputCommitter {
+  private static final Log LOG =
+          LogFactory.getLog(SwiftOutputCommitter.class);
+
+  /**
+   * Directory under the output holding the data written by task attempts
+   */
+  public static final String SEGMENTS_DIR_NAME = "_segments";
+
+  /**
+   * Directory under the segments directory holding the records of the
+   * task attempts which have committed
+   */
+  public static final String COMMITTED_DIR_NAME = "_committed";
+
+  private final Path outputPath;
+
+  /**
+   * the Swift filesystem of the output; null if the output is not
+   * in Swift, or the filesystem does not use static large objects
+   */
+  private final SwiftNativeFileSystem swift;
+
+  /**
+   * where a task attempt writes its files; null for a job committer
+   */
+  private final Path workPath;
+
+  /**
+   * Create a committer for a task attempt
+   *
+   * @param outputPath output directory of the job
+   * @param context    task attempt
+   * @throws IOException on a failure to bind to the filesystem
+   */
+  public SwiftOutputCommitter(Path outputPath, TaskAttemptContext context)
+          throws IOException {
+    super(outputPath, context);
+    this.outputPath = qualify(outputPath, context);
+    this.swift = bind(this.outputPath, context);
+    this.workPath = this.outputPath == null
+            ? null
+            : getAttemptPath(this.outputPath, context);
+  }
+
+  /**
+   * Create a committer for a job
+   *
+   * @param outputPath output directory of the job
+   * @param context    job
+   * @throws IOException on a failure to bind to the filesystem
+   */
+  public SwiftOutputCommitter(Path outputPath, JobContext context)
+          throws IOException {
+    super(outputPath, context);
+    this.outputPath = qualify(outputPath, context);
+    this.swift = bind(this.outputPath, context);
+    this.workPath = null;
+  }
+
+  private static Path qualify(Path path, JobContext context)
+          throws IOException {
+    return path == null
+            ? null
+            : path.getFileSystem(context.getConfiguration()).makeQualified(path);
+  }
+
+  private static SwiftNativeFileSystem bind(Path path, JobContext context)
+          throws IOException {
+    if (path == null) {
+      return null;
+    }
+    FileSystem fs = path.getFileSystem(context.getConfiguration());
+    if (!(fs instanceof SwiftNativeFileSystem)) {
+      return null;
+    }
+    SwiftNativeFileSystem swift = (SwiftNativeFileSystem) fs;
+    if (!swift.getStore().isStaticLargeObjects()) {
+      //the output would be committed as manifests the cluster may not
+      //support, and which the filesystem is not configured to read back
+      LOG.debug("Static large objects are not configured for " + path
+              + "; committing by renaming the output");
+      return null;
+    }
+    return swift;
+  }
+
+  /**
+   * Get the directory a task attempt writes its files under
+   *
+   * @param outputPath output directory of the job
+   * @param context    task attempt
+   * @return the directory
+   */
+  public static Path getAttemptPath(Path outputPath,
+                                    TaskAttemptContext context) {
+    return new Path(getSegmentsPath(outputPath),
+            context.getTaskAttemptID().toString());
+  }
+
+  private static Path getSegmentsPath(Path outputPath) {
+    return new Path(outputPath, SEGMENTS_DIR_NAME);
+  }
+
+  private Path getCommittedPath() {
+    return new Path(getSegmentsPath(outputPath), COMMITTED_DIR_NAME);
+  }
+
+  /**
+   * @return true if the output goes to Swift with static large objects,
+   *         and is handled here
+   */
+  private boolean isSwift() {
+    return swift != null;
+  }
+
+  @Override
+  public Path getWorkPath() throws IOException {
+    return isSwift() ? workPath : super.getWorkPath();
+  }
+
+  @Override
+  public void setupJob(JobContext context) throws IOException {
+    if (!isSwift()) {
+      super.setupJob(context);
+      return;
+    }
+    if (!swift.mkdirs(outputPath)) {
+      LOG.error("Mkdirs failed to create " + outputPath);
+    }
+  }
+
+  @Override
+  public void setupTask(TaskAttemptContext context) throws IOException {
+    if (!isSwift()) {
+      super.setupTask(context);
+    }
+    //the directory of the attempt comes into being as it is written to
+  }
+
+  @Override
+  public boolean needsTaskCommit(TaskAttemptContext context)
+          throws IOException {
+    if (!isSwift()) {
+      return super.needsTaskCommit(context);
+    }
+    return swift.exists(workPath);
+  }
+
+  /**
+   * Commit a task attempt: write the manifest of each of its files at
+   * the final name of the file, then the record of what it committed
+   *
+   * @param context task attempt
+   * @throws IOException on any failure
+   */
+  @Override
+  public void commitTask(TaskAttemptContext context) throws IOException {
+    if (!isSwift()) {
+      super.commitTask(context);
+      return;
+    }
+    if (!swift.exists(workPath)) {
+      LOG.warn("No output found for " + context.getTaskAttemptID());
+      return;
+    }
+    List<String> files = new ArrayList<String>();
+    listFiles(workPath, "", files);
+    SwiftNativeFileSystemStore store = swift.getStore();
+    StringBuilder record = new StringBuilder();
+    for (String file : files) {
+      Path source = new Path(workPath, file);
+      Path dest = new Path(outputPath, file);
+      List<SwiftSegment> segments = store.getSegments(source);
+      if (hasData(segments)) {
+        store.createStaticManifestForPartUpload(dest, segments);
+      } else {
+        //a manifest needs at least one segment
+        swift.create(dest, true).close();
+      }
+      record.append(file).append('\n');
+    }
+    FSDataOutputStream out = swift.create(
+            new Path(getCommittedPath(), context.getTaskAttemptID().toString()),
+            true);
+    try {
+      out.write(record.toString().getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+    LOG.info("Committed " + files.size() + " files of "
+            + context.getTaskAttemptID() + " to " + outputPath);
+  }
+
+  private static boolean hasData(List<SwiftSegment> segments) {
+    for (SwiftSegment segment : segments) {
+      if (segment.getSize() > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * List the files under a directory. An entry which a listing reports
+   * as a directory may be the manifest of a partitioned file, so its
+   * status is checked before descending into it.
+   *
+   * @param dir    directory
+   * @param prefix path of the directory relative to the attempt
+   * @param files  list to add the relative paths of the files to
+   * @throws IOException on a failure to list
+   */
+  private void listFiles(Path dir, String prefix, List<String> files)
+          throws IOException {
+    for (FileStatus entry : swift.listStatus(dir)) {
+      if (isSelf(entry, dir)) {
+        continue;
+      }
+      String name = prefix + entry.getPath().getName();
+      if (entry.isDir()) {
+        entry = swift.getFileStatus(entry.getPath());
+      }
+      if (entry.isDir()) {
+        listFiles(entry.getPath(), name + Path.SEPARATOR, files);
+      } else {
+        files.add(name);
+      }
+    }
+  }
+
+  /**
+   * Test for a listing including the directory listed
+   *
+   * @param entry entry of the listing
+   * @param dir   directory listed
+   * @return true if the entry is the directory
+   */
+  private boolean isSelf(FileStatus entry, Path dir) {
+    return swift.makeQualified(entry.getPath())
+            .equals(swift.makeQualified(dir));
+  }
+
+  /**
+   * Abort a task attempt by deleting what it wrote
+   *
+   * @param context task attempt
+   * @throws IOException on a failure to delete
+   */
+  @Override
+  public void abortTask(TaskAttemptContext context) throws IOException {
+    if (!isSwift()) {
+      super.abortTask(context);
+      return;
+    }
+    swift.delete(workPath, true);
+  }
+
+  /**
+   * Commit the job: delete the data of the task attempts which did not
+   * commit, and the records of those which did, then mark the job as
+   * successful
+   *
+   * @param context job
+   * @throws IOException on any failure
+   */
+  @Override
+  public void commitJob(JobContext context) throws IOException {
+    if (!isSwift()) {
+      super.commitJob(context);
+      return;
+    }
+    Set<String> committed = listCommitted();
+    for (FileStatus attempt : listAttempts()) {
+      String name = attempt.getPath().getName();
+      //the listing of records may lag: only delete what is surely not
+      //committed, as the manifests of a committed attempt reference its data
+      if (!committed.contains(name) && !isCommitted(name)) {
+        LOG.info("Deleting the output of uncommitted task attempt " + name);
+        swift.delete(attempt.getPath(), true);
+      }
+    }
+    swift.delete(getCommittedPath(), true);
+    if (context.getConfiguration().getBoolean(
+            SUCCESSFUL_JOB_OUTPUT_DIR_MARKER, true)) {
+      swift.create(new Path(outputPath, SUCCEEDED_FILE_NAME), true).close();
+    }
+  }
+
+  /**
+   * Abort the job: delete the files committed by its tasks, and all the
+   * data its task attempts wrote
+   *
+   * @param context job
+   * @param state   final state of the job
+   * @throws IOException on a failure to delete
+   */
+  @Override
+  public void abortJob(JobContext context, JobStatus.State state)
+          throws IOException {
+    if (!isSwift()) {
+      super.abortJob(context, state);
+      return;
+    }
+    Set<String> committed = listCommitted();
+    for (FileStatus attempt : listAttempts()) {
+      String name = attempt.getPath().getName();
+      if (!committed.contains(name) && isCommitted(name)) {
+        //committed, but missing from the listing of records
+        committed.add(name);
+      }
+    }
+    for (String attempt : committed) {
+      for (String file : readRecord(new Path(getCommittedPath(), attempt))) {
+        swift.delete(new Path(outputPath, file), false);
+      }
+    }
+    swift.delete(getSegmentsPath(outputPath), true);
+  }
+
+  @Override
+  @Deprecated
+  public void cleanupJob(JobContext context) throws IOException {
+    if (!isSwift()) {
+      super.cleanupJob(context);
+    }
+    //everything is tidied up by the commit or abort of the job
+  }
+
+  @Override
+  public boolean isRecoverySupported() {
+    return !isSwift() && super.isRecoverySupported();
+  }
+
+  /**
+   * @return the names of the task attempts which have committed
+   * @throws IOException on a failure to list
+   */
+  private Set<String> listCommitted() throws IOException {
+    Set<String> committed = new HashSet<String>();
+    try {
+      for (FileStatus record : swift.listStatus(getCommittedPath())) {
+        committed.add(record.getPath().getName());
+      }
+    } catch (FileNotFoundException e) {
+      //nothing has committed
+    }
+    return committed;
+  }
+
+  /**
+   * @return the directories of the task attempts which wrote output
+   * @throws IOException on a failure to list
+   */
+  private List<FileStatus> listAttempts() throws IOException {
+    List<FileStatus> attempts = new ArrayList<FileStatus>();
+    Path segments = getSegmentsPath(outputPath);
+    if (swift.exists(segments)) {
+      for (FileStatus attempt : swift.listStatus(segments)) {
+        if (!isSelf(attempt, segments)
+                && !COMMITTED_DIR_NAME.equals(attempt.getPath().getName())) {
+          attempts.add(attempt);
+        }
+      }
+    }
+    return attempts;
+  }
+
+  /**
+   * Check for the record of a task attempt with a HEAD of the newest
+   * copy of it, rather than trusting a listing, which may lag behind
+   * the commit of the task
+   *
+   * @param attempt name of the task attempt
+   * @return true if the attempt has committed
+   * @throws IOException on a failure to check
+   */
+  private boolean isCommitted(String attempt) throws IOException {
+    return swift.getStore().newestObjectExists(
+            new Path(getCommittedPath(), attempt));
+  }
+
+  /**
+   * Read the record of the files a task attempt committed
+   *
+   * @param record path of the record
+   * @return the paths of the files, relative to the output directory
+   * @throws IOException on a failure to read
+   */
+  private List<String> readRecord(Path record) throws IOException {
+    List<String> files = new ArrayList<String>();
+    FSDataInputStream in = swift.open(record);
+    try {
+      BufferedReader reader =
+              new BufferedReader(new InputStreamReader(in, "UTF-8"));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isEmpty()) {
+          files.add(line);
+        }
+      }
+    } finally {
+      in.close();
+    }
+    return files;
+  }
+}
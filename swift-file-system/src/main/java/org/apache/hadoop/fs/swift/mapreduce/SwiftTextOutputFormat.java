@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.mapreduce;
+
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+import java.io.IOException;
+
+/**
+ * A {@link TextOutputFormat} whose output is committed by a
+ * {@link SwiftOutputCommitter}. Any other subclass of
+ * <code>FileOutputFormat</code> can use the committer the same way,
+ * by overriding {@link #getOutputCommitter(TaskAttemptContext)}.
+ */
+public class SwiftTextOutputFormat<K, V> extends TextOutputFormat<K, V> {
+
+  private SwiftOutputCommitter committer;
+
+  @Override
+  public synchronized OutputCommitter getOutputCommitter(
+          TaskAttemptContext context) throws IOException {
+    if (committer == null) {
+      committer = new SwiftOutputCommitter(getOutputPath(context), context);
+    }
+    return committer;
+  }
+}
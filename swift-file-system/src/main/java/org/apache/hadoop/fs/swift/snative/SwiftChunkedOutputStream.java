@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.exceptions.SwiftChecksumMismatchException;
+import org.apache.hadoop.fs.swift.exceptions.SwiftConnectionException;
+import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+import org.apache.hadoop.fs.swift.http.SwiftProtocolConstants;
+import org.apache.hadoop.fs.swift.util.SwiftUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Output stream which sends data straight to Swift as it is written,
+ * in a PUT with chunked transfer encoding, so that nothing is staged on
+ * disk or in memory and close() only has to end the request.
+ * <p/>
+ * The PUT starts with the first write, or on close() if nothing was
+ * written, and reads the data through a small {@link SwiftRingBuffer}.
+ * It holds a pooled connection until the stream is closed, so if no
+ * connection is free the write fails at once rather than waiting for
+ * one while other streams are stalled in turn. The MD5 of the data is
+ * computed as it is written and checked against the ETag of the
+ * response, as it cannot be sent ahead of the data.
+ * <p/>
+ * Once a file outgrows the segment size, the object written so far is
+ * copied by the server to the first segment of a multi-part upload,
+ * the rest of the file is streamed into further segments, and close()
+ * writes the manifest over the object.
+ */
+class SwiftChunkedOutputStream extends OutputStream {
+  private static final Log LOG =
+          LogFactory.getLog(SwiftChunkedOutputStream.class);
+
+  private final SwiftNativeFileSystemStore nativeStore;
+  private final String key;
+  private final Path path;
+  private final ExecutorService uploader;
+  private final int bufferSize;
+  private final long filePartSize;
+  private final MessageDigest md5 = SwiftUtils.newMD5();
+  private final byte[] oneByte = new byte[1];
+
+  /**
+   * The buffer the current upload reads from; null until the first
+   * upload starts
+   */
+  private SwiftRingBuffer ring;
+
+  /**
+   * The current upload, returning the ETag of its object
+   */
+  private Future<String> upload;
+
+  /**
+   * Bytes sent in the current upload
+   */
+  private long written;
+
+  /**
+   * Number of the current segment; 0 while the file is a single object
+   */
+  private int partNumber;
+
+  /**
+   * The segments uploaded so far, in order
+   */
+  private final List<SwiftSegment> segments = new ArrayList<SwiftSegment>();
+
+  private boolean closed;
+
+  /**
+   * The failure of an earlier write, which close() rethrows
+   */
+  private IOException failure;
+
+  /**
+   * Checksum of the file written; null until it is closed
+   */
+  private SwiftFileChecksum checksum;
+
+  SwiftChunkedOutputStream(SwiftNativeFileSystemStore nativeStore,
+                           String key) {
+    this.nativeStore = nativeStore;
+    this.key = key;
+    this.path = new Path(key);
+    this.uploader = nativeStore.getSegmentUploader();
+    this.bufferSize = nativeStore.getChunkedBufferSize();
+    this.filePartSize = nativeStore.getSegmentSize();
+  }
+
+  /**
+   * Start the upload of the current object or segment
+   *
+   * @throws SwiftConnectionException if no pooled connection is free
+   */
+  private void startUpload() throws SwiftConnectionException {
+    if (!nativeStore.hasFreeConnection()) {
+      throw new SwiftConnectionException("No free connection to upload "
+              + key + " with; increase "
+              + SwiftProtocolConstants.SWIFT_SERVICE_PREFIX + "*"
+              + SwiftProtocolConstants.DOT_HTTP_MAX_CONNECTIONS_PER_ROUTE
+              + " to at least the number of files written at once");
+    }
+    final SwiftRingBuffer current = new SwiftRingBuffer(bufferSize);
+    final int number = partNumber;
+    ring = current;
+    written = 0;
+    upload = uploader.submit(new Callable<String>() {
+      @Override
+      public String call() throws IOException {
+        InputStream in = current.getInputStream();
+        return number == 0
+                ? nativeStore.uploadFileChunked(path, in)
+                : nativeStore.uploadFilePartChunked(path, number, in);
+      }
+    });
+  }
+
+  /**
+   * End the data of the current upload and wait for it to complete
+   *
+   * @return the MD5 of the data, which the ETag has been checked against
+   * @throws IOException if the upload failed, or the data Swift received
+   *                     does not match the MD5
+   */
+  private String finishUpload() throws IOException {
+    ring.close();
+    String etag = awaitUpload();
+    String digest = SwiftUtils.toHex(md5.digest());
+    if (etag != null && !digest.equalsIgnoreCase(etag)) {
+      if (partNumber == 0) {
+        //do not leave a corrupt file behind
+        nativeStore.deleteObject(path);
+      }
+      throw new SwiftChecksumMismatchException("Upload of " + key
+              + " sent MD5 " + digest + " but the object has ETag " + etag);
+    }
+    return digest;
+  }
+
+  /**
+   * Wait for the current upload
+   *
+   * @return the ETag it returned
+   * @throws IOException if it failed
+   */
+  private String awaitUpload() throws IOException {
+    try {
+      return upload.get();
+    } catch (InterruptedException e) {
+      ring.abort();
+      throw (IOException) new InterruptedIOException(
+              "Interrupted while uploading " + key).initCause(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new SwiftException("Failed to upload " + key, cause);
+    }
+  }
+
+  /**
+   * Complete the current object or segment and start the next segment.
+   * The first time, the object is copied to the first segment.
+   *
+   * @throws IOException on any failure
+   */
+  private void nextSegment() throws IOException {
+    String digest = finishUpload();
+    if (partNumber == 0) {
+      partNumber = 1;
+      nativeStore.copyToFilePart(path, partNumber);
+    }
+    segments.add(new SwiftSegment(nativeStore.toPartPath(path, partNumber),
+            digest, written));
+    partNumber++;
+    startUpload();
+  }
+
+  /**
+   * check that the output stream is open
+   *
+   * @throws SwiftException if it is not
+   */
+  private void verifyOpen() throws SwiftException {
+    if (closed) {
+      throw new SwiftException("Output stream is closed");
+    }
+  }
+
+  @Override
+  public synchronized void write(int b) throws IOException {
+    oneByte[0] = (byte) b;
+    write(oneByte, 0, 1);
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) throws IOException {
+    if (off < 0 || len < 0 || (off + len) > b.length) {
+      throw new IndexOutOfBoundsException("Invalid offset/length for write");
+    }
+    verifyOpen();
+    if (failure != null) {
+      throw failure;
+    }
+    try {
+      if (ring == null) {
+        startUpload();
+      }
+      while (len > 0) {
+        if (written >= filePartSize) {
+          nextSegment();
+        }
+        int count = (int) Math.min(len, filePartSize - written);
+        md5.update(b, off, count);
+        try {
+          ring.write(b, off, count);
+        } catch (IOException e) {
+          //the upload has ended early: report why
+          awaitUpload();
+          throw e;
+        }
+        written += count;
+        off += count;
+        len -= count;
+      }
+    } catch (IOException e) {
+      failure = e;
+      if (ring != null) {
+        ring.abort();
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (failure != null) {
+      throw failure;
+    }
+    if (ring == null) {
+      //nothing was written: upload an empty file
+      startUpload();
+    }
+    String digest = finishUpload();
+    if (partNumber == 0) {
+      checksum = SwiftFileChecksum.ofObject(digest);
+      return;
+    }
+    segments.add(new SwiftSegment(nativeStore.toPartPath(path, partNumber),
+            digest, written));
+    if (nativeStore.isStaticLargeObjects()) {
+      nativeStore.createStaticManifestForPartUpload(path, segments);
+    } else {
+      nativeStore.createManifestForPartUpload(path);
+    }
+    List<String> md5s = new ArrayList<String>(segments.size());
+    for (SwiftSegment segment : segments) {
+      md5s.add(segment.getEtag());
+    }
+    checksum = SwiftFileChecksum.ofSegments(md5s);
+  }
+
+  @Override
+  protected void finalize() throws Throwable {
+    if (!closed && ring != null) {
+      LOG.warn("stream not closed; abandoning the upload of " + key);
+      ring.abort();
+    }
+  }
+
+  /**
+   * Get the checksum of the file, from the MD5s computed as it was
+   * written; this matches the ETag Swift gives the file
+   *
+   * @return the checksum; null if the stream has not been closed
+   *         successfully
+   */
+  synchronized SwiftFileChecksum getFileChecksum() {
+    return checksum;
+  }
+}
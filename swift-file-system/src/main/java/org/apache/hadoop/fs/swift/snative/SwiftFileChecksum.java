@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.swift.util.SwiftUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The checksum of a file as Swift computes its ETag: the MD5 of the data
+ * of a single object, or for a file uploaded in segments, the MD5 of the
+ * concatenated ETags of the segments. The two have different algorithm
+ * names, as they cannot be compared with each other.
+ */
+public class SwiftFileChecksum extends FileChecksum {
+
+  /**
+   * algorithm of the checksum of a single object: {@value}
+   */
+  public static final String MD5 = "MD5";
+
+  /**
+   * algorithm of the checksum of a file in segments: {@value}
+   */
+  public static final String MD5_OF_MD5S = "MD5-of-MD5s";
+
+  private String algorithm;
+  private byte[] bytes;
+
+  public SwiftFileChecksum() {
+  }
+
+  public SwiftFileChecksum(String algorithm, byte[] bytes) {
+    this.algorithm = algorithm;
+    this.bytes = bytes;
+  }
+
+  /**
+   * Build the checksum of a single object from its MD5
+   *
+   * @param md5 the MD5 in hex
+   * @return the checksum
+   */
+  public static SwiftFileChecksum ofObject(String md5) {
+    return new SwiftFileChecksum(MD5, fromHex(md5));
+  }
+
+  /**
+   * Build the checksum of a dynamic or static large object from the
+   * ETag Swift gives it
+   *
+   * @param etag the ETag, without quotes
+   * @return the checksum
+   */
+  public static SwiftFileChecksum ofLargeObject(String etag) {
+    return new SwiftFileChecksum(MD5_OF_MD5S, fromHex(etag));
+  }
+
+  /**
+   * Build the checksum of a file in segments
+   *
+   * @param md5s the MD5s of the segments in hex, in order
+   * @return the checksum
+   */
+  public static SwiftFileChecksum ofSegments(List<String> md5s) {
+    MessageDigest digest = SwiftUtils.newMD5();
+    try {
+      for (String md5 : md5s) {
+        digest.update(md5.toLowerCase(Locale.ENGLISH).getBytes("US-ASCII"));
+      }
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+    return new SwiftFileChecksum(MD5_OF_MD5S, digest.digest());
+  }
+
+  private static byte[] fromHex(String hex) {
+    if (hex.length() % 2 != 0) {
+      throw new IllegalArgumentException("Not an MD5: " + hex);
+    }
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      int high = Character.digit(hex.charAt(2 * i), 16);
+      int low = Character.digit(hex.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0) {
+        throw new IllegalArgumentException("Not an MD5: " + hex);
+      }
+      bytes[i] = (byte) ((high << 4) | low);
+    }
+    return bytes;
+  }
+
+  @Override
+  public String getAlgorithmName() {
+    return algorithm;
+  }
+
+  @Override
+  public int getLength() {
+    return bytes.length;
+  }
+
+  @Override
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeUTF(algorithm);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    algorithm = in.readUTF();
+    bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+  }
+
+  @Override
+  public String toString() {
+    return algorithm + ":" + SwiftUtils.toHex(bytes);
+  }
+}
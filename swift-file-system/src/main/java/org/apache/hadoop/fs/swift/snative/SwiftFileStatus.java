@@ -28,6 +28,11 @@ import org.apache.hadoop.fs.permission.FsPermission;
  */
 public class SwiftFileStatus extends FileStatus {
 
+  /**
+   * ETag of the object, if known
+   */
+  private String etag;
+
   public SwiftFileStatus() {
   }
 
@@ -94,4 +99,23 @@ public class SwiftFileStatus extends FileStatus {
   public boolean isDirectory() {
     return isDir();
   }
+
+  /**
+   * Get the ETag of the object, as listed or returned by a HEAD request.
+   * It changes whenever the object is rewritten.
+   *
+   * @return the ETag or null if it is not known
+   */
+  public String getEtag() {
+    return etag;
+  }
+
+  /**
+   * Set the ETag of the object
+   *
+   * @param etag the ETag; may be null
+   */
+  public void setEtag(String etag) {
+    this.etag = etag;
+  }
 }
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+import org.apache.hadoop.fs.swift.http.ResponseBodyReader;
+import org.apache.hadoop.fs.swift.util.JSONUtil;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes a page of a JSON container listing straight from the response
+ * stream, turning each entry into a {@link SwiftFileStatus} as soon as it
+ * has been read.
+ * <p/>
+ * Neither the response body nor an intermediate list of entries is ever
+ * held in memory; the scheme and authority of the filesystem are parsed
+ * once rather than for each entry, and timestamps are converted without
+ * creating any date objects.
+ */
+final class SwiftListingDecoder implements
+        ResponseBodyReader<SwiftListingDecoder.Page> {
+
+  private final String scheme;
+  private final String authority;
+
+  /**
+   * Create a decoder for listings of a filesystem
+   *
+   * @param fsURI URI of the filesystem
+   */
+  SwiftListingDecoder(URI fsURI) {
+    this.scheme = fsURI.getScheme();
+    this.authority = fsURI.getAuthority();
+  }
+
+  @Override
+  public Page read(InputStream body) throws IOException {
+    JsonParser parser =
+            JSONUtil.getJsonMapper().getJsonFactory().createJsonParser(body);
+    try {
+      return readPage(parser);
+    } catch (JsonParseException e) {
+      throw new SwiftException("Malformed listing: " + e, e);
+    } finally {
+      parser.close();
+    }
+  }
+
+  private Page readPage(JsonParser parser) throws IOException {
+    Page page = new Page();
+    JsonToken token = parser.nextToken();
+    if (token == null) {
+      //an empty body is an empty listing
+      return page;
+    }
+    expect(parser, token, JsonToken.START_ARRAY);
+    while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+      readEntry(parser, page);
+    }
+    expect(parser, token, JsonToken.END_ARRAY);
+    return page;
+  }
+
+  /**
+   * Read one entry of the listing, adding it to the page
+   *
+   * @param parser parser positioned at the start of the entry
+   * @param page   page to add the entry to
+   * @throws IOException parse problems
+   */
+  private void readEntry(JsonParser parser, Page page) throws IOException {
+    String name = null;
+    String subdir = null;
+    long bytes = 0;
+    long lastModified = 0;
+    String hash = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if ("name".equals(field)) {
+        name = parser.getText();
+      } else if ("subdir".equals(field)) {
+        subdir = parser.getText();
+      } else if ("bytes".equals(field)) {
+        bytes = parser.getLongValue();
+      } else if ("hash".equals(field)) {
+        hash = parser.getText();
+      } else if ("last_modified".equals(field)) {
+        lastModified = parseTimestamp(parser.getTextCharacters(),
+                parser.getTextOffset(),
+                parser.getTextLength());
+      } else {
+        parser.skipChildren();
+      }
+    }
+    page.size++;
+    if (name != null) {
+      page.lastMarker = name;
+      //a zero-byte object is how a directory is represented
+      SwiftFileStatus status = new SwiftFileStatus(bytes, bytes == 0, 1, 0,
+              lastModified, toPath(name));
+      status.setEtag(hash);
+      page.entries.add(status);
+    } else {
+      //subdirectories of a shallow listing are not returned, but
+      //they still count towards the page
+      page.lastMarker = subdir;
+    }
+  }
+
+  private Path toPath(String name) {
+    return new Path(scheme, authority,
+            name.startsWith("/") ? name : "/".concat(name));
+  }
+
+  private static void expect(JsonParser parser, JsonToken actual,
+                             JsonToken expected) throws SwiftException {
+    if (actual != expected) {
+      throw new SwiftException("Malformed listing: expected " + expected
+              + " but found " + actual
+              + " at " + parser.getCurrentLocation());
+    }
+  }
+
+  /**
+   * Parse a listing timestamp of the form
+   * <code>2013-02-28T14:07:31.123456</code>, which is always in UTC.
+   * The fraction of a second is optional, and is truncated to milliseconds.
+   *
+   * @param text   characters holding the timestamp
+   * @param offset offset of the timestamp in the array
+   * @param length length of the timestamp
+   * @return the time in milliseconds since the epoch
+   * @throws SwiftException if the timestamp is malformed
+   */
+  static long parseTimestamp(char[] text, int offset, int length)
+          throws SwiftException {
+    if (length < 19
+            || text[offset + 4] != '-'
+            || text[offset + 7] != '-'
+            || text[offset + 10] != 'T'
+            || text[offset + 13] != ':'
+            || text[offset + 16] != ':') {
+      throw badTimestamp(text, offset, length);
+    }
+    int year = digits(text, offset, 4);
+    int month = digits(text, offset + 5, 2);
+    int day = digits(text, offset + 8, 2);
+    int hour = digits(text, offset + 11, 2);
+    int minute = digits(text, offset + 14, 2);
+    int second = digits(text, offset + 17, 2);
+    int millis = 0;
+    int pos = offset + 19;
+    int end = offset + length;
+    if (pos < end && text[pos] == '.') {
+      pos++;
+      int scale = 100;
+      while (pos < end && Character.isDigit(text[pos])) {
+        millis += (text[pos] - '0') * scale;
+        scale /= 10;
+        pos++;
+      }
+    }
+    if ((year | month | day | hour | minute | second) < 0
+            || month < 1 || month > 12 || day < 1 || day > 31
+            || (pos < end && !(pos == end - 1 && text[pos] == 'Z'))) {
+      throw badTimestamp(text, offset, length);
+    }
+    long days = daysSinceEpoch(year, month, day);
+    return ((days * 24 + hour) * 60 + minute) * 60000L
+            + second * 1000L
+            + millis;
+  }
+
+  /**
+   * Get the number of days from 1970-01-01 to a date of the
+   * proleptic Gregorian calendar
+   */
+  private static long daysSinceEpoch(int year, int month, int day) {
+    int y = month <= 2 ? year - 1 : year;
+    int era = (y >= 0 ? y : y - 399) / 400;
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5
+            + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+            + dayOfYear;
+    return era * 146097L + dayOfEra - 719468;
+  }
+
+  /**
+   * Parse a fixed number of decimal digits
+   *
+   * @return the value, or -1 if any of the characters is not a digit
+   */
+  private static int digits(char[] text, int start, int count) {
+    int value = 0;
+    for (int i = start; i < start + count; i++) {
+      char c = text[i];
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private static SwiftException badTimestamp(char[] text, int offset,
+                                             int length) {
+    return new SwiftException("Unparseable timestamp in listing: "
+            + new String(text, offset, length));
+  }
+
+  /**
+   * One page of a listing
+   */
+  static final class Page {
+    private final List<FileStatus> entries = new ArrayList<FileStatus>();
+    private int size;
+    private String lastMarker;
+
+    /**
+     * @return the files and directories in the page
+     */
+    List<FileStatus> getEntries() {
+      return entries;
+    }
+
+    /**
+     * @return the number of entries the server returned, including
+     *         any subdirectory entries which were not turned into statuses
+     */
+    int size() {
+      return size;
+    }
+
+    /**
+     * @return the name to resume the listing after, or null if
+     *         the page is empty
+     */
+    String getLastMarker() {
+      return lastMarker;
+    }
+  }
+}
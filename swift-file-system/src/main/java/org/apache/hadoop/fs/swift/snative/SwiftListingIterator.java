@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+import org.apache.hadoop.fs.swift.util.SwiftObjectPath;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A lazy iterator over a directory listing, which is retrieved from
+ * Swift one page at a time.
+ * <p/>
+ * Each page is requested with the name of the last entry of the previous
+ * page as its <code>marker</code>, until a page comes back empty: a page
+ * shorter than the limit asked for is not the last, as the proxy may cap
+ * pages with its own <code>container_listing_limit</code>. As soon as a
+ * page arrives, the
+ * next one is requested in the background, so that it is (usually) ready
+ * by the time the caller has worked through the current page.
+ * At most two pages are held in memory, however large the directory.
+ */
+class SwiftListingIterator implements RemoteIterator<FileStatus> {
+
+  private final SwiftNativeFileSystemStore store;
+  private final ExecutorService prefetcher;
+  private final SwiftObjectPath path;
+  private final boolean listDeep;
+
+  /**
+   * entries of the current page
+   */
+  private Iterator<FileStatus> page;
+
+  /**
+   * the page being fetched in the background; null if
+   * the current page is the last one
+   */
+  private Future<SwiftListingDecoder.Page> nextPage;
+
+  /**
+   * Create an iterator
+   *
+   * @param store      store to fetch pages and build statuses with
+   * @param prefetcher executor to fetch the following pages in
+   * @param path       path being listed
+   * @param listDeep   is this a deep listing
+   * @param firstPage  the first page of the listing
+   */
+  SwiftListingIterator(SwiftNativeFileSystemStore store,
+                       ExecutorService prefetcher,
+                       SwiftObjectPath path,
+                       boolean listDeep,
+                       SwiftListingDecoder.Page firstPage) {
+    this.store = store;
+    this.prefetcher = prefetcher;
+    this.path = path;
+    this.listDeep = listDeep;
+    acceptPage(firstPage);
+  }
+
+  /**
+   * Make a page the current one, and unless it was empty,
+   * start fetching its successor
+   *
+   * @param current the page
+   */
+  private void acceptPage(SwiftListingDecoder.Page current) {
+    page = current.getEntries().iterator();
+    if (current.size() == 0) {
+      //only an empty page ends the listing
+      nextPage = null;
+    } else {
+      final String marker = current.getLastMarker();
+      nextPage = prefetcher.submit(new Callable<SwiftListingDecoder.Page>() {
+        @Override
+        public SwiftListingDecoder.Page call() throws Exception {
+          return store.listPage(path, listDeep, marker);
+        }
+      });
+    }
+  }
+
+  /**
+   * Wait for the page being fetched in the background
+   *
+   * @return that page
+   * @throws IOException on any failure to retrieve it
+   */
+  private SwiftListingDecoder.Page awaitNextPage() throws IOException {
+    try {
+      return nextPage.get();
+    } catch (InterruptedException e) {
+      nextPage.cancel(true);
+      throw (IOException) new InterruptedIOException(
+              "Interrupted while listing " + path).initCause(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new SwiftException("Failed to list " + path, cause);
+    }
+  }
+
+  @Override
+  public boolean hasNext() throws IOException {
+    //a page may hold nothing but skipped subdirectory entries,
+    //so keep going until an entry turns up or the listing ends
+    while (!page.hasNext()) {
+      if (nextPage == null) {
+        return false;
+      }
+      acceptPage(awaitNextPage());
+    }
+    return true;
+  }
+
+  @Override
+  public FileStatus next() throws IOException {
+    if (!hasNext()) {
+      throw new NoSuchElementException("No more entries in " + path);
+    }
+    return page.next();
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.swift.util.SwiftObjectPath;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of the locations of objects, keyed by object path
+ * and ETag.
+ * <p/>
+ * The storage nodes of an object only change when the ring is
+ * rebalanced, so locations can be kept far longer than file metadata.
+ * An entry is only returned for the ETag it was added with, so
+ * rewriting an object, even through another client, invalidates it.
+ * Entries expire a fixed time after they were added, and the least
+ * recently used entry is evicted when the cache is full.
+ */
+public class SwiftLocationCache {
+
+  private final long ttl;
+  private final Map<SwiftObjectPath, Entry> entries;
+
+  private long hits;
+  private long misses;
+
+  /**
+   * Create a cache
+   *
+   * @param ttl     lifetime of an entry in milliseconds
+   * @param maxSize maximum number of entries
+   */
+  SwiftLocationCache(long ttl, final int maxSize) {
+    this.ttl = ttl;
+    this.entries = new LinkedHashMap<SwiftObjectPath, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(
+              Map.Entry<SwiftObjectPath, Entry> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Get the current time; overridden in tests
+   *
+   * @return the time in milliseconds
+   */
+  protected long now() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Look up the locations of an object
+   *
+   * @param path object path
+   * @param etag ETag of the object; may be null
+   * @return the locations, or null if they are not known for this
+   *         version of the object
+   */
+  synchronized List<URI> get(SwiftObjectPath path, String etag) {
+    Entry entry = entries.get(path);
+    if (entry != null
+            && (entry.expires <= now() || !sameEtag(entry.etag, etag))) {
+      entries.remove(path);
+      entry = null;
+    }
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return entry.locations;
+  }
+
+  /**
+   * Cache the locations of an object
+   *
+   * @param path      object path
+   * @param etag      ETag of the object; may be null
+   * @param locations its locations
+   */
+  synchronized void put(SwiftObjectPath path,
+                        String etag,
+                        List<URI> locations) {
+    entries.put(path, new Entry(etag, locations, now() + ttl));
+  }
+
+  private static boolean sameEtag(String cached, String etag) {
+    return cached == null ? etag == null : cached.equals(etag);
+  }
+
+  /**
+   * @return the number of entries, including any which have expired
+   */
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return lookups answered from the cache
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return lookups which had to go to the server
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("[hits: %d; misses: %d; size: %d]",
+            hits, misses, entries.size());
+  }
+
+  private static final class Entry {
+    private final String etag;
+    private final List<URI> locations;
+    private final long expires;
+
+    private Entry(String etag, List<URI> locations, long expires) {
+      this.etag = etag;
+      this.locations = locations;
+      this.expires = expires;
+    }
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.swift.util.SwiftObjectPath;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of file metadata, keyed by object path.
+ * <p/>
+ * As well as the status of paths which exist, the cache can remember
+ * paths which were found not to exist, so that repeated probes for them
+ * do not each go to the server. The two kinds of entry have their own
+ * lifetimes; a lifetime of 0 disables that kind of entry.
+ * <p/>
+ * Entries expire a fixed time after they were added, and the least
+ * recently used entry is evicted when the cache is full. The cache
+ * only knows about changes made through this client, which must
+ * invalidate the paths it writes to; changes made by anyone else become
+ * visible once the entries for their paths expire.
+ */
+public class SwiftMetadataCache {
+
+  /**
+   * status returned for paths known not to exist
+   */
+  private static final SwiftFileStatus ABSENT = new SwiftFileStatus();
+
+  private final long ttl;
+  private final long negativeTTL;
+  private final Map<SwiftObjectPath, Entry> entries;
+
+  private long hits;
+  private long negativeHits;
+  private long misses;
+
+  /**
+   * Create a cache
+   *
+   * @param ttl         lifetime of the status of a path in milliseconds
+   * @param negativeTTL lifetime of the absence of a path in milliseconds
+   * @param maxSize     maximum number of entries
+   */
+  SwiftMetadataCache(long ttl, long negativeTTL, final int maxSize) {
+    this.ttl = ttl;
+    this.negativeTTL = negativeTTL;
+    this.entries = new LinkedHashMap<SwiftObjectPath, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(
+              Map.Entry<SwiftObjectPath, Entry> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Get the current time; overridden in tests
+   *
+   * @return the time in milliseconds
+   */
+  protected long now() {
+    return System.currentTimeMillis();
+  }
+
+  /**
+   * Look up a path
+   *
+   * @param path object path
+   * @return the status of the path; a status for which
+   *         {@link #isAbsent(SwiftFileStatus)} holds if the path is known
+   *         not to exist; or null if nothing is known
+   */
+  synchronized SwiftFileStatus get(SwiftObjectPath path) {
+    Entry entry = entries.get(path);
+    if (entry != null && entry.expires <= now()) {
+      entries.remove(path);
+      entry = null;
+    }
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    if (entry.status == null) {
+      negativeHits++;
+      return ABSENT;
+    }
+    hits++;
+    return entry.status;
+  }
+
+  /**
+   * Cache the status of a path
+   *
+   * @param path   object path
+   * @param status its status
+   */
+  synchronized void put(SwiftObjectPath path, SwiftFileStatus status) {
+    if (ttl > 0) {
+      entries.put(path, new Entry(status, now() + ttl));
+    }
+  }
+
+  /**
+   * Record that a path does not exist
+   *
+   * @param path object path
+   */
+  synchronized void putAbsent(SwiftObjectPath path) {
+    if (negativeTTL > 0) {
+      entries.put(path, new Entry(null, now() + negativeTTL));
+    }
+  }
+
+  /**
+   * Forget a path which has been written to or deleted. As a write
+   * implicitly creates the parent directories of a path, any record of
+   * their absence is dropped too.
+   *
+   * @param path object path
+   */
+  synchronized void invalidate(SwiftObjectPath path) {
+    entries.remove(path);
+    String object = path.getObject();
+    int end = object.lastIndexOf('/');
+    while (end > 0) {
+      object = object.substring(0, end);
+      SwiftObjectPath parent = new SwiftObjectPath(path.getContainer(), object);
+      Entry entry = entries.get(parent);
+      if (entry != null && entry.status == null) {
+        entries.remove(parent);
+      }
+      end = object.lastIndexOf('/');
+    }
+  }
+
+  /**
+   * Test for the value returned by {@link #get(SwiftObjectPath)} for a
+   * path known not to exist
+   *
+   * @param status a value returned by a lookup
+   * @return true iff it marks a missing path
+   */
+  static boolean isAbsent(SwiftFileStatus status) {
+    return status == ABSENT;
+  }
+
+  /**
+   * @return the number of entries, including any which have expired
+   */
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Take a snapshot of the cache statistics
+   *
+   * @return the current statistics
+   */
+  public synchronized Statistics getStatistics() {
+    return new Statistics(hits, negativeHits, misses, entries.size());
+  }
+
+  private static final class Entry {
+    private final SwiftFileStatus status;
+    private final long expires;
+
+    private Entry(SwiftFileStatus status, long expires) {
+      this.status = status;
+      this.expires = expires;
+    }
+  }
+
+  /**
+   * Snapshot of the cache usage
+   */
+  public static final class Statistics {
+    private final long hits;
+    private final long negativeHits;
+    private final long misses;
+    private final int size;
+
+    public Statistics(long hits, long negativeHits, long misses, int size) {
+      this.hits = hits;
+      this.negativeHits = negativeHits;
+      this.misses = misses;
+      this.size = size;
+    }
+
+    /**
+     * @return lookups answered with the status of a path
+     */
+    public long getHits() {
+      return hits;
+    }
+
+    /**
+     * @return lookups answered with the knowledge that a path is absent
+     */
+    public long getNegativeHits() {
+      return negativeHits;
+    }
+
+    /**
+     * @return lookups which had to go to the server
+     */
+    public long getMisses() {
+      return misses;
+    }
+
+    /**
+     * @return entries in the cache, including any which have expired
+     */
+    public int getSize() {
+      return size;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("[hits: %d; negative hits: %d; misses: %d; size: %d]",
+              hits, negativeHits, misses, size);
+    }
+  }
+}
@@ -33,9 +33,14 @@ import org.apache.hadoop.util.Progressable;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * Swift file system implementation. Extends Hadoop FileSystem
@@ -134,6 +139,22 @@ public class SwiftNativeFileSystem extends FileSystem {
     workingDir = dir;
   }
 
+  /**
+   * Close the filesystem, and with it the store's HTTP connection pool
+   *
+   * @throws IOException on problems
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      super.close();
+    } finally {
+      if (store != null) {
+        store.close();
+      }
+    }
+  }
+
   /**
    * Operation class with Swift Blob Store
    *
@@ -156,6 +177,20 @@ public class SwiftNativeFileSystem extends FileSystem {
   }
 
 
+  /**
+   * Get the checksum of a file from its ETag, without reading the data.
+   * Files written in segments have checksums of another algorithm than
+   * single objects, so a file only matches a copy written the same way.
+   *
+   * @param f file path
+   * @return the checksum, or null for a directory
+   * @throws FileNotFoundException if there is no file
+   */
+  @Override
+  public FileChecksum getFileChecksum(Path f) throws IOException {
+    return store.getFileChecksum(f);
+  }
+
   @Override
   public boolean isFile(Path f) throws IOException {
 
@@ -186,32 +221,126 @@ public class SwiftNativeFileSystem extends FileSystem {
    * This call is most helpful with DFS, where it returns
    * hostnames of machines that contain the given file.
    * <p/>
-   * The FileSystem will simply return an elt containing 'localhost'.
+   * Here the file is divided into blocks of its block size, which
+   * never span two of the partitions of a partitioned file; each block
+   * names the hosts of the object holding it, as far as the Swift
+   * server tells. Only the blocks in the range requested are returned,
+   * and only the objects holding them are located.
    */
   @Override
   public BlockLocation[] getFileBlockLocations(FileStatus file,
                                                long start,
                                                long len) throws IOException {
-    // Check if requested file in Swift is more than 5Gb. In this case
-    // each block has its own location -which may be determinable
-    // from the Swift client API, depending on the remote server
+    if (file == null) {
+      return null;
+    }
+    if (start < 0 || len < 0) {
+      throw new IllegalArgumentException("Invalid start or len parameter: "
+              + start + ", " + len);
+    }
+    if (SwiftUtils.isDirectory(file) || file.getLen() <= start) {
+      return new BlockLocation[0];
+    }
+    //a zero length range still asks for the block at its start
+    long end = len > file.getLen() - start
+            ? file.getLen()
+            : Math.max(start + len, start + 1);
+    //find the objects in the range, then locate them all at once
+    List<FileStatus> objects = new ArrayList<FileStatus>();
+    List<Long> offsets = new ArrayList<Long>();
+    long offset = 0;
+    for (FileStatus object : getObjects(file)) {
+      long objectEnd = offset + object.getLen();
+      if (objectEnd > start && offset < end) {
+        objects.add(object);
+        offsets.add(offset);
+      }
+      offset = objectEnd;
+    }
+    Map<Path, List<URI>> locations = store.getObjectLocations(objects);
+    List<BlockLocation> blocks = new ArrayList<BlockLocation>();
+    for (int i = 0; i < objects.size(); i++) {
+      FileStatus object = objects.get(i);
+      addBlocks(blocks, locations.get(object.getPath()),
+              offsets.get(i), object.getLen(), getBlockSize(file), start, end);
+    }
+    return blocks.toArray(new BlockLocation[blocks.size()]);
+  }
 
+  /**
+   * Get the objects holding the data of a file, in order. Partitions
+   * are listed as children of the file; anything else is a single object.
+   *
+   * @param file status of the file
+   * @return the objects
+   * @throws IOException IO problems
+   */
+  private List<FileStatus> getObjects(FileStatus file) throws IOException {
     final FileStatus[] listOfFileBlocks = store.listSubPaths(file.getPath());
-    List<URI> locations = new ArrayList<URI>();
-    if (listOfFileBlocks.length > 1) {
-      for (FileStatus fileStatus : listOfFileBlocks) {
-        if (SwiftObjectPath.fromPath(uri, fileStatus.getPath())
-                .equals(SwiftObjectPath.fromPath(uri, file.getPath()))) {
-          continue;
-        }
-        if (fileStatus.getPath() != null) {
-          locations.addAll(store.getObjectLocation(fileStatus.getPath()));
-        }
+    SwiftObjectPath filePath = SwiftObjectPath.fromPath(uri, file.getPath());
+    List<FileStatus> partitions = new ArrayList<FileStatus>();
+    long length = 0;
+    for (FileStatus fileStatus : listOfFileBlocks) {
+      if (fileStatus.getPath() == null
+              || fileStatus.getLen() == 0
+              || SwiftObjectPath.fromPath(uri, fileStatus.getPath())
+              .equals(filePath)) {
+        continue;
       }
-    } else {
-      locations = store.getObjectLocation(file.getPath());
+      partitions.add(fileStatus);
+      length += fileStatus.getLen();
+    }
+    if (partitions.isEmpty() || length != file.getLen()) {
+      //not made up of the partitions listed, however it was written
+      return Collections.singletonList(file);
     }
+    return partitions;
+  }
+
+  /**
+   * Get the block locations of a file known to be a single object,
+   * without first listing it to look for partitions
+   *
+   * @param file      status of the file
+   * @param locations locations of the object
+   * @return the block locations
+   */
+  private BlockLocation[] getObjectBlockLocations(FileStatus file,
+                                                  List<URI> locations) {
+    List<BlockLocation> blocks = new ArrayList<BlockLocation>();
+    addBlocks(blocks, locations,
+            0, file.getLen(), getBlockSize(file), 0, file.getLen());
+    return blocks.toArray(new BlockLocation[blocks.size()]);
+  }
 
+  /**
+   * Get the block size of a file, falling back to that of the filesystem
+   *
+   * @param file status of the file
+   * @return a positive block size
+   */
+  private long getBlockSize(FileStatus file) {
+    return file.getBlockSize() > 0 ? file.getBlockSize() : store.getBlocksize();
+  }
+
+  /**
+   * Add the blocks of an object which overlap a range of the file
+   *
+   * @param blocks    list to add the blocks to
+   * @param locations locations of the object
+   * @param offset    offset of the object in the file
+   * @param length    length of the object
+   * @param blockSize block size
+   * @param start     start of the range
+   * @param end       end of the range
+   */
+  private static void addBlocks(List<BlockLocation> blocks,
+                                List<URI> locations,
+                                long offset,
+                                long length,
+                                long blockSize,
+                                long start,
+                                long end) {
     final String[] names = new String[locations.size()];
     final String[] hosts = new String[locations.size()];
     int i = 0;
@@ -220,9 +349,13 @@ public class SwiftNativeFileSystem extends FileSystem {
       names[i] = location.getAuthority();
       i++;
     }
-    return new BlockLocation[]{
-            new BlockLocation(names, hosts, 0, file.getLen())
-    };
+    long objectEnd = offset + length;
+    for (long block = offset; block < objectEnd; block += blockSize) {
+      long blockLength = Math.min(blockSize, objectEnd - block);
+      if (block + blockLength > start && block < end) {
+        blocks.add(new BlockLocation(names, hosts, block, blockLength));
+      }
+    }
   }
 
   @Override
@@ -303,6 +436,52 @@ public class SwiftNativeFileSystem extends FileSystem {
     return store.listSubPaths(f);
   }
 
+  /**
+   * List the statuses and block locations of the files/directories
+   * in the given path.
+   * Unlike {@link #listStatus(Path)}, the listing is retrieved a page
+   * at a time as the iterator is consumed.
+   *
+   * @param f      given path
+   * @param filter filter of the paths to return
+   * @return an iterator over the statuses
+   * @throws FileNotFoundException if the path does not exist
+   * @throws IOException           IO problems
+   */
+  @Override
+  protected RemoteIterator<LocatedFileStatus> listLocatedStatus(Path f,
+                                                                PathFilter filter)
+          throws IOException {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("SwiftFileSystem.listLocatedStatus for: " + f);
+    }
+    return new LocatedListing(store.listSubPathsIterator(f, false),
+            false, filter);
+  }
+
+  /**
+   * List the statuses and block locations of the files in or under
+   * the given path.
+   * A recursive listing is made with a single deep, paged listing of the
+   * object prefix, rather than one listing per directory.
+   *
+   * @param f         given path
+   * @param recursive list the whole tree under the path
+   * @return an iterator over the statuses of the files
+   * @throws FileNotFoundException if the path does not exist
+   * @throws IOException           IO problems
+   */
+  @Override
+  public RemoteIterator<LocatedFileStatus> listFiles(Path f, boolean recursive)
+          throws IOException {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("SwiftFileSystem.listFiles for: " + f
+              + " recursive=" + recursive);
+    }
+    return new LocatedListing(store.listSubPathsIterator(f, recursive),
+            true, null);
+  }
+
   /**
    * This optional operation is not supported yet
    */
@@ -346,10 +525,15 @@ public class SwiftNativeFileSystem extends FileSystem {
       }
     }
 
-    SwiftNativeOutputStream out = new SwiftNativeOutputStream(getConf(),
-            store,
-            file.toUri()
-                    .toString());
+    OutputStream out;
+    if (store.isChunkedUpload()) {
+      out = new SwiftChunkedOutputStream(store, file.toUri().toString());
+    } else {
+      out = new SwiftNativeOutputStream(getConf(),
+              store,
+              file.toUri()
+                      .toString());
+    }
     return new FSDataOutputStream(out, statistics);
   }
 
@@ -361,9 +545,16 @@ public class SwiftNativeFileSystem extends FileSystem {
    */
   @Override
   public FSDataInputStream open(Path path, int bufferSize) throws IOException {
-    return new FSDataInputStream(
-            new BufferedFSInputStream(
-                    new SwiftNativeInputStream(store, statistics, path), bufferSize));
+    SwiftNativeInputStream in;
+    if (store.isMetadataCacheEnabled()) {
+      //the length is likely to be cached
+      in = new SwiftNativeInputStream(store, statistics, path,
+              store.getObjectMetadata(path).getLen());
+    } else {
+      //learn the length from the first GET rather than HEAD every open
+      in = SwiftNativeInputStream.open(store, statistics, path);
+    }
+    return new FSDataInputStream(new BufferedFSInputStream(in, bufferSize));
   }
 
   /**
@@ -455,6 +646,13 @@ public class SwiftNativeFileSystem extends FileSystem {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Deleting directory '" + path + "'");
       }
+      if (recursive) {
+        //everything underneath goes from one deep listing, then the
+        //directory itself
+        store.deleteChildren(absolutePath);
+        store.rmdir(absolutePath);
+        return true;
+      }
       FileStatus[] contents = listStatus(absolutePath);
       if (contents == null) {
         //the directory went away during the non-atomic stages of the operation.
@@ -485,28 +683,11 @@ public class SwiftNativeFileSystem extends FileSystem {
       }
 
       //look to see if there are now any children
-      if (!children.isEmpty() && !recursive) {
-        //if there are unless this is a recursive operation, fail immediately
+      if (!children.isEmpty()) {
+        //as this is not a recursive operation, fail immediately
         throw new SwiftException("Directory " + path + " is not empty.");
       }
-      //delete the children
-      for (FileStatus child : children) {
-        Path childPath = child.getPath();
-        try {
-          if (!innerDelete(childPath, true)) {
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("Failed to  recursively delete '" + childPath + "'");
-            }
-            return false;
-          }
-        } catch (FileNotFoundException e) {
-          //the path went away -race conditions.
-          //do not fail, as the outcome is still OK.
-          LOG.info("Path " + childPath + " is no longer present");
-        }
-      }
-      //here any children that existed have been deleted
-      //so rm the directory
+      //the directory is empty, so rm it
       store.rmdir(absolutePath);
     }
 
@@ -525,4 +706,104 @@ public class SwiftNativeFileSystem extends FileSystem {
     }
     return new Path(workingDir, path);
   }
+
+  /**
+   * Adds block locations to the statuses of a listing, skipping
+   * entries which are filtered out. The listing is read ahead a batch
+   * of files at a time, so that the files of a batch can be located
+   * together.
+   * <p/>
+   * Files of at least a segment may have been written in partitions,
+   * so they are located one by one as
+   * {@link #getFileBlockLocations(FileStatus, long, long)} locates them,
+   * partition by partition. A file written in smaller partitions by
+   * another client is located as the single object it is listed as.
+   * A dynamic large object, whose manifest is empty, is listed as a
+   * directory, as by {@link #listStatus(Path)}.
+   */
+  private class LocatedListing implements RemoteIterator<LocatedFileStatus> {
+    private final RemoteIterator<FileStatus> listing;
+    private final boolean filesOnly;
+    private final PathFilter filter;
+    private final LinkedList<LocatedFileStatus> lookahead =
+            new LinkedList<LocatedFileStatus>();
+
+    /**
+     * Create an instance
+     *
+     * @param listing   the underlying listing
+     * @param filesOnly skip directories
+     * @param filter    path filter; may be null
+     */
+    private LocatedListing(RemoteIterator<FileStatus> listing,
+                           boolean filesOnly,
+                           PathFilter filter) {
+      this.listing = listing;
+      this.filesOnly = filesOnly;
+      this.filter = filter;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+      if (lookahead.isEmpty()) {
+        readAhead();
+      }
+      return !lookahead.isEmpty();
+    }
+
+    /**
+     * Read the next batch of entries from the listing and locate its files
+     *
+     * @throws IOException IO problems
+     */
+    private void readAhead() throws IOException {
+      int batchSize = store.getLocationBatchSize();
+      List<FileStatus> entries = new ArrayList<FileStatus>();
+      List<FileStatus> files = new ArrayList<FileStatus>();
+      while (entries.size() < batchSize && listing.hasNext()) {
+        FileStatus status = listing.next();
+        boolean isDir = SwiftUtils.isDirectory(status);
+        if ((filesOnly && isDir)
+                || (filter != null && !filter.accept(status.getPath()))) {
+          continue;
+        }
+        entries.add(status);
+        if (!isDir && !mayBePartitioned(status)) {
+          files.add(status);
+        }
+      }
+      Map<Path, List<URI>> locations = store.getObjectLocations(files);
+      for (FileStatus status : entries) {
+        BlockLocation[] blocks;
+        if (SwiftUtils.isDirectory(status)) {
+          blocks = null;
+        } else if (mayBePartitioned(status)) {
+          blocks = getFileBlockLocations(status, 0, status.getLen());
+        } else {
+          blocks = getObjectBlockLocations(status,
+                  locations.get(status.getPath()));
+        }
+        lookahead.add(new LocatedFileStatus(status, blocks));
+      }
+    }
+
+    /**
+     * Could a listed file be made up of partitions? Only files of at
+     * least a segment are written in partitions by this client.
+     *
+     * @param status status of a file
+     * @return true if it has to be located as a partitioned file
+     */
+    private boolean mayBePartitioned(FileStatus status) {
+      return status.getLen() >= store.getSegmentSize();
+    }
+
+    @Override
+    public LocatedFileStatus next() throws IOException {
+      if (!hasNext()) {
+        throw new NoSuchElementException("No more entries");
+      }
+      return lookahead.removeFirst();
+    }
+  }
 }
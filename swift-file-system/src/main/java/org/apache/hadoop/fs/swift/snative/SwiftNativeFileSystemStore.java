@@ -19,46 +19,144 @@ package org.apache.hadoop.fs.swift.snative;
 
 import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException;
 import org.apache.hadoop.fs.swift.exceptions.SwiftException;
 import org.apache.hadoop.fs.swift.exceptions.SwiftInvalidResponseException;
 import org.apache.hadoop.fs.swift.exceptions.SwiftOperationFailedException;
+import org.apache.hadoop.fs.swift.exceptions.SwiftRenameFailedException;
+import org.apache.hadoop.fs.swift.http.SwiftBulkDeleteResult;
+import org.apache.hadoop.fs.swift.http.HttpInputStreamWithRelease;
+import org.apache.hadoop.fs.swift.http.SwiftConnectionManager;
 import org.apache.hadoop.fs.swift.http.SwiftProtocolConstants;
 import org.apache.hadoop.fs.swift.http.SwiftRestClient;
 import org.apache.hadoop.fs.swift.util.JSONUtil;
+import org.apache.hadoop.fs.swift.util.SwiftDirectBufferPool;
 import org.apache.hadoop.fs.swift.util.SwiftObjectPath;
+import org.apache.hadoop.fs.swift.util.SwiftOutputBuffer;
 import org.apache.hadoop.fs.swift.util.SwiftUtils;
-import org.codehaus.jackson.map.type.CollectionType;
+import org.codehaus.jackson.JsonNode;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * File system store implementation.
  * Makes REST requests, parses data from responses
  */
 public class SwiftNativeFileSystemStore {
-  private static final Pattern URI_PATTERN = Pattern.compile("\"\\S+?\"");
   private static final String PATTERN = "EEE, d MMM yyyy hh:mm:ss zzz";
+
+  /**
+   * number of objects a directory rename moves between progress reports
+   */
+  private static final int PROGRESS_INTERVAL = 1000;
   private static final Log LOG =
           LogFactory.getLog(SwiftNativeFileSystemStore.class);
   private URI uri;
   private SwiftRestClient swiftRestClient;
 
+  /**
+   * Executor fetching the next page of listings in the background
+   */
+  private ExecutorService listingPrefetcher;
+
+  /**
+   * Executor of the background reads of input streams
+   */
+  private ExecutorService readPrefetcher;
+
+  /**
+   * Executor of the background segment uploads of output streams
+   */
+  private ExecutorService segmentUploader;
+
+  /**
+   * Executor of the object moves of directory renames
+   */
+  private ExecutorService renamer;
+
+  /**
+   * Executor of the object deletes of recursive deletes, when the
+   * bulk middleware is not available
+   */
+  private ExecutorService deleter;
+
+  /**
+   * Are recursive deletes to use the bulk middleware; cleared once the
+   * store is found not to have it
+   */
+  private volatile boolean bulkDelete;
+
+  /**
+   * Are objects to be located in batches; cleared once the object
+   * endpoint is found not to support it
+   */
+  private volatile boolean batchLocations = true;
+
+  /**
+   * Cache of object locations; null if they are not cached
+   */
+  private SwiftLocationCache locationCache;
+
+  /**
+   * Object ring to locate objects with in-process; null until loaded
+   */
+  private SwiftObjectRing objectRing;
+
+  /**
+   * Configuration of the filesystem, with which the ring is read
+   */
+  private Configuration conf;
+
+  /**
+   * Space the segments being uploaded in the background may take up
+   */
+  private SwiftUploadBudget uploadBudget;
+
+  /**
+   * Factory of the buffers of output streams
+   */
+  private SwiftOutputBuffer.Factory outputBufferFactory;
+
+  /**
+   * Decoder of listing pages into file statuses
+   */
+  private SwiftListingDecoder listingDecoder;
+
+  /**
+   * Cache of file metadata; null if caching is disabled
+   */
+  private SwiftMetadataCache metadataCache;
+
+  /**
+   * Cost model deciding how input streams seek forwards
+   */
+  private final SwiftReadCostModel readCostModel = new SwiftReadCostModel();
+
   /**
    * Initalize the filesystem store -this creates the REST client binding.
    *
@@ -69,7 +167,41 @@ public class SwiftNativeFileSystemStore {
    */
   public void initialize(URI fsURI, Configuration configuration) throws IOException {
     this.uri = fsURI;
+    this.conf = configuration;
     this.swiftRestClient = SwiftRestClient.getInstance(fsURI, configuration);
+    this.listingDecoder = new SwiftListingDecoder(fsURI);
+    long cacheTTL = swiftRestClient.getMetadataCacheTTL();
+    long negativeCacheTTL = swiftRestClient.getNegativeCacheTTL();
+    if (cacheTTL > 0 || negativeCacheTTL > 0) {
+      this.metadataCache = new SwiftMetadataCache(cacheTTL,
+              negativeCacheTTL,
+              swiftRestClient.getMetadataCacheSize());
+    }
+    if (swiftRestClient.getLocationCacheTTL() > 0) {
+      this.locationCache = new SwiftLocationCache(
+              swiftRestClient.getLocationCacheTTL(),
+              swiftRestClient.getLocationCacheSize());
+    }
+    this.listingPrefetcher = Executors.newCachedThreadPool(
+            SwiftUtils.newDaemonThreadFactory("swift-listing"));
+    this.readPrefetcher = Executors.newCachedThreadPool(
+            SwiftUtils.newDaemonThreadFactory("swift-read-prefetch"));
+    this.segmentUploader = Executors.newCachedThreadPool(
+            SwiftUtils.newDaemonThreadFactory("swift-segment-upload"));
+    this.renamer = Executors.newFixedThreadPool(
+            swiftRestClient.getRenameThreads(),
+            SwiftUtils.newDaemonThreadFactory("swift-rename"));
+    this.deleter = Executors.newFixedThreadPool(
+            swiftRestClient.getDeleteThreads(),
+            SwiftUtils.newDaemonThreadFactory("swift-delete"));
+    this.bulkDelete = swiftRestClient.isBulkDelete();
+    this.uploadBudget =
+            new SwiftUploadBudget(swiftRestClient.getUploadBufferLimit());
+    this.outputBufferFactory = SwiftOutputBuffer.factory(
+            swiftRestClient.getOutputBuffer(), configuration);
+    SwiftDirectBufferPool.JVM.raiseLimit(
+            swiftRestClient.getDirectBufferMemory());
+    SwiftPrefetchBudget.JVM.raiseLimit(swiftRestClient.getPrefetchMemory());
   }
 
   @Override
@@ -78,6 +210,77 @@ public class SwiftNativeFileSystemStore {
             + swiftRestClient;
   }
 
+  /**
+   * Close the store, releasing the pooled HTTP connections of the client.
+   */
+  public void close() {
+    if (listingPrefetcher != null) {
+      listingPrefetcher.shutdownNow();
+    }
+    if (readPrefetcher != null) {
+      readPrefetcher.shutdownNow();
+    }
+    if (segmentUploader != null) {
+      segmentUploader.shutdownNow();
+    }
+    if (renamer != null) {
+      renamer.shutdownNow();
+    }
+    if (deleter != null) {
+      deleter.shutdownNow();
+    }
+    if (swiftRestClient != null) {
+      swiftRestClient.close();
+    }
+  }
+
+  /**
+   * Get statistics on the HTTP connection pool of this store's client
+   *
+   * @return a snapshot of the pool statistics
+   */
+  public SwiftConnectionManager.PoolStatistics getConnectionPoolStatistics() {
+    return swiftRestClient.getConnectionPoolStatistics();
+  }
+
+  /**
+   * Get the number of HTTP requests this store's client has sent
+   *
+   * @return a snapshot of the counts, by method
+   */
+  public Map<String, Long> getRequestCounts() {
+    return swiftRestClient.getRequestCounts();
+  }
+
+  /**
+   * Query whether file metadata or absent paths are cached by this store
+   *
+   * @return true if a metadata cache is in use
+   */
+  public boolean isMetadataCacheEnabled() {
+    return metadataCache != null;
+  }
+
+  /**
+   * Get statistics on the metadata cache of this store
+   *
+   * @return a snapshot of the cache statistics, or null if neither
+   *         file metadata nor absent paths are cached
+   */
+  public SwiftMetadataCache.Statistics getMetadataCacheStatistics() {
+    return metadataCache == null ? null : metadataCache.getStatistics();
+  }
+
+  /**
+   * Get statistics on the forward seeks of the input streams of this store
+   *
+   * @return a snapshot of the seek statistics and the estimates
+   *         the seeks were decided on
+   */
+  public SwiftReadCostModel.Statistics getReadStatistics() {
+    return readCostModel.getStatistics();
+  }
+
   /**
    * Get the default blocksize of this (bound) filesystem
    *
@@ -88,17 +291,164 @@ public class SwiftNativeFileSystemStore {
     return swiftRestClient.getBlocksize();
   }
 
+  /**
+   * Get the smallest range requested by an input stream
+   *
+   * @return a size in bytes
+   */
+  public int getReadaheadMin() {
+    return swiftRestClient.getReadaheadMin();
+  }
+
+  /**
+   * Get the largest range requested by an input stream
+   *
+   * @return a size in bytes
+   */
+  public int getReadaheadMax() {
+    return swiftRestClient.getReadaheadMax();
+  }
+
+  /**
+   * Get the number of bytes of the next range an input stream
+   * reads in the background
+   *
+   * @return a size in bytes; 0 if input streams do not prefetch
+   */
+  public int getPrefetchSize() {
+    return swiftRestClient.getPrefetchSize();
+  }
+
+  /**
+   * @return the executor of the background reads of input streams
+   */
+  ExecutorService getReadPrefetcher() {
+    return readPrefetcher;
+  }
+
+  /**
+   * @return true if a request could get a pooled connection without
+   *         waiting for one to be released
+   */
+  boolean hasFreeConnection() {
+    return swiftRestClient.hasFreeConnection();
+  }
+
+  /**
+   * Get the maximum number of objects located by a single request
+   *
+   * @return a positive number
+   */
+  public int getLocationBatchSize() {
+    return swiftRestClient.getLocationBatchSize();
+  }
+
+  /**
+   * Get the size of the segments a large file is uploaded in
+   *
+   * @return a size in bytes
+   */
+  public long getSegmentSize() {
+    return swiftRestClient.getSegmentSize();
+  }
+
+  /**
+   * Query whether output streams upload each segment in the background
+   * while the writer continues
+   *
+   * @return true if uploads are streamed
+   */
+  public boolean isStreamingUpload() {
+    return swiftRestClient.isStreamingUpload();
+  }
+
+  /**
+   * Query whether the segments of large files are joined up by static
+   * large object manifests rather than dynamic ones
+   *
+   * @return true for static large objects
+   */
+  public boolean isStaticLargeObjects() {
+    return swiftRestClient.isStaticLargeObjects();
+  }
+
+  /**
+   * Query whether output streams send data to Swift as it is written,
+   * in chunked PUT requests
+   *
+   * @return true if uploads are chunked
+   */
+  public boolean isChunkedUpload() {
+    return swiftRestClient.isChunkedUpload();
+  }
+
+  /**
+   * Get the size of the buffer between a writer and its chunked PUT
+   *
+   * @return a size in bytes
+   */
+  public int getChunkedBufferSize() {
+    return swiftRestClient.getChunkedBufferSize();
+  }
+
+  /**
+   * Get the maximum number of segments an output stream uploads
+   * in the background at the same time
+   *
+   * @return a positive number
+   */
+  public int getUploadParallelism() {
+    return swiftRestClient.getUploadParallelism();
+  }
+
+  /**
+   * @return the executor of the background segment uploads
+   */
+  ExecutorService getSegmentUploader() {
+    return segmentUploader;
+  }
+
+  /**
+   * @return the space the segments being uploaded in the background
+   *         may take up
+   */
+  SwiftUploadBudget getUploadBudget() {
+    return uploadBudget;
+  }
+
+  /**
+   * @return the factory of the buffers of output streams
+   */
+  SwiftOutputBuffer.Factory getOutputBufferFactory() {
+    return outputBufferFactory;
+  }
+
+  /**
+   * @return the cost model input streams decide how to seek with
+   */
+  SwiftReadCostModel getReadCostModel() {
+    return readCostModel;
+  }
+
   /**
    * Upload a file/input stream of a specific length.
    *
    * @param path        destination path in the swift filesystem
    * @param inputStream input data. This is closed afterwards, always
    * @param length      length of the data
+   * @param md5         MD5 of the data in hex, to verify the upload with;
+   *                    null if it is not known
    * @throws IOException on a problem
    */
-  public void uploadFile(Path path, InputStream inputStream, long length)
+  public void uploadFile(Path path, InputStream inputStream, long length,
+                         String md5)
           throws IOException {
-    swiftRestClient.upload(toObjectPath(path), inputStream, length);
+    SwiftObjectPath objectPath = toObjectPath(path);
+    try {
+      swiftRestClient.upload(objectPath, inputStream, length, md5);
+    } finally {
+      invalidateMetadata(objectPath);
+    }
   }
 
   /**
@@ -108,23 +458,99 @@ public class SwiftNativeFileSystemStore {
    * @param partNumber  item number in the path
    * @param inputStream input data
    * @param length      length of the data
+   * @param md5         MD5 of the data in hex, to verify the upload with;
+   *                    null if it is not known
+   * @return the segment as uploaded
    * @throws IOException on a problem
    */
-  public void uploadFilePart(Path path, int partNumber,
-                             InputStream inputStream, long length)
+  public SwiftSegment uploadFilePart(Path path, int partNumber,
+                                     InputStream inputStream, long length,
+                                     String md5)
           throws IOException {
 
-    String stringPath = path.toUri().toString();
-    if (stringPath.endsWith("/")) {
-      stringPath = stringPath.concat(String.valueOf(partNumber));
-    } else {
-      stringPath = stringPath.concat("/").concat(String.valueOf(partNumber));
+    SwiftObjectPath partPath = toPartPath(path, partNumber);
+    try {
+      String etag = swiftRestClient.upload(partPath, inputStream, length, md5);
+      return new SwiftSegment(partPath, md5 != null ? md5 : etag, length);
+    } finally {
+      //the length of the whole file changes with each part
+      invalidateMetadata(partPath);
+      invalidateMetadata(toObjectPath(path));
     }
+  }
+
+  /**
+   * Get the path of a part of a larger file
+   *
+   * @param path       path of the file
+   * @param partNumber item number in the path
+   * @return the object path of the part
+   * @throws SwiftException if the path is invalid
+   */
+  SwiftObjectPath toPartPath(Path path, int partNumber) throws SwiftException {
+    //the manifest concatenates the parts in the order of their names,
+    //so the numbers are padded to sort numerically; the parts go under
+    //the object path, whether or not the path is qualified
+    return toObjectPath(new Path(path, String.format("%08d", partNumber)));
+  }
 
-    swiftRestClient.upload(
-            new SwiftObjectPath(toDirPath(path).getContainer(), stringPath),
-            inputStream,
-            length);
+  /**
+   * Upload a file of unknown length as it is written, in a chunked PUT
+   *
+   * @param path        destination path in the swift filesystem
+   * @param inputStream input data. This is closed afterwards, always
+   * @return the ETag of the object, which the caller must verify
+   * @throws IOException on a problem
+   */
+  public String uploadFileChunked(Path path, InputStream inputStream)
+          throws IOException {
+    SwiftObjectPath objectPath = toObjectPath(path);
+    try {
+      return swiftRestClient.uploadChunked(objectPath, inputStream);
+    } finally {
+      invalidateMetadata(objectPath);
+    }
+  }
+
+  /**
+   * Upload part of a larger file as it is written, in a chunked PUT
+   *
+   * @param path        destination path
+   * @param partNumber  item number in the path
+   * @param inputStream input data. This is closed afterwards, always
+   * @return the ETag of the part, which the caller must verify
+   * @throws IOException on a problem
+   */
+  public String uploadFilePartChunked(Path path, int partNumber,
+                                      InputStream inputStream)
+          throws IOException {
+    SwiftObjectPath partPath = toPartPath(path, partNumber);
+    try {
+      return swiftRestClient.uploadChunked(partPath, inputStream);
+    } finally {
+      invalidateMetadata(partPath);
+      invalidateMetadata(toObjectPath(path));
+    }
+  }
+
+  /**
+   * Copy a file which has been uploaded as a single object to a part
+   * of itself, so that it can be continued as a multi-part upload.
+   * The copy is made by the server.
+   *
+   * @param path       path of the file
+   * @param partNumber item number of the part
+   * @throws IOException on a problem
+   */
+  public void copyToFilePart(Path path, int partNumber) throws IOException {
+    SwiftObjectPath partPath = toPartPath(path, partNumber);
+    try {
+      if (!swiftRestClient.copyObject(toObjectPath(path), partPath)) {
+        throw new FileNotFoundException("Not Found " + path.toUri());
+      }
+    } finally {
+      invalidateMetadata(partPath);
+    }
   }
 
   /**
@@ -143,10 +569,192 @@ public class SwiftNativeFileSystemStore {
       pathString = pathString.substring(1);
     }
 
-    swiftRestClient.upload(toObjectPath(path),
-            new ByteArrayInputStream(new byte[0]),
-            0,
-            new Header(SwiftProtocolConstants.X_OBJECT_MANIFEST, pathString));
+    SwiftObjectPath objectPath = toObjectPath(path);
+    try {
+      swiftRestClient.upload(objectPath,
+              new ByteArrayInputStream(new byte[0]),
+              0,
+              new Header(SwiftProtocolConstants.X_OBJECT_MANIFEST, pathString));
+    } finally {
+      invalidateMetadata(objectPath);
+    }
+  }
+
+  /**
+   * Join up the segments of a multi-part upload by submitting a static
+   * large object manifest, which lists the path, ETag and size of each
+   * of them. Unlike a dynamic manifest, this does not depend on a
+   * listing of the container, so the object is complete as soon as the
+   * manifest is written.
+   *
+   * @param path     path of the final file
+   * @param segments the segments, in order
+   * @throws IOException on a problem, including the server rejecting
+   *                     the manifest because a segment does not match it
+   */
+  public void createStaticManifestForPartUpload(Path path,
+                                                List<SwiftSegment> segments)
+          throws IOException {
+    List<Map<String, Object>> manifest =
+            new ArrayList<Map<String, Object>>(segments.size());
+    for (SwiftSegment segment : segments) {
+      if (segment.getSize() == 0) {
+        //Swift rejects empty segments; they add nothing anyway
+        continue;
+      }
+      Map<String, Object> entry = new LinkedHashMap<String, Object>();
+      entry.put("path", "/" + segment.getPath().toUriPath());
+      entry.put("etag", segment.getEtag());
+      entry.put("size_bytes", segment.getSize());
+      manifest.add(entry);
+    }
+    SwiftObjectPath objectPath = toObjectPath(path);
+    try {
+      swiftRestClient.uploadStaticLargeObjectManifest(objectPath,
+              JSONUtil.toJSON(manifest).getBytes("UTF-8"));
+    } finally {
+      invalidateMetadata(objectPath);
+    }
+  }
+
+  /**
+   * Get the objects which hold the data of a file, in order, with what a
+   * static large object manifest needs to know of each of them. A plain
+   * object is its own single segment; a file uploaded in parts is made up
+   * of its non-empty partitions. A manifest elsewhere can then reference
+   * the data of the file without it being copied.
+   *
+   * <p/>
+   * The segments of a static large object are read from its manifest.
+   * Those of a dynamic one are found by listing the container, which may
+   * not be up to date; if their sizes do not add up to the length of the
+   * file the listing is not trusted.
+   *
+   * @param path path of the file
+   * @return the segments of the file
+   * @throws IOException           on a problem, including the segments
+   *                               listed not adding up to the file
+   * @throws FileNotFoundException if there is nothing at the end
+   */
+  public List<SwiftSegment> getSegments(Path path) throws IOException {
+    SwiftObjectPath objectPath = toObjectPath(path);
+    Header[] headers = swiftRestClient.headRequest(objectPath,
+            swiftRestClient.consistencyHeaders(objectPath));
+    if (headers.length == 0) {
+      throw new FileNotFoundException("Not Found " + path.toUri());
+    }
+    List<SwiftSegment> segments = new ArrayList<SwiftSegment>();
+    if (getHeader(headers, SwiftProtocolConstants.X_OBJECT_MANIFEST) == null
+            && getHeader(headers, SwiftProtocolConstants.X_STATIC_LARGE_OBJECT) == null) {
+      segments.add(toSegment(objectPath, headers));
+      return segments;
+    }
+    long length = toSegment(objectPath, headers).getSize();
+    if (getHeader(headers, SwiftProtocolConstants.X_STATIC_LARGE_OBJECT) != null) {
+      return getStaticSegments(path, length);
+    }
+    //a dynamic large object: its parts are listed in order of their names
+    long listed = 0;
+    RemoteIterator<FileStatus> parts =
+            listDirectoryIterator(toDirPath(path), false);
+    while (parts.hasNext()) {
+      FileStatus part = parts.next();
+      if (part.getLen() > 0) {
+        SwiftObjectPath partPath = toObjectPath(part.getPath());
+        SwiftSegment segment = toSegment(partPath,
+                swiftRestClient.headRequest(partPath,
+                        swiftRestClient.consistencyHeaders(partPath)));
+        segments.add(segment);
+        listed += segment.getSize();
+      }
+    }
+    if (listed != length) {
+      throw new SwiftException("The segments listed under " + path
+              + " hold " + listed + " bytes, but the file is " + length
+              + " bytes long; the listing may not be up to date");
+    }
+    return segments;
+  }
+
+  /**
+   * Get the segments of a static large object from its manifest
+   *
+   * @param path   path of the manifest
+   * @param length length of the object, from a HEAD of it
+   * @return the non-empty segments, in order
+   * @throws IOException on a problem, including a manifest which cannot
+   *                     be parsed or does not add up to the length
+   */
+  private List<SwiftSegment> getStaticSegments(Path path, long length)
+          throws IOException {
+    SwiftObjectPath objectPath = toObjectPath(path);
+    byte[] manifest = swiftRestClient.getStaticLargeObjectManifest(objectPath,
+            swiftRestClient.consistencyHeaders(objectPath));
+    JsonNode entries;
+    try {
+      entries = JSONUtil.getJsonMapper().readTree(
+              new String(manifest, "UTF-8"));
+    } catch (IOException e) {
+      throw new SwiftOperationFailedException(
+              "could not parse the manifest of " + path, e);
+    }
+    List<SwiftSegment> segments = new ArrayList<SwiftSegment>();
+    long total = 0;
+    for (JsonNode entry : entries) {
+      //names are /container/object
+      String name = entry.path("name").getTextValue();
+      int split = name == null ? -1 : name.indexOf('/', 1);
+      if (split < 0) {
+        throw new SwiftOperationFailedException(
+                "no segment name in the manifest of " + path + ": " + entry);
+      }
+      long size = entry.path("bytes").getLongValue();
+      if (size > 0) {
+        segments.add(new SwiftSegment(
+                new SwiftObjectPath(name.substring(1, split),
+                        name.substring(split)),
+                entry.path("hash").getTextValue(),
+                size));
+        total += size;
+      }
+    }
+    if (total != length) {
+      throw new SwiftException("The segments in the manifest of " + path
+              + " hold " + total + " bytes, but the file is " + length
+              + " bytes long");
+    }
+    return segments;
+  }
+
+  /**
+   * Describe an object as a segment from the headers of a HEAD of it
+   *
+   * @param path    object path
+   * @param headers response headers
+   * @return the segment
+   */
+  private static SwiftSegment toSegment(SwiftObjectPath path, Header[] headers) {
+    String etag = getHeader(headers, SwiftProtocolConstants.HEADER_ETAG);
+    String length = getHeader(headers, SwiftProtocolConstants.HEADER_CONTENT_LENGTH);
+    return new SwiftSegment(path,
+            etag == null ? null : SwiftUtils.unquoteETag(etag),
+            length == null ? 0 : Long.parseLong(length));
+  }
+
+  /**
+   * Find a header of a response; header names are case insensitive
+   *
+   * @param headers response headers
+   * @param name    header name
+   * @return its value, or null if it is not there
+   */
+  private static String getHeader(Header[] headers, String name) {
+    for (Header header : headers) {
+      if (name.equalsIgnoreCase(header.getName())) {
+        return header.getValue();
+      }
+    }
+    return null;
   }
 
   /**
@@ -159,28 +767,48 @@ public class SwiftNativeFileSystemStore {
    */
   public SwiftFileStatus getObjectMetadata(Path path) throws IOException {
     SwiftObjectPath objectPath = toObjectPath(path);
+    if (metadataCache != null) {
+      SwiftFileStatus cached = metadataCache.get(objectPath);
+      if (SwiftMetadataCache.isAbsent(cached)) {
+        throw new FileNotFoundException("Not Found " + path.toUri());
+      }
+      if (cached != null) {
+        return cached;
+      }
+    }
     final Header[] headers;
-    headers = swiftRestClient.headRequest(objectPath,
-            SwiftRestClient.NEWEST);
+    try {
+      headers = swiftRestClient.headRequest(objectPath,
+              swiftRestClient.consistencyHeaders(objectPath));
+    } catch (FileNotFoundException e) {
+      cacheAbsence(objectPath);
+      throw e;
+    }
     //no headers is treated as a missing file
     if (headers.length == 0) {
+      cacheAbsence(objectPath);
       throw new FileNotFoundException("Not Found " + path.toUri());
     }
 
     boolean isDir = false;
     long length = 0;
     long lastModified = System.currentTimeMillis();
+    String etag = null;
     for (Header header : headers) {
+      //header names are case insensitive
       String headerName = header.getName();
-      if (headerName.equals(SwiftProtocolConstants.X_CONTAINER_OBJECT_COUNT) ||
-              headerName.equals(SwiftProtocolConstants.X_CONTAINER_BYTES_USED)) {
+      if (headerName.equalsIgnoreCase(SwiftProtocolConstants.X_CONTAINER_OBJECT_COUNT) ||
+              headerName.equalsIgnoreCase(SwiftProtocolConstants.X_CONTAINER_BYTES_USED)) {
         length = 0;
         isDir = true;
       }
-      if (SwiftProtocolConstants.HEADER_CONTENT_LENGTH.equals(headerName)) {
+      if (SwiftProtocolConstants.HEADER_CONTENT_LENGTH.equalsIgnoreCase(headerName)) {
         length = Long.parseLong(header.getValue());
       }
-      if (SwiftProtocolConstants.HEADER_LAST_MODIFIED.equals(headerName)) {
+      if (SwiftProtocolConstants.HEADER_ETAG.equalsIgnoreCase(headerName)) {
+        etag = header.getValue();
+      }
+      if (SwiftProtocolConstants.HEADER_LAST_MODIFIED.equalsIgnoreCase(headerName)) {
         final SimpleDateFormat simpleDateFormat = new SimpleDateFormat(PATTERN);
         try {
           lastModified = simpleDateFormat.parse(header.getValue()).getTime();
@@ -191,12 +819,65 @@ public class SwiftNativeFileSystemStore {
     }
 
     Path correctSwiftPath = getCorrectSwiftPath(path);
-    return new SwiftFileStatus(length,
+    SwiftFileStatus status = new SwiftFileStatus(length,
             isDir,
             0,
             getBlocksize(),
             lastModified,
             correctSwiftPath);
+    status.setEtag(etag);
+    if (metadataCache != null) {
+      metadataCache.put(objectPath, status);
+    }
+    return status;
+  }
+
+  /**
+   * Remember that a path does not exist
+   *
+   * @param path object path
+   */
+  private void cacheAbsence(SwiftObjectPath path) {
+    if (metadataCache != null) {
+      metadataCache.putAbsent(path);
+    }
+  }
+
+  /**
+   * Drop any cached metadata of a path which this client has changed
+   *
+   * @param path object path
+   */
+  private void invalidateMetadata(SwiftObjectPath path) {
+    if (metadataCache != null) {
+      metadataCache.invalidate(path);
+    }
+  }
+
+  /**
+   * Cache the metadata of the files in a page of a listing, so that
+   * a listing followed by a status probe of each file needs no more
+   * requests. Zero-byte entries are skipped: they may be directory
+   * markers or partitioned file manifests, and the listing does not
+   * say which, nor the length of a partitioned file.
+   *
+   * @param page page of a listing
+   * @throws IOException if a listed path is invalid
+   */
+  private void cacheListing(SwiftListingDecoder.Page page) throws IOException {
+    for (FileStatus entry : page.getEntries()) {
+      if (entry.getLen() > 0) {
+        //same form as the status built from a HEAD
+        SwiftFileStatus status = new SwiftFileStatus(entry.getLen(),
+                false,
+                0,
+                getBlocksize(),
+                entry.getModificationTime(),
+                entry.getPath());
+        status.setEtag(getEtag(entry));
+        metadataCache.put(toObjectPath(entry.getPath()), status);
+      }
+    }
   }
 
 
@@ -209,8 +890,9 @@ public class SwiftNativeFileSystemStore {
    * @throws FileNotFoundException path doesn't resolve to an object
    */
   public InputStream getObject(Path path) throws IOException {
-    return swiftRestClient.getDataAsInputStream(toObjectPath(path),
-            SwiftRestClient.NEWEST);
+    SwiftObjectPath objectPath = toObjectPath(path);
+    return swiftRestClient.getDataAsInputStream(objectPath,
+            swiftRestClient.consistencyHeaders(objectPath));
   }
 
   /**
@@ -228,26 +910,75 @@ public class SwiftNativeFileSystemStore {
             toObjectPath(path), byteRangeStart, length);
   }
 
+  /**
+   * Open the start of an object with a ranged GET whose response also
+   * gives the length of the whole object, so that it can be read
+   * without a HEAD first.
+   *
+   * @param path   path to object
+   * @param length no. of bytes to request
+   * @return an input stream that must be closed, or null if the object
+   *         is empty: no range of it can be satisfied
+   * @throws IOException           IO problems
+   * @throws FileNotFoundException path doesn't resolve to an object
+   */
+  public HttpInputStreamWithRelease getObjectStart(Path path, long length)
+          throws IOException {
+    try {
+      return swiftRestClient.getDataAsInputStream(toObjectPath(path), 0,
+              length);
+    } catch (EOFException e) {
+      //416: there is no first byte
+      return null;
+    }
+  }
+
   /**
    * List a directory.
-   * This is O(n) for the number of objects in this path.
+   * This is O(n) for the number of objects in this path, and builds
+   * the entire listing in memory; use
+   * {@link #listDirectoryIterator(SwiftObjectPath, boolean)} for large
+   * directories.
+   *
+   * @param path working path
+   * @param listDeep list everything under the path, not just its children
+   * @return Collection of file statuses
+   * @throws IOException IO problems
+   */
+  private List<FileStatus> listDirectory(SwiftObjectPath path, boolean listDeep) throws IOException {
+    final ArrayList<FileStatus> files = new ArrayList<FileStatus>();
+    RemoteIterator<FileStatus> listing = listDirectoryIterator(path, listDeep);
+    while (listing.hasNext()) {
+      files.add(listing.next());
+    }
+    return files;
+  }
+
+  /**
+   * List a directory lazily, a page at a time.
+   * The first page is retrieved before this method returns, so that
+   * a missing path is reported immediately; later pages are fetched
+   * in the background as the iterator is consumed.
    *
    * @param path working path
-   * @return Collection of file statuses
-   * @throws IOException IO problems
+   * @param listDeep list everything under the path, not just its children
+   * @return an iterator over the file statuses
+   * @throws IOException           IO problems
+   * @throws FileNotFoundException if the path is nonexistent
    */
-  private List<FileStatus> listDirectory(SwiftObjectPath path, boolean listDeep) throws IOException {
-    final byte[] bytes;
-    final ArrayList<FileStatus> files = new ArrayList<FileStatus>();
+  RemoteIterator<FileStatus> listDirectoryIterator(SwiftObjectPath path,
+                                                   boolean listDeep)
+          throws IOException {
+    final SwiftListingDecoder.Page firstPage;
     try {
-      bytes = swiftRestClient.listDeepObjectsInDirectory(path, listDeep);
+      firstPage = fetchPage(path, listDeep, null);
     } catch (FileNotFoundException e) {
       if (LOG.isDebugEnabled()) {
         LOG.debug("" +
                 "File/Directory not found " + path);
       }
       if (SwiftUtils.isRootDir(path)) {
-        return Collections.emptyList();
+        return emptyListing();
       } else {
         throw e;
       }
@@ -256,7 +987,7 @@ public class SwiftNativeFileSystemStore {
       if (e.getStatusCode() == HttpStatus.SC_NO_CONTENT) {
         //this can come back on a root list if the container is empty
         if (SwiftUtils.isRootDir(path)) {
-          return Collections.emptyList();
+          return emptyListing();
         } else {
           //NO_CONTENT returned on something other than the root directory;
           //see if it is there, and convert to empty list or not found
@@ -265,11 +996,10 @@ public class SwiftNativeFileSystemStore {
 
           if (stat.isDir()) {
             //it's an empty directory. state that
-            return Collections.emptyList();
+            return emptyListing();
           } else {
             //it's a file -return that as the status
-            files.add(stat);
-            return files;
+            return singletonListing(stat);
           }
         }
       } else {
@@ -278,32 +1008,93 @@ public class SwiftNativeFileSystemStore {
       }
     }
 
-    final CollectionType collectionType = JSONUtil.getJsonMapper().getTypeFactory().
-            constructCollectionType(List.class, SwiftObjectFileStatus.class);
-
-    final List<SwiftObjectFileStatus> fileStatusList =
-            JSONUtil.toObject(new String(bytes), collectionType);
-
     //this can happen if user lists file /data/files/file
     //in this case swift will return empty array
-    if (fileStatusList.isEmpty()) {
+    if (firstPage.size() == 0) {
       final SwiftFileStatus objectMetadata = getObjectMetadata(getCorrectSwiftPath(path));
       if (objectMetadata.isFile()) {
-        files.add(objectMetadata);
+        return singletonListing(objectMetadata);
       }
+      return emptyListing();
+    }
+
+    return new SwiftListingIterator(this, listingPrefetcher, path, listDeep,
+            firstPage);
+  }
 
-      return files;
+  /**
+   * Retrieve one page of a listing
+   *
+   * @param path     path being listed
+   * @param listDeep is this a deep listing
+   * @param marker   name to resume the listing after; null for the first page
+   * @return the page
+   * @throws IOException IO problems
+   */
+  private SwiftListingDecoder.Page fetchPage(SwiftObjectPath path,
+                                             boolean listDeep,
+                                             String marker)
+          throws IOException {
+    SwiftListingDecoder.Page page = swiftRestClient.listDeepObjectsInDirectory(
+            path, listDeep, marker, null, swiftRestClient.getListingLimit(),
+            listingDecoder);
+    if (metadataCache != null) {
+      cacheListing(page);
     }
+    return page;
+  }
 
-    for (SwiftObjectFileStatus status : fileStatusList) {
-      if (status.getName() != null) {
-        files.add(new SwiftFileStatus(status.getBytes(), status.getBytes() == 0,
-                1, 0, status.getLast_modified().getTime(),
-                getCorrectSwiftPath(new Path(status.getName()))));
+  /**
+   * Retrieve a page of a listing after the first one.
+   * An empty response here simply means there are no more entries.
+   *
+   * @param path     path being listed
+   * @param listDeep is this a deep listing
+   * @param marker   name to resume the listing after
+   * @return the page
+   * @throws IOException IO problems
+   */
+  SwiftListingDecoder.Page listPage(SwiftObjectPath path,
+                                    boolean listDeep,
+                                    String marker) throws IOException {
+    try {
+      return fetchPage(path, listDeep, marker);
+    } catch (SwiftInvalidResponseException e) {
+      if (e.getStatusCode() == HttpStatus.SC_NO_CONTENT) {
+        return new SwiftListingDecoder.Page();
       }
+      throw e;
     }
+  }
 
-    return files;
+  private static RemoteIterator<FileStatus> emptyListing() {
+    return listingOf(Collections.<FileStatus>emptyList());
+  }
+
+  private static RemoteIterator<FileStatus> singletonListing(FileStatus status) {
+    return listingOf(Collections.singletonList(status));
+  }
+
+  /**
+   * Wrap an in-memory collection as a remote iterator
+   *
+   * @param statuses statuses to iterate over
+   * @return an iterator
+   */
+  private static RemoteIterator<FileStatus> listingOf(
+          Collection<FileStatus> statuses) {
+    final Iterator<FileStatus> iterator = statuses.iterator();
+    return new RemoteIterator<FileStatus>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public FileStatus next() {
+        return iterator.next();
+      }
+    };
   }
 
   /**
@@ -320,6 +1111,23 @@ public class SwiftNativeFileSystemStore {
     return fileStatuses.toArray(new FileStatus[fileStatuses.size()]);
   }
 
+  /**
+   * List the elements in or under a directory a page at a time.
+   * A recursive listing is made as a single deep listing of the object
+   * prefix, rather than one listing per directory.
+   *
+   * @param path      path to work with
+   * @param recursive list the entire tree under the path
+   * @return an iterator over the file statuses
+   * @throws IOException           on IO problems
+   * @throws FileNotFoundException if the path is nonexistent
+   */
+  public RemoteIterator<FileStatus> listSubPathsIterator(Path path,
+                                                         boolean recursive)
+          throws IOException {
+    return listDirectoryIterator(toDirPath(path), recursive);
+  }
+
   /**
    * Create a directory
    *
@@ -332,8 +1140,11 @@ public class SwiftNativeFileSystemStore {
 
   private void innerCreateDirectory(SwiftObjectPath swiftObjectPath)
           throws IOException {
-
-    swiftRestClient.putRequest(swiftObjectPath);
+    try {
+      swiftRestClient.putRequest(swiftObjectPath);
+    } finally {
+      invalidateMetadata(swiftObjectPath);
+    }
   }
 
   private SwiftObjectPath toDirPath(Path path) throws
@@ -354,6 +1165,10 @@ public class SwiftNativeFileSystemStore {
    * @throws IOException on problems determining the locations
    */
   public List<URI> getObjectLocation(Path path) throws IOException {
+    SwiftObjectRing ring = getObjectRing();
+    if (ring != null) {
+      return locate(ring, swiftRestClient.getAccount(), toObjectPath(path));
+    }
     final byte[] objectLocation;
     objectLocation = swiftRestClient.getObjectLocation(toObjectPath(path));
     if (objectLocation == null || objectLocation.length == 0) {
@@ -363,6 +1178,195 @@ public class SwiftNativeFileSystemStore {
     return extractUris(new String(objectLocation), path);
   }
 
+  /**
+   * Get the locations of many objects. Locations are taken from the
+   * cache where it has them for the same version of the object; the rest
+   * are looked up in batches, or one by one if the object endpoint
+   * cannot locate objects in batches.
+   *
+   * @param objects statuses of the objects; their ETags are used to
+   *                validate cached locations
+   * @return the locations of each object, keyed by the path of its status;
+   *         an empty list for an object which could not be located
+   * @throws IOException on a failure
+   */
+  public Map<Path, List<URI>> getObjectLocations(
+          List<? extends FileStatus> objects) throws IOException {
+    Map<Path, List<URI>> locations =
+            new HashMap<Path, List<URI>>(objects.size());
+    SwiftObjectRing ring = getObjectRing();
+    if (ring != null) {
+      String account = swiftRestClient.getAccount();
+      for (FileStatus object : objects) {
+        locations.put(object.getPath(),
+                locate(ring, account, toObjectPath(object.getPath())));
+      }
+      return locations;
+    }
+    if (!swiftRestClient.isLocationAware()) {
+      for (FileStatus object : objects) {
+        locations.put(object.getPath(), new LinkedList<URI>());
+      }
+      return locations;
+    }
+    Map<SwiftObjectPath, FileStatus> missing =
+            new LinkedHashMap<SwiftObjectPath, FileStatus>();
+    for (FileStatus object : objects) {
+      SwiftObjectPath objectPath = toObjectPath(object.getPath());
+      List<URI> cached = locationCache == null
+              ? null
+              : locationCache.get(objectPath, getEtag(object));
+      if (cached != null) {
+        locations.put(object.getPath(), cached);
+      } else {
+        missing.put(objectPath, object);
+      }
+    }
+    int batchSize = swiftRestClient.getLocationBatchSize();
+    List<SwiftObjectPath> batch = new ArrayList<SwiftObjectPath>(
+            Math.min(batchSize, missing.size()));
+    for (SwiftObjectPath objectPath : missing.keySet()) {
+      batch.add(objectPath);
+      if (batch.size() == batchSize) {
+        locate(batch, missing, locations);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      locate(batch, missing, locations);
+    }
+    return locations;
+  }
+
+  /**
+   * Get the object ring to locate objects with, loading it the first
+   * time it is needed
+   *
+   * @return the ring, or null if the object endpoint is to be asked
+   * @throws IOException if the ring could not be loaded
+   */
+  private synchronized SwiftObjectRing getObjectRing() throws IOException {
+    String location = swiftRestClient.getLocationRing();
+    if (objectRing == null && location != null) {
+      InputStream in;
+      if (location.startsWith("http://") || location.startsWith("https://")) {
+        in = new URL(location).openStream();
+      } else {
+        Path ringPath = new Path(location);
+        in = ringPath.getFileSystem(conf).open(ringPath);
+      }
+      try {
+        objectRing = SwiftObjectRing.load(in,
+                swiftRestClient.getLocationRingHashPrefix(),
+                swiftRestClient.getLocationRingHashSuffix());
+      } catch (IOException e) {
+        throw new SwiftConfigurationException("Failed to load the object ring "
+                + location + ": " + e, e);
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Loaded object ring " + location + " with "
+                + objectRing.getPartitionCount() + " partitions");
+      }
+    }
+    return objectRing;
+  }
+
+  /**
+   * Locate an object with the object ring
+   *
+   * @param ring       object ring
+   * @param account    account name
+   * @param objectPath object path
+   * @return the endpoints of the object on each of its nodes
+   * @throws SwiftException if an endpoint could not be built
+   */
+  private static List<URI> locate(SwiftObjectRing ring,
+                                  String account,
+                                  SwiftObjectPath objectPath)
+          throws SwiftException {
+    String name = objectPath.toUriPath();
+    int split = name.indexOf('/');
+    if (split < 0) {
+      //a container is not an object
+      return new LinkedList<URI>();
+    }
+    return ring.getEndpoints(account,
+            name.substring(0, split),
+            name.substring(split + 1));
+  }
+
+  /**
+   * Look up the locations of a batch of objects, and cache them.
+   * A batch too large for the object endpoint is split in two.
+   *
+   * @param batch     paths of the objects
+   * @param statuses  statuses of the objects, by path
+   * @param locations map to add the locations to
+   * @throws IOException on a failure
+   */
+  private void locate(List<SwiftObjectPath> batch,
+                      Map<SwiftObjectPath, FileStatus> statuses,
+                      Map<Path, List<URI>> locations) throws IOException {
+    Map<SwiftObjectPath, List<URI>> found = null;
+    if (batchLocations && batch.size() > 1) {
+      try {
+        found = swiftRestClient.getObjectLocations(batch);
+        if (found == null) {
+          LOG.debug("Object endpoint cannot locate objects in batches");
+          batchLocations = false;
+        }
+      } catch (IOException e) {
+        if (e instanceof SwiftInvalidResponseException
+                && ((SwiftInvalidResponseException) e).getStatusCode()
+                == HttpStatus.SC_REQUEST_TOO_LONG) {
+          LOG.debug("Locating " + batch.size() + " objects in two batches");
+          int half = batch.size() / 2;
+          locate(batch.subList(0, half), statuses, locations);
+          locate(batch.subList(half, batch.size()), statuses, locations);
+          return;
+        }
+        //locations are only hints; look them up one by one instead,
+        //but keep batching: the failure may be a passing one
+        LOG.warn("Failed to locate " + batch.size() + " objects: " + e, e);
+      }
+    }
+    for (SwiftObjectPath objectPath : batch) {
+      FileStatus status = statuses.get(objectPath);
+      List<URI> uris = found == null ? null : found.get(objectPath);
+      if (uris == null) {
+        uris = getObjectLocation(status.getPath());
+      }
+      //an object which could not be located is looked up again next time
+      if (locationCache != null && !uris.isEmpty()) {
+        locationCache.put(objectPath, getEtag(status), uris);
+      }
+      locations.put(status.getPath(), uris);
+    }
+  }
+
+  /**
+   * Get the ETag of an object, if its status carries one
+   *
+   * @param status status of the object
+   * @return the ETag or null
+   */
+  private static String getEtag(FileStatus status) {
+    return status instanceof SwiftFileStatus
+            ? ((SwiftFileStatus) status).getEtag()
+            : null;
+  }
+
+  /**
+   * Get the location cache of this store
+   *
+   * @return the cache, or null if object locations are not cached
+   */
+  public SwiftLocationCache getLocationCache() {
+    return locationCache;
+  }
+
   /**
    * deletes object from Swift
    *
@@ -373,7 +1377,11 @@ public class SwiftNativeFileSystemStore {
   public boolean deleteObject(Path path) throws IOException {
     SwiftObjectPath swiftObjectPath = toObjectPath(path);
     if (!SwiftUtils.isRootDir(swiftObjectPath)) {
-      return swiftRestClient.delete(swiftObjectPath);
+      try {
+        return swiftRestClient.delete(swiftObjectPath);
+      } finally {
+        invalidateMetadata(swiftObjectPath);
+      }
     } else {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Not deleting root directory entry");
@@ -394,6 +1402,229 @@ public class SwiftNativeFileSystemStore {
     return deleteObject(path);
   }
 
+  /**
+   * Delete everything under a directory, but not the directory itself,
+   * working from a single deep listing. The objects are deleted in
+   * batches with the bulk middleware; if the store does not have it,
+   * a bounded number of objects are deleted at the same time on the
+   * delete executor instead. Objects which vanish during the delete
+   * are skipped.
+   *
+   * @param path directory
+   * @throws IOException           on a failure to list or delete
+   * @throws FileNotFoundException if the directory is not there
+   */
+  public void deleteChildren(Path path) throws IOException {
+    SwiftObjectPath dirObject = toDirPath(path);
+    RemoteIterator<FileStatus> listing =
+            listDirectoryIterator(dirObject, true);
+    int batchSize = swiftRestClient.getBulkDeleteSize();
+    List<SwiftObjectPath> batch = new ArrayList<SwiftObjectPath>();
+    int deleted = 0;
+    while (listing.hasNext()) {
+      SwiftObjectPath child = toObjectPath(listing.next().getPath());
+      if (child.equals(dirObject)) {
+        //a marker of the directory itself
+        continue;
+      }
+      batch.add(child);
+      if (batch.size() == batchSize) {
+        deleteObjects(batch);
+        deleted += batch.size();
+        LOG.info("Delete progress: " + deleted + " objects under "
+                + path + " deleted");
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      deleteObjects(batch);
+    }
+  }
+
+  /**
+   * Delete a batch of objects, with a single bulk delete request if
+   * the store supports them
+   *
+   * @param paths objects to delete
+   * @throws IOException on a failure to delete any of them
+   */
+  private void deleteObjects(List<SwiftObjectPath> paths) throws IOException {
+    if (bulkDelete) {
+      SwiftBulkDeleteResult result;
+      try {
+        result = swiftRestClient.bulkDelete(paths);
+      } finally {
+        for (SwiftObjectPath path : paths) {
+          invalidateMetadata(path);
+        }
+      }
+      if (result != null) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Bulk delete of " + paths.size() + " objects: " + result);
+        }
+        if (result.getFailed().isEmpty()) {
+          return;
+        }
+        //try the objects the middleware could not delete one at a time
+        LOG.info("Bulk delete failed to delete " + result.getFailed().size()
+                + " objects; deleting them individually");
+        paths = failedBulkDeletes(paths, result.getFailed());
+      } else {
+        LOG.info("Bulk delete is not available from " + uri
+                + "; deleting objects individually");
+        bulkDelete = false;
+      }
+    }
+    deleteInParallel(paths);
+  }
+
+  /**
+   * Find the objects named in the failures of a bulk delete
+   *
+   * @param paths  objects in the request
+   * @param failed the URL-encoded names of the objects which failed
+   * @return the objects which failed
+   * @throws SwiftException if a failure does not name one of the objects
+   */
+  private static List<SwiftObjectPath> failedBulkDeletes(
+          List<SwiftObjectPath> paths,
+          List<String> failed) throws SwiftException {
+    Map<String, SwiftObjectPath> byName =
+            new HashMap<String, SwiftObjectPath>(paths.size());
+    for (SwiftObjectPath path : paths) {
+      byName.put(SwiftRestClient.bulkDeleteName(path), path);
+    }
+    List<SwiftObjectPath> retries = new ArrayList<SwiftObjectPath>(failed.size());
+    for (String name : failed) {
+      SwiftObjectPath path = byName.get(name);
+      if (path == null) {
+        try {
+          path = byName.get(URLDecoder.decode(name, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+          throw new SwiftException("Cannot decode " + name, e);
+        }
+      }
+      if (path == null) {
+        throw new SwiftException("Bulk delete failed on unknown object " + name);
+      }
+      retries.add(path);
+    }
+    return retries;
+  }
+
+  /**
+   * Delete objects one request each, a bounded number at the same time
+   * on the delete executor. Failures do not stop the other deletes.
+   *
+   * @param paths objects to delete
+   * @throws IOException if any object could not be deleted
+   */
+  private void deleteInParallel(List<SwiftObjectPath> paths)
+          throws IOException {
+    //enough deletes queued to keep every thread busy
+    int window = 4 * swiftRestClient.getDeleteThreads();
+    LinkedList<Future<Boolean>> deletes = new LinkedList<Future<Boolean>>();
+    List<IOException> failures = new ArrayList<IOException>();
+    try {
+      for (final SwiftObjectPath path : paths) {
+        if (deletes.size() >= window) {
+          awaitDelete(deletes.removeFirst(), failures);
+        }
+        deletes.add(deleter.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws IOException {
+            try {
+              return swiftRestClient.delete(path);
+            } catch (FileNotFoundException e) {
+              return false;
+            } finally {
+              invalidateMetadata(path);
+            }
+          }
+        }));
+      }
+    } finally {
+      while (!deletes.isEmpty()) {
+        awaitDelete(deletes.removeFirst(), failures);
+      }
+    }
+    if (!failures.isEmpty()) {
+      IOException first = failures.get(0);
+      throw new SwiftException("Failed to delete " + failures.size()
+              + " of " + paths.size() + " objects: " + first, first);
+    }
+  }
+
+  /**
+   * Wait for the delete of an object and record any failure
+   *
+   * @param future   the delete
+   * @param failures failures of the deletes so far
+   * @throws IOException if interrupted
+   */
+  private void awaitDelete(Future<Boolean> future,
+                           List<IOException> failures) throws IOException {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      throw (IOException) new InterruptedIOException(
+              "Interrupted during a delete").initCause(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        failures.add((IOException) cause);
+      } else {
+        throw new SwiftException("Failure in a delete", cause);
+      }
+    }
+  }
+
+  /**
+   * Get the checksum of a file from the ETag of its object, with a
+   * single HEAD request; the data is not read. The ETag of a manifest
+   * is that of its segments, so it gives a checksum of a different kind.
+   *
+   * @param path path
+   * @return the checksum, or null for a directory or an object
+   *         without an ETag
+   * @throws IOException           on a problem
+   * @throws FileNotFoundException if there is nothing at the end
+   */
+  public SwiftFileChecksum getFileChecksum(Path path) throws IOException {
+    SwiftObjectPath objectPath = toObjectPath(path);
+    Header[] headers = swiftRestClient.headRequest(objectPath,
+            swiftRestClient.consistencyHeaders(objectPath));
+    if (headers.length == 0) {
+      throw new FileNotFoundException("Not Found " + path.toUri());
+    }
+    String etag = null;
+    boolean largeObject = false;
+    long length = 0;
+    for (Header header : headers) {
+      String headerName = header.getName();
+      if (headerName.equalsIgnoreCase(SwiftProtocolConstants.X_CONTAINER_OBJECT_COUNT)) {
+        return null;
+      }
+      if (SwiftProtocolConstants.HEADER_ETAG.equalsIgnoreCase(headerName)) {
+        etag = SwiftUtils.unquoteETag(header.getValue());
+      }
+      if (SwiftProtocolConstants.X_OBJECT_MANIFEST.equalsIgnoreCase(headerName)
+              || SwiftProtocolConstants.X_STATIC_LARGE_OBJECT.equalsIgnoreCase(headerName)) {
+        largeObject = true;
+      }
+      if (SwiftProtocolConstants.HEADER_CONTENT_LENGTH.equalsIgnoreCase(headerName)) {
+        length = Long.parseLong(header.getValue());
+      }
+    }
+    //empty objects are directories
+    if (etag == null || length == 0) {
+      return null;
+    }
+    return largeObject
+            ? SwiftFileChecksum.ofLargeObject(etag)
+            : SwiftFileChecksum.ofObject(etag);
+  }
+
   /**
    * Does the object exist
    *
@@ -415,11 +1646,40 @@ public class SwiftNativeFileSystemStore {
    *                     is downgraded to an object does not exist return code
    */
   public boolean objectExists(SwiftObjectPath path) throws IOException {
+    if (metadataCache != null) {
+      SwiftFileStatus cached = metadataCache.get(path);
+      if (cached != null) {
+        return !SwiftMetadataCache.isAbsent(cached);
+      }
+    }
     try {
       Header[] headers = swiftRestClient.headRequest(path,
-              SwiftRestClient.NEWEST);
+              swiftRestClient.consistencyHeaders(path));
       //no headers is treated as a missing file
-      return headers.length != 0;
+      if (headers.length != 0) {
+        return true;
+      }
+    } catch (FileNotFoundException e) {
+      //fall through to the missing file case
+    }
+    cacheAbsence(path);
+    return false;
+  }
+
+  /**
+   * Does the object exist, asking for the newest copy of it whatever the
+   * consistency policy, and bypassing the metadata cache. This is for
+   * decisions which would destroy data if taken on a stale answer, such
+   * as one written by another process.
+   *
+   * @param path object path
+   * @return true if the metadata of an object could be retrieved
+   * @throws IOException IO problems other than FileNotFound
+   */
+  public boolean newestObjectExists(Path path) throws IOException {
+    try {
+      return swiftRestClient.headRequest(toObjectPath(path),
+              SwiftRestClient.NEWEST).length != 0;
     } catch (FileNotFoundException e) {
       return false;
     }
@@ -431,11 +1691,14 @@ public class SwiftNativeFileSystemStore {
    * into the Distributed Hash Table, "the ring" of filenames.
    * <p/>
    * Because of the nature of the operation, it is not atomic.
+   * The objects under a directory are moved in parallel.
    *
    * @param src source file/dir
    * @param dst destination
    * @throws IOException                   IO failure
    * @throws SwiftOperationFailedException if the rename failed
+   * @throws SwiftRenameFailedException    if some objects under a directory
+   *                                       were moved, but not all
    * @throws FileNotFoundException         if the source directory is missing, or
    *                                       the parent directory of the destination
    */
@@ -546,17 +1809,54 @@ public class SwiftNativeFileSystemStore {
         throw new SwiftOperationFailedException(
                 "cannot move a directory under itself");
       }
-      //enum the child entries and everything underneath
-      List<FileStatus> fileStatuses = listDirectory(srcObject, true);
+      //enum the child entries and everything underneath, a page at a time
+      RemoteIterator<FileStatus> fileStatuses =
+              listDirectoryIterator(srcObject, true);
 
       LOG.info("mv " + srcObject + " " + targetPath);
 
-      logDirectory("Directory to copy ", srcObject, fileStatuses);
+      moveChildren(src, targetPath, fileStatuses);
+      //now rename self. If missing, create the dest directory and warn
+      if (!SwiftUtils.isRootDir(srcObject)) {
+        try {
+          copyThenDeleteObject(srcObject,
+                  targetObjectPath);
+        } catch (FileNotFoundException e) {
+          //create the destination directory
+          LOG.warn("Source directory deleted during rename", e);
+          innerCreateDirectory(destObject);
+        }
+      }
+    }
+  }
 
-      //iterative copy of everything under the directory
-      String srcURI = src.toUri().toString();
-      int prefixStripCount = srcURI.length() + 1;
-      for (FileStatus fileStatus : fileStatuses) {
+  /**
+   * Move everything under a directory, copying and deleting a bounded
+   * number of objects at the same time on the rename executor. The move
+   * of each object is retried after a failure; entries which vanish
+   * during the rename are skipped. Failures do not stop the other moves.
+   *
+   * @param src          source directory
+   * @param targetPath   destination directory
+   * @param fileStatuses everything under the source directory
+   * @throws SwiftRenameFailedException if some objects could not be moved
+   * @throws IOException                on a failure to list the source
+   */
+  private void moveChildren(Path src,
+                            Path targetPath,
+                            RemoteIterator<FileStatus> fileStatuses)
+          throws IOException {
+    String srcURI = src.toUri().toString();
+    int prefixStripCount = srcURI.length() + 1;
+    //enough moves queued to keep every thread busy, without holding
+    //a future for every object of a huge directory
+    int window = 4 * swiftRestClient.getRenameThreads();
+    LinkedList<Future<ObjectMove>> moves = new LinkedList<Future<ObjectMove>>();
+    List<String> moved = new ArrayList<String>();
+    List<ObjectMove> failed = new ArrayList<ObjectMove>();
+    try {
+      while (fileStatuses.hasNext()) {
+        FileStatus fileStatus = fileStatuses.next();
         Path copySourcePath = fileStatus.getPath();
         String copySourceURI = copySourcePath.toUri().toString();
 
@@ -571,43 +1871,110 @@ public class SwiftNativeFileSystemStore {
                   + "; copyDestSubPath=" + copyDestSubPath
                   + "; copyDestPath=" + copyDestPath);
         }
-        SwiftObjectPath copyDestination = toObjectPath(copyDestPath);
-
-        try {
-          copyThenDeleteObject(toObjectPath(copySourcePath),
-                  copyDestination);
-        } catch (FileNotFoundException e) {
-          LOG.info("Skipping rename of " + copySourcePath);
+        if (moves.size() >= window) {
+          awaitMove(moves.removeFirst(), moved, failed);
         }
+        moves.add(renamer.submit(new ObjectMove(copySourcePath,
+                toObjectPath(copySourcePath),
+                toObjectPath(copyDestPath))));
       }
-      //now rename self. If missing, create the dest directory and warn
-      if (!SwiftUtils.isRootDir(srcObject)) {
-        try {
-          copyThenDeleteObject(srcObject,
-                  targetObjectPath);
-        } catch (FileNotFoundException e) {
-          //create the destination directory
-          LOG.warn("Source directory deleted during rename", e);
-          innerCreateDirectory(destObject);
-        }
+    } finally {
+      while (!moves.isEmpty()) {
+        awaitMove(moves.removeFirst(), moved, failed);
+      }
+    }
+    if (!failed.isEmpty()) {
+      List<String> failedPaths = new ArrayList<String>(failed.size());
+      for (ObjectMove move : failed) {
+        failedPaths.add(move.source.toString());
       }
+      ObjectMove first = failed.get(0);
+      throw new SwiftRenameFailedException("Failed to rename " + src
+              + " to " + targetPath + ": moved " + moved.size()
+              + " objects, but not " + failed.size() + ", including "
+              + first.source + ": " + first.failure,
+              moved, failedPaths, first.failure);
     }
   }
 
   /**
-   * Debug action to dump directory statuses to the debug log
+   * Wait for the move of an object and record its outcome
    *
-   * @param message    explanation
-   * @param objectPath object path (can be null)
-   * @param statuses   listing output
+   * @param future the move
+   * @param moved  source paths of the objects moved
+   * @param failed the moves which failed
+   * @throws IOException if interrupted
    */
-  private void logDirectory(String message, SwiftObjectPath objectPath,
-                            Iterable<FileStatus> statuses) {
+  private void awaitMove(Future<ObjectMove> future,
+                         List<String> moved,
+                         List<ObjectMove> failed) throws IOException {
+    ObjectMove move;
+    try {
+      move = future.get();
+    } catch (InterruptedException e) {
+      throw (IOException) new InterruptedIOException(
+              "Interrupted during a rename").initCause(e);
+    } catch (ExecutionException e) {
+      //moves record their own failures
+      throw new SwiftException("Failure in a rename", e.getCause());
+    }
+    if (move.failure != null) {
+      failed.add(move);
+    } else if (!move.skipped) {
+      moved.add(move.source.toString());
+      if (moved.size() % PROGRESS_INTERVAL == 0) {
+        LOG.info("Rename progress: " + moved.size() + " objects moved");
+      }
+    }
+  }
 
-    if (LOG.isDebugEnabled()) {
-      LOG.debug(message + ": listing of " + objectPath);
-      for (FileStatus fileStatus : statuses) {
-        LOG.debug(fileStatus.getPath());
+  /**
+   * The move of an object by a directory rename, retried after failures
+   */
+  private final class ObjectMove implements Callable<ObjectMove> {
+    private final Path source;
+    private final SwiftObjectPath srcObject;
+    private final SwiftObjectPath destObject;
+
+    /**
+     * was the object gone before it could be moved
+     */
+    private boolean skipped;
+
+    /**
+     * the last failure to move the object; null if it was moved
+     */
+    private IOException failure;
+
+    private ObjectMove(Path source,
+                       SwiftObjectPath srcObject,
+                       SwiftObjectPath destObject) {
+      this.source = source;
+      this.srcObject = srcObject;
+      this.destObject = destObject;
+    }
+
+    @Override
+    public ObjectMove call() {
+      int retries = swiftRestClient.getRenameRetries();
+      for (int attempt = 0; ; attempt++) {
+        try {
+          copyThenDeleteObject(srcObject, destObject);
+          failure = null;
+          return this;
+        } catch (FileNotFoundException e) {
+          LOG.info("Skipping rename of " + source);
+          skipped = true;
+          failure = null;
+          return this;
+        } catch (IOException e) {
+          failure = e;
+          if (attempt >= retries) {
+            LOG.warn("Failed to move " + srcObject + " to " + destObject, e);
+            return this;
+          }
+          LOG.info("Retrying move of " + srcObject + " after " + e);
+        }
       }
     }
   }
@@ -615,7 +1982,11 @@ public class SwiftNativeFileSystemStore {
   public void copy(Path srcKey, Path dstKey) throws IOException {
     SwiftObjectPath srcObject = toObjectPath(srcKey);
     SwiftObjectPath destObject = toObjectPath(dstKey);
-    swiftRestClient.copyObject(srcObject, destObject);
+    try {
+      swiftRestClient.copyObject(srcObject, destObject);
+    } finally {
+      invalidateMetadata(destObject);
+    }
   }
 
 
@@ -637,13 +2008,19 @@ public class SwiftNativeFileSystemStore {
       throw new SwiftException(
               "Can't copy " + srcObject + " onto " + destObject);
     }
-    boolean copySucceeded = swiftRestClient.copyObject(srcObject, destObject);
+    boolean copySucceeded;
+    try {
+      copySucceeded = swiftRestClient.copyObject(srcObject, destObject);
+    } finally {
+      invalidateMetadata(destObject);
+    }
     if (copySucceeded) {
       //if the copy worked delete the original
-      if (getObjectMetadata(getCorrectSwiftPath(destObject)) == null) {
-        innerCreateDirectory(destObject);
+      try {
+        swiftRestClient.delete(srcObject);
+      } finally {
+        invalidateMetadata(srcObject);
       }
-      swiftRestClient.delete(srcObject);
     } else {
       throw new SwiftException("Copy of " + srcObject + " to "
               + destObject + "failed");
@@ -691,14 +2068,23 @@ public class SwiftNativeFileSystemStore {
    */
   public static List<URI> extractUris(String json, Path path) throws
           SwiftOperationFailedException {
-    final Matcher matcher = URI_PATTERN.matcher(json);
     final List<URI> result = new ArrayList<URI>();
-    while (matcher.find()) {
-      final String s = matcher.group();
-      final String uri = s.substring(1, s.length() - 1);
+    JsonNode endpoints;
+    try {
+      endpoints = JSONUtil.getJsonMapper().readTree(json);
+    } catch (IOException e) {
+      throw new SwiftOperationFailedException(
+              String.format("could not parse the locations of %s: %s",
+                      path, json), e);
+    }
+    for (JsonNode endpoint : endpoints) {
+      if (!endpoint.isTextual()) {
+        throw new SwiftOperationFailedException(
+                String.format("not a URI: %s; source: %s", endpoint, path));
+      }
+      final String uri = endpoint.getTextValue();
       try {
-        URI createdUri = URI.create(uri);
-        result.add(createdUri);
+        result.add(URI.create(uri));
       } catch (IllegalArgumentException e) {
         //failure to create the URI, which means this is bad JSON. Convert
         //to an exception with useful text
@@ -707,7 +2093,8 @@ public class SwiftNativeFileSystemStore {
                         "could not convert \"%s\" into a URI." +
                                 " source: %s " +
                                 " first JSON: %s",
-                        uri, path, json.substring(0, 256)));
+                        uri, path,
+                        json.substring(0, Math.min(256, json.length()))));
       }
     }
     return result;
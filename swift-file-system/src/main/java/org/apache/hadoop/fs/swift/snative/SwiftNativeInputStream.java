@@ -18,143 +18,391 @@
 
 package org.apache.hadoop.fs.swift.snative;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.FSInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+import org.apache.hadoop.fs.swift.http.HttpInputStreamWithRelease;
 import org.apache.hadoop.fs.swift.util.SwiftUtils;
 
+import java.io.EOFException;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * The input stream from remote Swift blobs.
- * The class attempts to be buffer aware, and react to a forward seek operation
- * by trying to scan ahead through the current block of data to find it.
- * This accelerates some operations that do a lot of seek()/read() actions,
- * including work (such as in the MR engine) that do a seek() immediately after
- * an open().
+ * <p/>
+ * The object is read as a series of ranges, each fetched with its own
+ * ranged GET. The size of the ranges adapts to the way the stream is
+ * read: it starts small, doubles each time a range is read through to its
+ * end, up to a maximum, and drops back to the minimum after a seek away
+ * from the data at hand. So random reads fetch little data they do not
+ * need, while sequential reads make few requests.
+ * <p/>
+ * While a range is read sequentially, the next one is requested in the
+ * background and the start of it read into a buffer, so that the reader
+ * does not stall for a round trip at the end of each range. The buffers
+ * are bounded per stream, and across the JVM by the
+ * {@link SwiftPrefetchBudget}.
+ * <p/>
+ * A forward seek into data already requested either reads through the
+ * data up to the target, or abandons it and requests the data at the
+ * target, whichever the {@link SwiftReadCostModel} of the store expects
+ * to be quicker. Reading through accelerates some operations that do a
+ * lot of short seek()/read() actions, including work (such as in the MR
+ * engine) that do a seek() immediately after an open().
  */
 class SwiftNativeInputStream extends FSInputStream {
 
-  private static final Log LOG = LogFactory.getLog(SwiftNativeInputStream.class);
-
   /**
-   * range requested off the server: {@value}
+   * size of the buffer data is read through into on a seek
    */
-  private static final long RANGE_SIZE = 64 * 1024 * 1024;
+  private static final int SKIP_BUFFER_SIZE = 64 * 1024;
+
+  private static final Log LOG = LogFactory.getLog(SwiftNativeInputStream.class);
 
   /**
    * File nativeStore instance
    */
-  private SwiftNativeFileSystemStore nativeStore;
+  private final SwiftNativeFileSystemStore nativeStore;
 
   /**
    * Hadoop statistics. Used to get info about number of reads, writes, etc.
    */
-  private FileSystem.Statistics statistics;
+  private final FileSystem.Statistics statistics;
 
   /**
-   * Data input stream
+   * File path
    */
-  private InputStream in;
+  private final Path path;
 
   /**
-   * File path
+   * Length of the object
    */
-  private final Path path;
+  private final long contentLength;
+
+  /**
+   * Smallest and largest range requested
+   */
+  private final int minRange;
+  private final int maxRange;
+
+  /**
+   * Bytes of the next range read in the background; 0 for no prefetching
+   */
+  private final int prefetchSize;
+
+  /**
+   * Executor of the background fetches
+   */
+  private final ExecutorService prefetcher;
+
+  /**
+   * Cost model deciding how to seek; fed with the timings of the reads
+   */
+  private final SwiftReadCostModel costModel;
+
+  /**
+   * Size of the next range to request
+   */
+  private int rangeSize;
+
+  /**
+   * The range being read; null after a seek, until the next read.
+   * A stream opened without knowing the length of the object starts
+   * with the range whose response gave the length.
+   */
+  private Range current;
+
+  /**
+   * The range after the current one, being fetched in the background;
+   * null if there is none
+   */
+  private Prefetch next;
 
   /**
    * Current position
    */
   private long pos = 0;
 
+  private volatile boolean closed;
+
+  private final byte[] oneByte = new byte[1];
+
   /**
-   * Offset in the range requested last
+   * Buffer data is read through into on a seek; allocated on first use
    */
-  private long rangeOffset = 0;
+  private byte[] skipBuffer;
 
   public SwiftNativeInputStream(SwiftNativeFileSystemStore storeNative,
                                 FileSystem.Statistics statistics,
-                                Path path)
-          throws IOException {
+                                Path path,
+                                long contentLength) {
+    this(storeNative, statistics, path, contentLength, null);
+  }
+
+  private SwiftNativeInputStream(SwiftNativeFileSystemStore storeNative,
+                                 FileSystem.Statistics statistics,
+                                 Path path,
+                                 long contentLength,
+                                 Range first) {
     this.nativeStore = storeNative;
     this.statistics = statistics;
-    this.in = storeNative.getObject(path);
     this.path = path;
+    this.contentLength = contentLength;
+    this.minRange = storeNative.getReadaheadMin();
+    this.maxRange = storeNative.getReadaheadMax();
+    this.prefetchSize = storeNative.getPrefetchSize();
+    this.prefetcher = storeNative.getReadPrefetcher();
+    this.costModel = storeNative.getReadCostModel();
+    this.rangeSize = minRange;
+    this.current = first;
   }
 
   /**
-   * Move to a new position within the file relative to where the pointer is now.
-   * Always call from a synchronized clause
+   * Open a stream on an object whose length is not known: the first
+   * range is requested at once, and the length of the object taken
+   * from the response, so that no HEAD is needed.
    *
-   * @param offset offset
+   * @param storeNative store
+   * @param statistics  statistics to update; may be null
+   * @param path        path of the object
+   * @return the stream, with its first range open
+   * @throws IOException           on any failure to open the range
+   * @throws FileNotFoundException if there is no object at the path
    */
-  private synchronized void incPos(int offset) {
-    pos += offset;
-    rangeOffset += offset;
-    SwiftUtils.trace(LOG, "Inc: pos=%d bufferOffset=%d", pos, rangeOffset);
+  static SwiftNativeInputStream open(SwiftNativeFileSystemStore storeNative,
+                                     FileSystem.Statistics statistics,
+                                     Path path) throws IOException {
+    SwiftReadCostModel costModel = storeNative.getReadCostModel();
+    long started = System.nanoTime();
+    HttpInputStreamWithRelease stream =
+            storeNative.getObjectStart(path, storeNative.getReadaheadMin());
+    costModel.requestCompleted(System.nanoTime() - started);
+    if (stream == null) {
+      //an empty object
+      return new SwiftNativeInputStream(storeNative, statistics, path, 0);
+    }
+    long length = stream.getObjectLength();
+    if (length <= 0) {
+      IOUtils.closeQuietly(stream);
+      if (length == 0) {
+        return new SwiftNativeInputStream(storeNative, statistics, path, 0);
+      }
+      throw new SwiftException("No length in the response to a GET of "
+              + path);
+    }
+    Range first = new Range(0,
+            Math.min(length, storeNative.getReadaheadMin()),
+            stream, costModel);
+    return new SwiftNativeInputStream(storeNative, statistics, path, length,
+            first);
   }
 
-  /**
-   * Update the start of the buffer; always call from a sync'd clause
-   *
-   * @param seekPos position sought.
-   */
-  private synchronized void updateStartOfBufferPosition(long seekPos) {
-    //reset the seek pointer
-    pos = seekPos;
-    //and put the buffer offset to 0
-    rangeOffset = 0;
-    SwiftUtils.trace(LOG, "Move: pos=%d bufferOffset=%d", pos, rangeOffset);
+  @Override
+  public synchronized int read() throws IOException {
+    int result = read(oneByte, 0, 1);
+    return result < 0 ? -1 : oneByte[0] & 0xff;
   }
 
   @Override
-  public synchronized int read() throws IOException {
+  public synchronized int read(byte[] b, int off, int len) throws IOException {
+    verifyOpen();
+    if (len == 0) {
+      return 0;
+    }
+    if (pos >= contentLength) {
+      return -1;
+    }
     int result;
     try {
-      result = in.read();
+      result = readFromRange(b, off, len);
     } catch (IOException e) {
-      String msg = "IOException while reading " + path
-              + ": ' +e, attempting to reopen.";
-      LOG.info(msg);
-      LOG.debug(msg, e);
-
-      seek(pos);
-      result = in.read();
-    }
-    if (result != -1) {
-      incPos(1);
+      LOG.info("Received IOException while reading '" + path +
+              "', attempting to reopen.");
+      LOG.debug("while reading", e);
+      discardRanges();
+      result = readFromRange(b, off, len);
     }
-    if (statistics != null && result != -1) {
-      statistics.incrementBytesRead(1);
+    pos += result;
+    if (statistics != null) {
+      statistics.incrementBytesRead(result);
     }
     return result;
   }
 
+  /**
+   * Positional read: fetch exactly the bytes asked for with a ranged GET
+   * of their own, leaving the position and the ranges of the stream alone.
+   * This does not synchronize on the stream, so reads from several
+   * threads run in parallel, each on its own connection.
+   *
+   * @param position position in the object
+   * @param buffer   buffer
+   * @param offset   offset in the buffer
+   * @param length   number of bytes to read
+   * @return the number of bytes read, which is only less than the length
+   *         at the end of the object; -1 if the position is at or beyond
+   *         the end
+   * @throws IOException on any failure
+   */
   @Override
-  public synchronized int read(byte[] b, int off, int len) throws IOException {
-    int result = -1;
-    try {
-      result = in.read(b, off, len);
-    } catch (IOException e) {
-      LOG.info("Received IOException while reading '" + path +
-              "', attempting to reopen.");
-      seek(pos);
-      result = in.read(b, off, len);
+  public int read(long position, byte[] buffer, int offset, int length)
+          throws IOException {
+    verifyOpen();
+    if (position < 0) {
+      throw new EOFException("Negative position " + position + " in " + path);
+    }
+    if (length == 0) {
+      return 0;
+    }
+    if (position >= contentLength) {
+      return -1;
     }
-    if (result > 0) {
-      incPos(result);
-      if (statistics != null) {
-        statistics.incrementBytesRead(result);
+    int toRead = (int) Math.min(length, contentLength - position);
+    long started = System.nanoTime();
+    InputStream in = nativeStore.getObject(path, position, toRead);
+    long responded = System.nanoTime();
+    costModel.requestCompleted(responded - started);
+    int total = 0;
+    try {
+      while (total < toRead) {
+        int count = in.read(buffer, offset + total, toRead - total);
+        if (count < 0) {
+          throw new EOFException("Unexpected end of " + path + " at "
+                  + (position + total) + " of " + contentLength);
+        }
+        total += count;
       }
+      costModel.transferCompleted(total, System.nanoTime() - responded);
+      //reach the end of the response, so the connection can be reused
+      in.read();
+    } finally {
+      IOUtils.closeQuietly(in);
     }
+    if (statistics != null) {
+      statistics.incrementBytesRead(total);
+    }
+    return total;
+  }
 
+  /**
+   * Read from the current range, moving on to the next one first
+   * if it has all been read
+   *
+   * @param b   buffer
+   * @param off offset in the buffer
+   * @param len maximum number of bytes to read
+   * @return the number of bytes read, always >0
+   * @throws IOException on any failure to read
+   */
+  private int readFromRange(byte[] b, int off, int len) throws IOException {
+    if (current == null || pos >= current.end) {
+      nextRange();
+    }
+    int result = current.read(b, off, (int) Math.min(len, current.end - pos));
+    if (result < 0) {
+      throw new EOFException("Unexpected end of " + path + " at " + pos
+              + " of " + contentLength);
+    }
     return result;
   }
 
+  /**
+   * Make the range starting at the current position the current range:
+   * the prefetched range if there is one, otherwise a new one. If the
+   * previous range was read through to its end, the reads are taken to be
+   * sequential: ranges grow, and the one after the new range is prefetched,
+   * if a pooled connection is free for it. A prefetch holds a second
+   * connection for the stream, so it is skipped rather than left to
+   * block other streams, or be blocked, when the pool is exhausted.
+   *
+   * @throws IOException on any failure to open the range
+   */
+  private void nextRange() throws IOException {
+    boolean sequential = current != null && pos == current.end;
+    closeCurrent();
+    if (sequential) {
+      rangeSize = (int) Math.min(2L * rangeSize, maxRange);
+    }
+    if (next != null && next.start == pos) {
+      Prefetch prefetched = next;
+      next = null;
+      current = prefetched.await();
+    } else {
+      discardNext();
+      current = openRange(pos, rangeEnd(pos));
+    }
+    SwiftUtils.trace(LOG, "Range: %d-%d of %s", current.start, current.end, path);
+    if (sequential && prefetchSize > 0 && current.end < contentLength
+            && nativeStore.hasFreeConnection()) {
+      next = new Prefetch(current.end, rangeEnd(current.end));
+    }
+  }
+
+  /**
+   * Get the end of a range of the current size
+   *
+   * @param start start of the range
+   * @return its end, which is no further than the end of the object
+   */
+  private long rangeEnd(long start) {
+    return Math.min(contentLength, start + rangeSize);
+  }
+
+  /**
+   * Open a range of the object
+   *
+   * @param start first byte
+   * @param end   byte after the last one
+   * @return the range
+   * @throws IOException on any failure
+   */
+  private Range openRange(long start, long end) throws IOException {
+    long started = System.nanoTime();
+    InputStream stream = nativeStore.getObject(path, start, end - start);
+    costModel.requestCompleted(System.nanoTime() - started);
+    return new Range(start, end, stream, costModel);
+  }
+
+  private void closeCurrent() {
+    if (current != null) {
+      current.close();
+      current = null;
+    }
+  }
+
+  private void discardNext() {
+    if (next != null) {
+      next.discard();
+      next = null;
+    }
+  }
+
+  /**
+   * Close the current range and drop the prefetched one, so that the
+   * next read opens a new range
+   */
+  private void discardRanges() {
+    closeCurrent();
+    discardNext();
+  }
+
+  private void verifyOpen() throws SwiftException {
+    if (closed) {
+      throw new SwiftException("Input stream of " + path + " is closed");
+    }
+  }
+
   /**
    * close the stream. After this the stream is not usable.
    * This method is thread-safe and idempotent.
@@ -163,13 +411,8 @@ class SwiftNativeInputStream extends FSInputStream {
    */
   @Override
   public synchronized void close() throws IOException {
-    try {
-      if (in != null) {
-        in.close();
-      }
-    } finally {
-      in = null;
-    }
+    closed = true;
+    discardRanges();
   }
 
   /**
@@ -180,45 +423,68 @@ class SwiftNativeInputStream extends FSInputStream {
    */
   @Override
   protected void finalize() throws Throwable {
-    if (in != null) {
+    if (current != null) {
       LOG.error(
               "Input stream is leaking handles by not being closed() properly!");
     }
   }
 
   /**
-   * Read through the specified number of bytes.
-   * The implementation iterates a byte a time, which may seem inefficient
-   * compared to the read(bytes[]) method offered by input streams.
-   * However, if you look at the code that implements that method, it comes
-   * down to read() one char at a time -only here the return value is discarded.
+   * Read through the specified number of bytes of the current range,
+   * in blocks, discarding them.
    *
    * @param bytes number of bytes to read.
    * @throws IOException    IO problems
    * @throws SwiftException if a read returned -1.
    */
   private void chompBytes(long bytes) throws IOException {
-    int result;
-    for (long i = 0; i < bytes; i++) {
-      result = in.read();
+    if (skipBuffer == null) {
+      skipBuffer = new byte[SKIP_BUFFER_SIZE];
+    }
+    while (bytes > 0) {
+      int result = current.read(skipBuffer, 0,
+              (int) Math.min(bytes, skipBuffer.length));
       if (result <= 0) {
         throw new SwiftException("Received error code while chomping input");
       }
-      incPos(1);
+      pos += result;
+      bytes -= result;
     }
   }
 
   /**
-   * Seek to an offset. If the data is already in the buffer, move to it
+   * Get the number of bytes which would have to come over the network
+   * to read through to a target within the data requested. Data already
+   * buffered costs nothing; so does the rest of the current range if the
+   * target is in the next one.
+   *
+   * @param targetPos target position
+   * @return a number of bytes
+   */
+  private long skipCost(long targetPos) {
+    if (targetPos < current.end) {
+      return Math.max(0, targetPos - pos - current.available());
+    }
+    return Math.max(0, targetPos - next.start - prefetchSize);
+  }
+
+  /**
+   * Seek to an offset. If the data has already been requested and the
+   * cost model expects it to be quicker, read through to it; otherwise a
+   * range starting at the offset is requested on the next read.
    *
    * @param targetPos target position
    * @throws IOException on any problem
    */
   @Override
   public synchronized void seek(long targetPos) throws IOException {
+    verifyOpen();
     if (LOG.isDebugEnabled()) {
       LOG.debug("Seek to " + targetPos);
     }
+    if (targetPos < 0) {
+      throw new EOFException("Negative seek to " + targetPos + " in " + path);
+    }
     //there's some special handling of near-local data
     //as the seek can be omitted if it is in/adjacent
     long offset = targetPos - pos;
@@ -227,31 +493,49 @@ class SwiftNativeInputStream extends FSInputStream {
       return;
     }
 
-    if (rangeOffset + offset < RANGE_SIZE) {
-      //if the seek is in range of that requested, scan forwards
-      //instead of closing and re-opening a new HTTP connection
+    long requestedEnd = next != null ? next.end
+            : current != null ? current.end : pos;
+    if (current != null && offset > 0 && targetPos < requestedEnd) {
+      //the seek is in range of that requested: scan forwards if that is
+      //quicker than closing and re-opening a new HTTP connection
+      long cost = skipCost(targetPos);
       SwiftUtils.debug(LOG,
-              "seek is within current stream"
+              "seek is within requested data"
                       + "; pos= %d ; targetPos=%d; "
-                      + "offset= %d ; bufferOffset=%d",
-              pos, targetPos, offset, rangeOffset);
-      try {
-        LOG.debug("chomping ");
-        chompBytes(offset);
-      } catch (IOException e) {
-        //this is assumed to be recoverable with a seek -or more likely to fail
-        LOG.debug("while chomping ", e);
-      }
-      if (targetPos - pos == 0) {
-        LOG.trace("chomping successful");
-        return;
+                      + "offset= %d ; rangeEnd=%d; cost= %d",
+              pos, targetPos, offset, current.end, cost);
+      if (costModel.shouldSkip(cost)) {
+        try {
+          if (targetPos >= current.end) {
+            //skip the rest of the current range
+            pos = current.end;
+            nextRange();
+          }
+          LOG.debug("chomping ");
+          chompBytes(targetPos - pos);
+        } catch (IOException e) {
+          //this is assumed to be recoverable with a seek -or more likely to fail
+          LOG.debug("while chomping ", e);
+        }
+        if (targetPos - pos == 0) {
+          LOG.trace("chomping successful");
+          costModel.skipped(offset);
+          return;
+        }
+        LOG.trace("chomping failed");
+      } else {
+        LOG.debug("reopening is expected to be quicker than chomping");
       }
-      LOG.trace("chomping failed");
     }
 
-    close();
-    in = nativeStore.getObject(path, targetPos, targetPos + RANGE_SIZE);
-    this.pos = targetPos;
+    //a seek away from the data at hand: read small ranges
+    //until the reads turn sequential again
+    if (current != null || next != null) {
+      costModel.reopened();
+    }
+    discardRanges();
+    rangeSize = minRange;
+    pos = targetPos;
   }
 
   @Override
@@ -263,4 +547,191 @@ class SwiftNativeInputStream extends FSInputStream {
   public boolean seekToNewSource(long targetPos) throws IOException {
     return false;
   }
-}
\ No newline at end of file
+
+  /**
+   * A range of the object: an open GET of it, and any of its data
+   * which has been read ahead into a buffer
+   */
+  private static final class Range {
+    private final long start;
+    private final long end;
+    private final InputStream stream;
+    private final SwiftReadCostModel costModel;
+
+    private byte[] buffer;
+    private int buffered;
+    private int bufferPos;
+
+    /**
+     * position of the next byte to be read from the range
+     */
+    private long position;
+
+    /**
+     * bytes read from the stream, and the time spent reading them
+     */
+    private long transferred;
+    private long transferNanos;
+
+    Range(long start, long end, InputStream stream,
+          SwiftReadCostModel costModel) {
+      this.start = start;
+      this.end = end;
+      this.stream = stream;
+      this.costModel = costModel;
+      this.position = start;
+    }
+
+    /**
+     * @return the number of bytes buffered and not yet read
+     */
+    int available() {
+      return buffer == null ? 0 : buffered - bufferPos;
+    }
+
+    private int readStream(byte[] b, int off, int len) throws IOException {
+      long started = System.nanoTime();
+      int count = stream.read(b, off, len);
+      transferNanos += System.nanoTime() - started;
+      if (count > 0) {
+        transferred += count;
+      }
+      return count;
+    }
+
+    /**
+     * Read the start of the range into a buffer, if the budget allows
+     *
+     * @param limit maximum size of the buffer
+     * @throws IOException on any failure to read
+     */
+    void fill(int limit) throws IOException {
+      int size = (int) Math.min(limit, end - start);
+      if (size <= 0 || !SwiftPrefetchBudget.JVM.tryReserve(size)) {
+        return;
+      }
+      buffer = new byte[size];
+      while (buffered < size) {
+        int count = readStream(buffer, buffered, size - buffered);
+        if (count < 0) {
+          break;
+        }
+        buffered += count;
+      }
+    }
+
+    int read(byte[] b, int off, int len) throws IOException {
+      if (buffer != null) {
+        int count = Math.min(len, buffered - bufferPos);
+        System.arraycopy(buffer, bufferPos, b, off, count);
+        bufferPos += count;
+        if (bufferPos == buffered) {
+          releaseBuffer();
+        }
+        if (count > 0) {
+          position += count;
+          return count;
+        }
+      }
+      int count = readStream(b, off, len);
+      if (count > 0) {
+        position += count;
+      }
+      return count;
+    }
+
+    private void releaseBuffer() {
+      if (buffer != null) {
+        SwiftPrefetchBudget.JVM.release(buffer.length);
+        buffer = null;
+      }
+    }
+
+    void close() {
+      releaseBuffer();
+      costModel.transferCompleted(transferred, transferNanos);
+      if (position == end) {
+        //reach the end of the response, so the connection can be reused
+        try {
+          stream.read();
+        } catch (IOException e) {
+          LOG.debug("while finishing a range", e);
+        }
+      }
+      IOUtils.closeQuietly(stream);
+    }
+  }
+
+  /**
+   * The fetch of a range in the background
+   */
+  private final class Prefetch implements Callable<Range> {
+    private final long start;
+    private final long end;
+    private final Future<Range> future;
+    private Range result;
+    private boolean discarded;
+
+    Prefetch(long start, long end) {
+      this.start = start;
+      this.end = end;
+      this.future = prefetcher.submit(this);
+    }
+
+    @Override
+    public Range call() throws IOException {
+      Range range = openRange(start, end);
+      try {
+        range.fill(prefetchSize);
+      } catch (IOException e) {
+        range.close();
+        throw e;
+      }
+      synchronized (this) {
+        if (!discarded) {
+          result = range;
+          return range;
+        }
+      }
+      //nobody wants it any more
+      range.close();
+      return null;
+    }
+
+    /**
+     * Wait for the range
+     *
+     * @return the range
+     * @throws IOException on any failure to fetch it
+     */
+    Range await() throws IOException {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        discard();
+        throw (IOException) new InterruptedIOException(
+                "Interrupted while reading " + path).initCause(e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new SwiftException("Failed to read " + path, cause);
+      }
+    }
+
+    /**
+     * Drop the range, closing it now if it has been fetched, or else
+     * as soon as the fetch completes
+     */
+    synchronized void discard() {
+      discarded = true;
+      //if the fetch has not started, it never will
+      future.cancel(false);
+      if (result != null) {
+        result.close();
+        result = null;
+      }
+    }
+  }
+}
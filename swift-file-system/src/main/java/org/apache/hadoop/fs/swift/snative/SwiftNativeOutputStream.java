@@ -23,52 +23,111 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+import org.apache.hadoop.fs.swift.util.SwiftOutputBuffer;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
- * Output stream, buffers data on local disk.
+ * Output stream, buffers data on local disk or in memory, as configured.
  * Writes to Swift on close() method
+ * <p/>
+ * Files larger than the segment size are uploaded as a series of
+ * segments, each written to its own buffer, and a manifest
+ * which joins them up. Normally each segment is uploaded by the writer
+ * as soon as it is full. In streaming mode it is uploaded in the
+ * background instead, while the writer fills the next one. Up to the
+ * configured number of segments of a stream are uploaded at the same
+ * time, within the upload budget of the filesystem; once either limit is
+ * reached, the writer waits for an upload to complete.
+ * <p/>
+ * The manifest is dynamic by default, naming the prefix of the segments.
+ * If static large objects are configured, the path, ETag and size of
+ * each segment are recorded as it is uploaded and listed in the manifest
+ * instead, so that the file does not depend on container listings.
+ * <p/>
+ * Each buffer computes the MD5 of its data as it is written, which is
+ * sent as the ETag of the upload so that Swift rejects corrupted data.
  */
 class SwiftNativeOutputStream extends OutputStream {
-  private long filePartSize = 4768709000L; // files greater than 4.5Gb are divided into parts
+  private long filePartSize; // files greater than this are divided into parts
   private static final Log LOG =
           LogFactory.getLog(SwiftNativeOutputStream.class);
   private Configuration conf;
   private String key;
-  private File backupFile;
-  private OutputStream backupStream;
+  private SwiftOutputBuffer buffer;
   private SwiftNativeFileSystemStore nativeStore;
   private boolean closed;
   private int partNumber;
   private long blockSize;
   private boolean partUpload = false;
+  private final byte[] oneByte = new byte[1];
+
+  /**
+   * Executor of the background uploads; null unless uploads are streamed
+   */
+  private final ExecutorService uploader;
+
+  /**
+   * Maximum number of segments uploaded at the same time
+   */
+  private final int parallelism;
+
+  /**
+   * Space the segments being uploaded may take up
+   */
+  private final SwiftUploadBudget budget;
+
+  /**
+   * The segments being uploaded in the background, oldest first
+   */
+  private final LinkedList<Future<SwiftSegment>> segmentUploads =
+          new LinkedList<Future<SwiftSegment>>();
+
+  /**
+   * The segments uploaded so far, in order
+   */
+  private final List<SwiftSegment> segments = new ArrayList<SwiftSegment>();
+
+  /**
+   * The failure of an earlier upload of a segment, which close()
+   * rethrows rather than completing a file with data missing
+   */
+  private IOException failure;
+
+  /**
+   * Checksum of the file written; null until it is closed
+   */
+  private SwiftFileChecksum checksum;
 
   public SwiftNativeOutputStream(Configuration conf,
                                  SwiftNativeFileSystemStore nativeStore,
                                  String key) throws IOException {
     this.conf = conf;
     this.key = key;
-    this.backupFile = newBackupFile();
     this.nativeStore = nativeStore;
-    this.backupStream = new BufferedOutputStream(new FileOutputStream(backupFile));
+    this.buffer = nativeStore.getOutputBufferFactory().create();
     this.partNumber = 1;
     this.blockSize = 0;
-  }
-
-  private File newBackupFile() throws IOException {
-    File dir = new File(conf.get("hadoop.tmp.dir"));
-    if (!dir.mkdirs() && !dir.exists()) {
-      throw new SwiftException("Cannot create Swift buffer directory: " + dir);
-    }
-    File result = File.createTempFile("output-", ".tmp", dir);
-    result.deleteOnExit();
-    return result;
+    this.filePartSize = nativeStore.getSegmentSize();
+    this.uploader = nativeStore.isStreamingUpload()
+            ? nativeStore.getSegmentUploader()
+            : null;
+    this.parallelism = nativeStore.getUploadParallelism();
+    this.budget = nativeStore.getUploadBudget();
   }
 
   @Override
-  public void flush() throws IOException {
-    backupStream.flush();
+  public synchronized void flush() throws IOException {
+    if (buffer != null) {
+      buffer.flush();
+    }
   }
 
   /**
@@ -91,20 +150,46 @@ class SwiftNativeOutputStream extends OutputStream {
     try {
       closed = true;
       //formally declare as closed.
-      backupStream.close();
+      if (failure != null) {
+        throw failure;
+      }
+      buffer.close();
       Path keypath = new Path(key);
       if (partUpload) {
         partUpload();
-        nativeStore.createManifestForPartUpload(keypath);
+        while (!segmentUploads.isEmpty()) {
+          awaitSegmentUpload();
+        }
+        boolean staticLargeObject = nativeStore.isStaticLargeObjects();
+        if (staticLargeObject) {
+          nativeStore.createStaticManifestForPartUpload(keypath, segments);
+        } else {
+          nativeStore.createManifestForPartUpload(keypath);
+        }
+        List<String> md5s = new ArrayList<String>(segments.size());
+        for (SwiftSegment segment : segments) {
+          //static manifests leave out empty segments
+          if (!staticLargeObject || segment.getSize() > 0) {
+            md5s.add(segment.getEtag());
+          }
+        }
+        checksum = SwiftFileChecksum.ofSegments(md5s);
       } else {
+        String md5 = buffer.getMD5();
         nativeStore.uploadFile(keypath,
-                new FileInputStream(backupFile),
-                backupFile.length());
+                buffer.getInputStream(),
+                buffer.size(),
+                md5);
+        checksum = SwiftFileChecksum.ofObject(md5);
       }
     } finally {
-      delete(backupFile);
-      backupStream = null;
-      backupFile = null;
+      //after a failure, any segments still uploading are left
+      //to finish; they release their own buffers
+      segmentUploads.clear();
+      if (buffer != null) {
+        buffer.release();
+        buffer = null;
+      }
     }
   }
 
@@ -113,21 +198,16 @@ class SwiftNativeOutputStream extends OutputStream {
     if (!closed) {
       LOG.warn("stream not closed");
     }
-    if (backupFile != null) {
-      LOG.warn("Leaking backing file " + backupFile);
-    }
-  }
-
-  private void delete(File file) {
-    if (!file.delete()) {
-      LOG.warn("Could not delete " + file);
+    if (buffer != null) {
+      LOG.warn("Leaking output buffer of " + key);
+      buffer.release();
     }
   }
 
   @Override
-  public void write(int b) throws IOException {
-    verifyOpen();
-    backupStream.write(b);
+  public synchronized void write(int b) throws IOException {
+    oneByte[0] = (byte) b;
+    write(oneByte, 0, 1);
   }
 
   @Override
@@ -137,30 +217,128 @@ class SwiftNativeOutputStream extends OutputStream {
       throw new IndexOutOfBoundsException("Invalid offset/length for write");
     }
     verifyOpen();
+    if (failure != null) {
+      throw failure;
+    }
+    try {
+      while (!segmentUploads.isEmpty()
+              && segmentUploads.getFirst().isDone()) {
+        //fail fast if a segment uploading in the background failed
+        awaitSegmentUpload();
+      }
 
-    //if size of file is greater than 5Gb Swift limit - than divide file into parts and upload parts
-    if (blockSize + len >= filePartSize) {
-      partUpload();
+      //if size of file is greater than 5Gb Swift limit - than divide file into parts and upload parts
+      if (blockSize + len >= filePartSize) {
+        partUpload();
+      }
+    } catch (IOException e) {
+      failure = e;
+      throw e;
     }
 
     blockSize += len;
-    backupStream.write(b, off, len);
+    buffer.write(b, off, len);
   }
 
   private void partUpload() throws IOException {
     partUpload = true;
-    backupStream.close();
-    nativeStore.uploadFilePart(new Path(key),
-            partNumber,
-            new FileInputStream(backupFile),
-            backupFile.length());
-    delete(backupFile);
-    backupFile = newBackupFile();
-    backupStream = new BufferedOutputStream(new FileOutputStream(backupFile));
+    buffer.close();
+    if (uploader != null) {
+      //segments upload while the next one is written
+      while (segmentUploads.size() >= parallelism) {
+        awaitSegmentUpload();
+      }
+      long length = buffer.size();
+      budget.reserve(length);
+      try {
+        segmentUploads.add(uploader.submit(
+                new SegmentUpload(buffer, partNumber, length)));
+      } catch (RuntimeException e) {
+        budget.release(length);
+        throw e;
+      }
+    } else {
+      try {
+        segments.add(nativeStore.uploadFilePart(new Path(key),
+                partNumber,
+                buffer.getInputStream(),
+                buffer.size(),
+                buffer.getMD5()));
+      } finally {
+        buffer.release();
+      }
+    }
+    //the buffer now belongs to the upload
+    buffer = null;
+    buffer = nativeStore.getOutputBufferFactory().create();
     blockSize = 0;
     partNumber++;
   }
 
+  /**
+   * Wait for the oldest of the segments being uploaded in the background
+   *
+   * @throws IOException if its upload failed
+   */
+  private void awaitSegmentUpload() throws IOException {
+    Future<SwiftSegment> upload = segmentUploads.removeFirst();
+    try {
+      //uploads are awaited oldest first, so the segments stay in order
+      segments.add(upload.get());
+    } catch (InterruptedException e) {
+      upload.cancel(true);
+      throw (IOException) new InterruptedIOException(
+              "Interrupted while uploading " + key).initCause(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new SwiftException("Failed to upload a segment of " + key, cause);
+    }
+  }
+
+  /**
+   * The upload of a full segment in the background; the buffer of the
+   * segment is released afterwards, and its space in the budget too
+   */
+  private final class SegmentUpload implements Callable<SwiftSegment> {
+    private final SwiftOutputBuffer segment;
+    private final int number;
+    private final long length;
+
+    SegmentUpload(SwiftOutputBuffer segment, int number, long length) {
+      this.segment = segment;
+      this.number = number;
+      this.length = length;
+    }
+
+    @Override
+    public SwiftSegment call() throws IOException {
+      try {
+        return nativeStore.uploadFilePart(new Path(key),
+                number,
+                segment.getInputStream(),
+                length,
+                segment.getMD5());
+      } finally {
+        segment.release();
+        budget.release(length);
+      }
+    }
+  }
+
+  /**
+   * Get the checksum of the file, from the MD5s computed as it was
+   * written; this matches the ETag Swift gives the file
+   *
+   * @return the checksum; null if the stream has not been closed
+   *         successfully
+   */
+  synchronized SwiftFileChecksum getFileChecksum() {
+    return checksum;
+  }
+
   /**
    * Partition size can be set for testing purposes.
    * This is intended for testing
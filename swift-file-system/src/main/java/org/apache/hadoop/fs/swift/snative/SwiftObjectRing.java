@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+import org.apache.hadoop.fs.swift.util.JSONUtil;
+import org.codehaus.jackson.JsonNode;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The object ring of a Swift cluster, loaded from its
+ * <code>object.ring.gz</code> file, so that the nodes of an object can
+ * be worked out in-process instead of by asking the
+ * <code>object_endpoint</code> middleware of the proxy.
+ * <p/>
+ * The placement is that of <code>swift.common.ring.Ring.get_nodes()</code>:
+ * the partition of an object is the top bits of the MD5 of the hash path
+ * prefix of the cluster, <code>/account/container/object</code> and the
+ * hash path suffix, and its nodes are the devices assigned to the
+ * partition by each replica, without repeats. A ring with a fractional
+ * replica count has a last replica table which only covers the first
+ * partitions; it assigns no device to the others. Only rings saved in
+ * the <code>R1NG</code> format, version 1, can be read. Its partition
+ * tables are in the byte order of the host which built the ring; that
+ * is taken from the <code>byte_order</code> field of the ring if present,
+ * and is otherwise assumed to be little-endian.
+ */
+public class SwiftObjectRing {
+
+  private static final String MAGIC = "R1NG";
+
+  private final String hashPrefix;
+  private final String hashSuffix;
+  private final int partShift;
+  private final Device[] devices;
+  private final short[][] replica2part2dev;
+
+  private SwiftObjectRing(String hashPrefix,
+                          String hashSuffix,
+                          int partShift,
+                          Device[] devices,
+                          short[][] replica2part2dev) {
+    this.hashPrefix = hashPrefix;
+    this.hashSuffix = hashSuffix;
+    this.partShift = partShift;
+    this.devices = devices;
+    this.replica2part2dev = replica2part2dev;
+  }
+
+  /**
+   * Load a ring
+   *
+   * @param in         the gzipped ring data; it is not closed
+   * @param hashPrefix the hash path prefix of the cluster
+   * @param hashSuffix the hash path suffix of the cluster
+   * @return the ring
+   * @throws IOException if the data could not be read or is not a ring
+   */
+  public static SwiftObjectRing load(InputStream in,
+                                     String hashPrefix,
+                                     String hashSuffix) throws IOException {
+    DataInputStream data = new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(in)));
+    byte[] magic = new byte[MAGIC.length()];
+    data.readFully(magic);
+    if (!MAGIC.equals(new String(magic, "ISO-8859-1"))) {
+      throw new SwiftException("Not a ring, or a ring in the old pickled"
+              + " format, which cannot be read");
+    }
+    int version = data.readUnsignedShort();
+    if (version != 1) {
+      throw new SwiftException("Unknown ring format version " + version);
+    }
+    byte[] json = new byte[data.readInt()];
+    data.readFully(json);
+    JsonNode ring = JSONUtil.getJsonMapper().readTree(
+            new String(json, "UTF-8"));
+    int partShift = ring.path("part_shift").getIntValue();
+    //a fractional replica count has a partial table for the last replica
+    int replicas = (int) Math.ceil(ring.path("replica_count").getDoubleValue());
+    if (partShift < 0 || partShift >= 32 || replicas <= 0) {
+      throw new SwiftException("Invalid ring: " + ring);
+    }
+    boolean bigEndian = "big".equals(ring.path("byte_order").getTextValue());
+
+    JsonNode devs = ring.path("devs");
+    Device[] devices = new Device[devs.size()];
+    for (int i = 0; i < devices.length; i++) {
+      JsonNode dev = devs.get(i);
+      //removed devices leave a null in their place
+      if (dev != null && !dev.isNull()) {
+        devices[i] = new Device(dev.path("ip").getTextValue(),
+                dev.path("port").getIntValue(),
+                dev.path("device").getTextValue());
+      }
+    }
+
+    int partitions = 1 << (32 - partShift);
+    short[][] replica2part2dev = new short[replicas][];
+    byte[] table = new byte[2 * partitions];
+    for (int replica = 0; replica < replicas; replica++) {
+      int length;
+      if (replica < replicas - 1) {
+        data.readFully(table);
+        length = partitions;
+      } else {
+        length = readTable(data, table) / 2;
+      }
+      short[] part2dev = new short[length];
+      replica2part2dev[replica] = part2dev;
+      for (int part = 0; part < length; part++) {
+        int low = table[2 * part] & 0xff;
+        int high = table[2 * part + 1] & 0xff;
+        part2dev[part] = (short) (bigEndian
+                ? (low << 8) | high
+                : (high << 8) | low);
+      }
+    }
+    return new SwiftObjectRing(hashPrefix, hashSuffix, partShift, devices,
+            replica2part2dev);
+  }
+
+  /**
+   * Read as much of a partition table as remains
+   *
+   * @param data  the ring data
+   * @param table buffer for a full table
+   * @return the number of bytes read
+   * @throws IOException on a read failure
+   */
+  private static int readTable(DataInputStream data, byte[] table)
+          throws IOException {
+    int read = 0;
+    while (read < table.length) {
+      int count = data.read(table, read, table.length - read);
+      if (count < 0) {
+        break;
+      }
+      read += count;
+    }
+    return read;
+  }
+
+  /**
+   * @return the number of partitions
+   */
+  public int getPartitionCount() {
+    return replica2part2dev[0].length;
+  }
+
+  /**
+   * @return the number of replicas of each partition
+   */
+  public int getReplicaCount() {
+    return replica2part2dev.length;
+  }
+
+  /**
+   * Get the partition of an object
+   *
+   * @param account   account name
+   * @param container container name
+   * @param object    object name
+   * @return the partition
+   */
+  public int getPartition(String account, String container, String object) {
+    MessageDigest md5;
+    try {
+      md5 = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("No MD5 digest", e);
+    }
+    byte[] digest;
+    try {
+      digest = md5.digest((hashPrefix + "/" + account + "/" + container
+              + "/" + object + hashSuffix).getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException("No UTF-8", e);
+    }
+    long key = ((digest[0] & 0xffL) << 24)
+            | ((digest[1] & 0xffL) << 16)
+            | ((digest[2] & 0xffL) << 8)
+            | (digest[3] & 0xffL);
+    return (int) (key >>> partShift);
+  }
+
+  /**
+   * Get the endpoints of an object on its nodes, as the
+   * <code>object_endpoint</code> middleware reports them
+   *
+   * @param account   account name
+   * @param container container name
+   * @param object    object name
+   * @return a URI of the object on each of its nodes
+   * @throws SwiftException if a URI could not be built
+   */
+  public List<URI> getEndpoints(String account,
+                                String container,
+                                String object) throws SwiftException {
+    int part = getPartition(account, container, object);
+    List<URI> endpoints = new ArrayList<URI>(replica2part2dev.length);
+    List<Integer> seen = new ArrayList<Integer>(replica2part2dev.length);
+    for (short[] part2dev : replica2part2dev) {
+      if (part >= part2dev.length) {
+        //the partial table of a fractional replica
+        continue;
+      }
+      int id = part2dev[part] & 0xffff;
+      if (seen.contains(id)) {
+        continue;
+      }
+      seen.add(id);
+      Device device = id < devices.length ? devices[id] : null;
+      if (device == null) {
+        continue;
+      }
+      try {
+        endpoints.add(new URI("http", null, device.ip, device.port,
+                "/" + device.name + "/" + part + "/" + account
+                        + "/" + container + "/" + object,
+                null, null));
+      } catch (URISyntaxException e) {
+        throw new SwiftException("Bad endpoint on " + device.ip
+                + " for " + container + "/" + object, e);
+      }
+    }
+    return endpoints;
+  }
+
+  /**
+   * A storage device of the ring
+   */
+  private static final class Device {
+    private final String ip;
+    private final int port;
+    private final String name;
+
+    private Device(String ip, int port, String name) {
+      this.ip = ip;
+      this.port = port;
+      this.name = name;
+    }
+  }
+}
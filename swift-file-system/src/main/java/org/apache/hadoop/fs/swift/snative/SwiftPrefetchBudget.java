@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.swift.http.SwiftProtocolConstants;
+
+/**
+ * Memory which input streams may use to hold prefetched data.
+ * <p/>
+ * A stream reserves the size of a buffer before it fills it in the
+ * background, and releases it once the data has been read or discarded.
+ * If a reservation cannot be met the stream does without the buffer,
+ * so the budget bounds memory use rather than blocking readers.
+ */
+class SwiftPrefetchBudget {
+
+  /**
+   * The budget shared by all streams in this JVM. Each filesystem
+   * instance raises its limit to the one it was configured with as it is
+   * created, so the largest configured limit applies, whichever order
+   * the instances are created in.
+   */
+  static final SwiftPrefetchBudget JVM =
+          new SwiftPrefetchBudget(
+                  SwiftProtocolConstants.DEFAULT_SWIFT_PREFETCH_MEMORY);
+
+  private long limit;
+  private long reserved;
+
+  /**
+   * Create a budget
+   *
+   * @param limit maximum number of bytes which may be reserved
+   */
+  SwiftPrefetchBudget(long limit) {
+    this.limit = limit;
+  }
+
+  /**
+   * Raise the limit. A lower limit than the current one is ignored, as
+   * the budget is shared by filesystems which may be configured with
+   * different limits.
+   *
+   * @param limit maximum number of bytes which may be reserved
+   */
+  synchronized void raiseLimit(long limit) {
+    if (limit > this.limit) {
+      this.limit = limit;
+    }
+  }
+
+  /**
+   * Reserve memory if it is available
+   *
+   * @param bytes number of bytes
+   * @return true if the memory was reserved, and must later be released
+   */
+  synchronized boolean tryReserve(long bytes) {
+    if (reserved + bytes > limit) {
+      return false;
+    }
+    reserved += bytes;
+    return true;
+  }
+
+  /**
+   * Release memory reserved earlier
+   *
+   * @param bytes number of bytes
+   */
+  synchronized void release(long bytes) {
+    reserved -= bytes;
+  }
+
+  /**
+   * @return the number of bytes currently reserved
+   */
+  synchronized long getReserved() {
+    return reserved;
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+/**
+ * Cost model for forward seeks in input streams.
+ * <p/>
+ * A forward seek into data which has already been requested can either
+ * read through the data up to the target, or abandon the request and
+ * open a new one at the target. Reading through costs the time to
+ * transfer the bytes skipped; reopening costs the latency of a request.
+ * So skipping is cheaper for seeks shorter than the product of the
+ * bandwidth and the latency, both of which are learned from the
+ * requests the streams of a filesystem make, as moving averages.
+ * <p/>
+ * The model also counts which way each seek went.
+ */
+public class SwiftReadCostModel {
+
+  /**
+   * weight of each new sample in the moving averages
+   */
+  private static final double WEIGHT = 0.25;
+
+  /**
+   * transfers shorter than this are not used as samples of the bandwidth,
+   * as they may have been served from socket buffers
+   */
+  static final long MIN_TRANSFER_SAMPLE = 64 * 1024;
+
+  /**
+   * latency assumed until one has been measured: 20 ms
+   */
+  static final double INITIAL_LATENCY_NANOS = 20e6;
+
+  /**
+   * bandwidth assumed until one has been measured: 50 MB/s
+   */
+  static final double INITIAL_BYTES_PER_NANO = 50e6 / 1e9;
+
+  private double latencyNanos = INITIAL_LATENCY_NANOS;
+  private double bytesPerNano = INITIAL_BYTES_PER_NANO;
+
+  private long skips;
+  private long bytesSkipped;
+  private long reopens;
+
+  /**
+   * Record the time taken to get the response to a GET
+   *
+   * @param nanos time in nanoseconds
+   */
+  synchronized void requestCompleted(long nanos) {
+    latencyNanos += WEIGHT * (nanos - latencyNanos);
+  }
+
+  /**
+   * Record the time spent reading data from a response
+   *
+   * @param bytes number of bytes
+   * @param nanos time in nanoseconds
+   */
+  synchronized void transferCompleted(long bytes, long nanos) {
+    if (bytes >= MIN_TRANSFER_SAMPLE && nanos > 0) {
+      bytesPerNano += WEIGHT * ((double) bytes / nanos - bytesPerNano);
+    }
+  }
+
+  /**
+   * Get the longest seek for which reading through the data is
+   * expected to be quicker than a new request
+   *
+   * @return a number of bytes
+   */
+  synchronized long getSkipThreshold() {
+    return (long) (bytesPerNano * latencyNanos);
+  }
+
+  /**
+   * Decide how to seek
+   *
+   * @param bytes number of bytes which would have to be transferred to
+   *              read through to the target
+   * @return true if the stream should read through to the target,
+   *         false if it should open a new request there
+   */
+  boolean shouldSkip(long bytes) {
+    return bytes <= getSkipThreshold();
+  }
+
+  /**
+   * Count a seek made by reading through data
+   *
+   * @param bytes number of bytes read through
+   */
+  synchronized void skipped(long bytes) {
+    skips++;
+    bytesSkipped += bytes;
+  }
+
+  /**
+   * Count a seek made by abandoning the data requested
+   */
+  synchronized void reopened() {
+    reopens++;
+  }
+
+  /**
+   * Take a snapshot of the model and its statistics
+   *
+   * @return the current statistics
+   */
+  public synchronized Statistics getStatistics() {
+    return new Statistics(skips, bytesSkipped, reopens,
+            (long) (latencyNanos / 1000),
+            (long) (bytesPerNano * 1e9),
+            getSkipThreshold());
+  }
+
+  /**
+   * Snapshot of the seeks made, and of the estimates they were based on
+   */
+  public static final class Statistics {
+    private final long skips;
+    private final long bytesSkipped;
+    private final long reopens;
+    private final long latencyMicros;
+    private final long bytesPerSecond;
+    private final long skipThreshold;
+
+    public Statistics(long skips, long bytesSkipped, long reopens,
+                      long latencyMicros, long bytesPerSecond,
+                      long skipThreshold) {
+      this.skips = skips;
+      this.bytesSkipped = bytesSkipped;
+      this.reopens = reopens;
+      this.latencyMicros = latencyMicros;
+      this.bytesPerSecond = bytesPerSecond;
+      this.skipThreshold = skipThreshold;
+    }
+
+    /**
+     * @return seeks made by reading through the data up to the target
+     */
+    public long getSkips() {
+      return skips;
+    }
+
+    /**
+     * @return bytes read through by those seeks
+     */
+    public long getBytesSkipped() {
+      return bytesSkipped;
+    }
+
+    /**
+     * @return seeks made by opening a new request at the target
+     */
+    public long getReopens() {
+      return reopens;
+    }
+
+    /**
+     * @return the estimated latency of a request, in microseconds
+     */
+    public long getLatencyMicros() {
+      return latencyMicros;
+    }
+
+    /**
+     * @return the estimated bandwidth of a request, in bytes per second
+     */
+    public long getBytesPerSecond() {
+      return bytesPerSecond;
+    }
+
+    /**
+     * @return the longest seek made by reading through data
+     */
+    public long getSkipThreshold() {
+      return skipThreshold;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("[skips: %d; bytes skipped: %d; reopens: %d;"
+              + " latency: %d us; bandwidth: %d B/s; skip threshold: %d]",
+              skips, bytesSkipped, reopens, latencyMicros, bytesPerSecond,
+              skipThreshold);
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * A bounded buffer which passes the data of a writer to an upload
+ * reading it on another thread, without staging it anywhere else.
+ * <p/>
+ * The writer blocks while the buffer is full, and the upload while it is
+ * empty. The writer ends the data with {@link #close()}, or cuts it short
+ * with {@link #abort()}, which makes the upload fail rather than store a
+ * truncated object. If the upload stops reading, the writer fails.
+ */
+class SwiftRingBuffer {
+
+  private final byte[] ring;
+
+  /**
+   * index of the next byte to read
+   */
+  private int head;
+
+  /**
+   * number of bytes waiting to be read
+   */
+  private int count;
+
+  private boolean writerClosed;
+  private boolean writerAborted;
+  private boolean readerClosed;
+
+  /**
+   * Create a buffer
+   *
+   * @param size capacity in bytes
+   */
+  SwiftRingBuffer(int size) {
+    ring = new byte[size];
+  }
+
+  private void await(String action) throws IOException {
+    try {
+      wait();
+    } catch (InterruptedException e) {
+      throw (IOException) new InterruptedIOException(
+              "Interrupted while " + action).initCause(e);
+    }
+  }
+
+  /**
+   * Add data, waiting for space if need be
+   *
+   * @param b   data
+   * @param off offset of the data in the array
+   * @param len length of the data
+   * @throws IOException if the upload has stopped reading,
+   *                     or on an interrupt
+   */
+  synchronized void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      while (count == ring.length && !readerClosed) {
+        await("waiting for the upload to read");
+      }
+      if (readerClosed) {
+        throw new SwiftException("The upload has stopped reading");
+      }
+      int tail = (head + count) % ring.length;
+      int n = Math.min(len, Math.min(ring.length - count, ring.length - tail));
+      System.arraycopy(b, off, ring, tail, n);
+      count += n;
+      off += n;
+      len -= n;
+      notifyAll();
+    }
+  }
+
+  /**
+   * End the data; the upload reads what is left and then reaches its end
+   */
+  synchronized void close() {
+    writerClosed = true;
+    notifyAll();
+  }
+
+  /**
+   * Cut the data short; the upload fails on its next read
+   */
+  synchronized void abort() {
+    writerAborted = true;
+    notifyAll();
+  }
+
+  /**
+   * Get the stream the upload reads the data from. Closing it tells
+   * the writer that nothing more will be read.
+   *
+   * @return the stream
+   */
+  InputStream getInputStream() {
+    return new InputStream() {
+      private final byte[] oneByte = new byte[1];
+
+      @Override
+      public int read() throws IOException {
+        return read(oneByte, 0, 1) < 0 ? -1 : oneByte[0] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        synchronized (SwiftRingBuffer.this) {
+          while (count == 0 && !writerClosed && !writerAborted) {
+            await("waiting for data to upload");
+          }
+          if (writerAborted) {
+            throw new SwiftException("The writer aborted the upload");
+          }
+          if (len == 0) {
+            return 0;
+          }
+          if (count == 0) {
+            return -1;
+          }
+          int n = Math.min(len, Math.min(count, ring.length - head));
+          System.arraycopy(ring, head, b, off, n);
+          head = (head + n) % ring.length;
+          count -= n;
+          SwiftRingBuffer.this.notifyAll();
+          return n;
+        }
+      }
+
+      @Override
+      public void close() {
+        synchronized (SwiftRingBuffer.this) {
+          readerClosed = true;
+          SwiftRingBuffer.this.notifyAll();
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.swift.util.SwiftObjectPath;
+
+/**
+ * A segment of a large file, as it was uploaded: what a static large
+ * object manifest needs to know about it.
+ */
+public class SwiftSegment {
+
+  private final SwiftObjectPath path;
+  private final String etag;
+  private final long size;
+
+  /**
+   * Create a segment
+   *
+   * @param path path of the segment object
+   * @param etag ETag the server returned for it; may be null
+   * @param size length in bytes
+   */
+  public SwiftSegment(SwiftObjectPath path, String etag, long size) {
+    this.path = path;
+    this.etag = etag;
+    this.size = size;
+  }
+
+  public SwiftObjectPath getPath() {
+    return path;
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "SwiftSegment{" + path + "; etag=" + etag + "; size=" + size + "}";
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Space which the segments being uploaded by the output streams of a
+ * filesystem may take up.
+ * <p/>
+ * A stream reserves the size of a segment before it hands the segment
+ * to the upload executor, and the upload releases it once the segment
+ * has gone. Unlike the {@link SwiftPrefetchBudget}, a reservation which
+ * cannot be met blocks the writer until enough uploads have completed.
+ * A segment larger than the whole budget is let through on its own, so
+ * that no writer waits forever.
+ */
+class SwiftUploadBudget {
+
+  private final long limit;
+  private long reserved;
+
+  /**
+   * Create a budget
+   *
+   * @param limit maximum number of bytes which may be reserved
+   */
+  SwiftUploadBudget(long limit) {
+    this.limit = limit;
+  }
+
+  /**
+   * Reserve space, waiting for it if need be
+   *
+   * @param bytes number of bytes
+   * @throws IOException if interrupted while waiting
+   */
+  synchronized void reserve(long bytes) throws IOException {
+    while (reserved > 0 && reserved + bytes > limit) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        throw (IOException) new InterruptedIOException(
+                "Interrupted while waiting for upload buffer space")
+                .initCause(e);
+      }
+    }
+    reserved += bytes;
+  }
+
+  /**
+   * Release space reserved earlier, waking any writers waiting for it
+   *
+   * @param bytes number of bytes
+   */
+  synchronized void release(long bytes) {
+    reserved -= bytes;
+    notifyAll();
+  }
+
+  /**
+   * @return the number of bytes currently reserved
+   */
+  synchronized long getReserved() {
+    return reserved;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.util;
+
+import org.apache.hadoop.fs.swift.http.SwiftProtocolConstants;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pool of direct byte buffers of a fixed size, which output streams
+ * buffer data in.
+ * <p/>
+ * Direct buffers are expensive to allocate and are only freed by the
+ * garbage collector, so the buffers are kept for reuse once released,
+ * and the total allocated is bounded. When the pool is exhausted a
+ * request for a buffer is refused rather than blocked, and the caller
+ * must make do with memory on the heap.
+ */
+public final class SwiftDirectBufferPool {
+
+  /**
+   * size of each buffer
+   */
+  public static final int BUFFER_SIZE = 1024 * 1024;
+
+  /**
+   * The pool shared by all streams in this JVM. Each filesystem instance
+   * raises its limit to the one it was configured with as it is created,
+   * so the largest configured limit applies, whichever order the
+   * instances are created in.
+   */
+  public static final SwiftDirectBufferPool JVM =
+          new SwiftDirectBufferPool(
+                  SwiftProtocolConstants.DEFAULT_SWIFT_DIRECT_BUFFER_MEMORY);
+
+  private final List<ByteBuffer> free = new ArrayList<ByteBuffer>();
+  private long limit;
+  private long allocated;
+
+  /**
+   * Create a pool
+   *
+   * @param limit maximum number of bytes which may be allocated
+   */
+  public SwiftDirectBufferPool(long limit) {
+    this.limit = limit;
+  }
+
+  /**
+   * Raise the limit. A lower limit than the current one is ignored, as
+   * the pool is shared by filesystems which may be configured with
+   * different limits.
+   *
+   * @param limit maximum number of bytes which may be allocated
+   */
+  public synchronized void raiseLimit(long limit) {
+    if (limit > this.limit) {
+      this.limit = limit;
+    }
+  }
+
+  /**
+   * Get a buffer, if the pool has one free or may allocate another
+   *
+   * @return an empty buffer of {@link #BUFFER_SIZE} bytes, to be
+   *         released later; or null if the pool is exhausted
+   */
+  public synchronized ByteBuffer acquire() {
+    if (!free.isEmpty()) {
+      return free.remove(free.size() - 1);
+    }
+    if (allocated + BUFFER_SIZE > limit) {
+      return null;
+    }
+    allocated += BUFFER_SIZE;
+    return ByteBuffer.allocateDirect(BUFFER_SIZE);
+  }
+
+  /**
+   * Return a buffer to the pool
+   *
+   * @param buffer a buffer acquired from this pool
+   */
+  public synchronized void release(ByteBuffer buffer) {
+    buffer.clear();
+    free.add(buffer);
+  }
+
+  /**
+   * @return the number of bytes allocated, whether in use or free
+   */
+  public synchronized long getAllocated() {
+    return allocated;
+  }
+}
@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.util;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException;
+import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.OUTPUT_BUFFER_DIRECT;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.OUTPUT_BUFFER_DISK;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.OUTPUT_BUFFER_HEAP;
+
+/**
+ * Storage for data written to an output stream until it is uploaded:
+ * a local file, byte buffers on the heap, or direct byte buffers from
+ * the {@link SwiftDirectBufferPool}.
+ * <p/>
+ * Data is written to the buffer, which is then closed, read back once
+ * through {@link #getInputStream()} by the upload, and finally released.
+ * Buffers held in memory are read back in place, without a copy.
+ * <p/>
+ * The MD5 of the data is computed as it is written, so that uploads can
+ * send it as the ETag of the object without reading the data twice.
+ */
+public abstract class SwiftOutputBuffer extends OutputStream {
+
+  private static final Log LOG = LogFactory.getLog(SwiftOutputBuffer.class);
+
+  private final MessageDigest md5 = SwiftUtils.newMD5();
+  private final byte[] oneByte = new byte[1];
+  private String etag;
+
+  @Override
+  public final void write(int b) throws IOException {
+    oneByte[0] = (byte) b;
+    write(oneByte, 0, 1);
+  }
+
+  @Override
+  public final void write(byte[] b, int off, int len) throws IOException {
+    if (etag != null) {
+      throw new SwiftException("Buffer written to after its MD5 was taken");
+    }
+    md5.update(b, off, len);
+    append(b, off, len);
+  }
+
+  /**
+   * Store written data
+   *
+   * @param b   data
+   * @param off offset of the data in the array
+   * @param len length of the data
+   * @throws IOException on any failure to store it
+   */
+  protected abstract void append(byte[] b, int off, int len)
+          throws IOException;
+
+  /**
+   * Get the MD5 of the data, once it has all been written
+   *
+   * @return the MD5 in hex, as Swift formats ETags
+   */
+  public String getMD5() {
+    if (etag == null) {
+      etag = SwiftUtils.toHex(md5.digest());
+    }
+    return etag;
+  }
+
+  /**
+   * @return the number of bytes written
+   */
+  public abstract long size();
+
+  /**
+   * Open the data for reading. The buffer must have been closed.
+   *
+   * @return a stream of the data written
+   * @throws IOException on any failure to open it
+   */
+  public abstract InputStream getInputStream() throws IOException;
+
+  /**
+   * Free the storage of the buffer; its data cannot be read afterwards.
+   * This is idempotent.
+   */
+  public abstract void release();
+
+  /**
+   * Creator of buffers of one kind
+   */
+  public abstract static class Factory {
+
+    /**
+     * Create an empty buffer
+     *
+     * @return the buffer
+     * @throws IOException on any failure to create it
+     */
+    public abstract SwiftOutputBuffer create() throws IOException;
+  }
+
+  /**
+   * Get a factory of buffers
+   *
+   * @param type one of the output buffer types of
+   *             {@link org.apache.hadoop.fs.swift.http.SwiftProtocolConstants}
+   * @param conf configuration, giving the directory of disk buffers
+   * @return the factory
+   * @throws SwiftConfigurationException if the type is unknown
+   */
+  public static Factory factory(String type, final Configuration conf)
+          throws SwiftConfigurationException {
+    if (OUTPUT_BUFFER_DISK.equals(type)) {
+      return new Factory() {
+        @Override
+        public SwiftOutputBuffer create() throws IOException {
+          return new DiskBuffer(new File(conf.get("hadoop.tmp.dir")));
+        }
+      };
+    }
+    if (OUTPUT_BUFFER_HEAP.equals(type)) {
+      return new Factory() {
+        @Override
+        public SwiftOutputBuffer create() {
+          return new MemoryBuffer(null);
+        }
+      };
+    }
+    if (OUTPUT_BUFFER_DIRECT.equals(type)) {
+      return new Factory() {
+        @Override
+        public SwiftOutputBuffer create() {
+          return new MemoryBuffer(SwiftDirectBufferPool.JVM);
+        }
+      };
+    }
+    throw new SwiftConfigurationException("Unknown output buffer: " + type);
+  }
+
+  /**
+   * A buffer in a local file
+   */
+  private static final class DiskBuffer extends SwiftOutputBuffer {
+    private final File file;
+    private final OutputStream out;
+    private long size;
+
+    private DiskBuffer(File dir) throws IOException {
+      if (!dir.mkdirs() && !dir.exists()) {
+        throw new SwiftException("Cannot create Swift buffer directory: " + dir);
+      }
+      file = File.createTempFile("output-", ".tmp", dir);
+      file.deleteOnExit();
+      out = new BufferedOutputStream(new FileOutputStream(file));
+    }
+
+    @Override
+    protected void append(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      size += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+
+    @Override
+    public long size() {
+      return size;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return new FileInputStream(file);
+    }
+
+    @Override
+    public void release() {
+      IOUtils.closeQuietly(out);
+      if (file.exists() && !file.delete()) {
+        LOG.warn("Could not delete " + file);
+      }
+    }
+  }
+
+  /**
+   * A buffer in a list of byte buffers, taken from a pool of direct
+   * buffers while it lasts and allocated on the heap otherwise
+   */
+  private static final class MemoryBuffer extends SwiftOutputBuffer {
+    private final SwiftDirectBufferPool pool;
+    private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+    private ByteBuffer current;
+    private long size;
+
+    /**
+     * @param pool pool of direct buffers; null for heap buffers only
+     */
+    private MemoryBuffer(SwiftDirectBufferPool pool) {
+      this.pool = pool;
+    }
+
+    private ByteBuffer nextChunk() {
+      ByteBuffer chunk = pool != null ? pool.acquire() : null;
+      if (chunk == null) {
+        chunk = ByteBuffer.allocate(SwiftDirectBufferPool.BUFFER_SIZE);
+      }
+      chunks.add(chunk);
+      return chunk;
+    }
+
+    @Override
+    protected void append(byte[] b, int off, int len) {
+      while (len > 0) {
+        if (current == null || !current.hasRemaining()) {
+          current = nextChunk();
+        }
+        int count = Math.min(len, current.remaining());
+        current.put(b, off, count);
+        off += count;
+        len -= count;
+        size += count;
+      }
+    }
+
+    @Override
+    public long size() {
+      return size;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+      final List<ByteBuffer> views = new ArrayList<ByteBuffer>(chunks.size());
+      for (ByteBuffer chunk : chunks) {
+        ByteBuffer view = chunk.duplicate();
+        view.flip();
+        views.add(view);
+      }
+      return new InputStream() {
+        private int index;
+
+        private ByteBuffer view() {
+          while (index < views.size() && !views.get(index).hasRemaining()) {
+            index++;
+          }
+          return index < views.size() ? views.get(index) : null;
+        }
+
+        @Override
+        public int read() {
+          ByteBuffer view = view();
+          return view == null ? -1 : view.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+          if (len == 0) {
+            return 0;
+          }
+          ByteBuffer view = view();
+          if (view == null) {
+            return -1;
+          }
+          int count = Math.min(len, view.remaining());
+          view.get(b, off, count);
+          return count;
+        }
+      };
+    }
+
+    @Override
+    public void release() {
+      for (ByteBuffer chunk : chunks) {
+        if (chunk.isDirect()) {
+          pool.release(chunk);
+        }
+      }
+      chunks.clear();
+      current = null;
+    }
+  }
+}
@@ -21,6 +21,11 @@ package org.apache.hadoop.fs.swift.util;
 import org.apache.commons.logging.Log;
 import org.apache.hadoop.fs.FileStatus;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Various utility classes for SwiftFS support
  */
@@ -92,6 +97,67 @@ public final class SwiftUtils {
     return possibleChild.getObject().startsWith(parent.getObject() + "/");
   }
 
+  /**
+   * Create a factory of named daemon threads, so that background work
+   * never blocks JVM shutdown.
+   *
+   * @param prefix prefix for the thread names
+   * @return a thread factory
+   */
+  public static ThreadFactory newDaemonThreadFactory(final String prefix) {
+    return new ThreadFactory() {
+      private final AtomicInteger counter = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  /**
+   * Create an MD5 digest, which every JVM provides
+   *
+   * @return a new digest
+   */
+  public static MessageDigest newMD5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("No MD5 digest", e);
+    }
+  }
+
+  /**
+   * Format bytes as lower case hex, as Swift formats ETags
+   *
+   * @param bytes bytes
+   * @return the hex string
+   */
+  public static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+      hex.append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Strip the quotes Swift puts around the ETags of large objects
+   *
+   * @param etag ETag
+   * @return the ETag without quotes
+   */
+  public static String unquoteETag(String etag) {
+    if (etag.length() >= 2 && etag.startsWith("\"") && etag.endsWith("\"")) {
+      return etag.substring(1, etag.length() - 1);
+    }
+    return etag;
+  }
+
   public static void debug(Log log, String text, Object... args) {
     if (log.isDebugEnabled()) {
       log.debug(String.format(text, args));
@@ -51,7 +51,8 @@ public class InMemorySwiftNativeStore extends SwiftNativeFileSystemStore {
   }
 
   @Override
-  public void uploadFile(Path path, InputStream inputStream, long length) {
+  public void uploadFile(Path path, InputStream inputStream, long length,
+                         String md5) {
     ByteArrayOutputStream out = new ByteArrayOutputStream();
     byte[] buf = new byte[8192];
     int numRead;
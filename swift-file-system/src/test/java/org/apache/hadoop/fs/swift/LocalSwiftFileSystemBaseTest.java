@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.http.LocalSwiftServer;
+import org.apache.hadoop.fs.swift.http.RestClientBindings;
+import org.apache.hadoop.fs.swift.snative.SwiftNativeFileSystem;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.noteAction;
+
+/**
+ * Base class for tests which run the filesystem against an in-process
+ * {@link LocalSwiftServer}, and so need no Swift credentials.
+ */
+public class LocalSwiftFileSystemBaseTest extends Assert {
+  protected LocalSwiftServer server;
+  protected SwiftNativeFileSystem fs;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new LocalSwiftServer();
+    server.start();
+    Configuration conf = server.createConfiguration();
+    configure(conf, RestClientBindings.buildSwiftInstancePrefix(
+            LocalSwiftServer.SERVICE));
+    fs = new SwiftNativeFileSystem();
+    fs.initialize(server.getFilesystemURI(), conf);
+    server.resetRequestCounts();
+    noteAction("setup complete");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (fs != null) {
+      fs.close();
+    }
+    if (server != null) {
+      server.stop();
+    }
+  }
+
+  /**
+   * Override point: add options to the configuration
+   * before the filesystem is created
+   *
+   * @param conf   configuration
+   * @param prefix prefix of the options of the service under test
+   */
+  protected void configure(Configuration conf, String prefix) {
+  }
+
+  protected Path path(String pathString) {
+    return new Path(pathString).makeQualified(fs);
+  }
+}
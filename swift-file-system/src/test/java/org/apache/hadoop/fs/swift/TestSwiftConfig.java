@@ -18,6 +18,8 @@
 package org.apache.hadoop.fs.swift;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.swift.http.SwiftConnectionManager;
+import org.apache.hadoop.fs.swift.http.SwiftConsistencyPolicy;
 import org.apache.hadoop.fs.swift.http.SwiftRestClient;
 import org.junit.Test;
 
@@ -26,6 +28,8 @@ import java.net.URI;
 import java.net.URISyntaxException;
 
 import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test the swift service-specific configuration binding features
@@ -114,6 +118,113 @@ public class TestSwiftConfig {
     mkInstance(configuration);
   }
 
+  @Test(expected = org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException.class)
+  public void testZeroMaxConnections() throws Exception {
+    final Configuration configuration = createCoreConfig();
+    set(configuration, DOT_HTTP_MAX_CONNECTIONS, "0");
+    mkInstance(configuration);
+  }
+
+  @Test(expected = org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException.class)
+  public void testBadIdleTimeout() throws Exception {
+    final Configuration configuration = createCoreConfig();
+    set(configuration, DOT_HTTP_IDLE_TIMEOUT, "forever");
+    mkInstance(configuration);
+  }
+
+  @Test
+  public void testConnectionPool() throws Exception {
+    final Configuration configuration = createCoreConfig();
+    set(configuration, DOT_HTTP_MAX_CONNECTIONS, "8");
+    set(configuration, DOT_HTTP_MAX_CONNECTIONS_PER_ROUTE, "4");
+    set(configuration, DOT_HTTP_IDLE_TIMEOUT, "0");
+    set(configuration, DOT_HTTP_STALE_CHECK, "false");
+    SwiftRestClient client = mkInstance(configuration);
+    try {
+      SwiftConnectionManager.PoolStatistics stats =
+              client.getConnectionPoolStatistics();
+      assertEquals(8, stats.getMax());
+      assertEquals(0, stats.getLeased());
+      assertEquals(0, stats.getAvailable());
+      assertEquals(0, stats.getPending());
+      assertTrue(client.hasFreeConnection());
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test(expected = org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException.class)
+  public void testBadConsistencyPolicy() throws Exception {
+    final Configuration configuration = createCoreConfig();
+    set(configuration, DOT_CONSISTENCY, "sometimes");
+    mkInstance(configuration);
+  }
+
+  @Test
+  public void testConsistencyPolicy() throws Exception {
+    final Configuration configuration = createCoreConfig();
+    assertEquals(SwiftConsistencyPolicy.STRONG,
+            mkInstance(configuration).getConsistencyPolicy());
+    set(configuration, DOT_CONSISTENCY, "Read-Your-Writes");
+    assertEquals(SwiftConsistencyPolicy.READ_YOUR_WRITES,
+            mkInstance(configuration).getConsistencyPolicy());
+  }
+
+  @Test(expected = org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException.class)
+  public void testZeroSegmentSize() throws Exception {
+    final Configuration configuration = createCoreConfig();
+    set(configuration, DOT_SEGMENT_SIZE, "0");
+    mkInstance(configuration);
+  }
+
+  @Test(expected = org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException.class)
+  public void testZeroUploadParallelism() throws Exception {
+    final Configuration configuration = createCoreConfig();
+    set(configuration, DOT_UPLOAD_PARALLELISM, "0");
+    mkInstance(configuration);
+  }
+
+  @Test(expected = org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException.class)
+  public void testUnknownLargeObject() throws Exception {
+    final Configuration configuration = createCoreConfig();
+    set(configuration, DOT_LARGE_OBJECT, "xlo");
+    mkInstance(configuration);
+  }
+
+  @Test(expected = org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException.class)
+  public void testZeroChunkedBufferSize() throws Exception {
+    final Configuration configuration = createCoreConfig();
+    set(configuration, DOT_CHUNKED_BUFFER_SIZE, "0");
+    mkInstance(configuration);
+  }
+
+  @Test(expected = org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException.class)
+  public void testZeroBulkDeleteSize() throws Exception {
+    final Configuration configuration = createCoreConfig();
+    set(configuration, DOT_BULK_DELETE_SIZE, "0");
+    mkInstance(configuration);
+  }
+
+  @Test(expected = org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException.class)
+  public void testZeroLocationBatchSize() throws Exception {
+    final Configuration configuration = createCoreConfig();
+    set(configuration, DOT_LOCATION_BATCH_SIZE, "0");
+    mkInstance(configuration);
+  }
+
+  @Test
+  public void testMemoryBufferSegmentSize() throws Exception {
+    final Configuration configuration = createCoreConfig();
+    set(configuration, DOT_UPLOAD_BUFFER_LIMIT, "5000");
+    set(configuration, DOT_UPLOAD_PARALLELISM, "4");
+    assertEquals(DEFAULT_SEGMENT_SIZE,
+            mkInstance(configuration).getSegmentSize());
+    set(configuration, DOT_OUTPUT_BUFFER, OUTPUT_BUFFER_HEAP);
+    assertEquals(1000, mkInstance(configuration).getSegmentSize());
+    set(configuration, DOT_SEGMENT_SIZE, "500");
+    assertEquals(500, mkInstance(configuration).getSegmentSize());
+  }
+
   private Configuration createCoreConfig() {
     final Configuration configuration = new Configuration();
     set(configuration, DOT_AUTH_URL, "http://localhost:8080");
@@ -127,10 +238,10 @@ public class TestSwiftConfig {
     configuration.set(SWIFT_SERVICE_PREFIX + SERVICE + field, value);
   }
 
-  private void mkInstance(Configuration configuration) throws
+  private SwiftRestClient mkInstance(Configuration configuration) throws
           IOException,
           URISyntaxException {
     URI uri = new URI("swift://container.openstack/");
-    SwiftRestClient.getInstance(uri, configuration);
+    return SwiftRestClient.getInstance(uri, configuration);
   }
 }
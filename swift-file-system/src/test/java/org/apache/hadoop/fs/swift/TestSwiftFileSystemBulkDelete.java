@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+import org.junit.Test;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_BULK_DELETE_SIZE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_DELETE_THREADS;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.writeDataset;
+
+/**
+ * Test recursive deletes, with and without the bulk middleware
+ */
+public class TestSwiftFileSystemBulkDelete extends LocalSwiftFileSystemBaseTest {
+
+  private static final int FILES = 40;
+  private static final int BATCH = 16;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setInt(prefix + DOT_BULK_DELETE_SIZE, BATCH);
+    conf.setInt(prefix + DOT_DELETE_THREADS, 4);
+  }
+
+  private void createFiles(Path dir) throws Exception {
+    for (int i = 0; i < FILES; i++) {
+      Path subdir = new Path(dir, i % 2 == 0 ? "even" : "odd");
+      writeDataset(fs, new Path(subdir, "part-" + i), dataset(16, i, 251),
+              16, 1024, true);
+    }
+  }
+
+  private void assertDeleted(Path dir) throws Exception {
+    assertFalse(fs.exists(dir));
+    for (int i = 0; i < FILES; i++) {
+      assertNull(server.getObject("test/dir/" + (i % 2 == 0 ? "even" : "odd")
+              + "/part-" + i));
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testRecursiveDeleteIsBatched() throws Throwable {
+    Path dir = path("/test/dir");
+    createFiles(dir);
+    fs.mkdirs(dir);
+    server.resetRequestCounts();
+    assertTrue(fs.delete(dir, true));
+    //no listing of each subdirectory, and no DELETE for each file;
+    //just the directory itself
+    assertEquals(1, server.getRequestCount("DELETE"));
+    int posts = server.getRequestCount("POST");
+    assertTrue("POST requests: " + posts,
+            posts >= (FILES + BATCH - 1) / BATCH && posts < FILES / 4);
+    assertDeleted(dir);
+  }
+
+  @Test(timeout = 30000)
+  public void testDeleteWithoutMiddleware() throws Throwable {
+    Path dir = path("/test/dir");
+    createFiles(dir);
+    server.setBulkDelete(false);
+    server.resetRequestCounts();
+    assertTrue(fs.delete(dir, true));
+    //the store stops trying after the first refusal
+    assertEquals(1, server.getRequestCount("POST"));
+    assertTrue("DELETE requests: " + server.getRequestCount("DELETE"),
+            server.getRequestCount("DELETE") > FILES);
+    assertDeleted(dir);
+  }
+
+  @Test(timeout = 30000)
+  public void testFailedBulkDeleteRetried() throws Throwable {
+    Path dir = path("/test/dir");
+    createFiles(dir);
+    server.failRequests("DELETE", "test/dir/odd/part-7", 1);
+    server.resetRequestCounts();
+    assertTrue(fs.delete(dir, true));
+    //the failed object and the directory
+    assertEquals(2, server.getRequestCount("DELETE"));
+    assertDeleted(dir);
+  }
+
+  @Test(timeout = 30000)
+  public void testNonRecursiveDeleteOfDirectory() throws Throwable {
+    Path dir = path("/test/dir");
+    createFiles(dir);
+    try {
+      fs.delete(dir, false);
+      fail("deleted a non-empty directory");
+    } catch (SwiftException expected) {
+      //expected
+    }
+    assertTrue(fs.exists(new Path(dir, "odd/part-7")));
+    Path empty = path("/test/empty");
+    fs.mkdirs(empty);
+    assertTrue(fs.delete(empty, false));
+    assertFalse(fs.exists(empty));
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.snative.SwiftFileChecksum;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_SEGMENT_SIZE;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+
+/**
+ * Test file checksums built from the ETags of objects
+ */
+public class TestSwiftFileSystemChecksum extends LocalSwiftFileSystemBaseTest {
+
+  private static final int SEGMENT = 1024;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setLong(prefix + DOT_SEGMENT_SIZE, SEGMENT);
+  }
+
+  private void write(Path file, byte[] src) throws Exception {
+    FSDataOutputStream out = fs.create(file);
+    try {
+      for (int offset = 0; offset < src.length; offset += 256) {
+        out.write(src, offset, Math.min(256, src.length - offset));
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testChecksumIsOneHead() throws Throwable {
+    byte[] src = dataset(SEGMENT / 2, 0, 251);
+    Path file = path("/test/file");
+    write(file, src);
+    server.resetRequestCounts();
+    FileChecksum checksum = fs.getFileChecksum(file);
+    assertEquals(1, server.getRequestCount("HEAD"));
+    assertEquals(0, server.getRequestCount("GET"));
+    assertEquals(SwiftFileChecksum.MD5, checksum.getAlgorithmName());
+    assertArrayEquals(DigestUtils.md5(src), checksum.getBytes());
+  }
+
+  @Test(timeout = 30000)
+  public void testChecksumOfManifest() throws Throwable {
+    byte[] src = dataset(4 * SEGMENT, 0, 251);
+    Path file = path("/test/file");
+    Path copy = path("/test/copy");
+    Path other = path("/test/other");
+    write(file, src);
+    write(copy, src);
+    write(other, dataset(4 * SEGMENT, 1, 251));
+    FileChecksum checksum = fs.getFileChecksum(file);
+    assertEquals(SwiftFileChecksum.MD5_OF_MD5S, checksum.getAlgorithmName());
+    assertEquals(checksum, fs.getFileChecksum(copy));
+    assertFalse(checksum.equals(fs.getFileChecksum(other)));
+  }
+
+  @Test(timeout = 30000)
+  public void testNoChecksumOfDirectory() throws Throwable {
+    Path dir = path("/test/dir");
+    fs.mkdirs(dir);
+    assertNull(fs.getFileChecksum(dir));
+  }
+
+  @Test(timeout = 30000, expected = FileNotFoundException.class)
+  public void testChecksumOfMissingFile() throws Throwable {
+    fs.getFileChecksum(path("/test/missing"));
+  }
+}
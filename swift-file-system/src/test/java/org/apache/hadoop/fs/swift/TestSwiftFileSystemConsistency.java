@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.http.LocalSwiftServer;
+import org.apache.hadoop.fs.swift.http.RestClientBindings;
+import org.apache.hadoop.fs.swift.http.SwiftRestClient;
+import org.apache.hadoop.fs.swift.snative.SwiftNativeFileSystem;
+import org.apache.hadoop.fs.swift.util.SwiftObjectPath;
+import org.junit.Test;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_CONSISTENCY;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_CONSISTENCY_WINDOW;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.writeTextFile;
+
+/**
+ * Test that the consistency policy decides which reads carry X-Newest
+ */
+public class TestSwiftFileSystemConsistency
+        extends LocalSwiftFileSystemBaseTest {
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.set(prefix + DOT_CONSISTENCY, "read-your-writes");
+  }
+
+  /**
+   * Read a file through a filesystem, then check whether the reads
+   * of it asked for the newest copy
+   */
+  private void assertReadsNewest(boolean newest,
+                                 SwiftNativeFileSystem filesystem,
+                                 Path file) throws Exception {
+    //authenticate first: that probes the container
+    filesystem.exists(path("/"));
+    server.resetRequestCounts();
+    filesystem.getFileStatus(file);
+    FSDataInputStream in = filesystem.open(file);
+    try {
+      in.read();
+    } finally {
+      in.close();
+    }
+    assertEquals(1, server.getRequestCount("GET"));
+    int reads = server.getRequestCount("HEAD") + server.getRequestCount("GET");
+    int newestReads = server.getNewestRequestCount("HEAD")
+            + server.getNewestRequestCount("GET");
+    assertEquals("reads with X-Newest", newest ? reads : 0, newestReads);
+  }
+
+  private SwiftNativeFileSystem createFileSystem(String policy)
+          throws Exception {
+    Configuration conf = server.createConfiguration();
+    if (policy != null) {
+      conf.set(RestClientBindings.buildSwiftInstancePrefix(
+              LocalSwiftServer.SERVICE) + DOT_CONSISTENCY, policy);
+    }
+    SwiftNativeFileSystem filesystem = new SwiftNativeFileSystem();
+    filesystem.initialize(server.getFilesystemURI(), conf);
+    return filesystem;
+  }
+
+  @Test(timeout = 30000)
+  public void testOwnWritesReadNewest() throws Throwable {
+    Path file = path("/test/file");
+    writeTextFile(fs, file, "text", false);
+    assertReadsNewest(true, fs, file);
+  }
+
+  @Test(timeout = 30000)
+  public void testOtherWritesReadAnyReplica() throws Throwable {
+    server.putObject("test/other", "text".getBytes("UTF-8"));
+    assertReadsNewest(false, fs, path("/test/other"));
+  }
+
+  @Test(timeout = 30000)
+  public void testOwnWritesForgottenAfterWindow() throws Throwable {
+    Configuration conf = server.createConfiguration();
+    String prefix = RestClientBindings.buildSwiftInstancePrefix(
+            LocalSwiftServer.SERVICE);
+    conf.set(prefix + DOT_CONSISTENCY, "read-your-writes");
+    conf.setLong(prefix + DOT_CONSISTENCY_WINDOW, 100);
+    SwiftNativeFileSystem windowed = new SwiftNativeFileSystem();
+    windowed.initialize(server.getFilesystemURI(), conf);
+    try {
+      Path file = path("/test/file");
+      writeTextFile(windowed, file, "text", false);
+      Thread.sleep(200);
+      //a later write prunes the first from the paths remembered
+      writeTextFile(windowed, path("/test/later"), "text", false);
+      assertReadsNewest(false, windowed, file);
+    } finally {
+      windowed.close();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testContentLengthFollowsPolicy() throws Throwable {
+    server.putObject("test/other", "text".getBytes("UTF-8"));
+    SwiftRestClient client = SwiftRestClient.getInstance(
+            server.getFilesystemURI(), server.createConfiguration());
+    Configuration conf = server.createConfiguration();
+    conf.set(RestClientBindings.buildSwiftInstancePrefix(
+            LocalSwiftServer.SERVICE) + DOT_CONSISTENCY, "eventual");
+    SwiftRestClient eventual = SwiftRestClient.getInstance(
+            server.getFilesystemURI(), conf);
+    try {
+      client.authenticate();
+      eventual.authenticate();
+      SwiftObjectPath other = new SwiftObjectPath(LocalSwiftServer.CONTAINER,
+              "/test/other");
+      server.resetRequestCounts();
+      assertEquals(4, eventual.getContentLength(other));
+      assertEquals(0, server.getNewestRequestCount("HEAD"));
+      assertEquals(4, client.getContentLength(other));
+      assertEquals(1, server.getNewestRequestCount("HEAD"));
+    } finally {
+      client.close();
+      eventual.close();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testStrongByDefault() throws Throwable {
+    server.putObject("test/other", "text".getBytes("UTF-8"));
+    SwiftNativeFileSystem strong = createFileSystem(null);
+    try {
+      assertReadsNewest(true, strong, path("/test/other"));
+    } finally {
+      strong.close();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testEventualNeverReadsNewest() throws Throwable {
+    SwiftNativeFileSystem eventual = createFileSystem("eventual");
+    try {
+      Path file = path("/test/file");
+      writeTextFile(eventual, file, "text", false);
+      assertReadsNewest(false, eventual, file);
+    } finally {
+      eventual.close();
+    }
+  }
+}
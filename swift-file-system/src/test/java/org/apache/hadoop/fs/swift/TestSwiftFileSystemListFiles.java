@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.writeTextFile;
+
+/**
+ * Test listFiles() and listLocatedStatus(), in particular that a recursive
+ * listing is made in a single scan of the tree rather than a walk
+ */
+public class TestSwiftFileSystemListFiles extends LocalSwiftFileSystemBaseTest {
+
+  private static final String[] FILES = {
+          "a/b/file1",
+          "a/file2",
+          "c/file3",
+          "file4",
+  };
+
+  private Path createTree() throws Exception {
+    Path tree = path("/test/tree");
+    for (String file : FILES) {
+      writeTextFile(fs, new Path(tree, file), file, false);
+    }
+    return tree;
+  }
+
+  private static Set<String> names(RemoteIterator<LocatedFileStatus> listing)
+          throws Exception {
+    Set<String> names = new TreeSet<String>();
+    while (listing.hasNext()) {
+      LocatedFileStatus status = listing.next();
+      names.add(status.getPath().getName());
+      if (!status.isDir()) {
+        assertNotNull("no block locations for " + status,
+                status.getBlockLocations());
+      }
+    }
+    return names;
+  }
+
+  @Test(timeout = 30000)
+  public void testListFilesRecursive() throws Throwable {
+    Path tree = createTree();
+    server.resetRequestCounts();
+    Set<String> names = names(fs.listFiles(tree, true));
+    assertEquals("[file1, file2, file3, file4]", names.toString());
+    //one page of entries, and the empty page which ends the listing
+    assertEquals("listing requests", 2, server.getRequestCount("GET"));
+  }
+
+  @Test(timeout = 30000)
+  public void testListFilesShallow() throws Throwable {
+    Path tree = createTree();
+    assertEquals("[file4]", names(fs.listFiles(tree, false)).toString());
+  }
+
+  @Test(timeout = 30000)
+  public void testListFilesOfFile() throws Throwable {
+    Path tree = createTree();
+    assertEquals("[file3]",
+            names(fs.listFiles(new Path(tree, "c/file3"), true)).toString());
+  }
+
+  @Test(timeout = 30000)
+  public void testListLocatedStatus() throws Throwable {
+    Path tree = createTree();
+    assertEquals("[a, c, file4]",
+            names(fs.listLocatedStatus(tree)).toString());
+  }
+
+  @Test(timeout = 30000, expected = FileNotFoundException.class)
+  public void testListFilesMissingPath() throws Throwable {
+    fs.listFiles(path("/test/missing"), true);
+  }
+}
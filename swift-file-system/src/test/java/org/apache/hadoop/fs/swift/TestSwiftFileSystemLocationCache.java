@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.fs.swift.http.LocalSwiftServer;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_LOCATION_AWARE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_LOCATION_BATCH_SIZE;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.writeDataset;
+
+/**
+ * Test that files are located in batches, and that their locations
+ * are cached until the objects change
+ */
+public class TestSwiftFileSystemLocationCache
+        extends LocalSwiftFileSystemBaseTest {
+
+  private static final int FILES = 10;
+  private static final int BATCH = 4;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setBoolean(prefix + DOT_LOCATION_AWARE, true);
+    conf.setInt(prefix + DOT_LOCATION_BATCH_SIZE, BATCH);
+  }
+
+  private void writeFiles(Path dir) throws Exception {
+    for (int i = 0; i < FILES; i++) {
+      writeDataset(fs, new Path(dir, "file" + i), dataset(16, 'a', 26),
+              16, 1024, true);
+    }
+  }
+
+  /**
+   * List the files under a directory with their locations, and check
+   * the hosts of each
+   *
+   * @param dir directory
+   * @return the number of files
+   */
+  private int listAndCheck(Path dir) throws Exception {
+    RemoteIterator<LocatedFileStatus> files = fs.listFiles(dir, true);
+    int count = 0;
+    while (files.hasNext()) {
+      LocatedFileStatus status = files.next();
+      BlockLocation[] blocks = status.getBlockLocations();
+      assertEquals(1, blocks.length);
+      assertEquals(LocalSwiftServer.getObjectHosts(
+              "data" + status.getPath().toUri().getPath()),
+              Arrays.asList(blocks[0].getHosts()));
+      count++;
+    }
+    return count;
+  }
+
+  @Test(timeout = 30000)
+  public void testListingLocatedInBatches() throws Throwable {
+    Path dir = path("/test/batched");
+    writeFiles(dir);
+    server.resetRequestCounts();
+    assertEquals(FILES, listAndCheck(dir));
+    //one batch per BATCH files, and no lookups of single objects
+    assertEquals(3, server.getRequestCount("POST"));
+    int listings = server.getRequestCount("GET");
+
+    server.resetRequestCounts();
+    assertEquals(FILES, listAndCheck(dir));
+    assertEquals("cached locations were looked up again",
+            0, server.getRequestCount("POST"));
+    assertEquals(listings, server.getRequestCount("GET"));
+  }
+
+  @Test(timeout = 30000)
+  public void testRewrittenObjectLocatedAgain() throws Throwable {
+    Path file = path("/test/file");
+    writeDataset(fs, file, dataset(16, 'a', 26), 16, 1024, true);
+    FileStatus status = fs.getFileStatus(file);
+    server.resetRequestCounts();
+    fs.getFileBlockLocations(status, 0, 16);
+    //the listing for partitions, and the location lookup
+    assertEquals(2, server.getRequestCount("GET"));
+    server.resetRequestCounts();
+    fs.getFileBlockLocations(status, 0, 16);
+    assertEquals(1, server.getRequestCount("GET"));
+
+    writeDataset(fs, file, dataset(16, 'b', 26), 16, 1024, true);
+    status = fs.getFileStatus(file);
+    server.resetRequestCounts();
+    BlockLocation[] blocks = fs.getFileBlockLocations(status, 0, 16);
+    assertEquals(2, server.getRequestCount("GET"));
+    assertEquals(LocalSwiftServer.getObjectHosts("data/test/file"),
+            Arrays.asList(blocks[0].getHosts()));
+  }
+
+  @Test(timeout = 30000)
+  public void testFallbackWithoutBatchLookups() throws Throwable {
+    server.setBatchLocations(false);
+    Path dir = path("/test/single");
+    writeFiles(dir);
+    server.resetRequestCounts();
+    assertEquals(FILES, listAndCheck(dir));
+    //the rejected batch, after which every object is located alone
+    assertEquals(1, server.getRequestCount("POST"));
+    int listings = server.getRequestCount("GET") - FILES;
+
+    writeFiles(path("/test/more"));
+    server.resetRequestCounts();
+    assertEquals(FILES, listAndCheck(path("/test/more")));
+    assertEquals(0, server.getRequestCount("POST"));
+    assertEquals(listings + FILES, server.getRequestCount("GET"));
+  }
+
+  @Test(timeout = 30000)
+  public void testTooLargeBatchSplit() throws Throwable {
+    server.setBatchLocationLimit(BATCH / 2);
+    Path dir = path("/test/split");
+    writeFiles(dir);
+    server.resetRequestCounts();
+    assertEquals(FILES, listAndCheck(dir));
+    //each full batch is rejected, then sent as two halves
+    assertEquals(7, server.getRequestCount("POST"));
+  }
+
+  @Test(timeout = 30000)
+  public void testBatchesKeptAfterFailure() throws Throwable {
+    server.failBatchLocations(400);
+    Path dir = path("/test/failed");
+    writeFiles(dir);
+    server.resetRequestCounts();
+    assertEquals(FILES, listAndCheck(dir));
+    assertEquals(3, server.getRequestCount("POST"));
+
+    server.failBatchLocations(0);
+    writeFiles(path("/test/more"));
+    server.resetRequestCounts();
+    assertEquals(FILES, listAndCheck(path("/test/more")));
+    assertEquals(3, server.getRequestCount("POST"));
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_OUTPUT_BUFFER;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_SEGMENT_SIZE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_STREAMING_UPLOAD;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.OUTPUT_BUFFER_DIRECT;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.readDataset;
+
+/**
+ * Test uploads of files buffered in direct memory rather than on disk
+ */
+public class TestSwiftFileSystemMemoryBuffer extends LocalSwiftFileSystemBaseTest {
+
+  private static final int SEGMENT = 4096;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.set(prefix + DOT_OUTPUT_BUFFER, OUTPUT_BUFFER_DIRECT);
+    conf.setLong(prefix + DOT_SEGMENT_SIZE, SEGMENT);
+    conf.setBoolean(prefix + DOT_STREAMING_UPLOAD, true);
+  }
+
+  private void assertWritten(Path file, byte[] src) throws Exception {
+    FSDataOutputStream out = fs.create(file);
+    try {
+      out.write(src);
+    } finally {
+      out.close();
+    }
+    assertEquals(src.length, fs.getFileStatus(file).getLen());
+    assertArrayEquals(src, readDataset(fs, file, src.length));
+  }
+
+  @Test(timeout = 30000)
+  public void testSmallFile() throws Throwable {
+    assertWritten(path("/test/small"), dataset(1000, 0, 251));
+  }
+
+  @Test(timeout = 30000)
+  public void testSegmentedFile() throws Throwable {
+    byte[] src = dataset(10 * SEGMENT + 10, 0, 251);
+    FSDataOutputStream out = fs.create(path("/test/file"));
+    try {
+      for (int offset = 0; offset < src.length; offset += 1000) {
+        out.write(src, offset, Math.min(1000, src.length - offset));
+      }
+    } finally {
+      out.close();
+    }
+    assertArrayEquals(src, readDataset(fs, path("/test/file"), src.length));
+  }
+}
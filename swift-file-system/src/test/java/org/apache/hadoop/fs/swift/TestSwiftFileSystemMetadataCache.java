@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_METADATA_CACHE_TTL;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.writeTextFile;
+
+/**
+ * Test the metadata cache: statuses are served from it, filled by
+ * listings, and dropped when this client changes a path
+ */
+public class TestSwiftFileSystemMetadataCache
+        extends LocalSwiftFileSystemBaseTest {
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setLong(prefix + DOT_METADATA_CACHE_TTL, 60000);
+  }
+
+  @Test(timeout = 30000)
+  public void testStatusIsCached() throws Throwable {
+    Path file = path("/test/file");
+    writeTextFile(fs, file, "text", false);
+    fs.getFileStatus(file);
+    server.resetRequestCounts();
+    FileStatus status = fs.getFileStatus(file);
+    assertEquals(4, status.getLen());
+    assertEquals("HEAD requests", 0, server.getRequestCount("HEAD"));
+  }
+
+  @Test(timeout = 30000)
+  public void testListingFillsCache() throws Throwable {
+    Path dir = path("/test/dir");
+    for (int i = 0; i < 5; i++) {
+      writeTextFile(fs, new Path(dir, "file" + i), "file" + i, false);
+    }
+    server.resetRequestCounts();
+    FileStatus[] listing = fs.listStatus(dir);
+    assertEquals(5, listing.length);
+    for (FileStatus entry : listing) {
+      FileStatus status = fs.getFileStatus(entry.getPath());
+      assertFalse(status.isDir());
+      assertEquals(entry.getLen(), status.getLen());
+      assertTrue(status.getBlockSize() > 0);
+    }
+    assertEquals("HEAD requests", 0, server.getRequestCount("HEAD"));
+  }
+
+  @Test(timeout = 30000)
+  public void testOverwriteInvalidates() throws Throwable {
+    Path file = path("/test/file");
+    writeTextFile(fs, file, "text", false);
+    fs.getFileStatus(file);
+    writeTextFile(fs, file, "longer text", true);
+    assertEquals(11, fs.getFileStatus(file).getLen());
+  }
+
+  @Test(timeout = 30000, expected = FileNotFoundException.class)
+  public void testDeleteInvalidates() throws Throwable {
+    Path file = path("/test/file");
+    writeTextFile(fs, file, "text", false);
+    fs.getFileStatus(file);
+    fs.delete(file, false);
+    fs.getFileStatus(file);
+  }
+
+  @Test(timeout = 30000)
+  public void testRenameInvalidates() throws Throwable {
+    Path src = path("/test/src");
+    Path dst = path("/test/dst");
+    writeTextFile(fs, src, "text", false);
+    writeTextFile(fs, dst, "old", false);
+    fs.getFileStatus(src);
+    fs.delete(dst, false);
+    assertTrue(fs.rename(src, dst));
+    assertEquals(4, fs.getFileStatus(dst).getLen());
+    assertFalse(fs.exists(src));
+  }
+}
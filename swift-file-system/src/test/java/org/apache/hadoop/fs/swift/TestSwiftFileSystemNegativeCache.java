@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.snative.SwiftMetadataCache;
+import org.apache.hadoop.fs.swift.snative.SwiftNativeFileSystem;
+import org.junit.Test;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_NEGATIVE_CACHE_TTL;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.writeTextFile;
+
+/**
+ * Test that probes for missing paths are remembered until this client
+ * creates something at or under them
+ */
+public class TestSwiftFileSystemNegativeCache
+        extends LocalSwiftFileSystemBaseTest {
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setLong(prefix + DOT_NEGATIVE_CACHE_TTL, 60000);
+  }
+
+  private SwiftMetadataCache.Statistics statistics() {
+    return ((SwiftNativeFileSystem) fs).getStore().getMetadataCacheStatistics();
+  }
+
+  @Test(timeout = 30000)
+  public void testMissingPathIsRemembered() throws Throwable {
+    Path missing = path("/test/missing");
+    assertFalse(fs.exists(missing));
+    server.resetRequestCounts();
+    assertFalse(fs.exists(missing));
+    assertFalse(fs.isFile(missing));
+    assertEquals("HEAD requests", 0, server.getRequestCount("HEAD"));
+    SwiftMetadataCache.Statistics stats = statistics();
+    assertEquals(stats.toString(), 2, stats.getNegativeHits());
+    assertEquals(stats.toString(), 1, stats.getMisses());
+  }
+
+  @Test(timeout = 30000)
+  public void testCreateInvalidates() throws Throwable {
+    Path file = path("/test/file");
+    assertFalse(fs.exists(file));
+    writeTextFile(fs, file, "text", false);
+    assertTrue(fs.exists(file));
+  }
+
+  @Test(timeout = 30000)
+  public void testCreateUnderMissingDirectoryInvalidates() throws Throwable {
+    Path dir = path("/test/dir");
+    assertFalse(fs.exists(dir));
+    assertTrue(fs.mkdirs(new Path(dir, "subdir")));
+    assertTrue(fs.getFileStatus(dir).isDir());
+  }
+
+  @Test(timeout = 30000)
+  public void testStatusesAreNotCached() throws Throwable {
+    Path file = path("/test/file");
+    writeTextFile(fs, file, "text", false);
+    server.resetRequestCounts();
+    fs.getFileStatus(file);
+    fs.getFileStatus(file);
+    assertEquals("HEAD requests", 2, server.getRequestCount("HEAD"));
+  }
+}
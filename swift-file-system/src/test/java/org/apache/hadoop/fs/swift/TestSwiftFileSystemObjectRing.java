@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.fs.swift.snative.SwiftObjectRing;
+import org.apache.hadoop.fs.swift.snative.TestSwiftObjectRing;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_LOCATION_RING;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_LOCATION_RING_HASH_PREFIX;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_LOCATION_RING_HASH_SUFFIX;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.writeDataset;
+
+/**
+ * Test that files are located with a ring file, without asking
+ * the proxy
+ */
+public class TestSwiftFileSystemObjectRing extends LocalSwiftFileSystemBaseTest {
+
+  private static final String PREFIX = "startcap";
+  private static final String SUFFIX = "changeme";
+  private static File ringFile;
+
+  @BeforeClass
+  public static void writeRing() throws Exception {
+    ringFile = File.createTempFile("object", ".ring.gz");
+    ringFile.deleteOnExit();
+    OutputStream out = new FileOutputStream(ringFile);
+    try {
+      TestSwiftObjectRing.writeRing(out, TestSwiftObjectRing.devices(6),
+              TestSwiftObjectRing.table(3, 6), null, false);
+    } finally {
+      out.close();
+    }
+  }
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.set(prefix + DOT_LOCATION_RING, ringFile.toURI().toString());
+    conf.set(prefix + DOT_LOCATION_RING_HASH_PREFIX, PREFIX);
+    conf.set(prefix + DOT_LOCATION_RING_HASH_SUFFIX, SUFFIX);
+  }
+
+  /**
+   * Get the hosts the ring puts an object of the default container on
+   *
+   * @param object object name
+   * @return the hosts
+   */
+  private static List<String> ringHosts(String object) throws Exception {
+    InputStream in = new FileInputStream(ringFile);
+    SwiftObjectRing ring;
+    try {
+      ring = SwiftObjectRing.load(in, PREFIX, SUFFIX);
+    } finally {
+      in.close();
+    }
+    List<String> hosts = new ArrayList<String>();
+    for (URI endpoint : ring.getEndpoints("AUTH_tenant", "data", object)) {
+      hosts.add(endpoint.getHost());
+    }
+    return hosts;
+  }
+
+  @Test(timeout = 30000)
+  public void testLocatedWithRing() throws Throwable {
+    Path file = path("/test/file");
+    writeDataset(fs, file, dataset(16, 'a', 26), 16, 1024, true);
+    FileStatus status = fs.getFileStatus(file);
+    server.resetRequestCounts();
+    BlockLocation[] blocks = fs.getFileBlockLocations(status, 0, 16);
+    assertEquals(1, blocks.length);
+    assertEquals(ringHosts("test/file"), Arrays.asList(blocks[0].getHosts()));
+    assertEquals(3, blocks[0].getHosts().length);
+    //only the listing for partitions
+    assertEquals(1, server.getRequestCount("GET"));
+    assertEquals(0, server.getRequestCount("POST"));
+  }
+
+  @Test(timeout = 30000)
+  public void testListingLocatedWithRing() throws Throwable {
+    Path dir = path("/test/dir");
+    for (int i = 0; i < 5; i++) {
+      writeDataset(fs, new Path(dir, "file" + i), dataset(16, 'a', 26),
+              16, 1024, true);
+    }
+    server.resetRequestCounts();
+    RemoteIterator<LocatedFileStatus> files = fs.listFiles(dir, true);
+    int count = 0;
+    while (files.hasNext()) {
+      LocatedFileStatus status = files.next();
+      assertEquals(ringHosts(status.getPath().toUri().getPath().substring(1)),
+              Arrays.asList(status.getBlockLocations()[0].getHosts()));
+      count++;
+    }
+    assertEquals(5, count);
+    assertEquals(0, server.getRequestCount("POST"));
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_LISTING_LIMIT;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.assertPathExists;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.touch;
+
+/**
+ * Test that directory listings larger than a single page are
+ * assembled correctly from successive pages
+ */
+public class TestSwiftFileSystemPagedListing extends LocalSwiftFileSystemBaseTest {
+
+  private static final int PAGE = 3;
+  private static final int FILES = 10;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setInt(prefix + DOT_LISTING_LIMIT, PAGE);
+  }
+
+  private Path createFiles(String dir) throws Exception {
+    Path base = path(dir);
+    for (int i = 0; i < FILES; i++) {
+      touch(fs, new Path(base, "file-" + i));
+    }
+    return base;
+  }
+
+  @Test(timeout = 30000)
+  public void testListStatusAcrossPages() throws Throwable {
+    Path dir = createFiles("/test/paged");
+    server.resetRequestCounts();
+    FileStatus[] statuses = fs.listStatus(dir);
+    assertEquals(FILES, statuses.length);
+    for (int i = 0; i < FILES; i++) {
+      assertEquals("file-" + i, statuses[i].getPath().getName());
+    }
+    assertTrue("expected more than " + FILES / PAGE + " listing requests",
+            server.getRequestCount("GET") > FILES / PAGE);
+  }
+
+  @Test(timeout = 30000)
+  public void testListStatusExactMultipleOfPage() throws Throwable {
+    Path base = path("/test/exact");
+    for (int i = 0; i < PAGE * 2; i++) {
+      touch(fs, new Path(base, "file-" + i));
+    }
+    assertEquals(PAGE * 2, fs.listStatus(base).length);
+  }
+
+  @Test(timeout = 30000)
+  public void testListStatusWithCappedPages() throws Throwable {
+    Path dir = createFiles("/test/capped");
+    //the proxy returns fewer entries than each request asks for
+    server.setListingCap(PAGE - 1);
+    FileStatus[] statuses = fs.listStatus(dir);
+    assertEquals(FILES, statuses.length);
+    for (int i = 0; i < FILES; i++) {
+      assertEquals("file-" + i, statuses[i].getPath().getName());
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testRenameDirectoryAcrossPages() throws Throwable {
+    Path dir = createFiles("/test/src");
+    Path dest = path("/test/dest");
+    assertTrue(fs.rename(dir, dest));
+    for (int i = 0; i < FILES; i++) {
+      assertPathExists(fs, "renamed file", new Path(dest, "file-" + i));
+    }
+  }
+}
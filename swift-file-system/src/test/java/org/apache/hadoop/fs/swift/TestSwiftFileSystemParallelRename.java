@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.exceptions.SwiftRenameFailedException;
+import org.junit.Test;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_RENAME_RETRIES;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_RENAME_THREADS;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.readDataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.writeDataset;
+
+/**
+ * Test the parallel move of the objects under a directory by a rename
+ */
+public class TestSwiftFileSystemParallelRename extends LocalSwiftFileSystemBaseTest {
+
+  private static final int FILES = 40;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setInt(prefix + DOT_RENAME_THREADS, 4);
+    conf.setInt(prefix + DOT_RENAME_RETRIES, 1);
+  }
+
+  private void createFiles(Path dir) throws Exception {
+    for (int i = 0; i < FILES; i++) {
+      writeDataset(fs, new Path(dir, "part-" + i), dataset(16, i, 251),
+              16, 1024, true);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testRenameMovesEverything() throws Throwable {
+    Path src = path("/test/src");
+    Path dst = path("/test/dst");
+    createFiles(src);
+    server.resetRequestCounts();
+    assertTrue(fs.rename(src, dst));
+    //the files and the directory itself
+    assertEquals(FILES + 1, server.getRequestCount("COPY"));
+    assertEquals(FILES + 1, server.getRequestCount("DELETE"));
+    //no HEAD for each file moved
+    assertTrue("HEAD requests: " + server.getRequestCount("HEAD"),
+            server.getRequestCount("HEAD") < FILES);
+    for (int i = 0; i < FILES; i++) {
+      assertNull(server.getObject("test/src/part-" + i));
+      assertArrayEquals(dataset(16, i, 251),
+              readDataset(fs, new Path(dst, "part-" + i), 16));
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testFailedMoveRetried() throws Throwable {
+    Path src = path("/test/src");
+    Path dst = path("/test/dst");
+    createFiles(src);
+    server.failRequests("COPY", "test/src/part-7", 1);
+    assertTrue(fs.rename(src, dst));
+    assertNotNull(server.getObject("test/dst/part-7"));
+    assertNull(server.getObject("test/src/part-7"));
+  }
+
+  @Test(timeout = 30000)
+  public void testPartialFailureReported() throws Throwable {
+    Path src = path("/test/src");
+    Path dst = path("/test/dst");
+    createFiles(src);
+    server.failRequests("COPY", "test/src/part-7", Integer.MAX_VALUE);
+    try {
+      fs.rename(src, dst);
+      fail("rename succeeded");
+    } catch (SwiftRenameFailedException expected) {
+      assertEquals(1, expected.getFailed().size());
+      assertTrue(expected.getFailed().get(0).endsWith("/test/src/part-7"));
+      assertEquals(FILES - 1, expected.getMoved().size());
+    }
+    assertNotNull(server.getObject("test/src/part-7"));
+    assertNull(server.getObject("test/dst/part-7"));
+    assertNotNull(server.getObject("test/dst/part-8"));
+    //the source directory is left, holding what could not be moved
+    assertNotNull(server.getObject("test/src"));
+  }
+}
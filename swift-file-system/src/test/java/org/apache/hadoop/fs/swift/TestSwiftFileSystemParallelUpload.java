@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_SEGMENT_SIZE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_STREAMING_UPLOAD;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_UPLOAD_BUFFER_LIMIT;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_UPLOAD_PARALLELISM;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.readDataset;
+
+/**
+ * Test several writers uploading segments in parallel within a
+ * buffer limit smaller than their combined parallelism
+ */
+public class TestSwiftFileSystemParallelUpload extends LocalSwiftFileSystemBaseTest {
+
+  private static final int SEGMENT = 1024;
+  private static final int WRITERS = 3;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setLong(prefix + DOT_SEGMENT_SIZE, SEGMENT);
+    conf.setBoolean(prefix + DOT_STREAMING_UPLOAD, true);
+    conf.setInt(prefix + DOT_UPLOAD_PARALLELISM, 4);
+    conf.setLong(prefix + DOT_UPLOAD_BUFFER_LIMIT, 5 * SEGMENT);
+  }
+
+  private void write(Path file, byte[] src) throws Exception {
+    FSDataOutputStream out = fs.create(file);
+    try {
+      for (int offset = 0; offset < src.length; offset += 100) {
+        out.write(src, offset, Math.min(100, src.length - offset));
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testConcurrentWriters() throws Throwable {
+    final int len = 25 * SEGMENT + 10;
+    ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+    try {
+      Future<?>[] results = new Future<?>[WRITERS];
+      for (int i = 0; i < WRITERS; i++) {
+        final Path file = path("/test/file" + i);
+        final byte[] src = dataset(len, i, 251);
+        results[i] = writers.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            write(file, src);
+            return null;
+          }
+        });
+      }
+      for (Future<?> result : results) {
+        result.get();
+      }
+    } finally {
+      writers.shutdownNow();
+    }
+    for (int i = 0; i < WRITERS; i++) {
+      Path file = path("/test/file" + i);
+      assertEquals(len, fs.getFileStatus(file).getLen());
+      assertArrayEquals(dataset(len, i, 251), readDataset(fs, file, len));
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+
+/**
+ * Test positional reads: one exact ranged GET each, leaving the
+ * stream where it was
+ */
+public class TestSwiftFileSystemPositionedRead
+        extends LocalSwiftFileSystemBaseTest {
+
+  private static final int LENGTH = 100000;
+  private static final byte[] DATA = dataset(LENGTH, 0, 251);
+
+  private FSDataInputStream openFile() throws Exception {
+    server.putObject("test/file", DATA);
+    FSDataInputStream in = fs.open(path("/test/file"), 10);
+    server.resetRequestCounts();
+    return in;
+  }
+
+  private static void assertDataAt(long offset, byte[] buffer, int length) {
+    for (int i = 0; i < length; i++) {
+      assertEquals("byte " + (offset + i), DATA[(int) offset + i], buffer[i]);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testPositionedReadLeavesStreamAlone() throws Throwable {
+    FSDataInputStream in = openFile();
+    try {
+      byte[] buffer = new byte[100];
+      //served by the range the open requested
+      in.readFully(buffer, 0, 10);
+      assertEquals(0, server.getRequestCount("GET"));
+      assertEquals(100, in.read(50000, buffer, 0, 100));
+      assertDataAt(50000, buffer, 100);
+      assertEquals(1, server.getRequestCount("GET"));
+      assertEquals(10, in.getPos());
+      in.readFully(buffer, 0, 10);
+      assertDataAt(10, buffer, 10);
+      assertEquals("GET requests", 1, server.getRequestCount("GET"));
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testPositionedReadAtEnd() throws Throwable {
+    FSDataInputStream in = openFile();
+    try {
+      byte[] buffer = new byte[100];
+      assertEquals(40, in.read(LENGTH - 40, buffer, 0, 100));
+      assertDataAt(LENGTH - 40, buffer, 40);
+      assertEquals(-1, in.read(LENGTH, buffer, 0, 100));
+      assertEquals("GET requests", 1, server.getRequestCount("GET"));
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testConcurrentPositionedReads() throws Throwable {
+    final FSDataInputStream in = openFile();
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Void>> results = new ArrayList<Future<Void>>();
+      for (int i = 0; i < 20; i++) {
+        final long offset = i * 4999L;
+        results.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            byte[] buffer = new byte[1000];
+            in.readFully(offset, buffer);
+            assertDataAt(offset, buffer, buffer.length);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> result : results) {
+        result.get();
+      }
+      assertEquals("GET requests", 20, server.getRequestCount("GET"));
+    } finally {
+      pool.shutdown();
+      in.close();
+    }
+  }
+}
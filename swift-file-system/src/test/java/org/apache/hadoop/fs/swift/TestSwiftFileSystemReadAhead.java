@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.http.LocalSwiftServer;
+import org.apache.hadoop.fs.swift.http.RestClientBindings;
+import org.apache.hadoop.fs.swift.snative.SwiftNativeFileSystem;
+import org.apache.hadoop.fs.swift.snative.SwiftReadCostModel;
+import org.junit.Test;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_HTTP_MAX_CONNECTIONS_PER_ROUTE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_PREFETCH_SIZE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_READAHEAD_MAX;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_READAHEAD_MIN;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.SWIFT_CONNECTION_TIMEOUT;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+
+/**
+ * Test the ranged reads of the input stream: adaptive range sizes,
+ * prefetching and seeks
+ */
+public class TestSwiftFileSystemReadAhead extends LocalSwiftFileSystemBaseTest {
+
+  private static final int LENGTH = 100000;
+  private static final byte[] DATA = dataset(LENGTH, 0, 251);
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setInt(prefix + DOT_READAHEAD_MIN, 1024);
+    conf.setInt(prefix + DOT_READAHEAD_MAX, 8192);
+    conf.setInt(prefix + DOT_PREFETCH_SIZE, 4096);
+  }
+
+  private Path createFile() throws Exception {
+    server.putObject("test/file", DATA);
+    return path("/test/file");
+  }
+
+  private void assertDataAt(long offset, byte[] buffer, int length) {
+    for (int i = 0; i < length; i++) {
+      assertEquals("byte " + (offset + i), DATA[(int) offset + i], buffer[i]);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testSequentialRead() throws Throwable {
+    Path file = createFile();
+    FSDataInputStream in = fs.open(file, 1000);
+    try {
+      byte[] buffer = new byte[3000];
+      int offset = 0;
+      while (offset < LENGTH) {
+        int length = Math.min(buffer.length, LENGTH - offset);
+        in.readFully(buffer, 0, length);
+        assertDataAt(offset, buffer, length);
+        offset += length;
+      }
+      assertEquals(-1, in.read());
+    } finally {
+      in.close();
+    }
+    int gets = server.getRequestCount("GET");
+    //ranges grow from 1K to 8K, so far fewer than LENGTH/1K requests are made
+    assertTrue("GET requests: " + gets, gets <= 20);
+  }
+
+  @Test(timeout = 30000)
+  public void testRandomReads() throws Throwable {
+    Path file = createFile();
+    FSDataInputStream in = fs.open(file, 100);
+    try {
+      byte[] buffer = new byte[50];
+      long[] offsets = {50000, 10000, LENGTH - 50, 0, 70000};
+      for (long offset : offsets) {
+        in.readFully(offset, buffer);
+        assertDataAt(offset, buffer, buffer.length);
+        in.seek(offset);
+        in.readFully(buffer);
+        assertDataAt(offset, buffer, buffer.length);
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testShortForwardSeekReusesRange() throws Throwable {
+    Path file = createFile();
+    FSDataInputStream in = fs.open(file, 10);
+    try {
+      byte[] buffer = new byte[10];
+      in.readFully(buffer);
+      in.seek(500);
+      in.readFully(buffer);
+      assertDataAt(500, buffer, buffer.length);
+    } finally {
+      in.close();
+    }
+    assertEquals("GET requests", 1, server.getRequestCount("GET"));
+    SwiftReadCostModel.Statistics stats = fs.getStore().getReadStatistics();
+    assertEquals(1, stats.getSkips());
+    assertEquals(490, stats.getBytesSkipped());
+    assertEquals(0, stats.getReopens());
+  }
+
+  @Test(timeout = 30000)
+  public void testNoPrefetchWithoutFreeConnection() throws Throwable {
+    Path file = createFile();
+    Configuration conf = server.createConfiguration();
+    String prefix = RestClientBindings.buildSwiftInstancePrefix(
+            LocalSwiftServer.SERVICE);
+    configure(conf, prefix);
+    conf.setInt(prefix + DOT_HTTP_MAX_CONNECTIONS_PER_ROUTE, 1);
+    //a prefetch waiting for the connection would wait until it was released
+    conf.setInt(SWIFT_CONNECTION_TIMEOUT, 60000);
+    SwiftNativeFileSystem singleConnectionFs = new SwiftNativeFileSystem();
+    singleConnectionFs.initialize(server.getFilesystemURI(), conf);
+    try {
+      FSDataInputStream in = singleConnectionFs.open(file, 1000);
+      try {
+        //read through the first range into the second
+        byte[] buffer = new byte[3000];
+        in.readFully(buffer);
+        assertDataAt(0, buffer, buffer.length);
+        Thread.sleep(500);
+        assertEquals("requests waiting for a connection", 0,
+                singleConnectionFs.getStore().getConnectionPoolStatistics()
+                        .getPending());
+        in.readFully(buffer);
+        assertDataAt(buffer.length, buffer, buffer.length);
+      } finally {
+        in.close();
+      }
+    } finally {
+      singleConnectionFs.close();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testEmptyFile() throws Throwable {
+    server.putObject("test/empty", new byte[0]);
+    FSDataInputStream in = fs.open(path("/test/empty"));
+    server.resetRequestCounts();
+    try {
+      assertEquals(-1, in.read());
+    } finally {
+      in.close();
+    }
+    assertEquals("GET requests", 0, server.getRequestCount("GET"));
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.snative.SwiftNativeFileSystem;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.util.Map;
+
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.readDataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.writeTextFile;
+
+/**
+ * Test that the client counts the requests it sends the way the
+ * server receives them
+ */
+public class TestSwiftFileSystemRequestCounts
+        extends LocalSwiftFileSystemBaseTest {
+
+  private Map<String, Long> requestCounts() {
+    return ((SwiftNativeFileSystem) fs).getStore().getRequestCounts();
+  }
+
+  private long count(Map<String, Long> counts, String method) {
+    Long count = counts.get(method);
+    return count == null ? 0 : count;
+  }
+
+  @Test(timeout = 30000)
+  public void testCountsMatchServer() throws Throwable {
+    Map<String, Long> before = requestCounts();
+    server.resetRequestCounts();
+    Path file = path("/test/file");
+    writeTextFile(fs, file, "text", false);
+    readDataset(fs, file, 4);
+    fs.listStatus(path("/test"));
+    fs.delete(file, false);
+    Map<String, Long> after = requestCounts();
+    for (String method : new String[]{"GET", "HEAD", "PUT", "DELETE"}) {
+      assertEquals(method + " requests in " + after,
+              server.getRequestCount(method),
+              count(after, method) - count(before, method));
+    }
+  }
+
+  /**
+   * Without a metadata cache, an open learns the length of the file
+   * from its first GET rather than from a HEAD
+   */
+  @Test(timeout = 30000)
+  public void testOpenWithoutHead() throws Throwable {
+    Path file = path("/test/file");
+    writeTextFile(fs, file, "text", false);
+    server.resetRequestCounts();
+    FSDataInputStream in = fs.open(file);
+    try {
+      byte[] buffer = new byte[4];
+      in.readFully(buffer);
+      assertEquals("text", new String(buffer, "UTF-8"));
+      assertEquals(-1, in.read());
+    } finally {
+      in.close();
+    }
+    assertEquals(0, server.getRequestCount("HEAD"));
+    assertEquals(1, server.getRequestCount("GET"));
+  }
+
+  @Test(timeout = 30000)
+  public void testOpenEmptyFileWithoutHead() throws Throwable {
+    Path file = path("/test/empty");
+    writeTextFile(fs, file, "", false);
+    server.resetRequestCounts();
+    FSDataInputStream in = fs.open(file);
+    try {
+      assertEquals(-1, in.read());
+    } finally {
+      in.close();
+    }
+    assertEquals(0, server.getRequestCount("HEAD"));
+  }
+
+  @Test(timeout = 30000)
+  public void testOpenMissingFileWithoutHead() throws Throwable {
+    try {
+      fs.open(path("/test/missing")).close();
+      fail("opened a missing file");
+    } catch (FileNotFoundException expected) {
+      //expected
+    }
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.http.LocalSwiftServer;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_LOCATION_AWARE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_SEGMENT_SIZE;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.writeDataset;
+
+/**
+ * Test the block locations of files, which are located object by object
+ */
+public class TestSwiftFileSystemSegmentLocations
+        extends LocalSwiftFileSystemBaseTest {
+
+  private static final int SEGMENT = 1024;
+  private static final int WRITE = 256;
+  /**
+   * a partition is uploaded before a write would fill the segment, so
+   * writes of 256 bytes leave three of them in each partition; the last
+   * partition also takes the final, short, write
+   */
+  private static final int PART = 3 * WRITE;
+  private static final int LEN = 4 * PART + 100;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setLong(prefix + DOT_SEGMENT_SIZE, SEGMENT);
+    conf.setBoolean(prefix + DOT_LOCATION_AWARE, true);
+  }
+
+  private FileStatus writePartitioned(Path file) throws Exception {
+    byte[] src = dataset(LEN, 0, 251);
+    FSDataOutputStream out = fs.create(file);
+    try {
+      for (int offset = 0; offset < LEN; offset += WRITE) {
+        out.write(src, offset, Math.min(WRITE, LEN - offset));
+      }
+    } finally {
+      out.close();
+    }
+    return fs.getFileStatus(file);
+  }
+
+  private static void assertBlock(BlockLocation block,
+                                  long offset,
+                                  long length,
+                                  String object) throws Exception {
+    assertEquals("offset of " + block, offset, block.getOffset());
+    assertEquals("length of " + block, length, block.getLength());
+    assertEquals("hosts of " + block,
+            LocalSwiftServer.getObjectHosts(object),
+            Arrays.asList(block.getHosts()));
+  }
+
+  @Test(timeout = 30000)
+  public void testBlockPerSegment() throws Throwable {
+    FileStatus status = writePartitioned(path("/test/file"));
+    assertEquals(LEN, status.getLen());
+    BlockLocation[] blocks = fs.getFileBlockLocations(status, 0, LEN);
+    assertEquals(4, blocks.length);
+    for (int i = 0; i < 3; i++) {
+      assertBlock(blocks[i], i * PART, PART,
+              String.format("data/test/file/%08d", i + 1));
+    }
+    assertBlock(blocks[3], 3 * PART, PART + 100, "data/test/file/00000004");
+  }
+
+  @Test(timeout = 30000)
+  public void testRangeLocatesOnlyItsSegments() throws Throwable {
+    FileStatus status = writePartitioned(path("/test/file"));
+    server.resetRequestCounts();
+    BlockLocation[] blocks =
+            fs.getFileBlockLocations(status, PART + 10, PART);
+    assertEquals(2, blocks.length);
+    assertBlock(blocks[0], PART, PART, "data/test/file/00000002");
+    assertBlock(blocks[1], 2 * PART, PART, "data/test/file/00000003");
+    //the listing of the partitions, ended by an empty page,
+    //and one lookup of the two in range
+    assertEquals(2, server.getRequestCount("GET"));
+    assertEquals(1, server.getRequestCount("POST"));
+
+    blocks = fs.getFileBlockLocations(status, 3 * PART, 0);
+    assertEquals(1, blocks.length);
+    assertBlock(blocks[0], 3 * PART, PART + 100, "data/test/file/00000004");
+    assertEquals(0, fs.getFileBlockLocations(status, LEN, 1).length);
+  }
+
+  @Test(timeout = 30000)
+  public void testObjectSplitIntoBlocks() throws Throwable {
+    Path file = path("/test/object");
+    writeDataset(fs, file, dataset(1000, 0, 251), 1000, 1024, true);
+    FileStatus stored = fs.getFileStatus(file);
+    FileStatus status = new FileStatus(stored.getLen(), false, 1, 256,
+            stored.getModificationTime(), stored.getPath());
+    BlockLocation[] blocks = fs.getFileBlockLocations(status, 0, 1000);
+    assertEquals(4, blocks.length);
+    for (int i = 0; i < 4; i++) {
+      assertBlock(blocks[i], i * 256, i < 3 ? 256 : 1000 - 3 * 256,
+              "data/test/object");
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testInvalidRanges() throws Throwable {
+    FileStatus status = writePartitioned(path("/test/file"));
+    try {
+      fs.getFileBlockLocations(status, -1, 1);
+      fail("negative start");
+    } catch (IllegalArgumentException expected) {
+      //expected
+    }
+    try {
+      fs.getFileBlockLocations(status, 0, -1);
+      fail("negative length");
+    } catch (IllegalArgumentException expected) {
+      //expected
+    }
+    assertEquals(0,
+            fs.getFileBlockLocations(fs.getFileStatus(path("/test")), 0, 1).length);
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.fs.swift.exceptions.SwiftBadRequestException;
+import org.apache.hadoop.fs.swift.http.LocalSwiftServer;
+import org.apache.hadoop.fs.swift.snative.SwiftFileChecksum;
+import org.apache.hadoop.fs.swift.snative.SwiftSegment;
+import org.apache.hadoop.fs.swift.util.SwiftObjectPath;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_LARGE_OBJECT;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_SEGMENT_SIZE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.LARGE_OBJECT_STATIC;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.readDataset;
+
+/**
+ * Test the joining up of the segments of large files with static large
+ * object manifests
+ */
+public class TestSwiftFileSystemStaticLargeObject
+        extends LocalSwiftFileSystemBaseTest {
+
+  private static final int SEGMENT = 1024;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setLong(prefix + DOT_SEGMENT_SIZE, SEGMENT);
+    conf.set(prefix + DOT_LARGE_OBJECT, LARGE_OBJECT_STATIC);
+  }
+
+  private byte[] write(Path file, int len) throws Exception {
+    byte[] src = dataset(len, 0, 251);
+    FSDataOutputStream out = fs.create(file);
+    try {
+      for (int offset = 0; offset < len; offset += 256) {
+        out.write(src, offset, Math.min(256, len - offset));
+      }
+    } finally {
+      out.close();
+    }
+    return src;
+  }
+
+  @Test(timeout = 30000)
+  public void testManifestListsSegments() throws Throwable {
+    int len = 5 * SEGMENT + 100;
+    Path file = path("/test/file");
+    byte[] src = write(file, len);
+    LocalSwiftServer.StoredObject manifest = server.getObject("test/file");
+    assertNull("dynamic manifest", manifest.manifest);
+    List<String> segments = new ArrayList<String>();
+    List<String> md5s = new ArrayList<String>();
+    for (int number = 1; ; number++) {
+      String segment = String.format("test/file/%08d", number);
+      LocalSwiftServer.StoredObject stored = server.getObject(segment);
+      if (stored == null) {
+        break;
+      }
+      segments.add(LocalSwiftServer.CONTAINER + "/" + segment);
+      md5s.add(stored.etag);
+    }
+    assertTrue("segments: " + segments, segments.size() > 5);
+    assertEquals(segments, manifest.segments);
+    assertEquals(len, fs.getFileStatus(file).getLen());
+    assertEquals(SwiftFileChecksum.ofSegments(md5s), fs.getFileChecksum(file));
+    assertArrayEquals(src, readDataset(fs, file, len));
+  }
+
+  @Test(timeout = 30000)
+  public void testEmptySegmentsLeftOut() throws Throwable {
+    //a first write of a whole segment starts with an empty segment
+    byte[] src = dataset(2 * SEGMENT, 0, 251);
+    Path file = path("/test/file");
+    FSDataOutputStream out = fs.create(file);
+    try {
+      out.write(src);
+    } finally {
+      out.close();
+    }
+    assertEquals(Arrays.asList(
+            LocalSwiftServer.CONTAINER + "/test/file/00000002"),
+            server.getObject("test/file").segments);
+    assertArrayEquals(src, readDataset(fs, file, src.length));
+  }
+
+  @Test(timeout = 30000)
+  public void testMismatchedSegmentRejected() throws Throwable {
+    server.putObject("test/file/00000001", dataset(SEGMENT, 0, 251));
+    SwiftObjectPath segment = new SwiftObjectPath(LocalSwiftServer.CONTAINER,
+            "/test/file/00000001");
+    try {
+      fs.getStore().createStaticManifestForPartUpload(path("/test/file"),
+              Arrays.asList(new SwiftSegment(segment, "0123456789abcdef", SEGMENT)));
+      fail("manifest accepted");
+    } catch (SwiftBadRequestException expected) {
+      //expected
+    }
+    assertNull(server.getObject("test/file"));
+  }
+
+  @Test(timeout = 30000)
+  public void testLocatedStatusLocatesSegments() throws Throwable {
+    int len = 3 * SEGMENT + 100;
+    Path file = path("/test/dir/file");
+    write(file, len);
+    BlockLocation[] expected = fs.getFileBlockLocations(
+            fs.getFileStatus(file), 0, len);
+    assertTrue("blocks: " + Arrays.toString(expected), expected.length > 1);
+    RemoteIterator<LocatedFileStatus> listing =
+            fs.listLocatedStatus(path("/test/dir"));
+    assertTrue(listing.hasNext());
+    LocatedFileStatus located = listing.next();
+    assertEquals(file, located.getPath());
+    assertFalse(listing.hasNext());
+    BlockLocation[] blocks = located.getBlockLocations();
+    assertEquals(Arrays.toString(blocks), expected.length, blocks.length);
+    for (int i = 0; i < blocks.length; i++) {
+      assertEquals(expected[i].getOffset(), blocks[i].getOffset());
+      assertEquals(expected[i].getLength(), blocks[i].getLength());
+      assertArrayEquals(expected[i].getHosts(), blocks[i].getHosts());
+    }
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.junit.Test;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_SEGMENT_SIZE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_STREAMING_UPLOAD;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_UPLOAD_PARALLELISM;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.readDataset;
+
+/**
+ * Test the upload of segments in the background while the writer continues
+ */
+public class TestSwiftFileSystemStreamingUpload extends LocalSwiftFileSystemBaseTest {
+
+  private static final int SEGMENT = 1024;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setLong(prefix + DOT_SEGMENT_SIZE, SEGMENT);
+    conf.setBoolean(prefix + DOT_STREAMING_UPLOAD, true);
+    conf.setInt(prefix + DOT_UPLOAD_PARALLELISM, 1);
+  }
+
+  private String segment(int number) {
+    return String.format("test/file/%08d", number);
+  }
+
+  @Test(timeout = 30000)
+  public void testSegmentsUploadedWhileWriting() throws Throwable {
+    int len = 12 * SEGMENT + 100;
+    byte[] src = dataset(len, 0, 251);
+    Path file = path("/test/file");
+    FSDataOutputStream out = fs.create(file);
+    try {
+      for (int offset = 0; offset < len; offset += 256) {
+        out.write(src, offset, Math.min(256, len - offset));
+        if (offset == 4 * SEGMENT) {
+          //a segment is only started once the one before last has gone
+          assertNotNull("segment 1", server.getObject(segment(1)));
+          assertNull("manifest", server.getObject("test/file"));
+        }
+      }
+    } finally {
+      out.close();
+    }
+    assertEquals(len, fs.getFileStatus(file).getLen());
+    //more than nine segments must still be joined in order
+    assertNotNull("segment 13", server.getObject(segment(13)));
+    assertArrayEquals(src, readDataset(fs, file, len));
+  }
+
+  @Test(timeout = 30000)
+  public void testSmallFileIsOneObject() throws Throwable {
+    byte[] src = dataset(SEGMENT / 2, 0, 251);
+    Path file = path("/test/small");
+    FSDataOutputStream out = fs.create(file);
+    try {
+      out.write(src);
+    } finally {
+      out.close();
+    }
+    assertNull(server.getObject("test/small/00000001"));
+    assertArrayEquals(src, server.getObject("test/small").data);
+  }
+}
@@ -0,0 +1,1024 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.http;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.*;
+
+/**
+ * A minimal in-process stand-in for a Swift proxy and a Keystone
+ * authentication service, so that the client can be tested without
+ * a real OpenStack installation.
+ * <p/>
+ * It implements just enough of the object API for the filesystem:
+ * token requests, container HEAD/PUT/GET(listing), and object
+ * PUT/GET/HEAD/DELETE/COPY, including ranged reads,
+ * paged listings, both dynamic and static large object manifests,
+ * the bulk deletes of the bulk middleware, and the object locations of
+ * the <code>object_endpoint</code> middleware, singly or in batches,
+ * which places every object on {@link #REPLICAS} of {@link #NODES}
+ * made-up storage nodes.
+ * Every request is counted by method, and separately if it asked for
+ * the newest copy of an object, so tests can assert on the traffic
+ * an operation generated.
+ */
+public class LocalSwiftServer {
+  private static final Log LOG = LogFactory.getLog(LocalSwiftServer.class);
+
+  public static final String SERVICE = "local";
+  public static final String CONTAINER = "data";
+  public static final String TENANT = "tenant";
+  public static final String TOKEN = "local-token";
+  private static final String ACCOUNT_PATH = "/v1/AUTH_" + TENANT;
+  private static final String NEWEST_SUFFIX = " newest";
+  private static final String OBJECT_ENDPOINT_PATH =
+          SWIFT_OBJECT_AUTH_ENDPOINT + TENANT + "/";
+  public static final int NODES = 8;
+  public static final int REPLICAS = 3;
+
+  /**
+   * containers, each a sorted map of object name to object
+   */
+  private final Map<String, SortedMap<String, StoredObject>> containers =
+          new ConcurrentHashMap<String, SortedMap<String, StoredObject>>();
+  private final Map<String, AtomicInteger> requestCounts =
+          new ConcurrentHashMap<String, AtomicInteger>();
+  private HttpServer server;
+  private volatile boolean corruptUploads;
+  private volatile boolean bulkDelete = true;
+  private volatile boolean batchLocations = true;
+  private volatile int batchLocationLimit = Integer.MAX_VALUE;
+  private volatile int batchLocationFailure;
+  private volatile int listingCap = 10000;
+
+  /**
+   * prefixes of the object names which container listings leave out
+   */
+  private final List<String> unlisted =
+          new java.util.concurrent.CopyOnWriteArrayList<String>();
+
+  /**
+   * number of failures still to inject, by method and object name
+   */
+  private final Map<String, AtomicInteger> failures =
+          new ConcurrentHashMap<String, AtomicInteger>();
+
+  /**
+   * An object held by the server
+   */
+  public static final class StoredObject {
+    public final byte[] data;
+    public final String etag;
+    public final String manifest;
+    public final long modified;
+    public final String contentType;
+
+    /**
+     * container/object paths of the segments of a static large object;
+     * null for any other object
+     */
+    public final List<String> segments;
+
+    StoredObject(byte[] data, String manifest, String contentType) {
+      this(data, manifest, contentType, null);
+    }
+
+    StoredObject(byte[] data, String manifest, String contentType,
+                 List<String> segments) {
+      this.data = data;
+      this.etag = md5Hex(data);
+      this.manifest = manifest;
+      this.modified = System.currentTimeMillis();
+      this.contentType = contentType;
+      this.segments = segments;
+    }
+  }
+
+  /**
+   * Start the server on an ephemeral port of the loopback interface,
+   * with the default container already created
+   *
+   * @throws IOException if the server could not be started
+   */
+  public void start() throws IOException {
+    containers.put(CONTAINER, newContainer());
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        try {
+          dispatch(exchange);
+        } catch (RuntimeException e) {
+          LOG.error("Failure handling " + exchange.getRequestURI(), e);
+          respond(exchange, 500, null);
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+  }
+
+  /**
+   * Stop the server
+   */
+  public void stop() {
+    if (server != null) {
+      server.stop(0);
+      server = null;
+    }
+  }
+
+  /**
+   * @return the port the server is listening on
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * @return the URI of the filesystem on the default container
+   */
+  public URI getFilesystemURI() {
+    return URI.create("swift://" + CONTAINER + "." + SERVICE + "/");
+  }
+
+  /**
+   * Create a configuration binding the {@link #SERVICE} service
+   * to this server
+   *
+   * @return a new configuration
+   */
+  public Configuration createConfiguration() {
+    Configuration conf = new Configuration();
+    String prefix = RestClientBindings.buildSwiftInstancePrefix(SERVICE);
+    conf.set(prefix + DOT_AUTH_URL,
+            "http://127.0.0.1:" + getPort() + "/v2.0/tokens");
+    conf.set(prefix + DOT_USERNAME, "user");
+    conf.set(prefix + DOT_PASSWORD, "pass");
+    conf.set(prefix + DOT_TENANT, TENANT);
+    conf.setBoolean(prefix + DOT_PUBLIC, true);
+    return conf;
+  }
+
+  /**
+   * Get the number of requests received with a given method
+   *
+   * @param method HTTP method
+   * @return the count
+   */
+  public int getRequestCount(String method) {
+    AtomicInteger count = requestCounts.get(method);
+    return count == null ? 0 : count.get();
+  }
+
+  /**
+   * Get the number of requests received with a given method and
+   * an X-Newest header
+   *
+   * @param method HTTP method
+   * @return the count
+   */
+  public int getNewestRequestCount(String method) {
+    return getRequestCount(method + NEWEST_SUFFIX);
+  }
+
+  /**
+   * Reset the request counters
+   */
+  public void resetRequestCounts() {
+    requestCounts.clear();
+  }
+
+  /**
+   * Make requests on an object in the default container fail with
+   * a 500 response
+   *
+   * @param method HTTP method
+   * @param name   object name
+   * @param times  number of requests to fail
+   */
+  public void failRequests(String method, String name, int times) {
+    failures.put(method + " " + name, new AtomicInteger(times));
+  }
+
+  /**
+   * Enable or disable the bulk middleware. Without it, a bulk delete
+   * request is answered as an update of the account metadata, as a
+   * proxy without the middleware would.
+   *
+   * @param enabled whether bulk deletes are supported
+   */
+  public void setBulkDelete(boolean enabled) {
+    bulkDelete = enabled;
+  }
+
+  /**
+   * Enable or disable batched location lookups. Without them, the
+   * object endpoint rejects a POST, as older versions of the
+   * middleware do.
+   *
+   * @param enabled whether objects can be located in batches
+   */
+  public void setBatchLocations(boolean enabled) {
+    batchLocations = enabled;
+  }
+
+  /**
+   * Reject batched location lookups of more than a number of objects
+   * with 413, Request Entity Too Large
+   *
+   * @param limit maximum number of objects located in one request
+   */
+  public void setBatchLocationLimit(int limit) {
+    batchLocationLimit = limit;
+  }
+
+  /**
+   * Fail every batched location lookup with a status code
+   *
+   * @param status the status code; 0 for none
+   */
+  public void failBatchLocations(int status) {
+    batchLocationFailure = status;
+  }
+
+  /**
+   * Cap the entries of a listing page below the limit asked for, as a
+   * proxy with a lower <code>container_listing_limit</code> does
+   *
+   * @param cap maximum number of entries in a page
+   */
+  public void setListingCap(int cap) {
+    listingCap = cap;
+  }
+
+  /**
+   * Leave the objects under a prefix out of container listings, as a
+   * listing which has not yet caught up with their creation would
+   *
+   * @param prefix prefix of the object names, in the default container
+   */
+  public void hideFromListings(String prefix) {
+    unlisted.add(prefix);
+  }
+
+  private boolean isUnlisted(String name) {
+    for (String prefix : unlisted) {
+      if (name.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Get the storage nodes the object location middleware reports for
+   * an object; objects need not exist to be located
+   *
+   * @param name container/object path
+   * @return the host names of the nodes
+   */
+  public static List<String> getObjectHosts(String name) {
+    List<String> hosts = new ArrayList<String>(REPLICAS);
+    int first = name.hashCode() & Integer.MAX_VALUE;
+    for (int replica = 0; replica < REPLICAS; replica++) {
+      hosts.add("node" + (first + 3 * replica) % NODES);
+    }
+    return hosts;
+  }
+
+  /**
+   * Get the endpoint URLs the object location middleware reports for
+   * an object
+   *
+   * @param name container/object path
+   * @return an endpoint on each of the nodes of the object
+   */
+  private static List<String> getEndpoints(String name) {
+    List<String> endpoints = new ArrayList<String>(REPLICAS);
+    for (String host : getObjectHosts(name)) {
+      endpoints.add("http://" + host + ":6000/sda1/0/AUTH_" + TENANT
+              + "/" + name);
+    }
+    return endpoints;
+  }
+
+  /**
+   * Make the server flip a bit of the data of every upload from now on,
+   * as if it had been corrupted in transit
+   *
+   * @param corrupt whether to corrupt uploads
+   */
+  public void setCorruptUploads(boolean corrupt) {
+    corruptUploads = corrupt;
+  }
+
+  /**
+   * Get an object stored in the default container
+   *
+   * @param name object name
+   * @return the object or null
+   */
+  public StoredObject getObject(String name) {
+    return containers.get(CONTAINER).get(name);
+  }
+
+  /**
+   * Store an object directly in the default container
+   *
+   * @param name object name
+   * @param data contents
+   */
+  public void putObject(String name, byte[] data) {
+    containers.get(CONTAINER).put(name,
+            new StoredObject(data, null, "application/octet-stream"));
+  }
+
+  private static SortedMap<String, StoredObject> newContainer() {
+    return java.util.Collections.synchronizedSortedMap(
+            new TreeMap<String, StoredObject>());
+  }
+
+  private void dispatch(HttpExchange exchange) throws IOException {
+    String method = exchange.getRequestMethod();
+    count(method);
+    if (exchange.getRequestHeaders().containsKey(X_NEWEST)) {
+      count(method + NEWEST_SUFFIX);
+    }
+    if (!"PUT".equals(method) && !"POST".equals(method)) {
+      //the JDK server closes any connection whose request body was not
+      //read to the end, which would defeat the client's connection pool
+      drain(exchange.getRequestBody());
+    }
+    String path = exchange.getRequestURI().getRawPath();
+    if ("POST".equals(method) && path.endsWith("/tokens")) {
+      drain(exchange.getRequestBody());
+      respond(exchange, 200, authResponse().getBytes("UTF-8"));
+      return;
+    }
+    if ("POST".equals(method) && path.equals(ACCOUNT_PATH)) {
+      byte[] body = drain(exchange.getRequestBody());
+      if (!TOKEN.equals(exchange.getRequestHeaders().getFirst(HEADER_AUTH_KEY))) {
+        respond(exchange, 401, null);
+      } else if (bulkDelete && exchange.getRequestURI().getRawQuery() != null
+              && parseQuery(exchange.getRequestURI().getRawQuery())
+              .containsKey(BULK_DELETE)) {
+        bulkDelete(exchange, new String(body, "UTF-8"));
+      } else {
+        respond(exchange, 204, null);
+      }
+      return;
+    }
+    if ("GET".equals(method) && path.startsWith(OBJECT_ENDPOINT_PATH)) {
+      String name = decode(path.substring(OBJECT_ENDPOINT_PATH.length()));
+      respond(exchange, 200,
+              new ObjectMapper().writeValueAsBytes(getEndpoints(name)));
+      return;
+    }
+    if ("POST".equals(method) && (path + "/").equals(OBJECT_ENDPOINT_PATH)) {
+      byte[] body = drain(exchange.getRequestBody());
+      if (!batchLocations) {
+        respond(exchange, 405, null);
+        return;
+      }
+      if (batchLocationFailure != 0) {
+        respond(exchange, batchLocationFailure, null);
+        return;
+      }
+      ObjectMapper mapper = new ObjectMapper();
+      JsonNode names = mapper.readTree(new String(body, "UTF-8"));
+      if (names.size() > batchLocationLimit) {
+        respond(exchange, 413, null);
+        return;
+      }
+      Map<String, List<String>> endpoints =
+              new HashMap<String, List<String>>();
+      for (JsonNode name : names) {
+        endpoints.put(name.getTextValue(), getEndpoints(name.getTextValue()));
+      }
+      respond(exchange, 200, mapper.writeValueAsBytes(endpoints));
+      return;
+    }
+    if (!path.startsWith(ACCOUNT_PATH + "/")) {
+      respond(exchange, 404, null);
+      return;
+    }
+    if (!TOKEN.equals(exchange.getRequestHeaders().getFirst(HEADER_AUTH_KEY))) {
+      respond(exchange, 401, null);
+      return;
+    }
+    String rest = path.substring(ACCOUNT_PATH.length() + 1);
+    int split = rest.indexOf('/');
+    String container = decode(split < 0 ? rest : rest.substring(0, split));
+    String object = split < 0 ? "" : decode(rest.substring(split + 1));
+    Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+    if (object.isEmpty()) {
+      handleContainer(exchange, method, container, query);
+    } else {
+      handleObject(exchange, method, container, object, query);
+    }
+  }
+
+  /**
+   * Delete the objects named in the body of a bulk delete request,
+   * answering with the JSON summary of the middleware. Requests on
+   * objects made to fail with {@link #failRequests(String, String, int)}
+   * are reported as errors.
+   */
+  private void bulkDelete(HttpExchange exchange, String body)
+          throws IOException {
+    String[] names = body.split("\n");
+    int deleted = 0;
+    int notFound = 0;
+    List<List<String>> errors = new ArrayList<List<String>>();
+    String status = "200 OK";
+    if (names.length > DEFAULT_BULK_DELETE_SIZE) {
+      status = "413 Request Entity Too Large";
+      names = new String[0];
+    }
+    for (String line : names) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      String name = decode(line.trim());
+      if (name.startsWith("/")) {
+        name = name.substring(1);
+      }
+      int split = name.indexOf('/');
+      String container = split < 0 ? name : name.substring(0, split);
+      String object = split < 0 ? "" : name.substring(split + 1);
+      SortedMap<String, StoredObject> objects = containers.get(container);
+      AtomicInteger failure = CONTAINER.equals(container)
+              ? failures.get("DELETE " + object)
+              : null;
+      if (failure != null && failure.getAndDecrement() > 0) {
+        List<String> error = new ArrayList<String>();
+        error.add(URLEncoder.encode("/" + name, "UTF-8")
+                .replace("%2F", "/").replace("+", "%20"));
+        error.add("500 Internal Server Error");
+        errors.add(error);
+      } else if (objects == null || objects.remove(object) == null) {
+        notFound++;
+      } else {
+        deleted++;
+      }
+    }
+    if (!errors.isEmpty()) {
+      status = "400 Bad Request";
+    }
+    Map<String, Object> response = new HashMap<String, Object>();
+    response.put(BULK_NUMBER_DELETED, deleted);
+    response.put(BULK_NUMBER_NOT_FOUND, notFound);
+    response.put(BULK_RESPONSE_STATUS, status);
+    response.put("Response Body", "");
+    response.put(BULK_ERRORS, errors);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    respond(exchange, 200, new ObjectMapper().writeValueAsBytes(response));
+  }
+
+  private void handleContainer(HttpExchange exchange, String method,
+                               String container, Map<String, String> query)
+          throws IOException {
+    SortedMap<String, StoredObject> objects = containers.get(container);
+    if ("PUT".equals(method)) {
+      if (objects == null) {
+        containers.put(container, newContainer());
+      }
+      respond(exchange, 201, null);
+      return;
+    }
+    if (objects == null) {
+      respond(exchange, 404, null);
+      return;
+    }
+    if ("HEAD".equals(method)) {
+      exchange.getResponseHeaders().add(X_CONTAINER_OBJECT_COUNT,
+              Integer.toString(objects.size()));
+      respond(exchange, 204, null);
+    } else if ("GET".equals(method)) {
+      byte[] listing = listing(objects, query);
+      respond(exchange, listing == null ? 204 : 200, listing);
+    } else {
+      respond(exchange, 405, null);
+    }
+  }
+
+  private void handleObject(HttpExchange exchange, String method,
+                            String container, String object,
+                            Map<String, String> query)
+          throws IOException {
+    SortedMap<String, StoredObject> objects = containers.get(container);
+    if (objects == null) {
+      respond(exchange, 404, null);
+      return;
+    }
+    AtomicInteger failure = CONTAINER.equals(container)
+            ? failures.get(method + " " + object)
+            : null;
+    if (failure != null && failure.getAndDecrement() > 0) {
+      respond(exchange, 500, null);
+      return;
+    }
+    Headers requestHeaders = exchange.getRequestHeaders();
+    if ("PUT".equals(method)) {
+      byte[] data = drain(exchange.getRequestBody());
+      if (corruptUploads && data.length > 0) {
+        data[0] ^= 1;
+      }
+      if ("put".equals(query.get("multipart-manifest"))) {
+        putStaticManifest(exchange, objects, object, data);
+        return;
+      }
+      String expected = requestHeaders.getFirst("ETag");
+      StoredObject stored = new StoredObject(data,
+              requestHeaders.getFirst(X_OBJECT_MANIFEST),
+              requestHeaders.getFirst("Content-Type"));
+      if (expected != null && !expected.equalsIgnoreCase(stored.etag)) {
+        respond(exchange, 422, null);
+        return;
+      }
+      objects.put(object, stored);
+      exchange.getResponseHeaders().add("ETag", stored.etag);
+      respond(exchange, 201, null);
+      return;
+    }
+    StoredObject stored = objects.get(object);
+    if (stored == null) {
+      respond(exchange, 404, null);
+      return;
+    }
+    if ("DELETE".equals(method)) {
+      objects.remove(object);
+      respond(exchange, 204, null);
+    } else if ("COPY".equals(method)) {
+      String destination = requestHeaders.getFirst("Destination");
+      if (destination.startsWith("/")) {
+        destination = destination.substring(1);
+      }
+      int split = destination.indexOf('/');
+      SortedMap<String, StoredObject> target =
+              containers.get(decode(destination.substring(0, split)));
+      if (target == null) {
+        respond(exchange, 404, null);
+        return;
+      }
+      target.put(decode(destination.substring(split + 1)), stored);
+      respond(exchange, 201, null);
+    } else if ("GET".equals(method) && stored.segments != null
+            && "get".equals(query.get("multipart-manifest"))) {
+      respond(exchange, 200, staticManifest(stored.segments));
+    } else if ("HEAD".equals(method) || "GET".equals(method)) {
+      byte[] data = content(stored);
+      Headers headers = exchange.getResponseHeaders();
+      headers.add("Last-Modified", httpDate(stored.modified));
+      if (stored.segments != null) {
+        headers.add("ETag", "\"" + largeObjectEtag(stored.segments) + "\"");
+        headers.add(X_STATIC_LARGE_OBJECT, "True");
+      } else {
+        headers.add("ETag", stored.manifest != null
+                ? "\"" + dynamicManifestEtag(stored.manifest) + "\""
+                : stored.etag);
+      }
+      if (stored.contentType != null) {
+        headers.add("Content-Type", stored.contentType);
+      }
+      if (stored.manifest != null) {
+        headers.add(X_OBJECT_MANIFEST, stored.manifest);
+      }
+      if ("HEAD".equals(method)) {
+        headers.add("Content-Length", Integer.toString(data.length));
+        exchange.sendResponseHeaders(200, -1);
+        return;
+      }
+      String range = requestHeaders.getFirst(HEADER_RANGE);
+      if (range != null && range.startsWith("bytes=")) {
+        String[] bounds = range.substring(6).split("-", 2);
+        int start = Integer.parseInt(bounds[0]);
+        int end = bounds[1].isEmpty()
+                ? data.length - 1
+                : Math.min(Integer.parseInt(bounds[1]), data.length - 1);
+        if (start >= data.length) {
+          respond(exchange, 416, null);
+          return;
+        }
+        byte[] slice = new byte[end - start + 1];
+        System.arraycopy(data, start, slice, 0, slice.length);
+        headers.add("Content-Range",
+                "bytes " + start + "-" + end + "/" + data.length);
+        respond(exchange, 206, slice);
+      } else {
+        respond(exchange, 200, data);
+      }
+    } else {
+      respond(exchange, 405, null);
+    }
+  }
+
+  /**
+   * Store a static large object manifest, after checking that every
+   * segment it lists exists with the ETag and size given for it;
+   * the manifest is rejected with a 400 response otherwise
+   *
+   * @param exchange HTTP exchange
+   * @param objects  container of the manifest
+   * @param object   name of the manifest
+   * @param manifest JSON list of segments
+   * @throws IOException on a failure to respond
+   */
+  private void putStaticManifest(HttpExchange exchange,
+                                 SortedMap<String, StoredObject> objects,
+                                 String object,
+                                 byte[] manifest) throws IOException {
+    List<Map<String, Object>> entries;
+    try {
+      entries = new ObjectMapper().readValue(manifest,
+              new TypeReference<List<Map<String, Object>>>() {
+              });
+    } catch (IOException e) {
+      respond(exchange, 400, null);
+      return;
+    }
+    List<String> segments = new ArrayList<String>(entries.size());
+    for (Map<String, Object> entry : entries) {
+      String path = (String) entry.get("path");
+      StoredObject segment = path == null ? null : lookup(path.substring(1));
+      Object etag = entry.get("etag");
+      Object size = entry.get("size_bytes");
+      if (segment == null
+              || (etag != null && !segment.etag.equalsIgnoreCase((String) etag))
+              || (size != null
+                      && ((Number) size).longValue() != segment.data.length)) {
+        respond(exchange, 400, null);
+        return;
+      }
+      segments.add(path.substring(1));
+    }
+    StoredObject stored = new StoredObject(manifest, null,
+            "application/octet-stream", segments);
+    objects.put(object, stored);
+    exchange.getResponseHeaders().add("ETag",
+            "\"" + largeObjectEtag(segments) + "\"");
+    respond(exchange, 201, null);
+  }
+
+  /**
+   * Build the manifest of a static large object as a GET of it with
+   * <code>multipart-manifest=get</code> returns it
+   *
+   * @param segments container/object paths of the segments
+   * @return the JSON list of the segments
+   */
+  private byte[] staticManifest(List<String> segments)
+          throws UnsupportedEncodingException {
+    StringBuilder json = new StringBuilder("[");
+    for (String path : segments) {
+      StoredObject segment = lookup(path);
+      json.append(json.length() > 1 ? "," : "").append(String.format(
+              Locale.ENGLISH,
+              "{\"name\":\"/%s\",\"hash\":\"%s\",\"bytes\":%d}",
+              path,
+              segment == null ? "" : segment.etag,
+              segment == null ? 0 : segment.data.length));
+    }
+    return json.append("]").toString().getBytes("UTF-8");
+  }
+
+  /**
+   * Look up an object by its container/object path
+   *
+   * @param path path
+   * @return the object or null if there is none
+   */
+  private StoredObject lookup(String path) {
+    int split = path.indexOf('/');
+    if (split < 0) {
+      return null;
+    }
+    SortedMap<String, StoredObject> objects =
+            containers.get(path.substring(0, split));
+    return objects == null ? null : objects.get(path.substring(split + 1));
+  }
+
+  /**
+   * Get the content of an object, joining up the segments of
+   * large objects
+   *
+   * @param stored object
+   * @return the data
+   */
+  private byte[] content(StoredObject stored) {
+    if (stored.segments != null) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      for (String path : stored.segments) {
+        StoredObject segment = lookup(path);
+        if (segment != null) {
+          out.write(segment.data, 0, segment.data.length);
+        }
+      }
+      return out.toByteArray();
+    }
+    return stored.manifest != null
+            ? manifestData(stored.manifest)
+            : stored.data;
+  }
+
+  /**
+   * The ETag of a large object: the MD5 of the concatenated
+   * ETags of its segments
+   *
+   * @param segments container/object paths of the segments
+   * @return the ETag, without quotes
+   */
+  private String largeObjectEtag(List<String> segments) {
+    StringBuilder etags = new StringBuilder();
+    for (String path : segments) {
+      StoredObject segment = lookup(path);
+      if (segment != null) {
+        etags.append(segment.etag);
+      }
+    }
+    try {
+      return md5Hex(etags.toString().getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * The ETag of a dynamic large object: the MD5 of the concatenated
+   * ETags of the objects under its prefix
+   *
+   * @param manifest container/prefix of the segments
+   * @return the ETag, without quotes
+   */
+  private String dynamicManifestEtag(String manifest) {
+    int split = manifest.indexOf('/');
+    SortedMap<String, StoredObject> objects =
+            containers.get(manifest.substring(0, split));
+    String prefix = manifest.substring(split + 1);
+    List<String> segments = new ArrayList<String>();
+    if (objects != null) {
+      synchronized (objects) {
+        for (String name : objects.tailMap(prefix).keySet()) {
+          if (!name.startsWith(prefix)) {
+            break;
+          }
+          segments.add(manifest.substring(0, split) + "/" + name);
+        }
+      }
+    }
+    return largeObjectEtag(segments);
+  }
+
+  /**
+   * Concatenate the segments of a manifest object
+   *
+   * @param manifest container/prefix of the segments
+   * @return the data
+   */
+  private byte[] manifestData(String manifest) {
+    int split = manifest.indexOf('/');
+    SortedMap<String, StoredObject> objects =
+            containers.get(manifest.substring(0, split));
+    String prefix = manifest.substring(split + 1);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    if (objects != null) {
+      synchronized (objects) {
+        for (Map.Entry<String, StoredObject> entry :
+                objects.tailMap(prefix).entrySet()) {
+          if (!entry.getKey().startsWith(prefix)) {
+            break;
+          }
+          byte[] data = entry.getValue().data;
+          out.write(data, 0, data.length);
+        }
+      }
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Build a JSON container listing honouring prefix, delimiter, marker,
+   * end_marker and limit
+   *
+   * @param objects objects in the container
+   * @param query   query parameters
+   * @return the listing, or null if it is empty
+   */
+  private byte[] listing(SortedMap<String, StoredObject> objects,
+                         Map<String, String> query)
+          throws UnsupportedEncodingException {
+    String prefix = query.containsKey("prefix") ? query.get("prefix") : "";
+    String delimiter = query.get("delimiter");
+    String marker = query.get("marker");
+    String endMarker = query.get("end_marker");
+    int limit = Math.min(listingCap, query.containsKey("limit")
+            ? Integer.parseInt(query.get("limit"))
+            : 10000);
+    List<String> entries = new ArrayList<String>();
+    String lastSubdir = null;
+    synchronized (objects) {
+      for (Map.Entry<String, StoredObject> entry : objects.entrySet()) {
+        if (entries.size() >= limit) {
+          break;
+        }
+        String name = entry.getKey();
+        if (!name.startsWith(prefix)
+                || (marker != null && name.compareTo(marker) <= 0)
+                || (endMarker != null && name.compareTo(endMarker) >= 0)
+                || isUnlisted(name)) {
+          continue;
+        }
+        if (delimiter != null) {
+          int end = name.indexOf(delimiter, prefix.length());
+          if (end >= 0) {
+            String subdir = name.substring(0, end + delimiter.length());
+            if (!subdir.equals(lastSubdir)
+                    && (marker == null || subdir.compareTo(marker) > 0)) {
+              entries.add("{\"subdir\":\"" + subdir + "\"}");
+              lastSubdir = subdir;
+            }
+            continue;
+          }
+        }
+        StoredObject stored = entry.getValue();
+        entries.add(String.format(Locale.ENGLISH,
+                "{\"name\":\"%s\",\"hash\":\"%s\",\"bytes\":%d,"
+                        + "\"content_type\":\"%s\",\"last_modified\":\"%s\"}",
+                name,
+                stored.segments != null
+                        ? largeObjectEtag(stored.segments)
+                        : stored.etag,
+                stored.segments != null
+                        ? content(stored).length
+                        : stored.data.length,
+                stored.contentType,
+                listingDate(stored.modified)));
+      }
+    }
+    if (entries.isEmpty()) {
+      return null;
+    }
+    StringBuilder json = new StringBuilder("[");
+    for (int i = 0; i < entries.size(); i++) {
+      json.append(i > 0 ? "," : "").append(entries.get(i));
+    }
+    return json.append("]").toString().getBytes("UTF-8");
+  }
+
+  private String authResponse() {
+    String endpoint = "http://127.0.0.1:" + getPort() + ACCOUNT_PATH;
+    return "{\"access\":{"
+            + "\"token\":{\"id\":\"" + TOKEN + "\","
+            + "\"expires\":\"2099-01-01T00:00:00Z\","
+            + "\"tenant\":{\"id\":\"" + TENANT + "\",\"name\":\"" + TENANT
+            + "\",\"enabled\":true}},"
+            + "\"serviceCatalog\":[{\"name\":\"swift\","
+            + "\"type\":\"object-store\",\"endpoints\":[{"
+            + "\"region\":\"local\",\"tenantId\":\"" + TENANT + "\","
+            + "\"publicURL\":\"" + endpoint + "\","
+            + "\"internalURL\":\"" + endpoint + "\"}]}],"
+            + "\"user\":{\"id\":\"user\",\"name\":\"user\"}}}";
+  }
+
+  private void count(String method) {
+    AtomicInteger count = requestCounts.get(method);
+    if (count == null) {
+      synchronized (requestCounts) {
+        count = requestCounts.get(method);
+        if (count == null) {
+          count = new AtomicInteger();
+          requestCounts.put(method, count);
+        }
+      }
+    }
+    count.incrementAndGet();
+  }
+
+  private static void respond(HttpExchange exchange, int status, byte[] body)
+          throws IOException {
+    if (body == null || body.length == 0) {
+      exchange.sendResponseHeaders(status, -1);
+    } else {
+      exchange.sendResponseHeaders(status, body.length);
+      OutputStream out = exchange.getResponseBody();
+      out.write(body);
+      out.close();
+    }
+  }
+
+  private static byte[] drain(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) > 0) {
+      out.write(buffer, 0, read);
+    }
+    in.close();
+    return out.toByteArray();
+  }
+
+  private static Map<String, String> parseQuery(String query) {
+    Map<String, String> params = new HashMap<String, String>();
+    if (query != null) {
+      for (String param : query.split("&")) {
+        int eq = param.indexOf('=');
+        if (eq < 0) {
+          params.put(decode(param), "");
+        } else {
+          params.put(decode(param.substring(0, eq)),
+                  decode(param.substring(eq + 1)));
+        }
+      }
+    }
+    return params;
+  }
+
+  private static String decode(String text) {
+    try {
+      return URLDecoder.decode(text.replace("+", "%2B"), "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String httpDate(long time) {
+    SimpleDateFormat format =
+            new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    return format.format(new Date(time));
+  }
+
+  private static String listingDate(long time) {
+    SimpleDateFormat format =
+            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'000'", Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    return format.format(new Date(time));
+  }
+
+  static String md5Hex(byte[] data) {
+    try {
+      byte[] digest = MessageDigest.getInstance("MD5").digest(data);
+      StringBuilder hex = new StringBuilder();
+      for (byte b : digest) {
+        hex.append(String.format("%02x", b & 0xff));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
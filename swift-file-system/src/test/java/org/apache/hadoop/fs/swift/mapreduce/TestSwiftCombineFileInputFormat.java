@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.LocalSwiftFileSystemBaseTest;
+import org.apache.hadoop.fs.swift.http.LocalSwiftServer;
+import org.apache.hadoop.fs.swift.http.RestClientBindings;
+import org.apache.hadoop.fs.swift.snative.SwiftNativeFileSystem;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_LARGE_OBJECT;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_LOCATION_AWARE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_SEGMENT_SIZE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.LARGE_OBJECT_STATIC;
+
+/**
+ * Test the combination of small objects into splits located on the
+ * nodes which hold them
+ */
+public class TestSwiftCombineFileInputFormat
+        extends LocalSwiftFileSystemBaseTest {
+
+  private static final int FILES = 40;
+  private static final int LINES = 10;
+  /**
+   * length of each file: lines of "line NN\n"
+   */
+  private static final int FILE_LENGTH = LINES * 8;
+  private static final int SPLIT_SIZE = 4 * FILE_LENGTH;
+  /**
+   * segment size of files written in partitions; the lines of such
+   * files are of varying length, so that some span two partitions
+   */
+  private static final int SEGMENT = 1024;
+  private static final int LONG_LINES = 200;
+
+  private Configuration conf;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setBoolean(prefix + DOT_LOCATION_AWARE, true);
+    conf.setLong(prefix + DOT_SEGMENT_SIZE, SEGMENT);
+    conf.setBoolean("fs.swift.impl.disable.cache", true);
+    this.conf = conf;
+  }
+
+  private void write(Path file) throws Exception {
+    FSDataOutputStream out = fs.create(file);
+    try {
+      for (int i = 0; i < LINES; i++) {
+        out.writeBytes(String.format("line %02d\n", i));
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private static String longLine(int i) {
+    return "line number " + i;
+  }
+
+  /**
+   * Write a file of {@link #LONG_LINES} lines in partitions
+   */
+  private void writePartitioned(SwiftNativeFileSystem filesystem, Path file)
+          throws Exception {
+    FSDataOutputStream out = filesystem.create(file);
+    try {
+      for (int i = 0; i < LONG_LINES; i++) {
+        out.writeBytes(longLine(i) + "\n");
+      }
+    } finally {
+      out.close();
+    }
+    assertNotNull("not partitioned: " + file,
+            server.getObject(file.toUri().getPath().substring(1)
+                    + "/00000002"));
+  }
+
+  private List<InputSplit> getSplits(Path in) throws Exception {
+    Job job = Job.getInstance(conf);
+    FileInputFormat.setInputPaths(job, in);
+    FileInputFormat.setMaxInputSplitSize(job, SPLIT_SIZE);
+    return new SwiftCombineTextInputFormat().getSplits(job);
+  }
+
+  @Test(timeout = 60000)
+  public void testSmallObjectsCombined() throws Throwable {
+    Path in = path("/test/in");
+    for (int i = 0; i < FILES; i++) {
+      write(new Path(in, String.format("dir%d/part-%05d", i % 4, i)));
+    }
+    write(new Path(in, "_SUCCESS"));
+    write(new Path(in, "_temporary/attempt/part-00000"));
+    write(new Path(in, "dir0/.part-00000.crc"));
+    server.resetRequestCounts();
+
+    List<InputSplit> splits = getSplits(in);
+    //the login of the job's filesystem, one deep listing, and a single
+    //lookup of the locations of the files listed
+    assertEquals(2, server.getRequestCount("POST"));
+    assertTrue("too many GETs: " + server.getRequestCount("GET"),
+            server.getRequestCount("GET") <= 2);
+
+    assertTrue("too many splits: " + splits.size(),
+            splits.size() < FILES / 2);
+    Set<String> seen = new HashSet<String>();
+    long total = 0;
+    for (InputSplit split : splits) {
+      CombineFileSplit combined = (CombineFileSplit) split;
+      assertTrue("split too large: " + combined,
+              combined.getLength() <= SPLIT_SIZE);
+      total += combined.getLength();
+      for (int i = 0; i < combined.getNumPaths(); i++) {
+        String name = combined.getPath(i).toUri().getPath();
+        assertTrue("listed twice: " + name, seen.add(name));
+        assertFalse("hidden file read: " + name,
+                name.contains("/_") || name.contains("/."));
+        if (combined.getLocations().length == 1) {
+          //a split of the blocks of one node
+          assertTrue(name + " is not on " + combined.getLocations()[0],
+                  LocalSwiftServer.getObjectHosts("data" + name)
+                          .contains(combined.getLocations()[0]));
+        }
+      }
+    }
+    assertEquals(FILES, seen.size());
+    assertEquals(FILES * FILE_LENGTH, total);
+  }
+
+  @Test(timeout = 60000)
+  public void testReadCombinedSplits() throws Throwable {
+    Path in = path("/test/in");
+    for (int i = 0; i < FILES; i++) {
+      write(new Path(in, String.format("part-%05d", i)));
+    }
+    int lines = 0;
+    SwiftCombineTextInputFormat format = new SwiftCombineTextInputFormat();
+    for (InputSplit split : getSplits(in)) {
+      TaskAttemptContext context = new TaskAttemptContextImpl(conf,
+              new TaskAttemptID("local", 1, TaskType.MAP, lines, 0));
+      RecordReader<LongWritable, Text> reader =
+              format.createRecordReader(split, context);
+      reader.initialize(split, context);
+      try {
+        while (reader.nextKeyValue()) {
+          String line = reader.getCurrentValue().toString();
+          assertEquals(String.format("line %02d", lines % LINES), line);
+          assertEquals((lines % LINES) * 8, reader.getCurrentKey().get());
+          lines++;
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    assertEquals(FILES * LINES, lines);
+  }
+
+  @Test(timeout = 60000)
+  public void testPartitionedFilesReadWhole() throws Throwable {
+    Path in = path("/test/in");
+    writePartitioned(fs, new Path(in, "dynamic"));
+    Configuration staticConf = new Configuration(conf);
+    staticConf.set(RestClientBindings.buildSwiftInstancePrefix(
+            LocalSwiftServer.SERVICE) + DOT_LARGE_OBJECT, LARGE_OBJECT_STATIC);
+    SwiftNativeFileSystem staticFs = new SwiftNativeFileSystem();
+    staticFs.initialize(server.getFilesystemURI(), staticConf);
+    try {
+      writePartitioned(staticFs, new Path(in, "static"));
+    } finally {
+      staticFs.close();
+    }
+    assertNotNull("static manifest",
+            server.getObject("test/in/static").segments);
+    write(new Path(in, "small"));
+
+    //the lines of each file by key; each path of a split is read with
+    //the reader the combined reader would use for it
+    Map<String, SortedMap<Long, String>> read =
+            new HashMap<String, SortedMap<Long, String>>();
+    for (InputSplit split : getSplits(in)) {
+      CombineFileSplit combined = (CombineFileSplit) split;
+      for (int i = 0; i < combined.getNumPaths(); i++) {
+        String name = combined.getPath(i).getName();
+        TaskAttemptContext context = new TaskAttemptContextImpl(conf,
+                new TaskAttemptID("local", 1, TaskType.MAP, 0, 0));
+        RecordReader<LongWritable, Text> reader =
+                new SwiftCombineTextInputFormat.FileLineRecordReader(
+                        combined, context, i);
+        reader.initialize(split, context);
+        SortedMap<Long, String> lines = read.get(name);
+        if (lines == null) {
+          lines = new TreeMap<Long, String>();
+          read.put(name, lines);
+        }
+        try {
+          while (reader.nextKeyValue()) {
+            assertNull("read twice: " + name + " at "
+                    + reader.getCurrentKey(),
+                    lines.put(reader.getCurrentKey().get(),
+                            reader.getCurrentValue().toString()));
+          }
+        } finally {
+          reader.close();
+        }
+      }
+    }
+    assertEquals(new HashSet<String>(Arrays.asList(
+            "dynamic", "static", "small")), read.keySet());
+    SortedMap<Long, String> expected = new TreeMap<Long, String>();
+    long offset = 0;
+    for (int i = 0; i < LONG_LINES; i++) {
+      expected.put(offset, longLine(i));
+      offset += longLine(i).length() + 1;
+    }
+    assertEquals("lines of the dynamic large object",
+            expected, read.get("dynamic"));
+    assertEquals("lines of the static large object",
+            expected, read.get("static"));
+    assertEquals(LINES, read.get("small").size());
+  }
+}
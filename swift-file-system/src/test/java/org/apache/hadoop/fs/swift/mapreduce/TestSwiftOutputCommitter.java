@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.mapreduce;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.LocalSwiftFileSystemBaseTest;
+import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+import org.apache.hadoop.fs.swift.snative.SwiftNativeFileSystem;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_LARGE_OBJECT;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_SEGMENT_SIZE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.LARGE_OBJECT_DYNAMIC;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.LARGE_OBJECT_STATIC;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.readDataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.writeDataset;
+
+/**
+ * Test the commit of job output without renames
+ */
+public class TestSwiftOutputCommitter extends LocalSwiftFileSystemBaseTest {
+
+  private static final int SEGMENT = 1024;
+  private static final int LARGE = 3 * SEGMENT + 100;
+
+  private Configuration conf;
+  private String prefix;
+  private Path out;
+  private JobContext job;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setLong(prefix + DOT_SEGMENT_SIZE, SEGMENT);
+    conf.set(prefix + DOT_LARGE_OBJECT, LARGE_OBJECT_STATIC);
+    //the committers get their own filesystems, bound to this server
+    conf.setBoolean("fs.swift.impl.disable.cache", true);
+    this.conf = conf;
+    this.prefix = prefix;
+  }
+
+  private TaskAttemptContext attempt(int task, int attempt) {
+    return new TaskAttemptContextImpl(conf,
+            new TaskAttemptID("local", 1, TaskType.REDUCE, task, attempt));
+  }
+
+  private SwiftOutputCommitter setupJob() throws Exception {
+    out = path("/test/out");
+    job = new JobContextImpl(conf, new JobID("local", 1));
+    SwiftOutputCommitter committer = new SwiftOutputCommitter(out, job);
+    committer.setupJob(job);
+    return committer;
+  }
+
+  private SwiftOutputCommitter write(TaskAttemptContext context, int task)
+          throws Exception {
+    SwiftOutputCommitter committer = new SwiftOutputCommitter(out, context);
+    committer.setupTask(context);
+    Path work = committer.getWorkPath();
+    writeDataset(fs, new Path(work, "part-r-0000" + task),
+            dataset(100, task, 251), 100, 1024, true);
+    //written a little at a time, so that it is split into partitions
+    byte[] large = dataset(LARGE, task, 251);
+    FSDataOutputStream stream =
+            fs.create(new Path(work, "large/part-r-0000" + task));
+    try {
+      for (int offset = 0; offset < LARGE; offset += 256) {
+        stream.write(large, offset, Math.min(256, LARGE - offset));
+      }
+    } finally {
+      stream.close();
+    }
+    return committer;
+  }
+
+  private void assertCommitted(int task) throws Exception {
+    assertArrayEquals(dataset(100, task, 251),
+            readDataset(fs, new Path(out, "part-r-0000" + task), 100));
+    assertArrayEquals(dataset(LARGE, task, 251),
+            readDataset(fs, new Path(out, "large/part-r-0000" + task), LARGE));
+    //the manifest references the partitions where the task wrote them
+    List<String> segments =
+            server.getObject("test/out/large/part-r-0000" + task).segments;
+    assertEquals(4, segments.size());
+    assertTrue(segments.get(0),
+            segments.get(0).startsWith("data/test/out/_segments/attempt_"));
+  }
+
+  @Test(timeout = 30000)
+  public void testCommitWithoutCopies() throws Throwable {
+    SwiftOutputCommitter jobCommitter = setupJob();
+    TaskAttemptContext task0 = attempt(0, 0);
+    SwiftOutputCommitter committer = write(task0, 0);
+    assertTrue(committer.needsTaskCommit(task0));
+    server.resetRequestCounts();
+    committer.commitTask(task0);
+    assertCommitted(0);
+
+    //a task attempt which failed, one which died, and one which worked
+    TaskAttemptContext failed = attempt(1, 0);
+    write(failed, 1).abortTask(failed);
+    assertFalse(fs.exists(SwiftOutputCommitter.getAttemptPath(out, failed)));
+    TaskAttemptContext died = attempt(1, 1);
+    write(died, 1);
+    TaskAttemptContext task1 = attempt(1, 2);
+    write(task1, 1).commitTask(task1);
+
+    jobCommitter.commitJob(job);
+    assertEquals(0, server.getRequestCount("COPY"));
+    assertCommitted(0);
+    assertCommitted(1);
+    assertTrue(fs.exists(new Path(out, FileOutputCommitter.SUCCEEDED_FILE_NAME)));
+    assertFalse(fs.exists(SwiftOutputCommitter.getAttemptPath(out, died)));
+    assertFalse(fs.exists(new Path(out, SwiftOutputCommitter.SEGMENTS_DIR_NAME
+            + "/" + SwiftOutputCommitter.COMMITTED_DIR_NAME)));
+  }
+
+  @Test(timeout = 30000)
+  public void testAbortJob() throws Throwable {
+    SwiftOutputCommitter jobCommitter = setupJob();
+    TaskAttemptContext task0 = attempt(0, 0);
+    write(task0, 0).commitTask(task0);
+    assertCommitted(0);
+    write(attempt(1, 0), 1);
+    jobCommitter.abortJob(job, JobStatus.State.FAILED);
+    assertFalse(fs.exists(new Path(out, "part-r-00000")));
+    assertFalse(fs.exists(new Path(out, "large/part-r-00000")));
+    assertFalse(fs.exists(new Path(out, SwiftOutputCommitter.SEGMENTS_DIR_NAME)));
+  }
+
+  @Test(timeout = 30000)
+  public void testNothingToCommit() throws Throwable {
+    setupJob();
+    TaskAttemptContext task0 = attempt(0, 0);
+    SwiftOutputCommitter committer = new SwiftOutputCommitter(out, task0);
+    assertFalse(committer.needsTaskCommit(task0));
+  }
+
+  @Test(timeout = 30000)
+  public void testSegmentsReadFromManifest() throws Throwable {
+    setupJob();
+    TaskAttemptContext task0 = attempt(0, 0);
+    SwiftOutputCommitter committer = write(task0, 0);
+    //a partition which the manifest of the file does not reference
+    server.putObject("test/out/" + SwiftOutputCommitter.SEGMENTS_DIR_NAME
+            + "/" + task0.getTaskAttemptID()
+            + "/large/part-r-00000/00000099", new byte[10]);
+    committer.commitTask(task0);
+    assertCommitted(0);
+  }
+
+  @Test(timeout = 30000)
+  public void testStaleListingOfDynamicSegments() throws Throwable {
+    Configuration dynamicConf = new Configuration(conf);
+    dynamicConf.set(prefix + DOT_LARGE_OBJECT, LARGE_OBJECT_DYNAMIC);
+    SwiftNativeFileSystem dynamicFs = new SwiftNativeFileSystem();
+    dynamicFs.initialize(server.getFilesystemURI(), dynamicConf);
+    try {
+      Path large = path("/test/large");
+      writeDataset(dynamicFs, large, dataset(LARGE, 0, 251), LARGE, 256, true);
+      //a listing which is missing one of the partitions
+      server.hideFromListings("test/large/00000002");
+      try {
+        dynamicFs.getStore().getSegments(large);
+        fail("listed segments which do not add up");
+      } catch (SwiftException expected) {
+        //expected
+      }
+    } finally {
+      dynamicFs.close();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testRenamesWithoutStaticLargeObjects() throws Throwable {
+    conf.set(prefix + DOT_LARGE_OBJECT, LARGE_OBJECT_DYNAMIC);
+    SwiftOutputCommitter jobCommitter = setupJob();
+    TaskAttemptContext task0 = attempt(0, 0);
+    SwiftOutputCommitter committer = new SwiftOutputCommitter(out, task0);
+    committer.setupTask(task0);
+    Path work = committer.getWorkPath();
+    assertTrue(work.toString(),
+            work.toString().contains("_temporary"));
+    writeDataset(fs, new Path(work, "part-r-00000"),
+            dataset(100, 0, 251), 100, 1024, true);
+    committer.commitTask(task0);
+    jobCommitter.commitJob(job);
+    assertArrayEquals(dataset(100, 0, 251),
+            readDataset(fs, new Path(out, "part-r-00000"), 100));
+    assertFalse(fs.exists(new Path(out, SwiftOutputCommitter.SEGMENTS_DIR_NAME)));
+  }
+
+  @Test(timeout = 30000)
+  public void testCommitJobWithRecordMissingFromListing() throws Throwable {
+    SwiftOutputCommitter jobCommitter = setupJob();
+    TaskAttemptContext task0 = attempt(0, 0);
+    write(task0, 0).commitTask(task0);
+    server.hideFromListings("test/out/" + SwiftOutputCommitter.SEGMENTS_DIR_NAME
+            + "/" + SwiftOutputCommitter.COMMITTED_DIR_NAME + "/");
+    server.resetRequestCounts();
+    jobCommitter.commitJob(job);
+    assertTrue(server.getNewestRequestCount("HEAD") > 0);
+    assertCommitted(0);
+  }
+}
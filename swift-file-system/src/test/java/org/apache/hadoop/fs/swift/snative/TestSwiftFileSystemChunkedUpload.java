@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.LocalSwiftFileSystemBaseTest;
+import org.apache.hadoop.fs.swift.exceptions.SwiftChecksumMismatchException;
+import org.apache.hadoop.fs.swift.exceptions.SwiftConnectionException;
+import org.apache.hadoop.fs.swift.http.LocalSwiftServer;
+import org.apache.hadoop.fs.swift.http.RestClientBindings;
+import org.apache.hadoop.io.IOUtils;
+import org.junit.Test;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_CHUNKED_BUFFER_SIZE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_CHUNKED_UPLOAD;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_HTTP_MAX_CONNECTIONS_PER_ROUTE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_SEGMENT_SIZE;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.readDataset;
+
+/**
+ * Test the upload of files in chunked PUTs as they are written
+ */
+public class TestSwiftFileSystemChunkedUpload extends LocalSwiftFileSystemBaseTest {
+
+  private static final int SEGMENT = 1024;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setBoolean(prefix + DOT_CHUNKED_UPLOAD, true);
+    conf.setInt(prefix + DOT_CHUNKED_BUFFER_SIZE, 100);
+    conf.setLong(prefix + DOT_SEGMENT_SIZE, SEGMENT);
+  }
+
+  private SwiftChunkedOutputStream write(Path file, byte[] src)
+          throws Exception {
+    FSDataOutputStream out = fs.create(file);
+    try {
+      for (int offset = 0; offset < src.length; offset += 300) {
+        out.write(src, offset, Math.min(300, src.length - offset));
+      }
+    } finally {
+      out.close();
+    }
+    return (SwiftChunkedOutputStream) out.getWrappedStream();
+  }
+
+  @Test(timeout = 30000)
+  public void testSmallFileIsOneObject() throws Throwable {
+    byte[] src = dataset(SEGMENT - 10, 0, 251);
+    Path file = path("/test/file");
+    SwiftChunkedOutputStream out = write(file, src);
+    assertNull(server.getObject("test/file/00000001"));
+    assertArrayEquals(src, server.getObject("test/file").data);
+    assertEquals(SwiftFileChecksum.ofObject(DigestUtils.md5Hex(src)),
+            out.getFileChecksum());
+    assertEquals(out.getFileChecksum(), fs.getFileChecksum(file));
+  }
+
+  @Test(timeout = 30000)
+  public void testEmptyFile() throws Throwable {
+    Path file = path("/test/empty");
+    write(file, new byte[0]);
+    assertEquals(0, server.getObject("test/empty").data.length);
+  }
+
+  @Test(timeout = 30000)
+  public void testLargeFileFallsBackToSegments() throws Throwable {
+    int len = 3 * SEGMENT + 500;
+    byte[] src = dataset(len, 0, 251);
+    Path file = path("/test/file");
+    SwiftChunkedOutputStream out = write(file, src);
+    for (int number = 1; number <= 4; number++) {
+      assertNotNull("segment " + number,
+              server.getObject(String.format("test/file/%08d", number)));
+    }
+    assertNull(server.getObject("test/file/00000005"));
+    assertNotNull(server.getObject("test/file").manifest);
+    assertEquals(len, fs.getFileStatus(file).getLen());
+    assertArrayEquals(src, readDataset(fs, file, len));
+    assertEquals(SwiftFileChecksum.MD5_OF_MD5S,
+            out.getFileChecksum().getAlgorithmName());
+    assertEquals(out.getFileChecksum(), fs.getFileChecksum(file));
+  }
+
+  @Test(timeout = 30000)
+  public void testUploadStartsOnFirstWrite() throws Throwable {
+    Path file = path("/test/file");
+    FSDataOutputStream out = fs.create(file);
+    try {
+      server.resetRequestCounts();
+      assertEquals(0, server.getRequestCount("PUT"));
+      assertEquals(0, fs.getStore().getConnectionPoolStatistics().getLeased());
+      out.write(dataset(10, 0, 251));
+    } finally {
+      out.close();
+    }
+    assertEquals(1, server.getRequestCount("PUT"));
+    assertArrayEquals(dataset(10, 0, 251), server.getObject("test/file").data);
+  }
+
+  @Test(timeout = 30000)
+  public void testNoFreeConnection() throws Throwable {
+    server.putObject("test/input", dataset(SEGMENT, 0, 251));
+    Configuration conf = server.createConfiguration();
+    String prefix = RestClientBindings.buildSwiftInstancePrefix(
+            LocalSwiftServer.SERVICE);
+    configure(conf, prefix);
+    conf.setInt(prefix + DOT_HTTP_MAX_CONNECTIONS_PER_ROUTE, 1);
+    SwiftNativeFileSystem singleConnectionFs = new SwiftNativeFileSystem();
+    singleConnectionFs.initialize(server.getFilesystemURI(), conf);
+    try {
+      FSDataOutputStream out = singleConnectionFs.create(path("/test/file"));
+      //the open stream holds the only connection
+      FSDataInputStream in = singleConnectionFs.open(path("/test/input"));
+      try {
+        out.write(1);
+        fail("started an upload without a connection");
+      } catch (SwiftConnectionException expected) {
+        assertTrue(expected.getMessage(), expected.getMessage()
+                .contains(DOT_HTTP_MAX_CONNECTIONS_PER_ROUTE));
+      } finally {
+        in.close();
+        IOUtils.closeStream(out);
+      }
+    } finally {
+      singleConnectionFs.close();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testCorruptUploadRejected() throws Throwable {
+    server.setCorruptUploads(true);
+    try {
+      write(path("/test/file"), dataset(SEGMENT / 2, 0, 251));
+      fail("corrupt upload accepted");
+    } catch (SwiftChecksumMismatchException expected) {
+      //expected
+    }
+    assertNull(server.getObject("test/file"));
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.LocalSwiftFileSystemBaseTest;
+import org.junit.Test;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_PREFETCH_SIZE;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_READAHEAD_MAX;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_READAHEAD_MIN;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+
+/**
+ * Test that input streams choose between reading through data and
+ * reopening on a forward seek as the cost model says
+ */
+public class TestSwiftFileSystemSeekCost extends LocalSwiftFileSystemBaseTest {
+
+  private static final int LENGTH = 100000;
+  private static final byte[] DATA = dataset(LENGTH, 0, 251);
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setInt(prefix + DOT_READAHEAD_MIN, 8192);
+    conf.setInt(prefix + DOT_READAHEAD_MAX, 8192);
+    conf.setInt(prefix + DOT_PREFETCH_SIZE, 0);
+  }
+
+  private FSDataInputStream openAndRead(byte[] buffer) throws Exception {
+    server.putObject("test/file", DATA);
+    FSDataInputStream in = fs.open(path("/test/file"), 10);
+    in.readFully(buffer);
+    server.resetRequestCounts();
+    return in;
+  }
+
+  private void assertReadAt(FSDataInputStream in, long offset)
+          throws Exception {
+    byte[] buffer = new byte[10];
+    in.seek(offset);
+    in.readFully(buffer);
+    for (int i = 0; i < buffer.length; i++) {
+      assertEquals("byte " + (offset + i), DATA[(int) offset + i], buffer[i]);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testCheapSeekReadsThrough() throws Throwable {
+    FSDataInputStream in = openAndRead(new byte[10]);
+    try {
+      assertReadAt(in, 8000);
+    } finally {
+      in.close();
+    }
+    assertEquals("GET requests", 0, server.getRequestCount("GET"));
+    SwiftReadCostModel.Statistics stats = fs.getStore().getReadStatistics();
+    assertEquals(1, stats.getSkips());
+    assertEquals(7990, stats.getBytesSkipped());
+    assertEquals(0, stats.getReopens());
+  }
+
+  @Test(timeout = 30000)
+  public void testExpensiveSeekReopens() throws Throwable {
+    FSDataInputStream in = openAndRead(new byte[10]);
+    SwiftReadCostModel model = fs.getStore().getReadCostModel();
+    for (int i = 0; i < 100; i++) {
+      //a slow link with fast responses: 100 KB/s and 1 ms
+      model.transferCompleted(1000000, 10000000000L);
+      model.requestCompleted(1000000);
+    }
+    assertTrue(model.getSkipThreshold() < 1000);
+    try {
+      assertReadAt(in, 8000);
+      assertReadAt(in, 8015);
+    } finally {
+      in.close();
+    }
+    assertEquals("GET requests", 1, server.getRequestCount("GET"));
+    SwiftReadCostModel.Statistics stats = fs.getStore().getReadStatistics();
+    assertEquals(1, stats.getReopens());
+    //the short seek within the new range still reads through
+    assertEquals(1, stats.getSkips());
+    assertEquals(5, stats.getBytesSkipped());
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.LocalSwiftFileSystemBaseTest;
+import org.apache.hadoop.fs.swift.exceptions.SwiftChecksumMismatchException;
+import org.apache.hadoop.fs.swift.http.LocalSwiftServer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.DOT_SEGMENT_SIZE;
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+
+/**
+ * Test that uploads send the MD5 computed as the data was written,
+ * and that it becomes the checksum of the file
+ */
+public class TestSwiftFileSystemVerifiedUpload extends LocalSwiftFileSystemBaseTest {
+
+  private static final int SEGMENT = 1024;
+
+  @Override
+  protected void configure(Configuration conf, String prefix) {
+    conf.setLong(prefix + DOT_SEGMENT_SIZE, SEGMENT);
+  }
+
+  private SwiftNativeOutputStream write(Path file, byte[] src)
+          throws Exception {
+    FSDataOutputStream out = fs.create(file);
+    try {
+      for (int offset = 0; offset < src.length; offset += 256) {
+        out.write(src, offset, Math.min(256, src.length - offset));
+      }
+    } finally {
+      out.close();
+    }
+    return (SwiftNativeOutputStream) out.getWrappedStream();
+  }
+
+  @Test(timeout = 30000)
+  public void testChecksumOfObject() throws Throwable {
+    byte[] src = dataset(SEGMENT / 2, 0, 251);
+    SwiftNativeOutputStream out = write(path("/test/file"), src);
+    SwiftFileChecksum checksum = out.getFileChecksum();
+    assertEquals(SwiftFileChecksum.MD5, checksum.getAlgorithmName());
+    assertEquals(SwiftFileChecksum.ofObject(DigestUtils.md5Hex(src)), checksum);
+    assertEquals(server.getObject("test/file").etag,
+            DigestUtils.md5Hex(src));
+    assertEquals(checksum, fs.getFileChecksum(path("/test/file")));
+  }
+
+  @Test(timeout = 30000)
+  public void testChecksumOfSegments() throws Throwable {
+    byte[] src = dataset(4 * SEGMENT, 0, 251);
+    SwiftNativeOutputStream out = write(path("/test/file"), src);
+    List<String> md5s = new ArrayList<String>();
+    for (int number = 1; ; number++) {
+      LocalSwiftServer.StoredObject segment =
+              server.getObject(String.format("test/file/%08d", number));
+      if (segment == null) {
+        break;
+      }
+      md5s.add(segment.etag);
+    }
+    assertTrue("segments: " + md5s, md5s.size() > 1);
+    SwiftFileChecksum checksum = out.getFileChecksum();
+    assertEquals(SwiftFileChecksum.MD5_OF_MD5S, checksum.getAlgorithmName());
+    assertEquals(SwiftFileChecksum.ofSegments(md5s), checksum);
+    assertEquals(checksum, fs.getFileChecksum(path("/test/file")));
+  }
+
+  @Test(timeout = 30000)
+  public void testCorruptObjectRejected() throws Throwable {
+    server.setCorruptUploads(true);
+    try {
+      write(path("/test/file"), dataset(SEGMENT / 2, 0, 251));
+      fail("corrupt upload accepted");
+    } catch (SwiftChecksumMismatchException expected) {
+      //expected
+    }
+    assertNull(server.getObject("test/file"));
+  }
+
+  @Test(timeout = 30000)
+  public void testCorruptSegmentRejected() throws Throwable {
+    server.setCorruptUploads(true);
+    try {
+      write(path("/test/file"), dataset(4 * SEGMENT, 0, 251));
+      fail("corrupt upload accepted");
+    } catch (SwiftChecksumMismatchException expected) {
+      //expected
+    }
+    assertNull(server.getObject("test/file/00000001"));
+    assertNull(server.getObject("test/file"));
+  }
+}
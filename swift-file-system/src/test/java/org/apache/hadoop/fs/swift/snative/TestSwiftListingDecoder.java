@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Test the streaming decoding of container listings
+ */
+public class TestSwiftListingDecoder extends Assert {
+
+  private final SwiftListingDecoder decoder =
+          new SwiftListingDecoder(URI.create("swift://container.service/"));
+
+  private SwiftListingDecoder.Page decode(String json) throws IOException {
+    return decoder.read(new ByteArrayInputStream(json.getBytes("UTF-8")));
+  }
+
+  private static long parse(String timestamp) throws SwiftException {
+    char[] chars = ("  " + timestamp + " ").toCharArray();
+    return SwiftListingDecoder.parseTimestamp(chars, 2, timestamp.length());
+  }
+
+  @Test
+  public void testDecodeEntries() throws Throwable {
+    SwiftListingDecoder.Page page = decode("["
+            + "{\"hash\":\"d41d8cd98f00b204e9800998ecf8427e\","
+            + "\"last_modified\":\"2013-02-28T14:07:31.123456\","
+            + "\"bytes\":0,\"name\":\"dir\","
+            + "\"content_type\":\"application/octet-stream\"},"
+            + "{\"subdir\":\"dir/\"},"
+            + "{\"name\":\"dir/file one\",\"bytes\":1024,"
+            + "\"extra\":{\"nested\":[1,2,3]},"
+            + "\"last_modified\":\"2013-02-28T14:07:32\"}"
+            + "]");
+    assertEquals(3, page.size());
+    assertEquals("dir/file one", page.getLastMarker());
+    List<FileStatus> entries = page.getEntries();
+    assertEquals(2, entries.size());
+    FileStatus dir = entries.get(0);
+    assertTrue(dir.isDir());
+    assertEquals("swift://container.service/dir", dir.getPath().toString());
+    FileStatus file = entries.get(1);
+    assertFalse(file.isDir());
+    assertEquals(1024, file.getLen());
+    assertEquals("file one", file.getPath().getName());
+    assertEquals("container.service", file.getPath().toUri().getAuthority());
+  }
+
+  @Test
+  public void testTrailingSubdirIsMarker() throws Throwable {
+    SwiftListingDecoder.Page page = decode("[{\"subdir\":\"a/\"}]");
+    assertEquals(1, page.size());
+    assertEquals("a/", page.getLastMarker());
+    assertTrue(page.getEntries().isEmpty());
+  }
+
+  @Test
+  public void testEmptyListings() throws Throwable {
+    assertEquals(0, decode("").size());
+    assertEquals(0, decode("[]").size());
+  }
+
+  @Test(expected = SwiftException.class)
+  public void testNotAList() throws Throwable {
+    decode("{\"name\":\"file\"}");
+  }
+
+  @Test(expected = SwiftException.class)
+  public void testTruncatedListing() throws Throwable {
+    decode("[{\"name\":\"file\",\"bytes\":1");
+  }
+
+  @Test
+  public void testTimestampsMatchDateParsing() throws Throwable {
+    SimpleDateFormat format =
+            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS");
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    String[] timestamps = {
+            "1970-01-01T00:00:00.000",
+            "2000-02-29T23:59:59.999",
+            "2013-02-28T14:07:31.123",
+            "2013-03-01T00:00:00.000",
+            "2100-12-31T12:30:45.500",
+    };
+    for (String timestamp : timestamps) {
+      assertEquals(timestamp, format.parse(timestamp).getTime(),
+              parse(timestamp));
+    }
+  }
+
+  @Test
+  public void testTimestampPrecision() throws Throwable {
+    long seconds = parse("2013-02-28T14:07:31");
+    assertEquals(seconds, parse("2013-02-28T14:07:31Z"));
+    assertEquals(seconds + 123, parse("2013-02-28T14:07:31.123456"));
+    assertEquals(seconds + 500, parse("2013-02-28T14:07:31.5"));
+  }
+
+  @Test
+  public void testBadTimestamps() throws Throwable {
+    String[] bad = {
+            "",
+            "2013-02-28",
+            "2013-02-28 14:07:31",
+            "2013-13-28T14:07:31",
+            "2013-02-2xT14:07:31",
+            "2013-02-28T14:07:31+01:00",
+    };
+    for (String timestamp : bad) {
+      try {
+        long time = parse(timestamp);
+        fail("Parsed \"" + timestamp + "\" as " + time);
+      } catch (SwiftException expected) {
+        //expected
+      }
+    }
+  }
+}
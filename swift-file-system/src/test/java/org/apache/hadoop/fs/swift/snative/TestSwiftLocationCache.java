@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.swift.util.SwiftObjectPath;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test expiry, eviction and ETag matching in the location cache
+ */
+public class TestSwiftLocationCache extends Assert {
+
+  private long time = 1000;
+
+  private final SwiftLocationCache cache = new SwiftLocationCache(100, 2) {
+    @Override
+    protected long now() {
+      return time;
+    }
+  };
+
+  private static SwiftObjectPath object(String name) {
+    return new SwiftObjectPath("container", "/" + name);
+  }
+
+  private static List<URI> locations(String name) {
+    return Arrays.asList(
+            URI.create("http://node1:6000/sda1/0/AUTH_t/container/" + name));
+  }
+
+  @Test
+  public void testExpiry() throws Throwable {
+    cache.put(object("a"), "1", locations("a"));
+    time += 99;
+    assertEquals(locations("a"), cache.get(object("a"), "1"));
+    time += 1;
+    assertNull(cache.get(object("a"), "1"));
+    assertEquals(0, cache.size());
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void testChangedEtagIsMiss() throws Throwable {
+    cache.put(object("a"), "1", locations("a"));
+    assertNull(cache.get(object("a"), "2"));
+    assertEquals(0, cache.size());
+    cache.put(object("a"), null, locations("a"));
+    assertNull(cache.get(object("a"), "1"));
+    cache.put(object("a"), null, locations("a"));
+    assertNotNull(cache.get(object("a"), null));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() throws Throwable {
+    cache.put(object("a"), "1", locations("a"));
+    cache.put(object("b"), "1", locations("b"));
+    cache.get(object("a"), "1");
+    cache.put(object("c"), "1", locations("c"));
+    assertEquals(2, cache.size());
+    assertNotNull(cache.get(object("a"), "1"));
+    assertNull(cache.get(object("b"), "1"));
+    assertNotNull(cache.get(object("c"), "1"));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.swift.util.SwiftObjectPath;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test expiry and eviction in the metadata cache
+ */
+public class TestSwiftMetadataCache extends Assert {
+
+  private long time = 1000;
+
+  private final SwiftMetadataCache cache = new SwiftMetadataCache(100, 50, 2) {
+    @Override
+    protected long now() {
+      return time;
+    }
+  };
+
+  private static SwiftObjectPath object(String name) {
+    return new SwiftObjectPath("container", "/" + name);
+  }
+
+  private static SwiftFileStatus status(String name) {
+    return new SwiftFileStatus(1, false, 0, 1024, 0,
+            new Path("swift://container.service/" + name));
+  }
+
+  @Test
+  public void testExpiry() throws Throwable {
+    cache.put(object("a"), status("a"));
+    time += 99;
+    assertNotNull(cache.get(object("a")));
+    time += 1;
+    assertNull(cache.get(object("a")));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedIsEvicted() throws Throwable {
+    cache.put(object("a"), status("a"));
+    cache.put(object("b"), status("b"));
+    cache.get(object("a"));
+    cache.put(object("c"), status("c"));
+    assertEquals(2, cache.size());
+    assertNotNull(cache.get(object("a")));
+    assertNull(cache.get(object("b")));
+    assertNotNull(cache.get(object("c")));
+  }
+
+  @Test
+  public void testInvalidate() throws Throwable {
+    cache.put(object("a"), status("a"));
+    cache.invalidate(object("a"));
+    assertNull(cache.get(object("a")));
+  }
+
+  @Test
+  public void testAbsentPaths() throws Throwable {
+    cache.putAbsent(object("a"));
+    assertTrue(SwiftMetadataCache.isAbsent(cache.get(object("a"))));
+    time += 50;
+    assertNull(cache.get(object("a")));
+  }
+
+  @Test
+  public void testWriteInvalidatesAbsentParents() throws Throwable {
+    cache.putAbsent(object("a"));
+    cache.put(object("a/b"), status("a/b"));
+    cache.invalidate(object("a/b/c"));
+    assertNull(cache.get(object("a")));
+    assertNotNull(cache.get(object("a/b")));
+  }
+
+  @Test
+  public void testStatistics() throws Throwable {
+    cache.put(object("a"), status("a"));
+    cache.putAbsent(object("b"));
+    cache.get(object("a"));
+    cache.get(object("b"));
+    cache.get(object("c"));
+    SwiftMetadataCache.Statistics stats = cache.getStatistics();
+    assertEquals(1, stats.getHits());
+    assertEquals(1, stats.getNegativeHits());
+    assertEquals(1, stats.getMisses());
+    assertEquals(2, stats.getSize());
+  }
+}
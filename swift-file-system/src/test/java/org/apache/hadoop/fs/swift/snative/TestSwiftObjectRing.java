@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Test the placement of objects by a ring built the way
+ * <code>RingData.save()</code> writes one
+ */
+public class TestSwiftObjectRing extends Assert {
+
+  private static final String SUFFIX = "changeme";
+
+  private static final String PREFIX = "startcap";
+
+  /**
+   * Write a ring with 16 partitions in the <code>R1NG</code> format
+   *
+   * @param out       stream to write to; it is finished but not closed
+   * @param devs      JSON list of the devices
+   * @param table     device id of each partition, for each replica; a
+   *                  shorter last table gives a fractional replica count
+   * @param byteOrder byte order field to write, or null for none
+   * @param bigEndian write the tables big-endian
+   * @throws IOException on a write failure
+   */
+  public static void writeRing(OutputStream out,
+                               String devs,
+                               int[][] table,
+                               String byteOrder,
+                               boolean bigEndian) throws IOException {
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    DataOutputStream data = new DataOutputStream(gzip);
+    data.writeBytes("R1NG");
+    data.writeShort(1);
+    String json = "{\"devs\": " + devs + ", \"part_shift\": 28, "
+            + "\"replica_count\": "
+            + (table.length - 1 + table[table.length - 1].length / 16.0)
+            + (byteOrder == null ? "" : ", \"byte_order\": \"" + byteOrder + "\"")
+            + "}";
+    byte[] jsonBytes = json.getBytes("UTF-8");
+    data.writeInt(jsonBytes.length);
+    data.write(jsonBytes);
+    for (int[] part2dev : table) {
+      for (int dev : part2dev) {
+        if (bigEndian) {
+          data.writeShort(dev);
+        } else {
+          data.write(dev & 0xff);
+          data.write(dev >> 8);
+        }
+      }
+    }
+    data.flush();
+    gzip.finish();
+  }
+
+  /**
+   * Build the JSON of some devices, on hosts node0, node1...
+   *
+   * @param count number of devices
+   * @return the JSON list
+   */
+  public static String devices(int count) {
+    StringBuilder devs = new StringBuilder("[");
+    for (int i = 0; i < count; i++) {
+      devs.append(i > 0 ? ", " : "")
+              .append("{\"id\": ").append(i)
+              .append(", \"zone\": ").append(i)
+              .append(", \"weight\": 100.0")
+              .append(", \"ip\": \"node").append(i)
+              .append("\", \"port\": 6000")
+              .append(", \"device\": \"sda").append(i)
+              .append("\", \"meta\": \"\"}");
+    }
+    return devs.append("]").toString();
+  }
+
+  /**
+   * Build the partition tables of a ring which puts replica r of
+   * partition p on device (p + 2r) mod devices
+   *
+   * @param replicas number of replicas
+   * @param devices  number of devices
+   * @return the tables
+   */
+  public static int[][] table(int replicas, int devices) {
+    int[][] table = new int[replicas][16];
+    for (int replica = 0; replica < replicas; replica++) {
+      for (int part = 0; part < 16; part++) {
+        table[replica][part] = (part + 2 * replica) % devices;
+      }
+    }
+    return table;
+  }
+
+  private static SwiftObjectRing load(String devs,
+                                      int[][] table,
+                                      String byteOrder,
+                                      boolean bigEndian) throws IOException {
+    return load(devs, table, byteOrder, bigEndian, "");
+  }
+
+  private static SwiftObjectRing load(String devs,
+                                      int[][] table,
+                                      String byteOrder,
+                                      boolean bigEndian,
+                                      String hashPrefix) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeRing(out, devs, table, byteOrder, bigEndian);
+    return SwiftObjectRing.load(new ByteArrayInputStream(out.toByteArray()),
+            hashPrefix, SUFFIX);
+  }
+
+  private static List<String> hosts(List<URI> endpoints) {
+    List<String> hosts = new ArrayList<String>();
+    for (URI endpoint : endpoints) {
+      hosts.add(endpoint.getHost());
+    }
+    return hosts;
+  }
+
+  @Test
+  public void testPartitions() throws Throwable {
+    SwiftObjectRing ring = load(devices(6), table(3, 6), null, false);
+    assertEquals(16, ring.getPartitionCount());
+    assertEquals(3, ring.getReplicaCount());
+    //as computed by swift.common.utils.hash_path with the same suffix
+    assertEquals(9, ring.getPartition("AUTH_test", "data", "file"));
+    assertEquals(1, ring.getPartition("AUTH_test", "data", "dir/part-00000"));
+    assertEquals(13, ring.getPartition("AUTH_test", "data", "été"));
+  }
+
+  @Test
+  public void testHashPathPrefix() throws Throwable {
+    SwiftObjectRing ring = load(devices(6), table(3, 6), null, false, PREFIX);
+    //as computed by swift.common.utils.hash_path with the same prefix
+    assertEquals(2, ring.getPartition("AUTH_test", "data", "file"));
+    assertEquals(14, ring.getPartition("AUTH_test", "data", "dir/part-00000"));
+    assertEquals("[node2, node4, node0]",
+            hosts(ring.getEndpoints("AUTH_test", "data", "file")).toString());
+  }
+
+  @Test
+  public void testFractionalReplicaCount() throws Throwable {
+    //2.5 replicas: the last table only covers the first 8 partitions
+    int[][] table = table(3, 6);
+    int[] partial = new int[8];
+    System.arraycopy(table[2], 0, partial, 0, partial.length);
+    table[2] = partial;
+    SwiftObjectRing ring = load(devices(6), table, null, false);
+    assertEquals(16, ring.getPartitionCount());
+    assertEquals(3, ring.getReplicaCount());
+    assertEquals("[node3, node5]",
+            hosts(ring.getEndpoints("AUTH_test", "data", "file")).toString());
+    assertEquals("[node1, node3, node5]",
+            hosts(ring.getEndpoints("AUTH_test", "data", "dir/part-00000"))
+                    .toString());
+  }
+
+  @Test
+  public void testEndpoints() throws Throwable {
+    SwiftObjectRing ring = load(devices(6), table(3, 6), null, false);
+    List<URI> endpoints = ring.getEndpoints("AUTH_test", "data", "file");
+    assertEquals(3, endpoints.size());
+    assertEquals(URI.create("http://node3:6000/sda3/9/AUTH_test/data/file"),
+            endpoints.get(0));
+    assertEquals("[node3, node5, node1]", hosts(endpoints).toString());
+  }
+
+  @Test
+  public void testBigEndianTables() throws Throwable {
+    SwiftObjectRing ring = load(devices(300), table(2, 300), "big", true);
+    assertEquals("[node9, node11]",
+            hosts(ring.getEndpoints("AUTH_test", "data", "file")).toString());
+  }
+
+  @Test
+  public void testDeviceOnlyListedOnce() throws Throwable {
+    //two replicas of every partition on the same device
+    int[][] table = table(3, 6);
+    table[1] = table[0];
+    SwiftObjectRing ring = load(devices(6), table, null, false);
+    assertEquals("[node3, node1]",
+            hosts(ring.getEndpoints("AUTH_test", "data", "file")).toString());
+  }
+
+  @Test
+  public void testRemovedDeviceSkipped() throws Throwable {
+    String devs = devices(6).replace(
+            "{\"id\": 5, \"zone\": 5, \"weight\": 100.0, \"ip\": \"node5\", "
+                    + "\"port\": 6000, \"device\": \"sda5\", \"meta\": \"\"}",
+            "null");
+    SwiftObjectRing ring = load(devs, table(3, 6), null, false);
+    assertEquals("[node3, node1]",
+            hosts(ring.getEndpoints("AUTH_test", "data", "file")).toString());
+  }
+
+  @Test(expected = SwiftException.class)
+  public void testPickledRingRejected() throws Throwable {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write("(dp0\nS'devs'".getBytes("UTF-8"));
+    gzip.finish();
+    SwiftObjectRing.load(new ByteArrayInputStream(out.toByteArray()), "",
+            SUFFIX);
+  }
+}
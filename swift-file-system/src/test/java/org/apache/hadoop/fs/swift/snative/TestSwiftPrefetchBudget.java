@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the accounting of prefetch memory
+ */
+public class TestSwiftPrefetchBudget extends Assert {
+
+  @Test
+  public void testReservations() throws Throwable {
+    SwiftPrefetchBudget budget = new SwiftPrefetchBudget(100);
+    assertTrue(budget.tryReserve(60));
+    assertFalse(budget.tryReserve(50));
+    assertTrue(budget.tryReserve(40));
+    budget.release(60);
+    assertEquals(40, budget.getReserved());
+    assertTrue(budget.tryReserve(50));
+  }
+
+  @Test
+  public void testLimitIsNeverLowered() throws Throwable {
+    SwiftPrefetchBudget budget = new SwiftPrefetchBudget(100);
+    assertTrue(budget.tryReserve(80));
+    budget.raiseLimit(50);
+    assertTrue(budget.tryReserve(20));
+    assertFalse(budget.tryReserve(1));
+    budget.raiseLimit(150);
+    assertTrue(budget.tryReserve(50));
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the cost model of forward seeks
+ */
+public class TestSwiftReadCostModel extends Assert {
+
+  private static final long MS = 1000000L;
+
+  @Test
+  public void testInitialThreshold() throws Throwable {
+    SwiftReadCostModel model = new SwiftReadCostModel();
+    //20 ms at 50 MB/s
+    assertEquals(1000000, model.getSkipThreshold());
+    assertTrue(model.shouldSkip(1000000));
+    assertFalse(model.shouldSkip(1000001));
+  }
+
+  @Test
+  public void testThresholdFollowsSamples() throws Throwable {
+    SwiftReadCostModel model = new SwiftReadCostModel();
+    for (int i = 0; i < 100; i++) {
+      //1 MB in 10 ms: 100 MB/s
+      model.transferCompleted(1000000, 10 * MS);
+      model.requestCompleted(2 * MS);
+    }
+    long threshold = model.getSkipThreshold();
+    assertTrue("threshold " + threshold,
+            threshold > 190000 && threshold < 210000);
+    SwiftReadCostModel.Statistics stats = model.getStatistics();
+    assertEquals(2000, stats.getLatencyMicros(), 10);
+    assertEquals(100000000, stats.getBytesPerSecond(), 100000);
+  }
+
+  @Test
+  public void testShortTransfersIgnored() throws Throwable {
+    SwiftReadCostModel model = new SwiftReadCostModel();
+    long threshold = model.getSkipThreshold();
+    model.transferCompleted(100, 1000 * MS);
+    assertEquals(threshold, model.getSkipThreshold());
+  }
+
+  @Test
+  public void testSeekCounts() throws Throwable {
+    SwiftReadCostModel model = new SwiftReadCostModel();
+    model.skipped(100);
+    model.skipped(50);
+    model.reopened();
+    SwiftReadCostModel.Statistics stats = model.getStatistics();
+    assertEquals(2, stats.getSkips());
+    assertEquals(150, stats.getBytesSkipped());
+    assertEquals(1, stats.getReopens());
+  }
+}
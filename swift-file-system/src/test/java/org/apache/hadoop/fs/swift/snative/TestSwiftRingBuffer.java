@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.swift.exceptions.SwiftException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.apache.hadoop.fs.swift.util.SwiftTestUtils.dataset;
+
+/**
+ * Test the buffer between a writer and a chunked upload
+ */
+public class TestSwiftRingBuffer extends Assert {
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  private Future<byte[]> drain(final SwiftRingBuffer ring) {
+    return executor.submit(new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws Exception {
+        InputStream in = ring.getInputStream();
+        try {
+          return IOUtils.toByteArray(in);
+        } finally {
+          in.close();
+        }
+      }
+    });
+  }
+
+  @Test(timeout = 10000)
+  public void testDataPassesThroughSmallBuffer() throws Throwable {
+    SwiftRingBuffer ring = new SwiftRingBuffer(100);
+    Future<byte[]> read = drain(ring);
+    byte[] src = dataset(10000, 0, 251);
+    for (int offset = 0; offset < src.length; offset += 73) {
+      ring.write(src, offset, Math.min(73, src.length - offset));
+    }
+    ring.close();
+    assertArrayEquals(src, read.get());
+  }
+
+  @Test(timeout = 10000)
+  public void testAbortFailsReader() throws Throwable {
+    SwiftRingBuffer ring = new SwiftRingBuffer(100);
+    Future<byte[]> read = drain(ring);
+    ring.write(dataset(50, 0, 251), 0, 50);
+    ring.abort();
+    try {
+      read.get();
+      fail("read an aborted upload");
+    } catch (ExecutionException expected) {
+      assertTrue(expected.getCause() instanceof SwiftException);
+    }
+  }
+
+  @Test(timeout = 10000, expected = SwiftException.class)
+  public void testClosedReaderFailsWriter() throws Throwable {
+    SwiftRingBuffer ring = new SwiftRingBuffer(100);
+    ring.getInputStream().close();
+    ring.write(dataset(500, 0, 251), 0, 500);
+  }
+}
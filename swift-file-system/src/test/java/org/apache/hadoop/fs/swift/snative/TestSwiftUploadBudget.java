@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.snative;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test the accounting of upload buffer space
+ */
+public class TestSwiftUploadBudget extends Assert {
+
+  @Test(timeout = 10000)
+  public void testReserveBlocksUntilReleased() throws Throwable {
+    final SwiftUploadBudget budget = new SwiftUploadBudget(100);
+    budget.reserve(60);
+    final CountDownLatch reserved = new CountDownLatch(1);
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          budget.reserve(50);
+          reserved.countDown();
+        } catch (Exception e) {
+          //the latch is never released
+        }
+      }
+    };
+    writer.start();
+    assertFalse(reserved.await(200, TimeUnit.MILLISECONDS));
+    budget.release(60);
+    assertTrue(reserved.await(5, TimeUnit.SECONDS));
+    assertEquals(50, budget.getReserved());
+  }
+
+  @Test(timeout = 10000)
+  public void testOversizedReservationOnItsOwn() throws Throwable {
+    SwiftUploadBudget budget = new SwiftUploadBudget(100);
+    budget.reserve(500);
+    assertEquals(500, budget.getReserved());
+    budget.release(500);
+    assertEquals(0, budget.getReserved());
+  }
+}
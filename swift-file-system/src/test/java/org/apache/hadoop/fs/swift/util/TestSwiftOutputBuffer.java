@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.apache.hadoop.fs.swift.util;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.swift.exceptions.SwiftConfigurationException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.OUTPUT_BUFFER_DIRECT;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.OUTPUT_BUFFER_DISK;
+import static org.apache.hadoop.fs.swift.http.SwiftProtocolConstants.OUTPUT_BUFFER_HEAP;
+
+/**
+ * Test the output buffers and the direct buffer pool
+ */
+public class TestSwiftOutputBuffer extends Assert {
+
+  private static final int LENGTH = 2 * SwiftDirectBufferPool.BUFFER_SIZE + 1000;
+
+  private void assertRoundTrip(String type) throws Exception {
+    Configuration conf = new Configuration();
+    SwiftOutputBuffer buffer = SwiftOutputBuffer.factory(type, conf).create();
+    byte[] src = SwiftTestUtils.dataset(LENGTH, 0, 251);
+    try {
+      buffer.write(src[0]);
+      buffer.write(src, 1, LENGTH - 1);
+      buffer.close();
+      assertEquals(LENGTH, buffer.size());
+      assertEquals(type, DigestUtils.md5Hex(src), buffer.getMD5());
+      InputStream in = buffer.getInputStream();
+      try {
+        assertArrayEquals(type, src, IOUtils.toByteArray(in));
+      } finally {
+        in.close();
+      }
+    } finally {
+      buffer.release();
+    }
+  }
+
+  @Test
+  public void testDiskBuffer() throws Throwable {
+    assertRoundTrip(OUTPUT_BUFFER_DISK);
+  }
+
+  @Test
+  public void testHeapBuffer() throws Throwable {
+    assertRoundTrip(OUTPUT_BUFFER_HEAP);
+  }
+
+  @Test
+  public void testDirectBuffer() throws Throwable {
+    assertRoundTrip(OUTPUT_BUFFER_DIRECT);
+  }
+
+  @Test(expected = SwiftConfigurationException.class)
+  public void testUnknownBuffer() throws Throwable {
+    SwiftOutputBuffer.factory("tape", new Configuration());
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void testDiskBufferReleaseDeletesFile() throws Throwable {
+    SwiftOutputBuffer buffer = SwiftOutputBuffer.factory(OUTPUT_BUFFER_DISK,
+            new Configuration()).create();
+    buffer.write(1);
+    buffer.close();
+    buffer.release();
+    buffer.getInputStream();
+  }
+
+  @Test
+  public void testPoolLimit() throws Throwable {
+    SwiftDirectBufferPool pool =
+            new SwiftDirectBufferPool(SwiftDirectBufferPool.BUFFER_SIZE);
+    ByteBuffer first = pool.acquire();
+    assertNotNull(first);
+    assertTrue(first.isDirect());
+    assertNull(pool.acquire());
+    pool.release(first);
+    assertSame(first, pool.acquire());
+    assertEquals(SwiftDirectBufferPool.BUFFER_SIZE, pool.getAllocated());
+  }
+
+  @Test
+  public void testPoolLimitIsNeverLowered() throws Throwable {
+    SwiftDirectBufferPool pool =
+            new SwiftDirectBufferPool(SwiftDirectBufferPool.BUFFER_SIZE);
+    assertNotNull(pool.acquire());
+    pool.raiseLimit(2 * SwiftDirectBufferPool.BUFFER_SIZE);
+    assertNotNull(pool.acquire());
+    pool.raiseLimit(0);
+    assertEquals(2 * SwiftDirectBufferPool.BUFFER_SIZE, pool.getAllocated());
+    assertNull(pool.acquire());
+  }
+}
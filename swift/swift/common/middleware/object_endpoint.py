@@ -18,20 +18,74 @@ try:
 except ImportError:
     import json
 
-from webob import Request
-from webob.exc import HTTPMethodNotAllowed
+from webob import Request, Response
+from webob.exc import HTTPBadRequest, HTTPMethodNotAllowed, \
+    HTTPRequestEntityTooLarge
 
 from swift.common.ring import Ring
 from swift.common.utils import get_logger, split_path
 
 
 class ObjectEndpoint(object):
+    """
+    Reports the storage nodes of objects.
+
+    A GET of /object_endpoint/<account>/<container>/<object> returns a JSON
+    list of the URLs of the object on each of its nodes.
+
+    A POST to /object_endpoint/<account> with a JSON list of
+    "<container>/<object>" names in the body locates many objects at once,
+    returning a JSON object mapping each name to its list of URLs. At most
+    max_batch_size names may be given in one request.
+    """
 
     def __init__(self, app, conf):
         self.app = app
         self.logger = get_logger(conf, log_route='object_endpoint')
         swift_dir = conf.get('swift_dir', '/etc/swift')
         self.object_ring = Ring(swift_dir, ring_name='object')
+        self.max_batch_size = int(conf.get('max_batch_size', 1000))
+
+    def get_endpoints(self, account, container, obj):
+        object_partition, objects = self.object_ring.get_nodes(
+            account, container, obj)
+
+        endpoint_template = 'http://{ip}:{port}/{device}/{partition}/' + \
+                            '{account}/{container}/{obj}'
+        endpoints = []
+        for element in objects:
+            endpoint = endpoint_template.format(ip=element['ip'],
+                                                port=element['port'],
+                                                device=element['device'],
+                                                partition=object_partition,
+                                                account=account,
+                                                container=container,
+                                                obj=obj)
+            endpoints.append(endpoint)
+        return endpoints
+
+    def get_batch_endpoints(self, request, account):
+        try:
+            names = json.loads(request.body)
+        except ValueError:
+            return HTTPBadRequest(body='Invalid JSON list of objects')
+        if not isinstance(names, list):
+            return HTTPBadRequest(body='Invalid JSON list of objects')
+        if len(names) > self.max_batch_size:
+            return HTTPRequestEntityTooLarge(
+                body='More than %d objects' % self.max_batch_size)
+
+        locations = {}
+        for name in names:
+            if isinstance(name, unicode):
+                name = name.encode('utf-8')
+            container, sep, obj = name.lstrip('/').partition('/')
+            if not container or not obj:
+                return HTTPBadRequest(body='Invalid object: %s' % name)
+            locations[name] = self.get_endpoints(account, container,
+                                                 obj.rstrip('/'))
+        return Response(body=json.dumps(locations),
+                        content_type='application/json')
 
     def __call__(self, env, start_response):
         request = Request(env)
@@ -40,6 +94,12 @@ class ObjectEndpoint(object):
 
         if request.path.startswith(url_prefix):
 
+            if request.method == 'POST':
+                account = split_path(request.path[len(url_prefix) - 1:],
+                                     1, 1, True)[0]
+                return self.get_batch_endpoints(request, account)(
+                    env, start_response)
+
             if request.method != 'GET':
                 raise HTTPMethodNotAllowed()
 
@@ -50,21 +110,7 @@ class ObjectEndpoint(object):
             if obj.endswith('/'):
                 obj = obj[:-1]
 
-            object_partition, objects = self.object_ring.get_nodes(
-                account, container, obj)
-
-            endpoint_template = 'http://{ip}:{port}/{device}/{partition}/' + \
-                                '{account}/{container}/{obj}'
-            endpoints = []
-            for element in objects:
-                endpoint = endpoint_template.format(ip=element['ip'],
-                                                    port=element['port'],
-                                                    device=element['device'],
-                                                    partition=object_partition,
-                                                    account=account,
-                                                    container=container,
-                                                    obj=obj)
-                endpoints.append(endpoint)
+            endpoints = self.get_endpoints(account, container, obj)
 
             start_response('200 OK', {})
             return json.dumps(endpoints)